@@ -0,0 +1,75 @@
+package com.adamjhowell.snmpinterface;
+
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+
+/**
+ * This supplies the walk files that the benchmarks run against.<br>
+ * "bundled" is the walk1.txt and walk2.txt pair in the project directory, and any number is the line count of a generated pair.
+ * <p>
+ * A generated walk comes from a WalkGenerator, with one interface for every 250 lines, so a 1M line walk has 4,000 interfaces.<br>
+ * The remaining lines are noise subtrees that the reader skips.<br>
+ * No counters wrap, so no 'counter wrap' is logged while a benchmark runs.
+ */
+final class BenchmarkWalks
+{
+	static final String BUNDLED = "bundled";
+	private static final int LINES_PER_INTERFACE = 250;
+	private static final long SEED = 42;
+
+
+	private BenchmarkWalks()
+	{
+		// This class only holds static methods.
+	}
+
+
+	/**
+	 * @param source     "bundled", or the number of lines to generate.
+	 * @param walkNumber 1 for the first walk of the pair, or 2 for the second.
+	 * @return the path of that walk.
+	 * @throws IOException if a walk could not be generated.
+	 */
+	static Path walk( String source, int walkNumber ) throws IOException
+	{
+		if( BUNDLED.equals( source ) )
+		{
+			return Paths.get( "walk" + walkNumber + ".txt" );
+		}
+		Path path = Files.createTempFile( "benchmark-walk" + walkNumber + "-", ".txt" );
+		generate( path, Integer.parseInt( source ), walkNumber );
+		return path;
+	}
+
+
+	/**
+	 * This deletes a walk returned by walk(), unless it is one of the bundled walks.
+	 */
+	static void discard( String source, Path path ) throws IOException
+	{
+		if( !BUNDLED.equals( source ) )
+		{
+			Files.deleteIfExists( path );
+		}
+	}
+
+
+	private static void generate( Path path, int lineCount, int walkNumber ) throws IOException
+	{
+		WalkGenerator generator = new WalkGenerator( SEED );
+		generator.setWrapPercent( 0 );
+		generator.setInterfaceCount( Math.max( 4, lineCount / LINES_PER_INTERFACE ) );
+		generator.setNoiseLines( 0 );
+		generator.setNoiseLines( Math.max( 0, lineCount - generator.getLineCount() ) );
+		try( Writer out = Files.newBufferedWriter( path, StandardCharsets.UTF_8 ) )
+		{
+			generator.write( out, walkNumber );
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package com.adamjhowell.snmpinterface;
+
+
+import com.adamjhowell.snmpinterface.model.InterfaceDelta;
+import com.adamjhowell.snmpinterface.model.InterfaceResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * This measures the stages after parsing, with both walks already in a WalkIndex:<br>
+ * interface discovery, finding one interface in both walks, calculating the delta of every interface, and formatting those deltas for display.<br>
+ * Each operation covers every interface in the walk.  Run with "-prof gc" to see the allocation rate alongside the throughput.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class CalculationBenchmark
+{
+	/**
+	 * "bundled" for walk1.txt and walk2.txt, or the number of lines in each generated walk.
+	 */
+	@Param( { BenchmarkWalks.BUNDLED, "100000", "1000000", "10000000" } )
+	public String walk;
+
+	private WalkIndex walk1;
+	private WalkIndex walk2;
+	private long[] ifIndexes;
+	private List<InterfaceResult> results;
+	private final InterfaceDelta delta = new InterfaceDelta();
+
+
+	@Setup( Level.Trial )
+	public void setUp() throws IOException
+	{
+		Path path1 = BenchmarkWalks.walk( walk, 1 );
+		Path path2 = BenchmarkWalks.walk( walk, 2 );
+		try
+		{
+			walk1 = WalkReader.read( path1 );
+			walk2 = WalkReader.read( path2 );
+		}
+		finally
+		{
+			BenchmarkWalks.discard( walk, path1 );
+			BenchmarkWalks.discard( walk, path2 );
+		}
+		ifIndexes = new long[walk1.size()];
+		for( int slot = 0; slot < ifIndexes.length; slot++ )
+		{
+			ifIndexes[slot] = walk1.getIfIndex( slot );
+		}
+		results = UtilizationCalculator.calculateAll( walk1, walk2 );
+	}
+
+
+	/**
+	 * The replacement for findInterfaces(): check that both walks describe the same interfaces, and list them.
+	 */
+	@Benchmark
+	public void discoverInterfaces( Blackhole blackhole )
+	{
+		blackhole.consume( walk1.hasSameInterfaces( walk2 ) );
+		blackhole.consume( walk1.getInterfaces() );
+	}
+
+
+	/**
+	 * The replacement for buildCompleteSNMPInterface(): find every interface in both walks.
+	 */
+	@Benchmark
+	public void lookupInterfaces( Blackhole blackhole )
+	{
+		for( long ifIndex : ifIndexes )
+		{
+			blackhole.consume( walk1.slotOf( ifIndex ) );
+			blackhole.consume( walk2.slotOf( ifIndex ) );
+		}
+	}
+
+
+	/**
+	 * The replacement for calculateStatistics(): fill one reused delta for every interface.
+	 */
+	@Benchmark
+	public void calculateDeltas( Blackhole blackhole )
+	{
+		for( long ifIndex : ifIndexes )
+		{
+			UtilizationCalculator.calculateInOrder( walk1, walk2, ifIndex, delta );
+			blackhole.consume( delta.getInUtilization() );
+			blackhole.consume( delta.getOutUtilization() );
+		}
+	}
+
+
+	/**
+	 * The display stage: format every delta into InterfaceStats, as the GUI and the text and csv writers do.
+	 */
+	@Benchmark
+	public void formatStatistics( Blackhole blackhole )
+	{
+		for( InterfaceResult result : results )
+		{
+			blackhole.consume( result.getStatistics() );
+		}
+	}
+}
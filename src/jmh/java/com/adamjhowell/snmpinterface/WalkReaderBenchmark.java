@@ -0,0 +1,64 @@
+package com.adamjhowell.snmpinterface;
+
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * This measures the parse stage: reading one walk file into a WalkIndex.<br>
+ * Run with "-prof gc" to see the allocation rate alongside the throughput.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class WalkReaderBenchmark
+{
+	/**
+	 * "bundled" for walk1.txt, or the number of lines in a generated walk.
+	 */
+	@Param( { BenchmarkWalks.BUNDLED, "100000", "1000000", "10000000" } )
+	public String walk;
+
+	private Path path;
+
+
+	@Setup( Level.Trial )
+	public void setUp() throws IOException
+	{
+		path = BenchmarkWalks.walk( walk, 1 );
+	}
+
+
+	@TearDown( Level.Trial )
+	public void tearDown() throws IOException
+	{
+		BenchmarkWalks.discard( walk, path );
+	}
+
+
+	@Benchmark
+	public void read( Blackhole blackhole ) throws IOException
+	{
+		blackhole.consume( WalkReader.read( path ) );
+	}
+}
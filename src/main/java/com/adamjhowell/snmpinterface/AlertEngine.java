@@ -0,0 +1,490 @@
+package com.adamjhowell.snmpinterface;
+
+
+import com.adamjhowell.snmpinterface.model.InterfaceDelta;
+import com.adamjhowell.snmpinterface.model.InterfaceResult;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * This raises and clears threshold alerts as each new result of an interface is produced, without looking back at earlier results.
+ * <p>
+ * A rule is written as: &lt;name&gt; &lt;metric&gt; &gt; &lt;raise&gt; [clear &lt;clear&gt;] [for &lt;count&gt;]<br>
+ * e.g. "busy-in in_utilization &gt; 80 clear 70 for 3" raises an alert once inbound utilization is above 80% for 3 results in a row,
+ * and clears it once utilization drops to 70% or below, so a link that hovers around 80% does not raise and clear it over and over.<br>
+ * The clear threshold defaults to the raise threshold, and the count to 1.  The metrics are in Metric.
+ * In a rules file, there is one rule per line, and everything after a "//" is ignored.
+ * <p>
+ * The rules are compiled into parallel primitive arrays, and the state of every rule for every interface is a single int,
+ * found through an open-addressing map from (device, ifIndex) to a slot, so evaluating an interface allocates nothing unless an alert changes.<br>
+ * An engine is not thread-safe.  Results are evaluated on the thread that produces them (such as a poll loop), and alerts are handed to the AlertSink there.
+ */
+final class AlertEngine
+{
+	private static final String COMMENT_STRING = "//";
+	private static final Pattern RULE = Pattern.compile( "^(\\S+)\\s+(\\w+)\\s*>\\s*(\\S+)(?:\\s+clear\\s+(\\S+))?(?:\\s+for\\s+(\\d+))?$", Pattern.CASE_INSENSITIVE );
+	/**
+	 * The state of one rule on one interface is this flag, when the alert is raised, plus the number of results in a row that have crossed the threshold.
+	 */
+	private static final int ACTIVE = 1 << 30;
+	private static final int STREAK = ACTIVE - 1;
+	private static final double TICKS_PER_SECOND = 100;
+
+	private final String[] names;
+	private final Metric[] metrics;
+	private final double[] raiseAbove;
+	private final double[] clearAtOrBelow;
+	private final int[] counts;
+	private final AlertSink sink;
+	private final Map<String, Integer> deviceIds = new HashMap<>();
+	private final SlotMap slots = new SlotMap();
+	/**
+	 * The state of rule r for the interface in slot s is at s * rule count + r.
+	 */
+	private int[] states;
+	private final double[] values;
+	private long raisedCount;
+	private long clearedCount;
+
+
+	/**
+	 * What a rule can test.  Each is NaN when the delta does not hold it (see InterfaceDelta.Status), and a rule ignores that result.
+	 */
+	enum Metric
+	{
+		/**
+		 * The inbound utilization, as a percentage.
+		 */
+		IN_UTILIZATION,
+		/**
+		 * The outbound utilization, as a percentage.
+		 */
+		OUT_UTILIZATION,
+		/**
+		 * The inbound plus outbound discards per second.
+		 */
+		DISCARDS,
+		/**
+		 * The inbound plus outbound errors per second.
+		 */
+		ERRORS;
+
+
+		double of( InterfaceDelta delta )
+		{
+			InterfaceDelta.Status status = delta.getStatus();
+			switch( this )
+			{
+				case IN_UTILIZATION:
+					return status == InterfaceDelta.Status.VALID ? delta.getInUtilization() : Double.NaN;
+				case OUT_UTILIZATION:
+					return status == InterfaceDelta.Status.VALID ? delta.getOutUtilization() : Double.NaN;
+				default:
+					if( status != InterfaceDelta.Status.VALID && status != InterfaceDelta.Status.ZERO_SPEED || delta.getTickDelta() <= 0 )
+					{
+						return Double.NaN;
+					}
+					long count = this == DISCARDS ? delta.getTotalDiscardDelta() : delta.getTotalErrorDelta();
+					return count * TICKS_PER_SECOND / delta.getTickDelta();
+			}
+		}
+	}
+
+
+	/**
+	 * One alert being raised or cleared.
+	 */
+	static final class Alert
+	{
+		private final boolean raised;
+		private final String rule;
+		private final Metric metric;
+		private final double value;
+		private final double threshold;
+		private final String device;
+		private final long ifIndex;
+		private final String ifDescr;
+		private final long timestamp;
+
+
+		private Alert( boolean raised, String rule, Metric metric, double value, double threshold, String device, long ifIndex, String ifDescr, long timestamp )
+		{
+			this.raised = raised;
+			this.rule = rule;
+			this.metric = metric;
+			this.value = value;
+			this.threshold = threshold;
+			this.device = device;
+			this.ifIndex = ifIndex;
+			this.ifDescr = ifDescr;
+			this.timestamp = timestamp;
+		}
+
+
+		/**
+		 * @return true if the alert was raised, and false if it was cleared.
+		 */
+		boolean isRaised()
+		{
+			return raised;
+		}
+
+
+		String getRule()
+		{
+			return rule;
+		}
+
+
+		Metric getMetric()
+		{
+			return metric;
+		}
+
+
+		/**
+		 * @return the value of the metric that raised or cleared the alert.
+		 */
+		double getValue()
+		{
+			return value;
+		}
+
+
+		/**
+		 * @return the raise threshold for a raised alert, or the clear threshold for a cleared alert.
+		 */
+		double getThreshold()
+		{
+			return threshold;
+		}
+
+
+		String getDevice()
+		{
+			return device;
+		}
+
+
+		long getIfIndex()
+		{
+			return ifIndex;
+		}
+
+
+		String getIfDescr()
+		{
+			return ifDescr;
+		}
+
+
+		/**
+		 * @return the time of the result, in milliseconds since the epoch.
+		 */
+		long getTimestamp()
+		{
+			return timestamp;
+		}
+
+
+		@Override
+		public String toString()
+		{
+			return String.format( "%s %s: %s ifIndex %d (%s) %s = %.3g, %s %.3g", raised ? "RAISED" : "CLEARED", rule, device, ifIndex, ifDescr,
+			                      metric.name().toLowerCase( Locale.ROOT ), value, raised ? "above" : "at or below", threshold );
+		}
+	}
+
+
+	/**
+	 * @param rules the rules, one per line, as described above.
+	 * @param sink  the sink to hand each alert to.
+	 * @throws IllegalArgumentException if a rule cannot be parsed, naming the line.
+	 */
+	AlertEngine( List<String> rules, AlertSink sink )
+	{
+		List<String> ruleNames = new ArrayList<>();
+		List<Metric> ruleMetrics = new ArrayList<>();
+		List<double[]> thresholds = new ArrayList<>();
+		List<Integer> ruleCounts = new ArrayList<>();
+		int lineNumber = 0;
+		for( String line : rules )
+		{
+			lineNumber++;
+			int comment = line.indexOf( COMMENT_STRING );
+			String rule = ( comment < 0 ? line : line.substring( 0, comment ) ).trim();
+			if( rule.isEmpty() )
+			{
+				continue;
+			}
+			Matcher matcher = RULE.matcher( rule );
+			try
+			{
+				if( !matcher.matches() )
+				{
+					throw new IllegalArgumentException( "it is not <name> <metric> > <raise> [clear <clear>] [for <count>]" );
+				}
+				double raise = Double.parseDouble( matcher.group( 3 ) );
+				double clear = matcher.group( 4 ) == null ? raise : Double.parseDouble( matcher.group( 4 ) );
+				int count = matcher.group( 5 ) == null ? 1 : Integer.parseInt( matcher.group( 5 ) );
+				if( clear > raise || count < 1 || count >= STREAK || Double.isNaN( raise ) || Double.isNaN( clear ) )
+				{
+					throw new IllegalArgumentException( "the clear threshold must not be above the raise threshold, and the count must be positive" );
+				}
+				ruleMetrics.add( Metric.valueOf( matcher.group( 2 ).toUpperCase( Locale.ROOT ) ) );
+				ruleNames.add( matcher.group( 1 ) );
+				thresholds.add( new double[]{ raise, clear } );
+				ruleCounts.add( count );
+			}
+			catch( IllegalArgumentException e )
+			{
+				// NumberFormatException, and an unknown metric, are both IllegalArgumentExceptions.
+				throw new IllegalArgumentException( "Rule " + lineNumber + " (" + rule + ") is invalid: " + e.getLocalizedMessage(), e );
+			}
+		}
+		int ruleCount = ruleNames.size();
+		names = ruleNames.toArray( new String[0] );
+		metrics = ruleMetrics.toArray( new Metric[0] );
+		raiseAbove = new double[ruleCount];
+		clearAtOrBelow = new double[ruleCount];
+		counts = new int[ruleCount];
+		for( int r = 0; r < ruleCount; r++ )
+		{
+			raiseAbove[r] = thresholds.get( r )[0];
+			clearAtOrBelow[r] = thresholds.get( r )[1];
+			counts[r] = ruleCounts.get( r );
+		}
+		values = new double[Metric.values().length];
+		states = new int[Math.max( 1, ruleCount ) * SlotMap.INITIAL_CAPACITY];
+		this.sink = sink;
+	} // End of AlertEngine() constructor.
+
+
+	/**
+	 * @param rulesFile a file of rules, one per line.
+	 * @param sink      the sink to hand each alert to.
+	 * @return an engine for those rules.
+	 * @throws IOException              if the file cannot be read.
+	 * @throws IllegalArgumentException if a rule cannot be parsed.
+	 */
+	static AlertEngine fromFile( Path rulesFile, AlertSink sink ) throws IOException
+	{
+		List<String> lines = new ArrayList<>();
+		try( BufferedReader reader = Files.newBufferedReader( rulesFile, StandardCharsets.UTF_8 ) )
+		{
+			String line;
+			while( ( line = reader.readLine() ) != null )
+			{
+				lines.add( line );
+			}
+		}
+		return new AlertEngine( lines, sink );
+	}
+
+
+	/**
+	 * @return the number of rules.
+	 */
+	int getRuleCount()
+	{
+		return names.length;
+	}
+
+
+	/**
+	 * This evaluates every rule against every interface of one new result of a device.
+	 *
+	 * @param device    the sysName of the device.
+	 * @param timestamp the time of the result, in milliseconds since the epoch.
+	 * @param results   the results of the device's interfaces.
+	 * @throws IOException if the sink fails.
+	 */
+	void evaluate( String device, long timestamp, List<InterfaceResult> results ) throws IOException
+	{
+		if( names.length == 0 )
+		{
+			return;
+		}
+		long deviceKey = ( long )deviceIds.computeIfAbsent( device == null ? "" : device, name -> deviceIds.size() ) << 32;
+		for( InterfaceResult result : results )
+		{
+			evaluate( device, deviceKey, timestamp, result );
+		}
+	}
+
+
+	private void evaluate( String device, long deviceKey, long timestamp, InterfaceResult result ) throws IOException
+	{
+		InterfaceDelta delta = result.getDelta();
+		// ifIndex is an Integer32, so it fits in the low half of the key.
+		int slot = slots.slotFor( deviceKey | result.getIfIndex() & 0xFFFFFFFFL );
+		int ruleCount = names.length;
+		int base = slot * ruleCount;
+		if( base + ruleCount > states.length )
+		{
+			states = Arrays.copyOf( states, Math.max( states.length * 2, base + ruleCount ) );
+		}
+		// Each metric is calculated once, however many rules use it.
+		int calculated = 0;
+		for( int r = 0; r < ruleCount; r++ )
+		{
+			int metric = metrics[r].ordinal();
+			if( ( calculated & 1 << metric ) == 0 )
+			{
+				values[metric] = metrics[r].of( delta );
+				calculated |= 1 << metric;
+			}
+			double value = values[metric];
+			if( Double.isNaN( value ) )
+			{
+				continue;
+			}
+			int state = states[base + r];
+			boolean active = ( state & ACTIVE ) != 0;
+			if( !active )
+			{
+				int streak = value > raiseAbove[r] ? ( state & STREAK ) + 1 : 0;
+				if( streak >= counts[r] )
+				{
+					states[base + r] = ACTIVE;
+					raisedCount++;
+					sink.alert( new Alert( true, names[r], metrics[r], value, raiseAbove[r], device, result.getIfIndex(), result.getIfDescr(), timestamp ) );
+				}
+				else
+				{
+					states[base + r] = streak;
+				}
+			}
+			else if( value <= clearAtOrBelow[r] )
+			{
+				states[base + r] = 0;
+				clearedCount++;
+				sink.alert( new Alert( false, names[r], metrics[r], value, clearAtOrBelow[r], device, result.getIfIndex(), result.getIfDescr(), timestamp ) );
+			}
+		}
+	} // End of evaluate() method.
+
+
+	/**
+	 * @return the number of interfaces that have been evaluated.
+	 */
+	int getInterfaceCount()
+	{
+		return slots.size();
+	}
+
+
+	long getRaisedCount()
+	{
+		return raisedCount;
+	}
+
+
+	long getClearedCount()
+	{
+		return clearedCount;
+	}
+
+
+	/**
+	 * An open-addressing hash map from a long key to a dense slot number (the order keys were added), with linear probing.<br>
+	 * Keys are never removed, so no tombstones are needed.
+	 */
+	private static final class SlotMap
+	{
+		private static final int INITIAL_CAPACITY = 1024;
+		private static final long EMPTY = Long.MIN_VALUE;
+
+		private long[] keys = filled( INITIAL_CAPACITY );
+		private int[] values = new int[INITIAL_CAPACITY];
+		private int size;
+
+
+		/**
+		 * @param key the key, which must not be Long.MIN_VALUE.
+		 * @return the slot for that key, which is the next unused slot if the key is new.
+		 */
+		private int slotFor( long key )
+		{
+			int mask = keys.length - 1;
+			int index = mix( key ) & mask;
+			while( keys[index] != EMPTY )
+			{
+				if( keys[index] == key )
+				{
+					return values[index];
+				}
+				index = ( index + 1 ) & mask;
+			}
+			keys[index] = key;
+			values[index] = size;
+			size++;
+			// Keep the load factor at or below one half, so probe sequences stay short.
+			if( size * 2 > keys.length )
+			{
+				grow();
+			}
+			return size - 1;
+		}
+
+
+		private int size()
+		{
+			return size;
+		}
+
+
+		private void grow()
+		{
+			long[] oldKeys = keys;
+			int[] oldValues = values;
+			keys = filled( oldKeys.length * 2 );
+			values = new int[oldKeys.length * 2];
+			int mask = keys.length - 1;
+			for( int i = 0; i < oldKeys.length; i++ )
+			{
+				if( oldKeys[i] != EMPTY )
+				{
+					int index = mix( oldKeys[i] ) & mask;
+					while( keys[index] != EMPTY )
+					{
+						index = ( index + 1 ) & mask;
+					}
+					keys[index] = oldKeys[i];
+					values[index] = oldValues[i];
+				}
+			}
+		}
+
+
+		/**
+		 * The keys are (device << 32 | ifIndex), so the bits are spread with a multiplicative hash before they are masked.
+		 */
+		private static int mix( long key )
+		{
+			long h = key * 0x9E3779B97F4A7C15L;
+			return ( int )( h ^ h >>> 32 );
+		}
+
+
+		private static long[] filled( int length )
+		{
+			long[] array = new long[length];
+			Arrays.fill( array, EMPTY );
+			return array;
+		}
+	}
+}
@@ -0,0 +1,290 @@
+package com.adamjhowell.snmpinterface;
+
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * This is where an AlertEngine sends the alerts it raises and clears.
+ * <p>
+ * The log sink logs raised alerts as warnings, and cleared alerts as information.<br>
+ * The file sink appends each alert to a file, as one JSON object per line.<br>
+ * The webhook sink POSTs each alert, as a JSON object, to a URL (such as a local chat or ticketing hook) on a background thread,
+ * so a slow receiver never holds up the evaluation.  If it falls too far behind, alerts are dropped and counted.
+ */
+abstract class AlertSink implements Closeable
+{
+	private static final Logger errorLogger = Logger.getLogger( AlertSink.class.getName() );
+	private static final String FILE_PREFIX = "file:";
+	private static final int WEBHOOK_QUEUE_SIZE = 1000;
+	private static final int WEBHOOK_TIMEOUT_MILLIS = 5000;
+
+
+	/**
+	 * @return a sink that logs every alert.
+	 */
+	static AlertSink log()
+	{
+		return new LogSink();
+	}
+
+
+	/**
+	 * @param file the file to append alerts to, which is created if it does not exist.
+	 * @return a sink that appends every alert to that file.
+	 * @throws IOException if the file cannot be opened.
+	 */
+	static AlertSink file( Path file ) throws IOException
+	{
+		return new FileSink( file );
+	}
+
+
+	/**
+	 * @param url the http or https URL to POST alerts to.
+	 * @return a sink that POSTs every alert to that URL.
+	 */
+	static AlertSink webhook( URL url )
+	{
+		return new WebhookSink( url );
+	}
+
+
+	/**
+	 * @param spec "log", "file:&lt;path&gt;", or an http:// or https:// URL.
+	 * @return the sink the spec names.
+	 * @throws IOException              if a file sink cannot be opened.
+	 * @throws IllegalArgumentException if the spec names no sink.
+	 */
+	static AlertSink parse( String spec ) throws IOException
+	{
+		if( "log".equals( spec ) )
+		{
+			return log();
+		}
+		if( spec.startsWith( FILE_PREFIX ) )
+		{
+			return file( Paths.get( spec.substring( FILE_PREFIX.length() ) ) );
+		}
+		String lowerSpec = spec.toLowerCase( Locale.ROOT );
+		if( lowerSpec.startsWith( "http://" ) || lowerSpec.startsWith( "https://" ) )
+		{
+			try
+			{
+				return webhook( new URL( spec ) );
+			}
+			catch( MalformedURLException e )
+			{
+				throw new IllegalArgumentException( "Invalid webhook URL " + spec, e );
+			}
+		}
+		throw new IllegalArgumentException( "An alert sink is log, file:<path>, or an http(s) URL, not " + spec );
+	}
+
+
+	/**
+	 * @param alert the alert that was raised or cleared.
+	 * @throws IOException if the alert cannot be delivered.
+	 */
+	abstract void alert( AlertEngine.Alert alert ) throws IOException;
+
+
+	@Override
+	public void close() throws IOException
+	{
+		// Most sinks hold nothing open.
+	}
+
+
+	/**
+	 * @return the alert as one line of JSON.
+	 */
+	static String toJson( AlertEngine.Alert alert )
+	{
+		StringWriter json = new StringWriter();
+		try( JsonWriter out = new JsonWriter( json ) )
+		{
+			// An infinite threshold (which never raises or clears) is written as Infinity.
+			out.setLenient( true );
+			out.beginObject();
+			out.name( "state" ).value( alert.isRaised() ? "raised" : "cleared" );
+			out.name( "rule" ).value( alert.getRule() );
+			out.name( "metric" ).value( alert.getMetric().name().toLowerCase( Locale.ROOT ) );
+			out.name( "value" ).value( alert.getValue() );
+			out.name( "threshold" ).value( alert.getThreshold() );
+			out.name( "device" ).value( alert.getDevice() );
+			out.name( "ifIndex" ).value( alert.getIfIndex() );
+			out.name( "ifDescr" ).value( alert.getIfDescr() );
+			out.name( "time" ).value( Instant.ofEpochMilli( alert.getTimestamp() ).toString() );
+			out.endObject();
+		}
+		catch( IOException e )
+		{
+			// A StringWriter does not throw.
+			throw new IllegalStateException( e );
+		}
+		return json.toString();
+	}
+
+
+	private static final class LogSink extends AlertSink
+	{
+		@Override
+		void alert( AlertEngine.Alert alert )
+		{
+			errorLogger.log( alert.isRaised() ? Level.WARNING : Level.INFO, alert.toString() );
+		}
+	}
+
+
+	private static final class FileSink extends AlertSink
+	{
+		private final Writer out;
+
+
+		private FileSink( Path file ) throws IOException
+		{
+			out = Files.newBufferedWriter( file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND );
+		}
+
+
+		/**
+		 * Each alert is flushed, so the file can be followed with tail -f.
+		 */
+		@Override
+		void alert( AlertEngine.Alert alert ) throws IOException
+		{
+			out.write( toJson( alert ) );
+			out.write( System.lineSeparator() );
+			out.flush();
+		}
+
+
+		@Override
+		public void close() throws IOException
+		{
+			out.close();
+		}
+	}
+
+
+	private static final class WebhookSink extends AlertSink
+	{
+		private final URL url;
+		private final BlockingQueue<String> queue = new ArrayBlockingQueue<>( WEBHOOK_QUEUE_SIZE );
+		private final Thread sender;
+		private long dropped;
+		private volatile boolean closed;
+
+
+		private WebhookSink( URL url )
+		{
+			this.url = url;
+			sender = new Thread( this::send, "alert-webhook" );
+			sender.setDaemon( true );
+			sender.start();
+		}
+
+
+		@Override
+		void alert( AlertEngine.Alert alert )
+		{
+			if( !queue.offer( toJson( alert ) ) )
+			{
+				dropped++;
+				errorLogger.log( Level.WARNING, "The alert webhook is not keeping up, so {0} alerts have been dropped.", dropped );
+			}
+		}
+
+
+		/**
+		 * This POSTs the queued alerts, one at a time, until this sink is closed and the queue is empty.
+		 */
+		private void send()
+		{
+			while( !closed || !queue.isEmpty() )
+			{
+				String body;
+				try
+				{
+					body = queue.poll( 1, TimeUnit.SECONDS );
+				}
+				catch( InterruptedException e )
+				{
+					return;
+				}
+				if( body != null )
+				{
+					post( body );
+				}
+			}
+		}
+
+
+		private void post( String body )
+		{
+			try
+			{
+				HttpURLConnection connection = ( HttpURLConnection )url.openConnection();
+				connection.setConnectTimeout( WEBHOOK_TIMEOUT_MILLIS );
+				connection.setReadTimeout( WEBHOOK_TIMEOUT_MILLIS );
+				connection.setRequestMethod( "POST" );
+				connection.setRequestProperty( "Content-Type", "application/json; charset=utf-8" );
+				connection.setDoOutput( true );
+				try( OutputStream out = connection.getOutputStream() )
+				{
+					out.write( body.getBytes( StandardCharsets.UTF_8 ) );
+				}
+				int status = connection.getResponseCode();
+				if( status / 100 != 2 )
+				{
+					errorLogger.log( Level.WARNING, "The alert webhook answered {0}.", status );
+				}
+				connection.disconnect();
+			}
+			catch( IOException e )
+			{
+				errorLogger.log( Level.WARNING, "Unable to POST an alert to {0}: {1}", new Object[]{ url, e.getLocalizedMessage() } );
+			}
+		}
+
+
+		/**
+		 * This waits (for a bounded time) for the queued alerts to be sent.
+		 */
+		@Override
+		public void close()
+		{
+			closed = true;
+			try
+			{
+				sender.join( WEBHOOK_TIMEOUT_MILLIS * 2L );
+			}
+			catch( InterruptedException e )
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
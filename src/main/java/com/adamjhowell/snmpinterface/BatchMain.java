@@ -0,0 +1,1040 @@
+package com.adamjhowell.snmpinterface;
+
+
+import com.adamjhowell.snmpinterface.model.CounterResult;
+import com.adamjhowell.snmpinterface.model.DeviceResult;
+import com.adamjhowell.snmpinterface.model.InterfaceResult;
+import com.adamjhowell.snmpinterface.model.InterfaceSeries;
+import com.adamjhowell.snmpinterface.model.InterfaceStats;
+import com.google.gson.GsonBuilder;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * This is the command line (headless) entry point for this program.<br>
+ * It reads two SNMP walk files, calculates the statistics for every interface found in both, and writes them all out in one pass.<br>
+ * With --fleet, it instead analyzes every device in a directory (or manifest) of walks, using a FleetAnalyzer.<br>
+ * With --series, it reads an ordered series of walks from one device, and summarizes the utilization of every interface over that series.<br>
+ * With --poll, it polls live SNMP v2c agents on an interval instead of reading walks, and writes the statistics of every interval as it ends.<br>
+ * With --spool, it runs until it is killed, watching a directory with a SpoolDaemon, and writes the statistics of each new walk against the previous walk of its device.<br>
+ * No JavaFX classes are loaded, so this can be run from cron on a machine without a display.
+ * <p>
+ * The text and csv formats show the same formatted statistics as the GUI, while the json format writes the raw numeric delta of each interface.<br>
+ * With --numeric, a pair of walks or a fleet is exported as json or csv by a ResultExporter, which writes plain numbers one interface at a time.<br>
+ * With --top, only the busiest interfaces of a pair of walks or a whole fleet are written, largest first, ranked by --by (utilization by default) with TopTalkers.<br>
+ * With --history, every interface is also appended to a HistoryStore in that directory, which deletes segments older than --retain days.
+ * Pairs, fleets, and spooled walks are recorded at the time the second walk was last modified, and polls at the time of the poll.<br>
+ * With --alerts, every interface is also evaluated against the threshold rules in that file by an AlertEngine, at the same times as --history,
+ * and the alerts raised and cleared are sent to --alert-sink (log by default).  A poll keeps its engine for the whole run, so "for &lt;count&gt;" rules span intervals.<br>
+ * With --counters, the CounterDefinitions in that file are also read from every walk, and their rates and values are written after the interfaces of each device.
+ * In csv, a counter's row has its instance in place of the ifIndex, and its name in place of the ifDescr.  In json, a pair is then written as one device.
+ * <p>
+ * Usage: BatchMain [--format text|csv|json] [--numeric | --top &lt;count&gt; [--by utilization|discards|errors]] [--output &lt;file&gt;] &lt;first walk&gt; &lt;second walk&gt;<br>
+ * Usage: BatchMain [--format text|csv|json] [--numeric | --top &lt;count&gt; [--by utilization|discards|errors]] [--output &lt;file&gt;] [--threads &lt;count&gt;] --fleet &lt;directory or manifest&gt;<br>
+ * Usage: BatchMain [--format text|csv|json] [--output &lt;file&gt;] --series &lt;walk&gt; &lt;walk&gt; [&lt;walk&gt;...]<br>
+ * Usage: BatchMain [--format text|csv|json] [--output &lt;file&gt;] [--community &lt;community&gt;] [--interval &lt;seconds&gt;] [--count &lt;intervals&gt;] --poll &lt;host[:port]&gt;[,&lt;host[:port]&gt;...]<br>
+ * Usage: BatchMain [--format text|csv|json] [--output &lt;file&gt;] [--threads &lt;count&gt;] --spool &lt;directory&gt;<br>
+ * Every mode also accepts --metrics &lt;file&gt;, which writes the Metrics of the run to that file, in the Prometheus text format, when the run ends.<br>
+ * The pair, fleet, poll, and spool modes also accept --history &lt;directory&gt; [--retain &lt;days&gt;] and --alerts &lt;rules file&gt; [--alert-sink log|file:&lt;path&gt;|&lt;URL&gt;], except with --numeric.<br>
+ * The pair, fleet, and spool modes also accept --counters &lt;definitions file&gt;, except with --numeric.
+ */
+public class BatchMain
+{
+	private static final Logger errorLogger = Logger.getLogger( BatchMain.class.getName() );
+	private static final String USAGE = "Usage: BatchMain [--format text|csv|json] [--numeric | --top <count> [--by utilization|discards|errors]] [--output <file>] <first walk> <second walk>" + System.lineSeparator()
+	                                    + "       BatchMain [--format text|csv|json] [--numeric | --top <count> [--by utilization|discards|errors]] [--output <file>] [--threads <count>] --fleet <directory or manifest>" + System.lineSeparator()
+	                                    + "       BatchMain [--format text|csv|json] [--output <file>] --series <walk> <walk> [<walk>...]" + System.lineSeparator()
+	                                    + "       BatchMain [--format text|csv|json] [--output <file>] [--community <community>] [--interval <seconds>] [--count <intervals>] --poll <host[:port]>[,<host[:port]>...]" + System.lineSeparator()
+	                                    + "       BatchMain [--format text|csv|json] [--output <file>] [--threads <count>] --spool <directory>" + System.lineSeparator()
+	                                    + "       Every mode also accepts --metrics <file>." + System.lineSeparator()
+	                                    + "       The pair, fleet, poll, and spool modes also accept --history <directory> [--retain <days>] and --alerts <rules file> [--alert-sink log|file:<path>|<URL>], except with --numeric." + System.lineSeparator()
+	                                    + "       The pair, fleet, and spool modes also accept --counters <definitions file>, except with --numeric.";
+	private static final int EXIT_USAGE = 1;
+	private static final int EXIT_INVALID_INPUT = 2;
+	/**
+	 * The history and alert name of a device without a sysName.
+	 */
+	private static final String UNKNOWN_DEVICE = "unknown";
+
+
+	private BatchMain()
+	{
+		// This class only holds static methods.
+	}
+
+
+	public static void main( String[] args )
+	{
+		System.exit( run( args ) );
+	} // End of main() method.
+
+
+	/**
+	 * This handles --metrics, so that the metrics are written however the run ends, and runs the requested mode.
+	 *
+	 * @param args the command line arguments.
+	 * @return the exit code for the process.
+	 */
+	static int run( String[] args )
+	{
+		Metrics.registerMBeans();
+		String metricsFile = null;
+		List<String> modeArgs = new ArrayList<>();
+		for( int i = 0; i < args.length; i++ )
+		{
+			if( "--metrics".equals( args[i] ) && i + 1 < args.length )
+			{
+				metricsFile = args[++i];
+			}
+			else
+			{
+				modeArgs.add( args[i] );
+			}
+		}
+		int exitCode = runMode( modeArgs.toArray( new String[0] ) );
+		if( metricsFile != null )
+		{
+			try( Writer out = openOutput( metricsFile ) )
+			{
+				Metrics.writePrometheus( out );
+			}
+			catch( IOException | InvalidPathException e )
+			{
+				errorLogger.log( Level.SEVERE, "Unable to write the metrics to {0}: {1}", new Object[]{ metricsFile, e.getLocalizedMessage() } );
+			}
+		}
+		return exitCode;
+	} // End of run() method.
+
+
+	/**
+	 * This will parse the command line arguments, and calculate the statistics for the requested walks.
+	 *
+	 * @param args the command line arguments, without --metrics.
+	 * @return the exit code for the process.
+	 */
+	private static int runMode( String[] args )
+	{
+		String format = "text";
+		String outputFile = null;
+		String fleetSource = null;
+		boolean series = false;
+		boolean numeric = false;
+		String pollAgents = null;
+		String spoolDirectory = null;
+		String community = "public";
+		int intervalSeconds = 10;
+		int count = 1;
+		int threads = Runtime.getRuntime().availableProcessors();
+		int topCount = 0;
+		String topMeasure = null;
+		String historyDirectory = null;
+		long retentionDays = 0;
+		String alertRules = null;
+		String alertSinkSpec = null;
+		String countersFile = null;
+		List<String> walkFiles = new ArrayList<>();
+		for( int i = 0; i < args.length; i++ )
+		{
+			if( "--format".equals( args[i] ) && i + 1 < args.length )
+			{
+				format = args[++i];
+			}
+			else if( "--output".equals( args[i] ) && i + 1 < args.length )
+			{
+				outputFile = args[++i];
+			}
+			else if( "--fleet".equals( args[i] ) && i + 1 < args.length )
+			{
+				fleetSource = args[++i];
+			}
+			else if( "--series".equals( args[i] ) )
+			{
+				series = true;
+			}
+			else if( "--numeric".equals( args[i] ) )
+			{
+				numeric = true;
+			}
+			else if( "--poll".equals( args[i] ) && i + 1 < args.length )
+			{
+				pollAgents = args[++i];
+			}
+			else if( "--spool".equals( args[i] ) && i + 1 < args.length )
+			{
+				spoolDirectory = args[++i];
+			}
+			else if( "--community".equals( args[i] ) && i + 1 < args.length )
+			{
+				community = args[++i];
+			}
+			else if( "--interval".equals( args[i] ) && i + 1 < args.length && args[i + 1].matches( "[1-9]\\d*" ) )
+			{
+				intervalSeconds = Integer.parseInt( args[++i] );
+			}
+			else if( "--count".equals( args[i] ) && i + 1 < args.length && args[i + 1].matches( "\\d+" ) )
+			{
+				count = Integer.parseInt( args[++i] );
+			}
+			else if( "--threads".equals( args[i] ) && i + 1 < args.length && args[i + 1].matches( "\\d+" ) )
+			{
+				threads = Integer.parseInt( args[++i] );
+			}
+			else if( "--top".equals( args[i] ) && i + 1 < args.length && args[i + 1].matches( "[1-9]\\d*" ) )
+			{
+				topCount = Integer.parseInt( args[++i] );
+			}
+			else if( "--by".equals( args[i] ) && i + 1 < args.length )
+			{
+				topMeasure = args[++i];
+			}
+			else if( "--history".equals( args[i] ) && i + 1 < args.length )
+			{
+				historyDirectory = args[++i];
+			}
+			else if( "--retain".equals( args[i] ) && i + 1 < args.length && args[i + 1].matches( "[1-9]\\d*" ) )
+			{
+				retentionDays = Long.parseLong( args[++i] );
+			}
+			else if( "--alerts".equals( args[i] ) && i + 1 < args.length )
+			{
+				alertRules = args[++i];
+			}
+			else if( "--alert-sink".equals( args[i] ) && i + 1 < args.length )
+			{
+				alertSinkSpec = args[++i];
+			}
+			else if( "--counters".equals( args[i] ) && i + 1 < args.length )
+			{
+				countersFile = args[++i];
+			}
+			else if( args[i].startsWith( "--" ) )
+			{
+				System.err.println( USAGE );
+				return EXIT_USAGE;
+			}
+			else
+			{
+				walkFiles.add( args[i] );
+			}
+		}
+		boolean validWalkCount;
+		if( pollAgents != null )
+		{
+			validWalkCount = walkFiles.isEmpty() && fleetSource == null && !series && spoolDirectory == null;
+		}
+		else if( spoolDirectory != null )
+		{
+			validWalkCount = walkFiles.isEmpty() && fleetSource == null && !series && !numeric;
+		}
+		else
+		{
+			validWalkCount = series ? walkFiles.size() >= 2 && fleetSource == null : walkFiles.size() == ( fleetSource == null ? 2 : 0 );
+		}
+		if( numeric && ( series || pollAgents != null || "text".equals( format ) ) )
+		{
+			validWalkCount = false;
+		}
+		if( ( topCount > 0 || topMeasure != null ) && ( numeric || series || pollAgents != null || spoolDirectory != null || topCount == 0 ) )
+		{
+			validWalkCount = false;
+		}
+		if( historyDirectory == null ? retentionDays > 0 : numeric || series )
+		{
+			validWalkCount = false;
+		}
+		if( alertRules == null ? alertSinkSpec != null : numeric || series )
+		{
+			validWalkCount = false;
+		}
+		if( countersFile != null && ( numeric || series || pollAgents != null ) )
+		{
+			validWalkCount = false;
+		}
+		if( alertSinkSpec == null )
+		{
+			alertSinkSpec = "log";
+		}
+		TopTalkers.Measure measure = TopTalkers.Measure.UTILIZATION;
+		try
+		{
+			if( topMeasure != null )
+			{
+				measure = TopTalkers.Measure.parse( topMeasure );
+			}
+		}
+		catch( IllegalArgumentException e )
+		{
+			validWalkCount = false;
+		}
+		if( !validWalkCount || !( "text".equals( format ) || "csv".equals( format ) || "json".equals( format ) ) )
+		{
+			System.err.println( USAGE );
+			return EXIT_USAGE;
+		}
+		if( countersFile != null )
+		{
+			try
+			{
+				WalkReader.setCounterDefinitions( CounterDefinitions.fromFile( Paths.get( countersFile ) ) );
+			}
+			catch( IOException | IllegalArgumentException e )
+			{
+				// InvalidPathException is an IllegalArgumentException.
+				errorLogger.log( Level.SEVERE, "Unable to read the counter definitions: {0}", e.getLocalizedMessage() );
+				return EXIT_INVALID_INPUT;
+			}
+		}
+		if( series )
+		{
+			return runSeries( walkFiles, format, outputFile );
+		}
+		if( pollAgents != null )
+		{
+			List<InetSocketAddress> agents = new ArrayList<>();
+			for( String agent : pollAgents.split( "," ) )
+			{
+				try
+				{
+					agents.add( SnmpPoller.parseAgent( agent.trim() ) );
+				}
+				catch( IllegalArgumentException e )
+				{
+					System.err.println( "Invalid agent " + agent + ": " + e.getLocalizedMessage() );
+					return EXIT_USAGE;
+				}
+			}
+			return runPoll( agents, community, intervalSeconds, count, format, outputFile, historyDirectory, retentionDays, alertRules, alertSinkSpec );
+		}
+		if( spoolDirectory != null )
+		{
+			return runSpool( spoolDirectory, threads, format, outputFile, historyDirectory, retentionDays, alertRules, alertSinkSpec );
+		}
+		if( numeric && fleetSource == null )
+		{
+			return runNumericPair( walkFiles, format, outputFile );
+		}
+
+		List<InterfaceResult> results = null;
+		List<CounterResult> pairCounters = null;
+		List<DeviceResult> devices = null;
+		String pairSysName = null;
+		String pairFirstWalk = null;
+		String pairSecondWalk = null;
+		long pairCaptureTime = 0;
+		try
+		{
+			if( fleetSource == null )
+			{
+				WalkIndex walk1 = WalkCache.shared().read( Paths.get( walkFiles.get( 0 ) ) );
+				pairSysName = walk1.getSysName();
+				WalkIndex walk2 = WalkCache.shared().read( Paths.get( walkFiles.get( 1 ) ) );
+				results = UtilizationCalculator.calculateAll( walk1, walk2 );
+				if( results == null )
+				{
+					System.err.println( "Walk files are not compatible!" );
+					return EXIT_INVALID_INPUT;
+				}
+				pairCounters = WalkReader.getCounterDefinitions().calculate( walk1, walk2 );
+				// As in FleetAnalyzer, the walk with the longer sysUpTime is the second walk, whose time is recorded, whatever order the files were given in.
+				boolean swapped = walk2.getSysUpTime() < walk1.getSysUpTime();
+				pairFirstWalk = walkFiles.get( swapped ? 1 : 0 );
+				pairSecondWalk = walkFiles.get( swapped ? 0 : 1 );
+				pairCaptureTime = ( swapped ? walk1 : walk2 ).getCaptureTime();
+			}
+			else
+			{
+				FleetAnalyzer.FleetReport report = new FleetAnalyzer( threads ).analyze( Paths.get( fleetSource ) );
+				devices = report.getDevices();
+				System.err.println( report.summary() );
+			}
+		}
+		catch( IOException | InvalidPathException e )
+		{
+			errorLogger.log( Level.SEVERE, "Unable to read the WALK files: {0}", e.getLocalizedMessage() );
+			return EXIT_INVALID_INPUT;
+		}
+		List<DeviceResult> recorded = devices == null ? Collections.singletonList( new DeviceResult( pairSysName, null, pairFirstWalk, pairSecondWalk, results, null, null, pairCaptureTime ) )
+		                              : devices;
+		if( historyDirectory != null )
+		{
+			try( HistoryStore history = new HistoryStore( Paths.get( historyDirectory ), HistoryStore.DEFAULT_SEGMENT_MILLIS, TimeUnit.DAYS.toMillis( retentionDays ) ) )
+			{
+				Map<String, HistoryStore.Appender> appenders = new HashMap<>();
+				try
+				{
+					for( DeviceResult device : recorded )
+					{
+						if( device.getInterfaces() != null )
+						{
+							appendHistory( history, appenders, device, device.getCaptureTime() );
+						}
+					}
+				}
+				finally
+				{
+					closeHistory( appenders );
+				}
+			}
+			catch( IOException | InvalidPathException e )
+			{
+				errorLogger.log( Level.SEVERE, "Unable to write the history: {0}", e.getLocalizedMessage() );
+				return EXIT_INVALID_INPUT;
+			}
+		}
+		if( alertRules != null )
+		{
+			try( AlertSink sink = AlertSink.parse( alertSinkSpec ) )
+			{
+				AlertEngine alerts = AlertEngine.fromFile( Paths.get( alertRules ), sink );
+				for( DeviceResult device : recorded )
+				{
+					if( device.getInterfaces() != null )
+					{
+						alerts.evaluate( deviceName( device ), device.getCaptureTime(), device.getInterfaces() );
+					}
+				}
+				System.err.println( alertSummary( alerts ) );
+			}
+			catch( IOException | IllegalArgumentException e )
+			{
+				// InvalidPathException is an IllegalArgumentException.
+				errorLogger.log( Level.SEVERE, "Unable to evaluate the alerts: {0}", e.getLocalizedMessage() );
+				return EXIT_INVALID_INPUT;
+			}
+		}
+		if( topCount > 0 )
+		{
+			if( devices == null )
+			{
+				results = topResults( results, topCount, measure );
+			}
+			else
+			{
+				devices = topDevices( devices, topCount, measure );
+			}
+		}
+
+		if( numeric )
+		{
+			try( Writer out = openOutput( outputFile ); ResultExporter exporter = "json".equals( format ) ? ResultExporter.json( out ) : ResultExporter.csv( out ) )
+			{
+				exporter.exportDevices( devices );
+			}
+			catch( IOException | InvalidPathException e )
+			{
+				errorLogger.log( Level.SEVERE, "Exception: Unable to write output!" );
+				errorLogger.log( Level.SEVERE, e.getLocalizedMessage() );
+				return EXIT_INVALID_INPUT;
+			}
+			return 0;
+		}
+		try( Writer out = openOutput( outputFile ); Metrics.Timer timer = Metrics.Stage.EXPORT.time() )
+		{
+			timer.setItems( devices == null ? results.size() : devices.stream().mapToLong( device -> device.getInterfaces() == null ? 0 : device.getInterfaces().size() ).sum() );
+			DeviceResult pair = new DeviceResult( null, null, null, null, results, null, pairCounters );
+			if( "json".equals( format ) )
+			{
+				new GsonBuilder().setPrettyPrinting().create().toJson( devices != null ? devices : pairCounters != null ? pair : results, out );
+			}
+			else if( "csv".equals( format ) )
+			{
+				writeCsv( devices == null ? Collections.singletonList( pair ) : devices, out, true );
+			}
+			else
+			{
+				writeText( devices == null ? Collections.singletonList( pair ) : devices, out );
+			}
+		}
+		catch( IOException | InvalidPathException e )
+		{
+			errorLogger.log( Level.SEVERE, "Exception: Unable to write output!" );
+			errorLogger.log( Level.SEVERE, e.getLocalizedMessage() );
+			return EXIT_INVALID_INPUT;
+		}
+		return 0;
+	} // End of runMode() method.
+
+
+	/**
+	 * @param results the results of every interface of a pair of walks.
+	 * @param count   the number of results to keep.
+	 * @param measure what to rank the results by.
+	 * @return the busiest results, largest first.
+	 */
+	private static List<InterfaceResult> topResults( List<InterfaceResult> results, int count, TopTalkers.Measure measure )
+	{
+		TopTalkers<InterfaceResult> top = new TopTalkers<>( count );
+		for( InterfaceResult result : results )
+		{
+			top.offer( measure.of( result.getDelta() ), result );
+		}
+		return top.sorted();
+	}
+
+
+	/**
+	 * This ranks the interfaces of every device together, so a fleet gets one list of its busiest interfaces, rather than a list per device.
+	 *
+	 * @param devices the results of a fleet.
+	 * @param count   the number of interfaces to keep.
+	 * @param measure what to rank the interfaces by.
+	 * @return one device for each of the busiest interfaces, largest first, holding only that interface.
+	 */
+	private static List<DeviceResult> topDevices( List<DeviceResult> devices, int count, TopTalkers.Measure measure )
+	{
+		TopTalkers<DeviceResult> top = new TopTalkers<>( count );
+		for( DeviceResult device : devices )
+		{
+			if( device.getInterfaces() != null )
+			{
+				for( InterfaceResult result : device.getInterfaces() )
+				{
+					double value = measure.of( result.getDelta() );
+					if( value > 0 )
+					{
+						top.offer( value, new DeviceResult( device.getSysName(), device.getSysDescr(), device.getFirstWalk(), device.getSecondWalk(),
+						                                    Collections.singletonList( result ), null ) );
+					}
+				}
+			}
+		}
+		return top.sorted();
+	}
+
+
+	/**
+	 * This reads a pair of walks, and exports every interface as it is calculated, without collecting the results first.
+	 *
+	 * @param walkFiles  the two walk files.
+	 * @param format     json or csv.
+	 * @param outputFile the file to write to, or null for stdout.
+	 * @return the exit code for the process.
+	 */
+	private static int runNumericPair( List<String> walkFiles, String format, String outputFile )
+	{
+		WalkIndex walk1;
+		WalkIndex walk2;
+		try
+		{
+			walk1 = WalkCache.shared().read( Paths.get( walkFiles.get( 0 ) ) );
+			walk2 = WalkCache.shared().read( Paths.get( walkFiles.get( 1 ) ) );
+		}
+		catch( IOException | InvalidPathException e )
+		{
+			errorLogger.log( Level.SEVERE, "Unable to read the WALK files: {0}", e.getLocalizedMessage() );
+			return EXIT_INVALID_INPUT;
+		}
+		try( Writer out = openOutput( outputFile ); ResultExporter exporter = "json".equals( format ) ? ResultExporter.json( out ) : ResultExporter.csv( out ) )
+		{
+			if( !exporter.exportPair( walk1, walk2, walkFiles.get( 0 ), walkFiles.get( 1 ) ) )
+			{
+				System.err.println( "Walk files are not compatible!" );
+				return EXIT_INVALID_INPUT;
+			}
+		}
+		catch( IOException | InvalidPathException e )
+		{
+			errorLogger.log( Level.SEVERE, "Exception: Unable to write output!" );
+			errorLogger.log( Level.SEVERE, e.getLocalizedMessage() );
+			return EXIT_INVALID_INPUT;
+		}
+		return 0;
+	} // End of runNumericPair() method.
+
+
+	/**
+	 * This reads each walk in turn, keeping only the previous one, and writes a summary of every interface's utilization over the series.
+	 *
+	 * @param walkFiles  the walk files, in the order they were captured.
+	 * @param format     the output format.
+	 * @param outputFile the file to write to, or null for stdout.
+	 * @return the exit code for the process.
+	 */
+	private static int runSeries( List<String> walkFiles, String format, String outputFile )
+	{
+		TimeSeriesAnalyzer analyzer = new TimeSeriesAnalyzer();
+		for( String walkFile : walkFiles )
+		{
+			try
+			{
+				analyzer.add( WalkReader.read( Paths.get( walkFile ) ) );
+			}
+			catch( IOException | InvalidPathException e )
+			{
+				errorLogger.log( Level.SEVERE, "Unable to read the WALK file {0}: {1}", new Object[]{ walkFile, e.getLocalizedMessage() } );
+				return EXIT_INVALID_INPUT;
+			}
+		}
+		System.err.println( String.format( "Read %,d walks from %s: %,d intervals, %,d agent re-initializations skipped",
+		                                   analyzer.getWalkCount(), analyzer.getSysName(), analyzer.getIntervalCount(), analyzer.getResetCount() ) );
+
+		List<InterfaceSeries> seriesList = analyzer.getSeries();
+		try( Writer out = openOutput( outputFile ) )
+		{
+			if( "json".equals( format ) )
+			{
+				new GsonBuilder().setPrettyPrinting().create().toJson( seriesList, out );
+			}
+			else if( "csv".equals( format ) )
+			{
+				out.write( "ifIndex,ifDescr,samples,inboundMin,inboundAvg,inboundMax,inboundP95,outboundMin,outboundAvg,outboundMax,outboundP95" + System.lineSeparator() );
+				for( InterfaceSeries interfaceSeries : seriesList )
+				{
+					out.write( interfaceSeries.getIfIndex() + "," + csvField( interfaceSeries.getIfDescr() ) + "," + interfaceSeries.getSampleCount()
+					           + "," + interfaceSeries.getInboundMin() + "," + interfaceSeries.getInboundAvg() + "," + interfaceSeries.getInboundMax() + "," + interfaceSeries.getInboundP95()
+					           + "," + interfaceSeries.getOutboundMin() + "," + interfaceSeries.getOutboundAvg() + "," + interfaceSeries.getOutboundMax() + "," + interfaceSeries.getOutboundP95()
+					           + System.lineSeparator() );
+				}
+			}
+			else
+			{
+				for( InterfaceSeries interfaceSeries : seriesList )
+				{
+					out.write( interfaceSeries.getIfIndex() + " " + interfaceSeries.getIfDescr() + ": " + interfaceSeries.getSampleCount() + " intervals" + System.lineSeparator() );
+					out.write( String.format( "\tInbound Utilization: min %.3g, avg %.3g, max %.3g, p95 %.3g%n",
+					                          interfaceSeries.getInboundMin(), interfaceSeries.getInboundAvg(), interfaceSeries.getInboundMax(), interfaceSeries.getInboundP95() ) );
+					out.write( String.format( "\tOutbound Utilization: min %.3g, avg %.3g, max %.3g, p95 %.3g%n",
+					                          interfaceSeries.getOutboundMin(), interfaceSeries.getOutboundAvg(), interfaceSeries.getOutboundMax(), interfaceSeries.getOutboundP95() ) );
+				}
+			}
+		}
+		catch( IOException | InvalidPathException e )
+		{
+			errorLogger.log( Level.SEVERE, "Exception: Unable to write output!" );
+			errorLogger.log( Level.SEVERE, e.getLocalizedMessage() );
+			return EXIT_INVALID_INPUT;
+		}
+		return 0;
+	} // End of runSeries() method.
+
+
+	/**
+	 * This polls every agent at the start of each interval, and writes the statistics between each poll and the one before it.<br>
+	 * Only the previous poll of each agent is kept, so this can run indefinitely.
+	 *
+	 * @param agents          the agents to poll.
+	 * @param community       the SNMP v2c community string.
+	 * @param intervalSeconds the time between polls.
+	 * @param count           the number of intervals to write, or 0 to poll until the process is killed.
+	 * @param format           the output format.
+	 * @param outputFile       the file to write to, or null for stdout.
+	 * @param historyDirectory the HistoryStore to append every interval to, or null.
+	 * @param retentionDays    the days of history to keep, or 0 to keep all of it.
+	 * @param alertRules       the AlertEngine rules file to evaluate every interval against, or null.
+	 * @param alertSinkSpec    the AlertSink to send alerts to.
+	 * @return the exit code for the process.
+	 */
+	private static int runPoll( List<InetSocketAddress> agents, String community, int intervalSeconds, int count, String format, String outputFile,
+	                            String historyDirectory, long retentionDays, String alertRules, String alertSinkSpec )
+	{
+		List<WalkIndex> previous = null;
+		String previousTime = null;
+		long nextPoll = System.nanoTime();
+		// Each device keeps one appender for the whole run.
+		Map<String, HistoryStore.Appender> appenders = new HashMap<>();
+		try( SnmpPoller poller = new SnmpPoller( community ); Writer out = openOutput( outputFile );
+		     HistoryStore history = historyDirectory == null ? null
+		                                                     : new HistoryStore( Paths.get( historyDirectory ), HistoryStore.DEFAULT_SEGMENT_MILLIS, TimeUnit.DAYS.toMillis( retentionDays ) );
+		     AlertSink sink = alertRules == null ? null : AlertSink.parse( alertSinkSpec ) )
+		{
+			// The rules are read before the first poll, so a bad rule is reported at once.
+			AlertEngine alerts = alertRules == null ? null : AlertEngine.fromFile( Paths.get( alertRules ), sink );
+			for( int interval = 0; count == 0 || interval <= count; interval++ )
+			{
+				List<WalkIndex> walks = poller.poll( agents );
+				Instant now = Instant.now();
+				String time = now.toString();
+				if( previous != null )
+				{
+					List<DeviceResult> devices = new ArrayList<>( agents.size() );
+					for( int i = 0; i < agents.size(); i++ )
+					{
+						devices.add( pollResult( agents.get( i ), previous.get( i ), walks.get( i ), previousTime, time ) );
+					}
+					if( history != null )
+					{
+						for( DeviceResult device : devices )
+						{
+							if( device.getInterfaces() != null )
+							{
+								appendHistory( history, appenders, device, now.toEpochMilli() );
+							}
+						}
+					}
+					if( alerts != null )
+					{
+						for( DeviceResult device : devices )
+						{
+							if( device.getInterfaces() != null )
+							{
+								alerts.evaluate( deviceName( device ), now.toEpochMilli(), device.getInterfaces() );
+							}
+						}
+					}
+					if( "json".equals( format ) )
+					{
+						new GsonBuilder().setPrettyPrinting().create().toJson( devices, out );
+						out.write( System.lineSeparator() );
+					}
+					else if( "csv".equals( format ) )
+					{
+						writeCsv( devices, out, interval == 1 );
+					}
+					else
+					{
+						writeText( devices, out );
+					}
+					out.flush();
+				}
+				previous = walks;
+				previousTime = time;
+
+				if( count == 0 || interval < count )
+				{
+					nextPoll += TimeUnit.SECONDS.toNanos( intervalSeconds );
+					long sleep = nextPoll - System.nanoTime();
+					if( sleep > 0 )
+					{
+						TimeUnit.NANOSECONDS.sleep( sleep );
+					}
+				}
+			}
+		}
+		catch( IOException | IllegalArgumentException e )
+		{
+			// InvalidPathException, and an invalid alert rule or sink, are IllegalArgumentExceptions.
+			errorLogger.log( Level.SEVERE, "Unable to poll the agents: {0}", e.getLocalizedMessage() );
+			return EXIT_INVALID_INPUT;
+		}
+		catch( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+		}
+		finally
+		{
+			closeHistory( appenders );
+		}
+		return 0;
+	} // End of runPoll() method.
+
+
+	/**
+	 * This ingests walks from a spool directory until the process is killed, and writes the statistics of each device as each new walk of it is compared.<br>
+	 * A shutdown hook stops the SpoolDaemon, and waits for the walks being read, the history, and the alerts to be finished.
+	 *
+	 * @param spoolDirectory   the directory to watch.
+	 * @param threads          the most walks to read at once.
+	 * @param format           the output format.
+	 * @param outputFile       the file to write to, or null for stdout.
+	 * @param historyDirectory the HistoryStore to append every result to, or null.
+	 * @param retentionDays    the days of history to keep, or 0 to keep all of it.
+	 * @param alertRules       the AlertEngine rules file to evaluate every result against, or null.
+	 * @param alertSinkSpec    the AlertSink to send alerts to.
+	 * @return the exit code for the process.
+	 */
+	private static int runSpool( String spoolDirectory, int threads, String format, String outputFile, String historyDirectory, long retentionDays,
+	                             String alertRules, String alertSinkSpec )
+	{
+		CountDownLatch finished = new CountDownLatch( 1 );
+		Map<String, HistoryStore.Appender> appenders = new HashMap<>();
+		try( Writer out = openOutput( outputFile );
+		     HistoryStore history = historyDirectory == null ? null
+		                                                     : new HistoryStore( Paths.get( historyDirectory ), HistoryStore.DEFAULT_SEGMENT_MILLIS, TimeUnit.DAYS.toMillis( retentionDays ) );
+		     AlertSink sink = alertRules == null ? null : AlertSink.parse( alertSinkSpec ) )
+		{
+			AlertEngine alerts = alertRules == null ? null : AlertEngine.fromFile( Paths.get( alertRules ), sink );
+			boolean[] header = { true };
+			// Devices are compared on many threads, but the output, history appenders, and alert engine are used by one at a time.
+			SpoolDaemon.Listener listener = ( device, timestamp ) ->
+			{
+				synchronized( appenders )
+				{
+					if( history != null && device.getInterfaces() != null )
+					{
+						appendHistory( history, appenders, device, timestamp );
+					}
+					if( alerts != null && device.getInterfaces() != null )
+					{
+						alerts.evaluate( deviceName( device ), timestamp, device.getInterfaces() );
+					}
+					List<DeviceResult> devices = Collections.singletonList( device );
+					if( "json".equals( format ) )
+					{
+						new GsonBuilder().setPrettyPrinting().create().toJson( devices, out );
+						out.write( System.lineSeparator() );
+					}
+					else if( "csv".equals( format ) )
+					{
+						writeCsv( devices, out, header[0] );
+						header[0] = false;
+					}
+					else
+					{
+						writeText( devices, out );
+					}
+					out.flush();
+				}
+			};
+			SpoolDaemon daemon = new SpoolDaemon( Paths.get( spoolDirectory ), threads, listener );
+			Runtime.getRuntime().addShutdownHook( new Thread( () ->
+			                                                  {
+				                                                  try
+				                                                  {
+					                                                  daemon.close();
+					                                                  finished.await();
+				                                                  }
+				                                                  catch( IOException e )
+				                                                  {
+					                                                  errorLogger.log( Level.WARNING, "Unable to stop watching the spool: {0}", e.getLocalizedMessage() );
+				                                                  }
+				                                                  catch( InterruptedException e )
+				                                                  {
+					                                                  Thread.currentThread().interrupt();
+				                                                  }
+			                                                  }, "spool-shutdown" ) );
+			try
+			{
+				daemon.run();
+			}
+			finally
+			{
+				daemon.close();
+			}
+			System.err.println( daemon.summary() );
+			if( alerts != null )
+			{
+				System.err.println( alertSummary( alerts ) );
+			}
+		}
+		catch( IOException | IllegalArgumentException e )
+		{
+			// InvalidPathException, and an invalid alert rule or sink, are IllegalArgumentExceptions.
+			errorLogger.log( Level.SEVERE, "Unable to ingest the spool: {0}", e.getLocalizedMessage() );
+			return EXIT_INVALID_INPUT;
+		}
+		finally
+		{
+			synchronized( appenders )
+			{
+				closeHistory( appenders );
+			}
+			finished.countDown();
+		}
+		return 0;
+	} // End of runSpool() method.
+
+
+	/**
+	 * This appends the interfaces of one device to the history, with the appender for that device, which is opened the first time it is needed.<br>
+	 * Results that are not newer than the device's history (such as the same walks run again) are logged and skipped.
+	 *
+	 * @param history   the history to append to.
+	 * @param appenders the appenders opened so far, by sysName.
+	 * @param device    the device, which must hold interfaces.
+	 * @param timestamp the time of the second walk or poll, in milliseconds since the epoch.
+	 * @throws IOException if the history cannot be written.
+	 */
+	private static void appendHistory( HistoryStore history, Map<String, HistoryStore.Appender> appenders, DeviceResult device, long timestamp ) throws IOException
+	{
+		String sysName = deviceName( device );
+		HistoryStore.Appender appender = appenders.get( sysName );
+		if( appender == null )
+		{
+			appender = history.appender( sysName );
+			appenders.put( sysName, appender );
+		}
+		try
+		{
+			appender.append( timestamp, device.getInterfaces() );
+		}
+		catch( IllegalArgumentException e )
+		{
+			errorLogger.log( Level.WARNING, "Not adding {0} to the history: {1}", new Object[]{ device.getSecondWalk(), e.getLocalizedMessage() } );
+		}
+	}
+
+
+	/**
+	 * @return the sysName of the device, or UNKNOWN_DEVICE if it has none, to name it in the history and in alerts.
+	 */
+	private static String deviceName( DeviceResult device )
+	{
+		return device.getSysName() == null || device.getSysName().isEmpty() ? UNKNOWN_DEVICE : device.getSysName();
+	}
+
+
+	private static String alertSummary( AlertEngine alerts )
+	{
+		return String.format( "Evaluated %d alert rules on %d interfaces: %d raised, %d cleared.", alerts.getRuleCount(), alerts.getInterfaceCount(),
+		                      alerts.getRaisedCount(), alerts.getClearedCount() );
+	}
+
+
+	private static void closeHistory( Map<String, HistoryStore.Appender> appenders )
+	{
+		for( HistoryStore.Appender appender : appenders.values() )
+		{
+			try
+			{
+				appender.close();
+			}
+			catch( IOException e )
+			{
+				errorLogger.log( Level.WARNING, "Unable to flush the history: {0}", e.getLocalizedMessage() );
+			}
+		}
+		appenders.clear();
+	}
+
+
+	/**
+	 * @return the statistics of one agent between two polls, or an error if either poll went unanswered, or the interfaces changed.
+	 */
+	private static DeviceResult pollResult( InetSocketAddress agent, WalkIndex before, WalkIndex after, String beforeTime, String afterTime )
+	{
+		String sysName = after != null && !after.getSysName().isEmpty() ? after.getSysName() : agent.toString();
+		if( before == null || after == null )
+		{
+			return new DeviceResult( sysName, null, beforeTime, afterTime, null, "The agent did not answer." );
+		}
+		List<InterfaceResult> results = UtilizationCalculator.calculateAll( before, after );
+		if( results == null )
+		{
+			return new DeviceResult( sysName, after.getSysDescr(), beforeTime, afterTime, null, "The interfaces changed between polls." );
+		}
+		return new DeviceResult( sysName, after.getSysDescr(), beforeTime, afterTime, results, null );
+	}
+
+
+	/**
+	 * @param outputFile the file to write to, or null for stdout.
+	 * @return a buffered Writer for the output.
+	 */
+	static Writer openOutput( String outputFile ) throws IOException
+	{
+		if( outputFile == null )
+		{
+			return new BufferedWriter( new OutputStreamWriter( System.out, StandardCharsets.UTF_8 ) );
+		}
+		return Files.newBufferedWriter( Paths.get( outputFile ), StandardCharsets.UTF_8 );
+	}
+
+
+	/**
+	 * This writes one line per statistic, grouped beneath a heading for each interface.<br>
+	 * Devices without a sysName (a single pair of walks) get no heading of their own.
+	 */
+	private static void writeText( List<DeviceResult> devices, Writer out ) throws IOException
+	{
+		for( DeviceResult device : devices )
+		{
+			String indent = "";
+			if( device.getSysName() != null )
+			{
+				out.write( device.getSysName() + " (" + device.getFirstWalk() + ", " + device.getSecondWalk() + ")" + System.lineSeparator() );
+				indent = "\t";
+			}
+			if( device.getInterfaces() == null )
+			{
+				out.write( indent + "Error: " + device.getError() + System.lineSeparator() );
+				continue;
+			}
+			for( InterfaceResult result : device.getInterfaces() )
+			{
+				out.write( indent + result.getIfIndex() + " " + result.getIfDescr() + System.lineSeparator() );
+				for( InterfaceStats stat : result.getStatistics() )
+				{
+					out.write( indent + "\t" + stat.getDescription() + ": " + stat.getValue() + System.lineSeparator() );
+				}
+			}
+			if( device.getCounters() != null )
+			{
+				for( CounterResult counter : device.getCounters() )
+				{
+					out.write( indent + counter.getLabel() + ": " + formatCounter( counter.getValue() ) + ( counter.isRate() ? " per second" : "" ) + System.lineSeparator() );
+				}
+			}
+		}
+	} // End of writeText() method.
+
+
+	/**
+	 * This writes one row per statistic, with the interface index and description on every row.<br>
+	 * For a fleet, the sysName is added as the first column.
+	 *
+	 * @param header true to write the header row first.  Later intervals of a poll leave it out, so the output stays one table.
+	 */
+	private static void writeCsv( List<DeviceResult> devices, Writer out, boolean header ) throws IOException
+	{
+		boolean fleet = devices.size() != 1 || devices.get( 0 ).getSysName() != null;
+		if( header )
+		{
+			out.write( ( fleet ? "sysName," : "" ) + "ifIndex,ifDescr,description,value" + System.lineSeparator() );
+		}
+		for( DeviceResult device : devices )
+		{
+			if( device.getInterfaces() == null )
+			{
+				continue;
+			}
+			String prefix = fleet ? csvField( device.getSysName() ) + "," : "";
+			for( InterfaceResult result : device.getInterfaces() )
+			{
+				for( InterfaceStats stat : result.getStatistics() )
+				{
+					out.write( prefix + result.getIfIndex() + "," + csvField( result.getIfDescr() ) + "," + csvField( stat.getDescription() ) + "," + csvField( stat.getValue() ) + System.lineSeparator() );
+				}
+			}
+			if( device.getCounters() != null )
+			{
+				for( CounterResult counter : device.getCounters() )
+				{
+					out.write( prefix + csvField( counter.getInstance() ) + "," + csvField( counter.getName() ) + "," + ( counter.isRate() ? "per second" : "value" ) + "," + formatCounter( counter.getValue() )
+					           + System.lineSeparator() );
+				}
+			}
+		}
+	} // End of writeCsv() method.
+
+
+	/**
+	 * @return a whole value without a fraction, and any other value to three decimal places.
+	 */
+	private static String formatCounter( double value )
+	{
+		return value == Math.rint( value ) && Math.abs( value ) < 1e15 ? Long.toString( ( long )value ) : String.format( "%.3f", value );
+	}
+
+
+	/**
+	 * @return the field, quoted if it contains a comma, quote, or line break.
+	 */
+	static String csvField( String field )
+	{
+		if( field.indexOf( ',' ) < 0 && field.indexOf( '"' ) < 0 && field.indexOf( '\n' ) < 0 )
+		{
+			return field;
+		}
+		return "\"" + field.replace( "\"", "\"\"" ) + "\"";
+	}
+}
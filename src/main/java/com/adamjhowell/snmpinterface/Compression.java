@@ -0,0 +1,98 @@
+package com.adamjhowell.snmpinterface;
+
+
+import org.tukaani.xz.XZInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.GZIPInputStream;
+
+
+/**
+ * The compression formats that a walk may be archived in, recognized by the magic number at the start of the file rather than by its extension.
+ */
+enum Compression
+{
+	GZIP( new byte[]{ ( byte )0x1F, ( byte )0x8B } )
+		{
+			@Override
+			InputStream open( InputStream compressed ) throws IOException
+			{
+				// GZIPInputStream also reads the concatenated members that "cat a.gz b.gz" produces.
+				return new GZIPInputStream( compressed, BUFFER_SIZE );
+			}
+		},
+	XZ( new byte[]{ ( byte )0xFD, '7', 'z', 'X', 'Z', 0 } )
+		{
+			@Override
+			InputStream open( InputStream compressed ) throws IOException
+			{
+				return new XZInputStream( compressed );
+			}
+		},
+	ZSTD( new byte[]{ ( byte )0x28, ( byte )0xB5, ( byte )0x2F, ( byte )0xFD } )
+		{
+			@Override
+			InputStream open( InputStream compressed ) throws IOException
+			{
+				throw new IOException( "Zstandard walks are not supported, because there is no pure Java codec.  Decompress it with \"zstd -d\" first." );
+			}
+		};
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final int LONGEST_MAGIC = 6;
+
+	private final byte[] magic;
+
+
+	Compression( byte[] magic )
+	{
+		this.magic = magic;
+	}
+
+
+	/**
+	 * @param compressed the compressed bytes.
+	 * @return a stream of the decompressed bytes.
+	 * @throws IOException if the stream is not valid, or this format is not supported.
+	 */
+	abstract InputStream open( InputStream compressed ) throws IOException;
+
+
+	/**
+	 * @param channel an open file, which is read from its start without moving its position.
+	 * @return the compression format of the file, or null if it is not compressed.
+	 * @throws IOException if the file cannot be read.
+	 */
+	static Compression detect( FileChannel channel ) throws IOException
+	{
+		ByteBuffer header = ByteBuffer.allocate( LONGEST_MAGIC );
+		while( header.hasRemaining() && channel.read( header, header.position() ) > 0 )
+		{
+			// Keep reading until the header is full, or the file ends.
+		}
+		for( Compression compression : values() )
+		{
+			if( header.position() >= compression.magic.length && startsWith( header.array(), compression.magic ) )
+			{
+				return compression;
+			}
+		}
+		return null;
+	}
+
+
+	private static boolean startsWith( byte[] header, byte[] magic )
+	{
+		for( int i = 0; i < magic.length; i++ )
+		{
+			if( header[i] != magic[i] )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,537 @@
+package com.adamjhowell.snmpinterface;
+
+
+import com.adamjhowell.snmpinterface.model.CounterResult;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * These are the counters, beyond the ifTable and ifXTable columns, that are read from every walk, such as TCP segments, IP datagrams, or host storage.
+ * <p>
+ * Each is defined on one line of a file, as: &lt;name&gt; &lt;OID&gt; &lt;type&gt; &lt;index&gt; [wrap &lt;bits&gt;]<br>
+ * The type is counter32, counter64, or gauge.  A counter's value is its rate per second between two walks, corrected for a wrap at 2^bits,
+ * which defaults to 32 or 64 by type.  A gauge's value is its value in the later walk.<br>
+ * The index is "scalar" for a single value (whose instance is .0), or the number of arcs in the index of a table row (e.g. 1 for hrStorageTable, and 10 for tcpConnTable).
+ * <p>
+ * A formula is defined as: &lt;name&gt; = &lt;expression&gt;<br>
+ * The expression uses numbers, the names of counters and formulas defined on earlier lines, + - * / and parentheses, and is calculated for each instance.
+ * A scalar in a table formula has the same value for every row.  Rows with a missing operand, or a division by zero, are left out.
+ * <p>
+ * e.g.<br>
+ * tcpOutSegs .1.3.6.1.2.1.6.11 counter32 scalar<br>
+ * tcpRetransSegs .1.3.6.1.2.1.6.12 counter32 scalar<br>
+ * hrStorageSize .1.3.6.1.2.1.25.2.3.1.5 gauge 1<br>
+ * hrStorageUsed .1.3.6.1.2.1.25.2.3.1.6 gauge 1<br>
+ * retransmitPercent = tcpRetransSegs / tcpOutSegs * 100<br>
+ * storagePercent = hrStorageUsed / hrStorageSize * 100
+ * <p>
+ * Everything after a "//" is ignored.<br>
+ * The OIDs are compiled into the WalkReader's OidMatcher (see WalkReader.setCounterDefinitions()), so lines that are not counters cost no more to skip,
+ * and the value of every counter is kept in the same pass that reads the interfaces.
+ * A WalkSnapshot only holds the interface columns, so a walk read from a snapshot has no counter values.
+ * While counters are defined, a fleet directory reads walks rather than their snapshots, and a snapshot that must be read anyway is logged.
+ */
+final class CounterDefinitions
+{
+	/**
+	 * No counters, which is what a WalkReader uses until it is given others.
+	 */
+	static final CounterDefinitions NONE = new CounterDefinitions( Collections.emptyList() );
+	private static final String COMMENT_STRING = "//";
+	private static final Pattern COUNTER = Pattern.compile( "^([A-Za-z]\\w*)\\s+(\\.?\\d+(?:\\.\\d+)*)\\s+(\\w+)\\s+(\\w+)(?:\\s+wrap\\s+(\\d+))?$", Pattern.CASE_INSENSITIVE );
+	private static final Pattern FORMULA = Pattern.compile( "^([A-Za-z]\\w*)\\s*=\\s*(.+)$" );
+	private static final Pattern TOKEN = Pattern.compile( "\\s*(?:(\\d+(?:\\.\\d+)?)|([A-Za-z]\\w*)|([-+*/()]))" );
+	private static final String SCALAR = "scalar";
+	private static final String SCALAR_INSTANCE = ".0";
+	/**
+	 * An OID has at most 128 arcs.
+	 */
+	private static final int MAX_INDEX_ARCS = 128;
+	private static final double TICKS_PER_SECOND = 100;
+	/**
+	 * A formula is compiled to postfix, where a non-negative code is the number of an operand, and these negative codes are the operators.
+	 * Constants are coded from CONSTANT downwards.
+	 */
+	private static final int ADD = -1;
+	private static final int SUBTRACT = -2;
+	private static final int MULTIPLY = -3;
+	private static final int DIVIDE = -4;
+	private static final int LEFT_PARENTHESIS = -5;
+	private static final int CONSTANT = -6;
+
+	private final String[] names;
+	private final Type[] types;
+	private final String[] oids;
+	/**
+	 * The number of arcs in the index of each table, or zero for a scalar.
+	 */
+	private final int[] indexArcs;
+	private final long[] wrapMasks;
+	/**
+	 * For a formula, the counter whose instances it has (its first table operand, followed down to a counter), or -1 if it is a scalar.
+	 */
+	private final int[] instanceSources;
+	private final int[][] formulas;
+	private final double[][] constants;
+	private final int stackSize;
+
+
+	/**
+	 * What a definition is.
+	 */
+	enum Type
+	{
+		COUNTER32( 32 ),
+		COUNTER64( 64 ),
+		GAUGE( 0 ),
+		FORMULA( 0 );
+
+		private final int wrapBits;
+
+
+		Type( int wrapBits )
+		{
+			this.wrapBits = wrapBits;
+		}
+	}
+
+
+	/**
+	 * @param definitions the definitions, one per line, as described above.
+	 * @throws IllegalArgumentException if a definition cannot be parsed, naming the line.
+	 */
+	CounterDefinitions( List<String> definitions )
+	{
+		List<String> nameList = new ArrayList<>();
+		Map<String, Integer> numbers = new HashMap<>();
+		List<Type> typeList = new ArrayList<>();
+		List<String> oidList = new ArrayList<>();
+		List<int[]> shapes = new ArrayList<>();
+		List<Long> masks = new ArrayList<>();
+		List<int[]> formulaList = new ArrayList<>();
+		List<double[]> constantList = new ArrayList<>();
+		int lineNumber = 0;
+		for( String line : definitions )
+		{
+			lineNumber++;
+			int comment = line.indexOf( COMMENT_STRING );
+			String definition = ( comment < 0 ? line : line.substring( 0, comment ) ).trim();
+			if( definition.isEmpty() )
+			{
+				continue;
+			}
+			try
+			{
+				Matcher counter = COUNTER.matcher( definition );
+				Matcher formula = FORMULA.matcher( definition );
+				String name;
+				if( counter.matches() )
+				{
+					name = counter.group( 1 );
+					String typeName = counter.group( 3 ).toUpperCase( Locale.ROOT );
+					if( Type.FORMULA.name().equals( typeName ) )
+					{
+						throw new IllegalArgumentException( "a formula is written as <name> = <expression>" );
+					}
+					if( Arrays.stream( Type.values() ).noneMatch( known -> known.name().equals( typeName ) ) )
+					{
+						throw new IllegalArgumentException( "the type is counter32, counter64, or gauge, not " + counter.group( 3 ) );
+					}
+					Type type = Type.valueOf( typeName );
+					int arcs = SCALAR.equalsIgnoreCase( counter.group( 4 ) ) ? 0 : Integer.parseInt( counter.group( 4 ) );
+					int wrapBits = counter.group( 5 ) == null ? type.wrapBits : Integer.parseInt( counter.group( 5 ) );
+					if( arcs > MAX_INDEX_ARCS )
+					{
+						throw new IllegalArgumentException( "an index has at most " + MAX_INDEX_ARCS + " arcs" );
+					}
+					if( type == Type.GAUGE ? counter.group( 5 ) != null : wrapBits < 1 || wrapBits > 64 )
+					{
+						throw new IllegalArgumentException( "only a counter may wrap, at 1 to 64 bits" );
+					}
+					String oid = counter.group( 2 ).startsWith( "." ) ? counter.group( 2 ) : "." + counter.group( 2 );
+					typeList.add( type );
+					oidList.add( oid );
+					shapes.add( new int[]{ arcs, nameList.size() } );
+					masks.add( wrapBits == 64 ? -1L : ( 1L << wrapBits ) - 1 );
+					formulaList.add( null );
+					constantList.add( null );
+				}
+				else if( formula.matches() )
+				{
+					name = formula.group( 1 );
+					List<Double> formulaConstants = new ArrayList<>();
+					int[] postfix = compile( formula.group( 2 ), numbers, formulaConstants );
+					int[] shape = { 0, -1 };
+					for( int code : postfix )
+					{
+						if( code >= 0 && shapes.get( code )[0] > 0 )
+						{
+							if( shape[0] == 0 )
+							{
+								shape = shapes.get( code );
+							}
+							else if( shape[0] != shapes.get( code )[0] )
+							{
+								throw new IllegalArgumentException( "every table in a formula must have the same number of index arcs" );
+							}
+						}
+					}
+					double[] values = new double[formulaConstants.size()];
+					for( int i = 0; i < values.length; i++ )
+					{
+						values[i] = formulaConstants.get( i );
+					}
+					typeList.add( Type.FORMULA );
+					oidList.add( null );
+					shapes.add( shape );
+					masks.add( 0L );
+					formulaList.add( postfix );
+					constantList.add( values );
+				}
+				else
+				{
+					throw new IllegalArgumentException( "it is not <name> <OID> <type> <index> [wrap <bits>], or <name> = <expression>" );
+				}
+				if( numbers.putIfAbsent( name, nameList.size() ) != null )
+				{
+					throw new IllegalArgumentException( name + " is already defined" );
+				}
+				nameList.add( name );
+			}
+			catch( IllegalArgumentException e )
+			{
+				// NumberFormatException is an IllegalArgumentException.
+				throw new IllegalArgumentException( "Counter definition " + lineNumber + " (" + definition + ") is invalid: " + e.getLocalizedMessage(), e );
+			}
+		}
+		int count = nameList.size();
+		names = nameList.toArray( new String[0] );
+		types = typeList.toArray( new Type[0] );
+		oids = oidList.toArray( new String[0] );
+		indexArcs = new int[count];
+		instanceSources = new int[count];
+		wrapMasks = new long[count];
+		formulas = formulaList.toArray( new int[0][] );
+		constants = constantList.toArray( new double[0][] );
+		int longestFormula = 1;
+		for( int i = 0; i < count; i++ )
+		{
+			indexArcs[i] = shapes.get( i )[0];
+			instanceSources[i] = indexArcs[i] == 0 && types[i] == Type.FORMULA ? -1 : shapes.get( i )[1];
+			wrapMasks[i] = masks.get( i );
+			longestFormula = Math.max( longestFormula, formulas[i] == null ? 0 : formulas[i].length );
+		}
+		stackSize = longestFormula;
+	} // End of CounterDefinitions() constructor.
+
+
+	/**
+	 * @param file a file of definitions, one per line.
+	 * @return those definitions.
+	 * @throws IOException              if the file cannot be read.
+	 * @throws IllegalArgumentException if a definition cannot be parsed.
+	 */
+	static CounterDefinitions fromFile( Path file ) throws IOException
+	{
+		List<String> lines = new ArrayList<>();
+		try( BufferedReader reader = Files.newBufferedReader( file, StandardCharsets.UTF_8 ) )
+		{
+			String line;
+			while( ( line = reader.readLine() ) != null )
+			{
+				lines.add( line );
+			}
+		}
+		return new CounterDefinitions( lines );
+	}
+
+
+	/**
+	 * This compiles an infix expression to postfix, with the shunting-yard algorithm, so each row is calculated without parsing it again.
+	 *
+	 * @param expression the expression.
+	 * @param numbers    the number of each name defined so far.
+	 * @param constants  the list to add the expression's constants to.
+	 * @return the postfix codes.
+	 */
+	private static int[] compile( String expression, Map<String, Integer> numbers, List<Double> constants )
+	{
+		List<Integer> output = new ArrayList<>();
+		Deque<Integer> operators = new ArrayDeque<>();
+		Matcher token = TOKEN.matcher( expression );
+		boolean expectOperand = true;
+		int position = 0;
+		while( position < expression.length() && expression.substring( position ).trim().length() > 0 )
+		{
+			if( !token.find( position ) || token.start() != position )
+			{
+				throw new IllegalArgumentException( "unexpected text at " + expression.substring( position ).trim() );
+			}
+			position = token.end();
+			String number = token.group( 1 );
+			String name = token.group( 2 );
+			char symbol = token.group( 3 ) == null ? 0 : token.group( 3 ).charAt( 0 );
+			if( number != null || name != null )
+			{
+				if( !expectOperand )
+				{
+					throw new IllegalArgumentException( "an operator is missing before " + ( number == null ? name : number ) );
+				}
+				if( number != null )
+				{
+					output.add( CONSTANT - constants.size() );
+					constants.add( Double.parseDouble( number ) );
+				}
+				else if( numbers.containsKey( name ) )
+				{
+					output.add( numbers.get( name ) );
+				}
+				else
+				{
+					throw new IllegalArgumentException( name + " is not defined on an earlier line" );
+				}
+				expectOperand = false;
+			}
+			else if( symbol == '(' )
+			{
+				if( !expectOperand )
+				{
+					throw new IllegalArgumentException( "an operator is missing before (" );
+				}
+				operators.push( LEFT_PARENTHESIS );
+			}
+			else if( symbol == ')' )
+			{
+				if( expectOperand )
+				{
+					throw new IllegalArgumentException( "an operand is missing before )" );
+				}
+				while( !operators.isEmpty() && operators.peek() != LEFT_PARENTHESIS )
+				{
+					output.add( operators.pop() );
+				}
+				if( operators.isEmpty() )
+				{
+					throw new IllegalArgumentException( "there is a ) without a (" );
+				}
+				operators.pop();
+			}
+			else
+			{
+				if( expectOperand )
+				{
+					throw new IllegalArgumentException( "an operand is missing before " + symbol );
+				}
+				int operator = symbol == '+' ? ADD : symbol == '-' ? SUBTRACT : symbol == '*' ? MULTIPLY : DIVIDE;
+				while( !operators.isEmpty() && operators.peek() != LEFT_PARENTHESIS && precedence( operators.peek() ) >= precedence( operator ) )
+				{
+					output.add( operators.pop() );
+				}
+				operators.push( operator );
+				expectOperand = true;
+			}
+		}
+		if( expectOperand )
+		{
+			throw new IllegalArgumentException( "the expression is incomplete" );
+		}
+		while( !operators.isEmpty() )
+		{
+			int operator = operators.pop();
+			if( operator == LEFT_PARENTHESIS )
+			{
+				throw new IllegalArgumentException( "there is a ( without a )" );
+			}
+			output.add( operator );
+		}
+		int[] postfix = new int[output.size()];
+		for( int i = 0; i < postfix.length; i++ )
+		{
+			postfix[i] = output.get( i );
+		}
+		return postfix;
+	} // End of compile() method.
+
+
+	private static int precedence( int operator )
+	{
+		return operator == MULTIPLY || operator == DIVIDE ? 2 : 1;
+	}
+
+
+	/**
+	 * @param matcher the matcher to add the OID of every counter and gauge to.
+	 * @param firstId the id to give the first definition.  Each definition's id is this plus its number.
+	 * @throws IllegalArgumentException if an OID has already been added to the matcher (e.g. it is one of the interface columns).
+	 */
+	void addTo( OidMatcher matcher, int firstId )
+	{
+		for( int i = 0; i < names.length; i++ )
+		{
+			if( types[i] != Type.FORMULA )
+			{
+				try
+				{
+					matcher.add( indexArcs[i] == 0 ? oids[i] + SCALAR_INSTANCE : oids[i] + ".", firstId + i );
+				}
+				catch( IllegalArgumentException e )
+				{
+					throw new IllegalArgumentException( "The counter " + names[i] + " cannot be read: " + e.getLocalizedMessage(), e );
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * @return the number of definitions.
+	 */
+	int size()
+	{
+		return names.length;
+	}
+
+
+	/**
+	 * @param counter the number of a counter or gauge.
+	 * @return the number of arcs in its index, or zero for a scalar.
+	 */
+	int getIndexArcs( int counter )
+	{
+		return indexArcs[counter];
+	}
+
+
+	/**
+	 * @param counter the number of a counter or gauge.
+	 * @return true if its values may be negative (it is a gauge), and false if they are unsigned.
+	 */
+	boolean isSigned( int counter )
+	{
+		return types[counter] == Type.GAUGE;
+	}
+
+
+	/**
+	 * This calculates every definition for every instance in the later walk.
+	 *
+	 * @param walk1 the index of one walk.
+	 * @param walk2 the index of another walk of the same device.  The walk with the shorter sysUpTime is used as the earlier walk.
+	 * @return the value of every instance of every definition, in definition order, or null if there are no definitions.
+	 */
+	List<CounterResult> calculate( WalkIndex walk1, WalkIndex walk2 )
+	{
+		if( names.length == 0 )
+		{
+			return null;
+		}
+		WalkIndex earlier = walk1.getSysUpTime() <= walk2.getSysUpTime() ? walk1 : walk2;
+		WalkIndex later = earlier == walk1 ? walk2 : walk1;
+		long tickDelta = later.getSysUpTime() - earlier.getSysUpTime();
+		// The values of each definition, by the slot of their instance in the later walk's table of the definition's instance source.
+		double[][] values = new double[names.length][];
+		double[] stack = new double[stackSize];
+		List<CounterResult> results = new ArrayList<>();
+		for( int i = 0; i < names.length; i++ )
+		{
+			int source = instanceSources[i];
+			int count = source < 0 ? 1 : later.getCounterSize( source );
+			values[i] = new double[count];
+			for( int slot = 0; slot < count; slot++ )
+			{
+				String instance = source < 0 ? "" : later.getCounterInstance( source, slot );
+				double value;
+				if( types[i] == Type.FORMULA )
+				{
+					value = evaluate( i, instance, values, later, stack );
+				}
+				else if( types[i] == Type.GAUGE )
+				{
+					value = later.getCounterValue( i, slot );
+				}
+				else
+				{
+					value = rate( i, instance, later.getCounterValue( i, slot ), earlier, tickDelta );
+				}
+				values[i][slot] = value;
+				if( !Double.isNaN( value ) && !Double.isInfinite( value ) )
+				{
+					results.add( new CounterResult( names[i], instance, value, types[i] != Type.GAUGE && types[i] != Type.FORMULA ) );
+				}
+			}
+		}
+		return results;
+	} // End of calculate() method.
+
+
+	/**
+	 * @return the rate per second of a counter, or NaN if the earlier walk does not have the instance, or no time passed.
+	 */
+	private double rate( int counter, String instance, long after, WalkIndex earlier, long tickDelta )
+	{
+		int earlierSlot = earlier.counterSlotOf( counter, instance );
+		if( earlierSlot < 0 || tickDelta <= 0 )
+		{
+			return Double.NaN;
+		}
+		long before = earlier.getCounterValue( counter, earlierSlot );
+		long mask = wrapMasks[counter];
+		if( mask == -1L ? Long.compareUnsigned( after, before ) < 0 : ( after & mask ) < ( before & mask ) )
+		{
+			Metrics.counterWrapped();
+		}
+		// Modular subtraction gives the right delta across a single wrap.
+		long delta = ( after - before ) & mask;
+		double unsignedDelta = delta < 0 ? delta + 0x1p64 : delta;
+		return unsignedDelta * TICKS_PER_SECOND / tickDelta;
+	}
+
+
+	/**
+	 * @return the value of a formula for one instance, or NaN if an operand does not have that instance.
+	 */
+	private double evaluate( int formula, String instance, double[][] values, WalkIndex later, double[] stack )
+	{
+		int top = 0;
+		for( int code : formulas[formula] )
+		{
+			if( code >= 0 )
+			{
+				int source = instanceSources[code];
+				int slot = source < 0 ? 0 : later.counterSlotOf( source, indexArcs[code] == 0 ? "" : instance );
+				if( slot < 0 )
+				{
+					return Double.NaN;
+				}
+				stack[top++] = values[code][slot];
+			}
+			else if( code <= CONSTANT )
+			{
+				stack[top++] = constants[formula][CONSTANT - code];
+			}
+			else
+			{
+				double right = stack[--top];
+				double left = stack[top - 1];
+				stack[top - 1] = code == ADD ? left + right : code == SUBTRACT ? left - right : code == MULTIPLY ? left * right : left / right;
+			}
+		}
+		return stack[0];
+	} // End of evaluate() method.
+}
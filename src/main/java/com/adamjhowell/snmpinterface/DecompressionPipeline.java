@@ -0,0 +1,267 @@
+package com.adamjhowell.snmpinterface;
+
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * This decompresses a stream on its own thread, and hands the decompressed bytes to the parsing thread in chunks that end on a line break.<br>
+ * Decompression and parsing each get a core, and because no line crosses a chunk, WalkReader.scan() consumes every chunk completely.
+ * <p>
+ * A fixed set of buffers circulates between the two threads, so memory use is bounded,
+ * and the decompressing thread waits whenever the parser falls behind.<br>
+ * A line longer than a buffer grows that buffer, up to MAX_LINE_SIZE, and a longer line is an IOException.<br>
+ * Whatever stops the decompressing thread, the parser is always handed a last chunk, so it never waits forever.
+ */
+class DecompressionPipeline implements Closeable
+{
+	private static final int CHUNK_SIZE = 1 << 20;
+	private static final int BUFFER_COUNT = 4;
+	/**
+	 * The longest line a compressed walk may hold, which is far longer than any real walk line, but bounds the memory a corrupt walk can take.
+	 */
+	private static final int MAX_LINE_SIZE = 1 << 24;
+
+	private final InputStream input;
+	private final String name;
+	private final BlockingQueue<Chunk> filled = new ArrayBlockingQueue<>( BUFFER_COUNT + 1 );
+	private final BlockingQueue<byte[]> free = new ArrayBlockingQueue<>( BUFFER_COUNT );
+	private final Thread thread;
+
+
+	/**
+	 * @param input the decompressed stream, which is read and closed by the decompressing thread.
+	 * @param name  the name of the file, for the thread name.
+	 */
+	DecompressionPipeline( InputStream input, String name )
+	{
+		this.input = input;
+		this.name = name;
+		for( int i = 0; i < BUFFER_COUNT; i++ )
+		{
+			free.add( new byte[CHUNK_SIZE] );
+		}
+		thread = new Thread( this::decompress, "walk-decompressor " + name );
+		thread.setDaemon( true );
+	}
+
+
+	void start()
+	{
+		thread.start();
+	}
+
+
+	/**
+	 * @return the next chunk.  The last chunk of the stream has isLast() set, and may be empty.
+	 * @throws IOException if the stream could not be decompressed, or the decompressing thread failed.
+	 */
+	Chunk take() throws IOException
+	{
+		Chunk chunk;
+		try
+		{
+			chunk = filled.take();
+		}
+		catch( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException( "Interrupted while waiting for the decompressor." );
+		}
+		if( chunk.error != null )
+		{
+			throw new IOException( chunk.error instanceof IOException ? chunk.error.getLocalizedMessage() : chunk.error.toString(), chunk.error );
+		}
+		return chunk;
+	}
+
+
+	/**
+	 * This hands a parsed chunk's buffer back to the decompressing thread, to be filled again.
+	 *
+	 * @param chunk a chunk from take().
+	 */
+	void recycle( Chunk chunk )
+	{
+		free.offer( chunk.data );
+	}
+
+
+	/**
+	 * This stops the decompressing thread, if it is still running, and waits for it to close the stream.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		thread.interrupt();
+		try
+		{
+			thread.join();
+		}
+		catch( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException( "Interrupted while stopping the decompressor." );
+		}
+	}
+
+
+	/**
+	 * This is the body of the decompressing thread.  Each buffer is filled completely, cut after its last line break,
+	 * and the partial line that follows is copied to the start of the next buffer.
+	 */
+	private void decompress()
+	{
+		try( InputStream in = input )
+		{
+			byte[] buffer = free.take();
+			int length = 0;
+			while( true )
+			{
+				int count = in.read( buffer, length, buffer.length - length );
+				if( count < 0 )
+				{
+					filled.put( new Chunk( buffer, length, true, null ) );
+					return;
+				}
+				length += count;
+				if( length < buffer.length )
+				{
+					continue;
+				}
+				int end = buffer.length;
+				while( end > 0 && buffer[end - 1] != '\n' )
+				{
+					end--;
+				}
+				if( end == 0 )
+				{
+					// One line fills the whole buffer, so the buffer grows until the line fits.
+					if( buffer.length >= MAX_LINE_SIZE )
+					{
+						throw new IOException( "A line in " + name + " is longer than " + MAX_LINE_SIZE + " bytes." );
+					}
+					byte[] larger = new byte[buffer.length * 2];
+					System.arraycopy( buffer, 0, larger, 0, length );
+					buffer = larger;
+					continue;
+				}
+				byte[] next = free.take();
+				if( next.length < length - end )
+				{
+					next = new byte[Math.max( CHUNK_SIZE, length - end )];
+				}
+				System.arraycopy( buffer, end, next, 0, length - end );
+				filled.put( new Chunk( buffer, end, false, null ) );
+				buffer = next;
+				length -= end;
+			}
+		}
+		catch( InterruptedException e )
+		{
+			// The parser has stopped, and closed this pipeline.
+		}
+		catch( Throwable e )
+		{
+			// The parser rethrows this from take().  Anything else that ends this thread (such as an OutOfMemoryError) is handed over too,
+			// since the parser would otherwise wait for another chunk forever.
+			filled.offer( new Chunk( null, 0, true, e ) );
+		}
+	} // End of decompress() method.
+
+
+	/**
+	 * Part of the decompressed stream.  The bytes from zero to getLength() are whole lines.
+	 */
+	static final class Chunk
+	{
+		private final byte[] data;
+		private final int length;
+		private final boolean last;
+		private final Throwable error;
+
+
+		private Chunk( byte[] data, int length, boolean last, Throwable error )
+		{
+			this.data = data;
+			this.length = length;
+			this.last = last;
+			this.error = error;
+		}
+
+
+		ByteBuffer getBuffer()
+		{
+			return ByteBuffer.wrap( data );
+		}
+
+
+		int getLength()
+		{
+			return length;
+		}
+
+
+		boolean isLast()
+		{
+			return last;
+		}
+	}
+
+
+	/**
+	 * This counts the compressed bytes read from a file, so progress can be reported against the size of that file.
+	 */
+	static final class CountingInputStream extends FilterInputStream
+	{
+		private final AtomicLong count;
+
+
+		CountingInputStream( InputStream in, AtomicLong count )
+		{
+			super( in );
+			this.count = count;
+		}
+
+
+		@Override
+		public int read() throws IOException
+		{
+			int b = super.read();
+			if( b >= 0 )
+			{
+				count.incrementAndGet();
+			}
+			return b;
+		}
+
+
+		@Override
+		public int read( byte[] b, int off, int len ) throws IOException
+		{
+			int read = super.read( b, off, len );
+			if( read > 0 )
+			{
+				count.addAndGet( read );
+			}
+			return read;
+		}
+
+
+		@Override
+		public long skip( long n ) throws IOException
+		{
+			long skipped = super.skip( n );
+			count.addAndGet( skipped );
+			return skipped;
+		}
+	}
+}
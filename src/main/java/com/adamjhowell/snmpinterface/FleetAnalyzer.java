@@ -0,0 +1,386 @@
+package com.adamjhowell.snmpinterface;
+
+
+import com.adamjhowell.snmpinterface.model.DeviceResult;
+import com.adamjhowell.snmpinterface.model.InterfaceResult;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+
+/**
+ * This analyzes walk pairs from a whole fleet of devices, spreading the work across a bounded ForkJoinPool.
+ * <p>
+ * The source may be a directory, or a manifest file.<br>
+ * In a directory, every file is read as a walk (text, or a WalkSnapshot), and the walks are grouped into devices by their sysName and sysDescr.
+ * The two walks with the longest sysUpTime for each device are then compared.<br>
+ * A manifest lists one pair of walk files per line, separated by whitespace.
+ * Relative paths are resolved against the directory holding the manifest, and everything after a "//" is ignored.
+ */
+class FleetAnalyzer
+{
+	private static final Logger errorLogger = Logger.getLogger( FleetAnalyzer.class.getName() );
+	private static final String COMMENT_STRING = "//";
+
+	private final int parallelism;
+	/**
+	 * The pool shared by every analysis, or null to create a pool for each analysis.
+	 */
+	private final ForkJoinPool sharedPool;
+
+
+	/**
+	 * @param parallelism the number of threads to analyze devices with.
+	 */
+	FleetAnalyzer( int parallelism )
+	{
+		this.parallelism = Math.max( 1, parallelism );
+		sharedPool = null;
+	}
+
+
+	/**
+	 * This analyzer runs every analysis on the given pool, so concurrent analyses share its threads, and never shuts it down.
+	 *
+	 * @param pool the pool to analyze devices on.
+	 */
+	FleetAnalyzer( ForkJoinPool pool )
+	{
+		parallelism = pool.getParallelism();
+		sharedPool = pool;
+	}
+
+
+	/**
+	 * This will read every walk named by the source, group them into devices, and calculate the statistics for every interface of every device.
+	 *
+	 * @param source a directory of walk files, or a manifest of walk pairs.
+	 * @return the results for every device, sorted by sysName, along with throughput counts.
+	 * @throws IOException if the source cannot be listed or read.
+	 */
+	FleetReport analyze( Path source ) throws IOException
+	{
+		long startTime = System.nanoTime();
+		boolean isDirectory = Files.isDirectory( source );
+		List<Path[]> manifestPairs = isDirectory ? null : readManifest( source );
+		List<Path> walkFiles = isDirectory ? listFiles( source ) : manifestPairs.stream().flatMap( Arrays::stream ).distinct().collect( Collectors.toList() );
+		if( WalkReader.getCounterDefinitions().size() > 0 )
+		{
+			for( Path file : walkFiles )
+			{
+				if( file.getFileName().toString().endsWith( WalkSnapshot.SNAPSHOT_EXTENSION ) )
+				{
+					errorLogger.log( Level.WARNING, "{0} is a snapshot, which holds no counters, so its device will have no counter results.", file );
+				}
+			}
+		}
+
+		ForkJoinPool pool = sharedPool != null ? sharedPool : new ForkJoinPool( parallelism );
+		try
+		{
+			// Read every walk in parallel.  A parallel stream submitted to a pool runs on that pool, rather than the common pool.
+			List<ParsedWalk> parsedWalks = pool.submit( () -> walkFiles.parallelStream().map( FleetAnalyzer::readQuietly ).collect( Collectors.toList() ) ).get();
+			Map<Path, ParsedWalk> walksByPath = new LinkedHashMap<>();
+			for( ParsedWalk walk : parsedWalks )
+			{
+				walksByPath.put( walk.path, walk );
+			}
+
+			List<ParsedWalk[]> devicePairs = new ArrayList<>();
+			List<DeviceResult> results = new ArrayList<>();
+			if( isDirectory )
+			{
+				groupByDevice( parsedWalks, devicePairs, results );
+			}
+			else
+			{
+				for( Path[] pair : manifestPairs )
+				{
+					devicePairs.add( new ParsedWalk[]{ walksByPath.get( pair[0] ), walksByPath.get( pair[1] ) } );
+				}
+			}
+
+			// Compare each device's walks in parallel.
+			results.addAll( pool.submit( () -> devicePairs.parallelStream().map( FleetAnalyzer::analyzeDevice ).collect( Collectors.toList() ) ).get() );
+			results.sort( Comparator.comparing( DeviceResult::getSysName ) );
+
+			long lineCount = 0;
+			long byteCount = 0;
+			for( ParsedWalk walk : parsedWalks )
+			{
+				if( walk.index != null )
+				{
+					lineCount += walk.index.getLineCount();
+					byteCount += walk.index.getByteCount();
+				}
+			}
+			return new FleetReport( results, parsedWalks.size(), lineCount, byteCount, System.nanoTime() - startTime );
+		}
+		catch( InterruptedException ie )
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException( "Fleet analysis was interrupted." );
+		}
+		catch( ExecutionException ee )
+		{
+			throw new IOException( "Fleet analysis failed.", ee.getCause() );
+		}
+		finally
+		{
+			if( pool != sharedPool )
+			{
+				pool.shutdown();
+			}
+		}
+	} // End of analyze() method.
+
+
+	/**
+	 * This groups walks by sysName and sysDescr, and pairs the two walks with the longest sysUpTime for each device.<br>
+	 * Walks that could not be read, and devices with only one walk, are added to the results as errors.
+	 */
+	private static void groupByDevice( List<ParsedWalk> parsedWalks, List<ParsedWalk[]> devicePairs, List<DeviceResult> results )
+	{
+		Map<String, List<ParsedWalk>> devices = new LinkedHashMap<>();
+		for( ParsedWalk walk : parsedWalks )
+		{
+			if( walk.index == null )
+			{
+				results.add( new DeviceResult( "", "", walk.path.toString(), null, null, walk.error ) );
+				continue;
+			}
+			String deviceKey = walk.index.getSysName() + '\n' + walk.index.getSysDescr();
+			devices.computeIfAbsent( deviceKey, key -> new ArrayList<>() ).add( walk );
+		}
+		for( List<ParsedWalk> walks : devices.values() )
+		{
+			WalkIndex first = walks.get( 0 ).index;
+			if( walks.size() < 2 )
+			{
+				results.add( new DeviceResult( first.getSysName(), first.getSysDescr(), walks.get( 0 ).path.toString(), null, null, "Only one walk was found for this device." ) );
+				continue;
+			}
+			walks.sort( Comparator.comparingLong( walk -> walk.index.getSysUpTime() ) );
+			if( walks.size() > 2 )
+			{
+				errorLogger.log( Level.INFO, "{0} walks were found for {1}.  Only the latest two will be compared.", new Object[]{ walks.size(), first.getSysName() } );
+			}
+			devicePairs.add( new ParsedWalk[]{ walks.get( walks.size() - 2 ), walks.get( walks.size() - 1 ) } );
+		}
+	} // End of groupByDevice() method.
+
+
+	/**
+	 * This reads and compares one pair of walks on the calling thread.
+	 *
+	 * @param firstWalk  one walk of a device.
+	 * @param secondWalk another walk of the same device.
+	 * @return the statistics for every interface of that device, or a description of why they could not be calculated.
+	 */
+	static DeviceResult analyzePair( Path firstWalk, Path secondWalk )
+	{
+		return analyzeDevice( new ParsedWalk[]{ readQuietly( firstWalk ), readQuietly( secondWalk ) } );
+	}
+
+
+	/**
+	 * @param pair the two walks for one device.
+	 * @return the statistics for every interface of that device, or a description of why they could not be calculated.
+	 */
+	private static DeviceResult analyzeDevice( ParsedWalk[] pair )
+	{
+		for( ParsedWalk walk : pair )
+		{
+			if( walk.index == null )
+			{
+				return new DeviceResult( "", "", pair[0].path.toString(), pair[1].path.toString(), null, walk.error );
+			}
+		}
+		// Put the walk with the shorter sysUpTime first.
+		ParsedWalk first = pair[0].index.getSysUpTime() <= pair[1].index.getSysUpTime() ? pair[0] : pair[1];
+		ParsedWalk second = first == pair[0] ? pair[1] : pair[0];
+		WalkIndex index = first.index;
+		if( !index.getSysName().equals( second.index.getSysName() ) || !index.getSysDescr().equals( second.index.getSysDescr() ) )
+		{
+			return new DeviceResult( index.getSysName(), index.getSysDescr(), first.path.toString(), second.path.toString(), null, "The walks are from different devices." );
+		}
+		List<InterfaceResult> interfaces = UtilizationCalculator.calculateAll( first.index, second.index );
+		return new DeviceResult( index.getSysName(), index.getSysDescr(), first.path.toString(), second.path.toString(), interfaces,
+		                         interfaces == null ? "Walk files are not compatible!" : null, WalkReader.getCounterDefinitions().calculate( first.index, second.index ),
+		                         second.index.getCaptureTime() );
+	} // End of analyzeDevice() method.
+
+
+	/**
+	 * This reads a walk through the shared WalkCache, recording the error instead of throwing it, so that one bad file does not stop the rest of the fleet.
+	 */
+	private static ParsedWalk readQuietly( Path path )
+	{
+		try
+		{
+			return new ParsedWalk( path, WalkCache.shared().read( path ), null );
+		}
+		catch( IOException ioe )
+		{
+			errorLogger.log( Level.SEVERE, "Unable to read {0}: {1}", new Object[]{ path, ioe.getLocalizedMessage() } );
+			return new ParsedWalk( path, null, "Unable to read " + path );
+		}
+	}
+
+
+	/**
+	 * A walk that has an up-to-date snapshot beside it is left out, so that only the snapshot is read, and the device does not get the same walk twice.<br>
+	 * A snapshot older than its walk (which has been captured again since) is left out instead, so it never hides the newer walk.
+	 * Snapshots hold no counters, so while counters are defined, every walk is read instead of its snapshot.
+	 */
+	private static List<Path> listFiles( Path directory ) throws IOException
+	{
+		boolean preferSnapshots = WalkReader.getCounterDefinitions().size() == 0;
+		List<Path> files = new ArrayList<>();
+		try( DirectoryStream<Path> stream = Files.newDirectoryStream( directory, Files::isRegularFile ) )
+		{
+			for( Path file : stream )
+			{
+				String name = file.getFileName().toString();
+				if( name.endsWith( WalkSnapshot.SNAPSHOT_EXTENSION ) )
+				{
+					Path walk = file.resolveSibling( name.substring( 0, name.length() - WalkSnapshot.SNAPSHOT_EXTENSION.length() ) );
+					if( !Files.isRegularFile( walk ) || preferSnapshots && isCurrent( file, walk ) )
+					{
+						files.add( file );
+					}
+				}
+				else if( !preferSnapshots || !isCurrent( WalkSnapshot.snapshotPath( file ), file ) )
+				{
+					files.add( file );
+				}
+			}
+		}
+		files.sort( Comparator.naturalOrder() );
+		return files;
+	}
+
+
+	/**
+	 * @return true if the snapshot exists, and was written no earlier than the walk was last modified.
+	 */
+	private static boolean isCurrent( Path snapshot, Path walk )
+	{
+		try
+		{
+			return Files.isRegularFile( snapshot ) && Files.getLastModifiedTime( snapshot ).compareTo( Files.getLastModifiedTime( walk ) ) >= 0;
+		}
+		catch( IOException e )
+		{
+			// One of them was deleted after the directory was listed, so whichever remains is read.
+			return false;
+		}
+	}
+
+
+	/**
+	 * @param manifest a file listing one pair of walk files per line.
+	 * @return every pair of walk files in the manifest.
+	 */
+	private static List<Path[]> readManifest( Path manifest ) throws IOException
+	{
+		Path baseDirectory = manifest.toAbsolutePath().getParent();
+		List<Path[]> pairs = new ArrayList<>();
+		try( BufferedReader reader = Files.newBufferedReader( manifest, StandardCharsets.UTF_8 ) )
+		{
+			String line;
+			int lineNumber = 0;
+			while( ( line = reader.readLine() ) != null )
+			{
+				lineNumber++;
+				int comment = line.indexOf( COMMENT_STRING );
+				String[] fields = ( comment < 0 ? line : line.substring( 0, comment ) ).trim().split( "\\s+" );
+				if( fields.length == 2 )
+				{
+					pairs.add( new Path[]{ baseDirectory.resolve( fields[0] ).normalize(), baseDirectory.resolve( fields[1] ).normalize() } );
+				}
+				else if( fields.length != 1 || !fields[0].isEmpty() )
+				{
+					errorLogger.log( Level.WARNING, "Manifest line {0} does not hold a pair of walk files.", lineNumber );
+				}
+			}
+		}
+		return pairs;
+	}
+
+
+	/**
+	 * A walk file, and either its index or the reason it could not be read.
+	 */
+	private static final class ParsedWalk
+	{
+		private final Path path;
+		private final WalkIndex index;
+		private final String error;
+
+
+		private ParsedWalk( Path path, WalkIndex index, String error )
+		{
+			this.path = path;
+			this.index = index;
+			this.error = error;
+		}
+	}
+
+
+	/**
+	 * The results of a fleet analysis, with the counts needed to report its throughput.
+	 */
+	static final class FleetReport
+	{
+		private final List<DeviceResult> devices;
+		private final int walkCount;
+		private final long lineCount;
+		private final long byteCount;
+		private final long elapsedNanos;
+
+
+		private FleetReport( List<DeviceResult> devices, int walkCount, long lineCount, long byteCount, long elapsedNanos )
+		{
+			this.devices = devices;
+			this.walkCount = walkCount;
+			this.lineCount = lineCount;
+			this.byteCount = byteCount;
+			this.elapsedNanos = elapsedNanos;
+		}
+
+
+		List<DeviceResult> getDevices()
+		{
+			return devices;
+		}
+
+
+		/**
+		 * @return a one line summary of the work done, and the rate it was done at.
+		 */
+		String summary()
+		{
+			double seconds = Math.max( elapsedNanos, 1 ) / 1e9;
+			return String.format( "Analyzed %,d devices (%,d walks, %,d lines, %,d bytes) in %.3f seconds: %,.1f devices/sec, %,.0f lines/sec, %,.1f MB/sec",
+			                      devices.size(), walkCount, lineCount, byteCount, seconds,
+			                      devices.size() / seconds, lineCount / seconds, byteCount / seconds / ( 1024 * 1024 ) );
+		}
+	}
+}
@@ -0,0 +1,1011 @@
+package com.adamjhowell.snmpinterface;
+
+
+import com.adamjhowell.snmpinterface.model.InterfaceDelta;
+import com.adamjhowell.snmpinterface.model.InterfaceResult;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * This keeps the utilization history of every interface of every device, on disk, for capacity planning over months.<br>
+ * Each calculated InterfaceDelta is appended as one fixed-width record of primitives (timestamp, ifIndex, deltas, and utilization), and never changed.
+ * <p>
+ * Each device has a directory (its sysName, percent-encoded), holding one segment file per time window (a day, by default), named for the window's start.<br>
+ * A segment is a fixed-width header (magic, version, record size, window start, window length, and record count), followed by the records in time order.
+ * Records are memory-mapped in chunks of CHUNK_RECORDS, so a segment grows without being copied, and only the last chunk is ever remapped.
+ * The file only holds the records written so far: the appender maps each poll's records as it writes them, and readers map only the records they can see, read-only.<br>
+ * Range queries find the segments by their window start (a skip list), and then find the first record with a sparse index,
+ * which holds the timestamp of every SPARSE_INTERVAL-th record, so only the records in range are read.<br>
+ * Segments whose whole window is older than the retention period are deleted when a device moves on to a new segment, or by deleteExpired().
+ * <p>
+ * Each device has at most one Appender, which is enforced in this process and, with a file lock, between processes.<br>
+ * Appending takes no locks: the records of a poll are written into the mapping, and then the record count is published through a volatile field,
+ * so a reader sees every poll completely or not at all, and never waits for the writer.
+ * <p>
+ * Usage: HistoryStore &lt;directory&gt; [--retain &lt;days&gt;] [--device &lt;sysName&gt; [--interface &lt;ifIndex&gt;] [--from &lt;time&gt;] [--to &lt;time&gt;]]<br>
+ * Without --device, every device is listed.  With --device, its records are written to stdout as CSV.
+ * Times are ISO-8601 instants (2016-06-08T12:00:00Z), or milliseconds since the epoch.
+ */
+public final class HistoryStore implements Closeable
+{
+	private static final Logger errorLogger = Logger.getLogger( HistoryStore.class.getName() );
+	private static final String USAGE = "Usage: HistoryStore <directory> [--retain <days>] [--device <sysName> [--interface <ifIndex>] [--from <time>] [--to <time>]]";
+	private static final int EXIT_USAGE = 1;
+	private static final int EXIT_IO_ERROR = 2;
+	static final String SEGMENT_EXTENSION = ".hist";
+	static final long DEFAULT_SEGMENT_MILLIS = TimeUnit.DAYS.toMillis( 1 );
+	private static final String LOCK_FILE = ".lock";
+	private static final byte[] MAGIC = "SNMPHIST".getBytes( StandardCharsets.US_ASCII );
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 64;
+	private static final int VERSION_OFFSET = 8;
+	private static final int RECORD_SIZE_OFFSET = 12;
+	private static final int WINDOW_START_OFFSET = 16;
+	private static final int WINDOW_LENGTH_OFFSET = 24;
+	private static final int COUNT_OFFSET = 32;
+	/**
+	 * The byte offsets of the fields within a record.
+	 */
+	private static final int TIMESTAMP = 0;
+	private static final int IF_INDEX = 8;
+	private static final int TICK_DELTA = 16;
+	private static final int IF_SPEED = 24;
+	private static final int IN_OCTETS = 32;
+	private static final int OUT_OCTETS = 40;
+	private static final int IN_UTILIZATION = 48;
+	private static final int OUT_UTILIZATION = 56;
+	private static final int IN_DISCARDS = 64;
+	private static final int OUT_DISCARDS = 72;
+	private static final int IN_ERRORS = 80;
+	private static final int OUT_ERRORS = 88;
+	private static final int STATUS = 96;
+	private static final int HIGH_CAPACITY = 100;
+	private static final int RECORD_SIZE = 104;
+	private static final int CHUNK_RECORDS = 1 << 16;
+	private static final long CHUNK_SIZE = ( long )CHUNK_RECORDS * RECORD_SIZE;
+	private static final int SPARSE_INTERVAL = 128;
+	private static final InterfaceDelta.Status[] STATUSES = InterfaceDelta.Status.values();
+
+	private final Path directory;
+	private final long segmentMillis;
+	private final long retentionMillis;
+	private final Map<String, DeviceHistory> devices = new ConcurrentHashMap<>();
+
+
+	/**
+	 * Something that is handed each record of a range query.
+	 */
+	@FunctionalInterface
+	interface RecordVisitor
+	{
+		/**
+		 * @param timestamp the time of the poll or walk, in milliseconds since the epoch.
+		 * @param ifIndex   the interface.
+		 * @param delta     the delta of that interface, which is reused for the next record, so it must be copied to be kept.
+		 */
+		void record( long timestamp, long ifIndex, InterfaceDelta delta );
+	}
+
+
+	/**
+	 * @param directory       the directory to keep the history in, which is created if it does not exist.
+	 * @param segmentMillis   the length of the time window that each new segment covers.
+	 * @param retentionMillis the age after which a segment is deleted, or 0 to keep every segment.
+	 * @throws IOException if the directory cannot be created.
+	 */
+	HistoryStore( Path directory, long segmentMillis, long retentionMillis ) throws IOException
+	{
+		if( segmentMillis <= 0 || retentionMillis < 0 )
+		{
+			throw new IllegalArgumentException( "Invalid segment length " + segmentMillis + " or retention " + retentionMillis );
+		}
+		this.directory = Files.createDirectories( directory );
+		this.segmentMillis = segmentMillis;
+		this.retentionMillis = retentionMillis;
+	}
+
+
+	public static void main( String[] args )
+	{
+		System.exit( run( args ) );
+	} // End of main() method.
+
+
+	/**
+	 * This will list the devices in a store, or write the records of one device as CSV.
+	 *
+	 * @param args the command line arguments.
+	 * @return the exit code for the process.
+	 */
+	static int run( String[] args )
+	{
+		String device = null;
+		long ifIndex = -1;
+		long from = Long.MIN_VALUE;
+		long to = Long.MAX_VALUE;
+		long retentionDays = 0;
+		List<String> directories = new ArrayList<>();
+		try
+		{
+			for( int i = 0; i < args.length; i++ )
+			{
+				if( "--device".equals( args[i] ) && i + 1 < args.length )
+				{
+					device = args[++i];
+				}
+				else if( "--interface".equals( args[i] ) && i + 1 < args.length && args[i + 1].matches( "\\d+" ) )
+				{
+					ifIndex = Long.parseLong( args[++i] );
+				}
+				else if( "--from".equals( args[i] ) && i + 1 < args.length )
+				{
+					from = parseTime( args[++i] );
+				}
+				else if( "--to".equals( args[i] ) && i + 1 < args.length )
+				{
+					to = parseTime( args[++i] );
+				}
+				else if( "--retain".equals( args[i] ) && i + 1 < args.length && args[i + 1].matches( "[1-9]\\d*" ) )
+				{
+					retentionDays = Long.parseLong( args[++i] );
+				}
+				else if( args[i].startsWith( "--" ) )
+				{
+					System.err.println( USAGE );
+					return EXIT_USAGE;
+				}
+				else
+				{
+					directories.add( args[i] );
+				}
+			}
+		}
+		catch( DateTimeParseException | NumberFormatException e )
+		{
+			System.err.println( USAGE );
+			return EXIT_USAGE;
+		}
+		if( directories.size() != 1 || device == null && ( ifIndex >= 0 || from != Long.MIN_VALUE || to != Long.MAX_VALUE ) )
+		{
+			System.err.println( USAGE );
+			return EXIT_USAGE;
+		}
+
+		try
+		{
+			Path path = Paths.get( directories.get( 0 ) );
+			if( !Files.isDirectory( path ) )
+			{
+				errorLogger.log( Level.SEVERE, "{0} is not a history directory.", path );
+				return EXIT_IO_ERROR;
+			}
+			try( HistoryStore store = new HistoryStore( path, DEFAULT_SEGMENT_MILLIS, TimeUnit.DAYS.toMillis( retentionDays ) );
+			     Writer out = new BufferedWriter( new OutputStreamWriter( System.out, StandardCharsets.UTF_8 ) ) )
+			{
+				if( retentionDays > 0 )
+				{
+					System.err.println( String.format( "Deleted %,d expired segments.", store.deleteExpired( System.currentTimeMillis() ) ) );
+				}
+				if( device == null )
+				{
+					for( String name : store.devices() )
+					{
+						long[] range = store.summarize( name );
+						out.write( String.format( "%s: %,d segments, %,d records, %s to %s%n", name, range[0], range[1],
+						                          range[1] == 0 ? "-" : Instant.ofEpochMilli( range[2] ), range[1] == 0 ? "-" : Instant.ofEpochMilli( range[3] ) ) );
+					}
+				}
+				else
+				{
+					out.write( "timestamp,ifIndex,status,tickDelta,ifSpeed,highCapacity,inOctetDelta,outOctetDelta,inUtilization,outUtilization,totalUtilization,"
+					           + "inDiscardDelta,outDiscardDelta,inErrorDelta,outErrorDelta" + System.lineSeparator() );
+					store.scan( device, ifIndex, from, to, ( timestamp, index, delta ) -> writeCsv( out, timestamp, index, delta ) );
+				}
+			}
+		}
+		catch( IOException | InvalidPathException e )
+		{
+			errorLogger.log( Level.SEVERE, "Unable to read the history: {0}", e.getLocalizedMessage() );
+			return EXIT_IO_ERROR;
+		}
+		catch( UncheckedIOException e )
+		{
+			errorLogger.log( Level.SEVERE, "Unable to write the history: {0}", e.getCause().getLocalizedMessage() );
+			return EXIT_IO_ERROR;
+		}
+		return 0;
+	} // End of run() method.
+
+
+	private static long parseTime( String time )
+	{
+		return time.matches( "-?\\d+" ) ? Long.parseLong( time ) : Instant.parse( time ).toEpochMilli();
+	}
+
+
+	private static void writeCsv( Writer out, long timestamp, long ifIndex, InterfaceDelta delta )
+	{
+		try
+		{
+			out.write( Instant.ofEpochMilli( timestamp ) + "," + ifIndex + "," + delta.getStatus().name() + "," + delta.getTickDelta() + "," + delta.getIfSpeed()
+			           + "," + delta.isHighCapacity() + "," + delta.getInOctetDelta() + "," + delta.getOutOctetDelta()
+			           + "," + delta.getInUtilization() + "," + delta.getOutUtilization() + "," + delta.getTotalUtilization()
+			           + "," + delta.getInDiscardDelta() + "," + delta.getOutDiscardDelta() + "," + delta.getInErrorDelta() + "," + delta.getOutErrorDelta()
+			           + System.lineSeparator() );
+		}
+		catch( IOException e )
+		{
+			throw new UncheckedIOException( e );
+		}
+	}
+
+
+	/**
+	 * @param device the sysName of a device.
+	 * @return the appender for that device, which must be closed to let another appender write to it.
+	 * @throws IOException           if the device's history cannot be read, or another process is appending to it.
+	 * @throws IllegalStateException if this store already has an open appender for that device.
+	 */
+	Appender appender( String device ) throws IOException
+	{
+		DeviceHistory history = history( device );
+		if( !history.appending.compareAndSet( false, true ) )
+		{
+			throw new IllegalStateException( "The history of " + device + " already has an appender." );
+		}
+		try
+		{
+			return new Appender( history );
+		}
+		catch( IOException | RuntimeException e )
+		{
+			history.appending.set( false );
+			throw e;
+		}
+	}
+
+
+	/**
+	 * This hands every record of one device within a time range to the visitor, in time order.<br>
+	 * It never blocks an appender, and sees every poll appended before it reached that poll's segment.
+	 *
+	 * @param device  the sysName of a device.
+	 * @param ifIndex the interface to visit, or -1 for every interface.
+	 * @param from    the earliest timestamp to visit, inclusive.
+	 * @param to      the latest timestamp to visit, inclusive.
+	 * @param visitor the visitor.
+	 * @return the number of records visited.
+	 * @throws IOException if the device's history cannot be read.
+	 */
+	long scan( String device, long ifIndex, long from, long to, RecordVisitor visitor ) throws IOException
+	{
+		if( !Files.isDirectory( directory.resolve( encode( device ) ) ) )
+		{
+			return 0;
+		}
+		ConcurrentSkipListMap<Long, Segment> segments = history( device ).segments;
+		// The segment holding "from" starts at or before it, and no segment starting after "to" can hold anything in range.
+		Long first = segments.floorKey( from );
+		if( first == null )
+		{
+			first = from;
+		}
+		if( first > to )
+		{
+			return 0;
+		}
+		InterfaceDelta delta = new InterfaceDelta();
+		long visited = 0;
+		for( Segment segment : segments.subMap( first, true, to, true ).values() )
+		{
+			visited += segment.scan( ifIndex, from, to, delta, visitor );
+		}
+		return visited;
+	} // End of scan() method.
+
+
+	/**
+	 * @return the sysName of every device in this store, in the order of their directory names.
+	 * @throws IOException if the directory cannot be listed.
+	 */
+	List<String> devices() throws IOException
+	{
+		List<String> names = new ArrayList<>();
+		try( DirectoryStream<Path> stream = Files.newDirectoryStream( directory, Files::isDirectory ) )
+		{
+			for( Path path : stream )
+			{
+				names.add( path.getFileName().toString() );
+			}
+		}
+		Collections.sort( names );
+		List<String> devices = new ArrayList<>( names.size() );
+		for( String name : names )
+		{
+			devices.add( decode( name ) );
+		}
+		return devices;
+	}
+
+
+	/**
+	 * @param device the sysName of a device.
+	 * @return the number of segments, the number of records, and the first and last timestamps of that device.
+	 */
+	private long[] summarize( String device ) throws IOException
+	{
+		ConcurrentSkipListMap<Long, Segment> segments = history( device ).segments;
+		long[] summary = { segments.size(), 0, Long.MAX_VALUE, Long.MIN_VALUE };
+		for( Segment segment : segments.values() )
+		{
+			int count = segment.count;
+			if( count > 0 )
+			{
+				Mapping mapping = segment.mapping();
+				summary[1] += count;
+				summary[2] = Math.min( summary[2], mapping.timestamp( 0 ) );
+				summary[3] = Math.max( summary[3], mapping.timestamp( count - 1 ) );
+			}
+		}
+		return summary;
+	}
+
+
+	/**
+	 * This deletes the segments of every device whose whole window is older than the retention period.<br>
+	 * The newest segment of a device is always kept, since an appender may be writing to it.
+	 *
+	 * @param now the current time, in milliseconds since the epoch.
+	 * @return the number of segments deleted.
+	 * @throws IOException if the directory cannot be listed.
+	 */
+	int deleteExpired( long now ) throws IOException
+	{
+		int deleted = 0;
+		for( String device : devices() )
+		{
+			deleted += history( device ).deleteExpired( now );
+		}
+		return deleted;
+	}
+
+
+	/**
+	 * This forgets the devices read so far.  Appenders are closed on their own, and mappings stay valid until they are garbage collected.
+	 */
+	@Override
+	public void close()
+	{
+		devices.clear();
+	}
+
+
+	private DeviceHistory history( String device ) throws IOException
+	{
+		if( device == null || device.isEmpty() )
+		{
+			throw new IllegalArgumentException( "A device must have a name." );
+		}
+		try
+		{
+			return devices.computeIfAbsent( device, name ->
+			{
+				try
+				{
+					return new DeviceHistory( directory.resolve( encode( name ) ) );
+				}
+				catch( IOException e )
+				{
+					throw new UncheckedIOException( e );
+				}
+			} );
+		}
+		catch( UncheckedIOException e )
+		{
+			throw e.getCause();
+		}
+	}
+
+
+	/**
+	 * This percent-encodes every byte of the UTF-8 sysName except letters, digits, '-', '_', and a '.' that does not start the name,
+	 * so that any sysName is a safe directory name, and the encoding can be reversed.
+	 */
+	static String encode( String device )
+	{
+		StringBuilder encoded = new StringBuilder();
+		for( byte b : device.getBytes( StandardCharsets.UTF_8 ) )
+		{
+			boolean plain = b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z' || b >= '0' && b <= '9' || b == '-' || b == '_' || b == '.' && encoded.length() > 0;
+			if( plain )
+			{
+				encoded.append( ( char )b );
+			}
+			else
+			{
+				encoded.append( String.format( "%%%02X", b & 0xFF ) );
+			}
+		}
+		return encoded.toString();
+	}
+
+
+	/**
+	 * @param name a directory name made by encode().
+	 * @return the sysName it was made from.
+	 */
+	static String decode( String name )
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		for( int i = 0; i < name.length(); i++ )
+		{
+			char c = name.charAt( i );
+			if( c == '%' && i + 2 < name.length() )
+			{
+				bytes.write( Integer.parseInt( name.substring( i + 1, i + 3 ), 16 ) );
+				i += 2;
+			}
+			else
+			{
+				bytes.write( c );
+			}
+		}
+		return new String( bytes.toByteArray(), StandardCharsets.UTF_8 );
+	}
+
+
+	/**
+	 * This appends the results of one device, one poll at a time.  Only the thread that opened it may use it.
+	 */
+	final class Appender implements Closeable
+	{
+		private final DeviceHistory history;
+		private final FileChannel lockChannel;
+		private final FileLock lock;
+		private Segment segment;
+		private MappedByteBuffer header;
+		private long lastTimestamp = Long.MIN_VALUE;
+
+
+		private Appender( DeviceHistory history ) throws IOException
+		{
+			this.history = history;
+			lockChannel = FileChannel.open( history.directory.resolve( LOCK_FILE ), StandardOpenOption.CREATE, StandardOpenOption.WRITE );
+			FileLock fileLock = null;
+			try
+			{
+				fileLock = lockChannel.tryLock();
+				if( fileLock == null )
+				{
+					throw new IOException( "Another process is appending to " + history.directory );
+				}
+				Map.Entry<Long, Segment> last = history.segments.lastEntry();
+				if( last != null )
+				{
+					segment = last.getValue();
+					header = segment.mapHeader();
+					Mapping mapping = segment.mapForAppending();
+					if( segment.count > 0 )
+					{
+						lastTimestamp = mapping.timestamp( segment.count - 1 );
+					}
+				}
+			}
+			catch( IOException | RuntimeException e )
+			{
+				if( fileLock != null )
+				{
+					fileLock.release();
+				}
+				lockChannel.close();
+				throw e;
+			}
+			lock = fileLock;
+		}
+
+
+		/**
+		 * This appends one record for each result, all with the same timestamp, and then makes them visible to readers at once.
+		 *
+		 * @param timestamp the time of the poll or walk, in milliseconds since the epoch.
+		 * @param results   the results of every interface of the device.
+		 * @throws IOException              if the segment cannot be created or grown.
+		 * @throws IllegalArgumentException if the timestamp is not after the last one appended, since every segment is kept in time order,
+		 *                                  and the same walks should not be recorded twice.
+		 */
+		void append( long timestamp, List<InterfaceResult> results ) throws IOException
+		{
+			if( timestamp <= lastTimestamp )
+			{
+				throw new IllegalArgumentException( "The history of " + decode( history.directory.getFileName().toString() ) + " already holds "
+				                                    + Instant.ofEpochMilli( lastTimestamp ) + ", which is not before " + Instant.ofEpochMilli( timestamp ) );
+			}
+			if( segment == null || timestamp >= segment.windowStart + segment.windowLength )
+			{
+				startSegment( timestamp );
+			}
+			int count = segment.count;
+			Mapping mapping = segment.ensureCapacity( count, count + results.size(), timestamp );
+			for( InterfaceResult result : results )
+			{
+				mapping.write( count, timestamp, result.getIfIndex(), result.getDelta() );
+				count++;
+			}
+			header.putLong( COUNT_OFFSET, count );
+			// This volatile write publishes the records above, and any new chunk or sparse index, to every reader.
+			segment.count = count;
+			lastTimestamp = timestamp;
+		} // End of append() method.
+
+
+		/**
+		 * This creates the segment for the window holding the timestamp, and then deletes this device's expired segments.
+		 */
+		private void startSegment( long timestamp ) throws IOException
+		{
+			long windowStart = timestamp - Math.floorMod( timestamp, segmentMillis );
+			long windowEnd = windowStart + segmentMillis;
+			if( segment != null )
+			{
+				// A shorter segment length than before must not let the new window overlap the old one.
+				windowStart = Math.max( windowStart, segment.windowStart + segment.windowLength );
+				force();
+			}
+			Segment created = Segment.create( history.directory, windowStart, windowEnd - windowStart );
+			header = created.mapHeader();
+			created.mapForAppending();
+			segment = created;
+			history.segments.put( windowStart, segment );
+			history.deleteExpired( timestamp );
+		}
+
+
+		/**
+		 * This flushes the records of the current segment to disk, and then its header, so the record count never covers records that were not flushed.
+		 */
+		private void force() throws IOException
+		{
+			segment.force();
+			header.force();
+		}
+
+
+		/**
+		 * This flushes the current segment to disk, and lets another appender write to this device.
+		 */
+		@Override
+		public void close() throws IOException
+		{
+			try
+			{
+				if( segment != null )
+				{
+					force();
+				}
+			}
+			finally
+			{
+				history.appending.set( false );
+				lock.release();
+				lockChannel.close();
+			}
+		}
+	}
+
+
+	/**
+	 * The segments of one device, by window start.
+	 */
+	private final class DeviceHistory
+	{
+		private final Path directory;
+		private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+		private final AtomicBoolean appending = new AtomicBoolean();
+
+
+		private DeviceHistory( Path directory ) throws IOException
+		{
+			this.directory = Files.createDirectories( directory );
+			try( DirectoryStream<Path> stream = Files.newDirectoryStream( directory, "*" + SEGMENT_EXTENSION ) )
+			{
+				for( Path path : stream )
+				{
+					Segment segment = Segment.open( path );
+					segments.put( segment.windowStart, segment );
+				}
+			}
+		}
+
+
+		private int deleteExpired( long now )
+		{
+			if( retentionMillis == 0 )
+			{
+				return 0;
+			}
+			int deleted = 0;
+			Long newest = segments.isEmpty() ? null : segments.lastKey();
+			for( Segment segment : segments.headMap( newest == null ? Long.MIN_VALUE : newest ).values() )
+			{
+				if( segment.windowStart + segment.windowLength <= now - retentionMillis )
+				{
+					try
+					{
+						// A reader still scanning this segment keeps its mapping, which outlives the file.
+						Files.deleteIfExists( segment.path );
+						segments.remove( segment.windowStart, segment );
+						deleted++;
+					}
+					catch( IOException e )
+					{
+						errorLogger.log( Level.WARNING, "Unable to delete the expired segment {0}: {1}", new Object[]{ segment.path, e.getLocalizedMessage() } );
+					}
+				}
+			}
+			return deleted;
+		}
+	}
+
+
+	/**
+	 * One time window of one device.<br>
+	 * The records are mapped read-only on first use by a reader, or for writing when an appender opens the segment.
+	 * After that, only the appender replaces the mapping, and only to map more records or add sparse index entries.
+	 */
+	private static final class Segment
+	{
+		private final Path path;
+		private final long windowStart;
+		private final long windowLength;
+		/**
+		 * The number of records that readers may see.  It is only written by the appender, after the records.
+		 */
+		private volatile int count;
+		private final AtomicReference<Mapping> mapping = new AtomicReference<>();
+
+
+		private Segment( Path path, long windowStart, long windowLength, int count )
+		{
+			this.path = path;
+			this.windowStart = windowStart;
+			this.windowLength = windowLength;
+			this.count = count;
+		}
+
+
+		/**
+		 * @return a new, empty segment, whose header is written before it is returned.
+		 */
+		private static Segment create( Path directory, long windowStart, long windowLength ) throws IOException
+		{
+			Path path = directory.resolve( windowStart + SEGMENT_EXTENSION );
+			ByteBuffer header = ByteBuffer.allocate( HEADER_SIZE );
+			header.put( MAGIC );
+			header.putInt( VERSION_OFFSET, VERSION );
+			header.putInt( RECORD_SIZE_OFFSET, RECORD_SIZE );
+			header.putLong( WINDOW_START_OFFSET, windowStart );
+			header.putLong( WINDOW_LENGTH_OFFSET, windowLength );
+			header.putLong( COUNT_OFFSET, 0 );
+			header.rewind();
+			try( FileChannel channel = FileChannel.open( path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE ) )
+			{
+				while( header.hasRemaining() )
+				{
+					channel.write( header );
+				}
+			}
+			return new Segment( path, windowStart, windowLength, 0 );
+		}
+
+
+		/**
+		 * This only reads the header, so a device with many segments costs no mappings until its segments are scanned.
+		 */
+		private static Segment open( Path path ) throws IOException
+		{
+			ByteBuffer header = ByteBuffer.allocate( HEADER_SIZE );
+			long size;
+			try( FileChannel channel = FileChannel.open( path, StandardOpenOption.READ ) )
+			{
+				size = channel.size();
+				while( header.hasRemaining() && channel.read( header ) >= 0 )
+				{
+					// Keep reading until the header is complete.
+				}
+			}
+			byte[] magic = Arrays.copyOf( header.array(), MAGIC.length );
+			if( header.hasRemaining() || !Arrays.equals( magic, MAGIC ) || header.getInt( VERSION_OFFSET ) != VERSION || header.getInt( RECORD_SIZE_OFFSET ) != RECORD_SIZE )
+			{
+				throw new IOException( path + " is not a version " + VERSION + " history segment." );
+			}
+			long count = header.getLong( COUNT_OFFSET );
+			if( count < 0 || count > Integer.MAX_VALUE || HEADER_SIZE + count * RECORD_SIZE > size )
+			{
+				throw new IOException( path + " is corrupt." );
+			}
+			return new Segment( path, header.getLong( WINDOW_START_OFFSET ), header.getLong( WINDOW_LENGTH_OFFSET ), ( int )count );
+		}
+
+
+		/**
+		 * @return the mapping of the records, which is created (read-only) by whichever reader needs it first, unless an appender has mapped them.
+		 */
+		private Mapping mapping() throws IOException
+		{
+			Mapping current = mapping.get();
+			if( current != null )
+			{
+				return current;
+			}
+			// The count is read first, so the chunks mapped here hold every record visible to this thread.
+			Mapping created = map( FileChannel.MapMode.READ_ONLY, count );
+			// Only an empty reference is replaced, so a mapping the appender has since grown is never lost.
+			return mapping.compareAndSet( null, created ) ? created : mapping.get();
+		}
+
+
+		/**
+		 * This is only called by the appender, when it opens this segment.  The file is cut after the last published record,
+		 * which drops any records a crashed appender wrote but never counted, and the space earlier versions mapped ahead of the records.
+		 *
+		 * @return a writable mapping of the records, which replaces any read-only mapping.
+		 */
+		private Mapping mapForAppending() throws IOException
+		{
+			int records = count;
+			try( FileChannel channel = FileChannel.open( path, StandardOpenOption.WRITE ) )
+			{
+				channel.truncate( HEADER_SIZE + ( long )records * RECORD_SIZE );
+			}
+			Mapping created = map( FileChannel.MapMode.READ_WRITE, records );
+			mapping.set( created );
+			return created;
+		}
+
+
+		/**
+		 * @return a mapping of exactly the first "records" records, and their sparse index.
+		 */
+		private Mapping map( FileChannel.MapMode mode, int records ) throws IOException
+		{
+			MappedByteBuffer[] chunks = new MappedByteBuffer[( records + CHUNK_RECORDS - 1 ) / CHUNK_RECORDS];
+			try( FileChannel channel = mode == FileChannel.MapMode.READ_ONLY ? FileChannel.open( path, StandardOpenOption.READ )
+			                                                               : FileChannel.open( path, StandardOpenOption.READ, StandardOpenOption.WRITE ) )
+			{
+				for( int i = 0; i < chunks.length; i++ )
+				{
+					chunks[i] = channel.map( mode, HEADER_SIZE + i * CHUNK_SIZE, ( long )Math.min( CHUNK_RECORDS, records - i * CHUNK_RECORDS ) * RECORD_SIZE );
+				}
+			}
+			Mapping created = new Mapping( chunks, new long[Math.max( 1, ( records + SPARSE_INTERVAL - 1 ) / SPARSE_INTERVAL )] );
+			for( int i = 0; i * SPARSE_INTERVAL < records; i++ )
+			{
+				created.sparse[i] = created.timestamp( i * SPARSE_INTERVAL );
+			}
+			return created;
+		}
+
+
+		/**
+		 * This is only called by the appender, before it writes records "from" to "to" (exclusive), which all have the same timestamp.
+		 * It maps those records, which grows the file by exactly that much, and adds their sparse index entries.
+		 *
+		 * @return the mapping to write the records to.
+		 */
+		private Mapping ensureCapacity( int from, int to, long timestamp ) throws IOException
+		{
+			Mapping current = mapping.get();
+			MappedByteBuffer[] chunks = current.chunks;
+			if( to > from )
+			{
+				int lastChunk = ( to - 1 ) / CHUNK_RECORDS;
+				chunks = Arrays.copyOf( chunks, Math.max( chunks.length, lastChunk + 1 ) );
+				try( FileChannel channel = FileChannel.open( path, StandardOpenOption.READ, StandardOpenOption.WRITE ) )
+				{
+					// Readers keep the smaller mappings they already have, which still hold every record they can see.
+					for( int chunk = from / CHUNK_RECORDS; chunk <= lastChunk; chunk++ )
+					{
+						long size = ( long )Math.min( CHUNK_RECORDS, to - chunk * CHUNK_RECORDS ) * RECORD_SIZE;
+						if( chunks[chunk] == null || chunks[chunk].capacity() < size )
+						{
+							chunks[chunk] = channel.map( FileChannel.MapMode.READ_WRITE, HEADER_SIZE + chunk * CHUNK_SIZE, size );
+						}
+					}
+				}
+			}
+			long[] sparse = current.sparse;
+			for( int index = ( from + SPARSE_INTERVAL - 1 ) / SPARSE_INTERVAL * SPARSE_INTERVAL; index < to; index += SPARSE_INTERVAL )
+			{
+				int entry = index / SPARSE_INTERVAL;
+				if( entry >= sparse.length )
+				{
+					sparse = Arrays.copyOf( sparse, Math.max( sparse.length * 2, entry + 1 ) );
+				}
+				// Readers only use entries below the count, so this slot is not read until the count covers it.
+				sparse[entry] = timestamp;
+			}
+			if( chunks == current.chunks && sparse == current.sparse )
+			{
+				return current;
+			}
+			Mapping grown = new Mapping( chunks, sparse );
+			mapping.set( grown );
+			return grown;
+		}
+
+
+		/**
+		 * @return a mapping of the header, for the appender to update the count in.
+		 */
+		private MappedByteBuffer mapHeader() throws IOException
+		{
+			try( FileChannel channel = FileChannel.open( path, StandardOpenOption.READ, StandardOpenOption.WRITE ) )
+			{
+				return channel.map( FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE );
+			}
+		}
+
+
+		private void force() throws IOException
+		{
+			Mapping current = mapping.get();
+			if( current != null )
+			{
+				for( MappedByteBuffer chunk : current.chunks )
+				{
+					chunk.force();
+				}
+			}
+		}
+
+
+		private long scan( long ifIndex, long from, long to, InterfaceDelta delta, RecordVisitor visitor ) throws IOException
+		{
+			int records = count;
+			if( records == 0 )
+			{
+				return 0;
+			}
+			Mapping current = mapping();
+			// Find the last sparse entry before "from" (every record before it is earlier still), and scan from there.
+			int low = 0;
+			int high = ( records + SPARSE_INTERVAL - 1 ) / SPARSE_INTERVAL - 1;
+			int start = 0;
+			while( low <= high )
+			{
+				int middle = ( low + high ) >>> 1;
+				if( current.sparse[middle] < from )
+				{
+					start = middle * SPARSE_INTERVAL;
+					low = middle + 1;
+				}
+				else
+				{
+					high = middle - 1;
+				}
+			}
+			long visited = 0;
+			for( int i = start; i < records; i++ )
+			{
+				long timestamp = current.timestamp( i );
+				if( timestamp > to )
+				{
+					break;
+				}
+				if( timestamp >= from && ( ifIndex < 0 || current.ifIndex( i ) == ifIndex ) )
+				{
+					current.read( i, delta );
+					visitor.record( timestamp, current.ifIndex( i ), delta );
+					visited++;
+				}
+			}
+			return visited;
+		} // End of scan() method.
+	}
+
+
+	/**
+	 * The chunks and sparse index of a segment, which are replaced together when either grows.
+	 */
+	private static final class Mapping
+	{
+		private final MappedByteBuffer[] chunks;
+		private final long[] sparse;
+
+
+		private Mapping( MappedByteBuffer[] chunks, long[] sparse )
+		{
+			this.chunks = chunks;
+			this.sparse = sparse;
+		}
+
+
+		private long timestamp( int index )
+		{
+			return chunks[index / CHUNK_RECORDS].getLong( ( index % CHUNK_RECORDS ) * RECORD_SIZE + TIMESTAMP );
+		}
+
+
+		private long ifIndex( int index )
+		{
+			return chunks[index / CHUNK_RECORDS].getLong( ( index % CHUNK_RECORDS ) * RECORD_SIZE + IF_INDEX );
+		}
+
+
+		private void write( int index, long timestamp, long ifIndex, InterfaceDelta delta )
+		{
+			MappedByteBuffer chunk = chunks[index / CHUNK_RECORDS];
+			int offset = ( index % CHUNK_RECORDS ) * RECORD_SIZE;
+			chunk.putLong( offset + TIMESTAMP, timestamp );
+			chunk.putLong( offset + IF_INDEX, ifIndex );
+			chunk.putLong( offset + TICK_DELTA, delta.getTickDelta() );
+			chunk.putLong( offset + IF_SPEED, delta.getIfSpeed() );
+			chunk.putLong( offset + IN_OCTETS, delta.getInOctetDelta() );
+			chunk.putLong( offset + OUT_OCTETS, delta.getOutOctetDelta() );
+			chunk.putDouble( offset + IN_UTILIZATION, delta.getInUtilization() );
+			chunk.putDouble( offset + OUT_UTILIZATION, delta.getOutUtilization() );
+			chunk.putLong( offset + IN_DISCARDS, delta.getInDiscardDelta() );
+			chunk.putLong( offset + OUT_DISCARDS, delta.getOutDiscardDelta() );
+			chunk.putLong( offset + IN_ERRORS, delta.getInErrorDelta() );
+			chunk.putLong( offset + OUT_ERRORS, delta.getOutErrorDelta() );
+			chunk.putInt( offset + STATUS, delta.getStatus().ordinal() );
+			chunk.putInt( offset + HIGH_CAPACITY, delta.isHighCapacity() ? 1 : 0 );
+		}
+
+
+		private void read( int index, InterfaceDelta delta ) throws IOException
+		{
+			MappedByteBuffer chunk = chunks[index / CHUNK_RECORDS];
+			int offset = ( index % CHUNK_RECORDS ) * RECORD_SIZE;
+			int status = chunk.getInt( offset + STATUS );
+			if( status < 0 || status >= STATUSES.length )
+			{
+				throw new IOException( "A history record holds an unknown status: " + status );
+			}
+			delta.reset( STATUSES[status] );
+			delta.setTickDelta( chunk.getLong( offset + TICK_DELTA ) );
+			delta.setIfSpeed( chunk.getLong( offset + IF_SPEED ) );
+			delta.setHighCapacity( chunk.getInt( offset + HIGH_CAPACITY ) != 0 );
+			delta.setInOctetDelta( chunk.getLong( offset + IN_OCTETS ) );
+			delta.setOutOctetDelta( chunk.getLong( offset + OUT_OCTETS ) );
+			delta.setInUtilization( chunk.getDouble( offset + IN_UTILIZATION ) );
+			delta.setOutUtilization( chunk.getDouble( offset + OUT_UTILIZATION ) );
+			delta.setInDiscardDelta( chunk.getLong( offset + IN_DISCARDS ) );
+			delta.setOutDiscardDelta( chunk.getLong( offset + OUT_DISCARDS ) );
+			delta.setInErrorDelta( chunk.getLong( offset + IN_ERRORS ) );
+			delta.setOutErrorDelta( chunk.getLong( offset + OUT_ERRORS ) );
+		}
+	}
+}
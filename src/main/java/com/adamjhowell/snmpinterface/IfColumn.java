@@ -0,0 +1,33 @@
+package com.adamjhowell.snmpinterface;
+
+
+/**
+ * The numeric ifTable and ifXTable columns that are kept for each interface in a WalkIndex.
+ */
+enum IfColumn
+{
+	IF_SPEED( SnmpOids.IF_SPEED_OID ),
+	IF_IN_OCTETS( SnmpOids.IF_IN_OCTETS_OID ),
+	IF_IN_DISCARDS( SnmpOids.IF_IN_DISCARDS_OID ),
+	IF_IN_ERRORS( SnmpOids.IF_IN_ERRORS_OID ),
+	IF_OUT_OCTETS( SnmpOids.IF_OUT_OCTETS_OID ),
+	IF_OUT_DISCARDS( SnmpOids.IF_OUT_DISCARDS_OID ),
+	IF_OUT_ERRORS( SnmpOids.IF_OUT_ERRORS_OID ),
+	IF_HC_IN_OCTETS( SnmpOids.IF_HC_IN_OCTETS_OID ),
+	IF_HC_OUT_OCTETS( SnmpOids.IF_HC_OUT_OCTETS_OID ),
+	IF_HIGH_SPEED( SnmpOids.IF_HIGH_SPEED_OID );
+
+	private final String oid;
+
+
+	IfColumn( String oid )
+	{
+		this.oid = oid;
+	}
+
+
+	String getOid()
+	{
+		return oid;
+	}
+}
@@ -0,0 +1,119 @@
+package com.adamjhowell.snmpinterface;
+
+
+import javafx.concurrent.ScheduledService;
+import javafx.concurrent.Task;
+import javafx.util.Duration;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+
+
+/**
+ * This polls one live SNMP v2c agent on an interval, off the JavaFX Application Thread.<br>
+ * Each successful poll is a WalkIndex, the same as a walk read from a file, so the GUI can calculate from consecutive polls exactly as it does from two walks.
+ * <p>
+ * An agent is written in the first walk field as snmp://[community@]host[:port][?interval=seconds].<br>
+ * The community defaults to "public", the port to 161, and the interval to 10 seconds.
+ */
+class LivePollService extends ScheduledService<WalkIndex>
+{
+	static final String SCHEME = "snmp";
+	private static final int DEFAULT_INTERVAL_SECONDS = 10;
+	/**
+	 * The number of consecutive polls that may fail before polling stops.
+	 */
+	private static final int MAX_FAILURES = 3;
+
+	private final InetSocketAddress agent;
+	private final String community;
+
+
+	/**
+	 * @param agent           the agent to poll.
+	 * @param community       the SNMP v2c community string.
+	 * @param intervalSeconds the time between polls.
+	 */
+	LivePollService( InetSocketAddress agent, String community, int intervalSeconds )
+	{
+		this.agent = agent;
+		this.community = community;
+		setPeriod( Duration.seconds( intervalSeconds ) );
+		setRestartOnFailure( true );
+		setMaximumFailureCount( MAX_FAILURES );
+	}
+
+
+	/**
+	 * @param text the text of a walk field.
+	 * @return true if the text names a live agent rather than a walk file.
+	 */
+	static boolean isAgent( String text )
+	{
+		return text.startsWith( SCHEME + "://" );
+	}
+
+
+	/**
+	 * @param text an agent, as snmp://[community@]host[:port][?interval=seconds].
+	 * @return a service that will poll that agent, once it is started.
+	 * @throws IllegalArgumentException if the text is not a valid agent.
+	 */
+	static LivePollService fromUri( String text )
+	{
+		URI uri;
+		try
+		{
+			uri = new URI( text );
+		}
+		catch( URISyntaxException e )
+		{
+			throw new IllegalArgumentException( e.getLocalizedMessage(), e );
+		}
+		if( !SCHEME.equals( uri.getScheme() ) || uri.getHost() == null )
+		{
+			throw new IllegalArgumentException( "Expected snmp://[community@]host[:port][?interval=seconds]" );
+		}
+		String community = uri.getUserInfo() == null ? "public" : uri.getUserInfo();
+		int port = uri.getPort() < 0 ? SnmpPoller.DEFAULT_PORT : uri.getPort();
+		int intervalSeconds = DEFAULT_INTERVAL_SECONDS;
+		if( uri.getQuery() != null && uri.getQuery().matches( "interval=[1-9]\\d*" ) )
+		{
+			intervalSeconds = Integer.parseInt( uri.getQuery().substring( "interval=".length() ) );
+		}
+		return new LivePollService( new InetSocketAddress( uri.getHost(), port ), community, intervalSeconds );
+	} // End of fromUri() method.
+
+
+	@Override
+	protected Task<WalkIndex> createTask()
+	{
+		return new Task<WalkIndex>()
+		{
+			@Override
+			protected WalkIndex call() throws IOException
+			{
+				try( SnmpPoller poller = new SnmpPoller( community ) )
+				{
+					WalkIndex walk = poller.poll( agent );
+					if( walk == null )
+					{
+						throw new IOException( "No response from " + agent );
+					}
+					return walk;
+				}
+			}
+		};
+	}
+
+
+	/**
+	 * @return the agent being polled.
+	 */
+	InetSocketAddress getAgent()
+	{
+		return agent;
+	}
+}
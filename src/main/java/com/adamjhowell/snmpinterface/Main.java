@@ -20,7 +20,7 @@ import javafx.stage.Stage;
  * If named identifiers are desired, please contact me, and we can discuss formatting.<br>
  * This means each line will begin with a dotted-decimal identifier.  Some of those identifiers are listed below.<br>
  * The lines will not contain tabs between tokens, but spaces.  Tabs have not been tested, but may work.<br>
- * Counters are currently limited to 32 bits in size.  64-bit counters may be implemented later.
+ * The 64-bit ifXTable counters (and ifHighSpeed) are used when both walks have them, and the 32-bit ifTable counters are used otherwise.
  * <p>
  * The generic formula for utilization is: ( delta-octets * 8 * 10 ) / ( delta-seconds * ifSpeed )<br>
  * That formula will work for inbound, outbound, or bidirectional.  You only need to select the appropriate delta-octets.
@@ -83,5 +83,8 @@ public class Main extends Application
 		primaryStage.getIcons().add( new Image( "images/nic.png" ) );
 
 		primaryStage.show();
+
+		// Let jconsole, or any JMX client, see where the time goes.
+		Metrics.registerMBeans();
 	} // End of start() method.
 }
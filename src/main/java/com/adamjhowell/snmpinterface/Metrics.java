@@ -0,0 +1,419 @@
+package com.adamjhowell.snmpinterface;
+
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * This records where the time goes, for every part of this program: how long each processing stage takes, how much it allocates,
+ * and how many lines, bytes, and errors the walks held.
+ * <p>
+ * Stages are timed once per walk, per pair, or per export, and counters are added to once per walk, so nothing is recorded per line.<br>
+ * Everything is exposed as JMX MXBeans (under com.adamjhowell.snmpinterface), and can be written in the Prometheus text format,
+ * which WalkServer serves at GET /metrics, and BatchMain writes with --metrics.
+ */
+final class Metrics
+{
+	private static final Logger errorLogger = Logger.getLogger( Metrics.class.getName() );
+	private static final String DOMAIN = "com.adamjhowell.snmpinterface";
+	private static final String PREFIX = "snmpinterface_";
+	private static final double NANOS_PER_MILLI = 1e6;
+	private static final double NANOS_PER_SECOND = 1e9;
+	private static final com.sun.management.ThreadMXBean ALLOCATION_BEAN = allocationBean();
+
+	private static final LongAdder walkLines = new LongAdder();
+	private static final LongAdder walkBytes = new LongAdder();
+	private static final LongAdder filteredLines = new LongAdder();
+	private static final LongAdder parseErrors = new LongAdder();
+	private static final LongAdder counterWraps = new LongAdder();
+	private static final LongAdder incompleteInterfaces = new LongAdder();
+	private static boolean registered;
+
+
+	/**
+	 * The stages that a pair of walks goes through, from the files to the output.
+	 */
+	enum Stage implements StageMXBean
+	{
+		/**
+		 * Reading a walk into a WalkIndex, including decompression, and loading snapshots.  The items are walks.
+		 */
+		READ,
+		/**
+		 * Finding the interfaces that two walks have in common.  The items are pairs.
+		 */
+		DISCOVER,
+		/**
+		 * Building the interface list, or the formatted statistics, for display.  The items are interfaces.
+		 */
+		BUILD,
+		/**
+		 * Calculating the delta of every interface in a pair, or of one clicked interface.  The items are interfaces.
+		 */
+		CALCULATE,
+		/**
+		 * Writing results out, in any format.  The items are interfaces.
+		 */
+		EXPORT;
+
+		private final LongAdder count = new LongAdder();
+		private final LongAdder items = new LongAdder();
+		private final LongAdder nanos = new LongAdder();
+		private final AtomicLong maxNanos = new AtomicLong();
+		private final LongAdder allocatedBytes = new LongAdder();
+
+
+		/**
+		 * @return a timer that records this stage when it is closed, on the thread that started it.
+		 */
+		Timer time()
+		{
+			return new Timer( this );
+		}
+
+
+		private void record( long elapsedNanos, long allocated, long itemCount )
+		{
+			count.increment();
+			items.add( itemCount );
+			nanos.add( elapsedNanos );
+			maxNanos.accumulateAndGet( elapsedNanos, Math::max );
+			allocatedBytes.add( allocated );
+		}
+
+
+		/**
+		 * @return the lower case name used for the stage in JMX and Prometheus.
+		 */
+		String label()
+		{
+			return name().toLowerCase( Locale.ROOT );
+		}
+
+
+		@Override
+		public long getCount()
+		{
+			return count.sum();
+		}
+
+
+		@Override
+		public long getItems()
+		{
+			return items.sum();
+		}
+
+
+		@Override
+		public double getTotalMillis()
+		{
+			return nanos.sum() / NANOS_PER_MILLI;
+		}
+
+
+		@Override
+		public double getMaxMillis()
+		{
+			return maxNanos.get() / NANOS_PER_MILLI;
+		}
+
+
+		@Override
+		public long getAllocatedBytes()
+		{
+			return ALLOCATION_BEAN == null ? -1 : allocatedBytes.sum();
+		}
+	}
+
+
+	/**
+	 * One run of a stage.  Use it in a try-with-resources block, or close it in a finally block when the body has no use for it, and set the item count before it closes.
+	 */
+	static final class Timer implements AutoCloseable
+	{
+		private final Stage stage;
+		private final long startNanos;
+		private final long startBytes;
+		private long items = 1;
+
+
+		private Timer( Stage stage )
+		{
+			this.stage = stage;
+			startBytes = allocatedBytes();
+			startNanos = System.nanoTime();
+		}
+
+
+		/**
+		 * @param items the number of items this run handled, which defaults to one.
+		 */
+		void setItems( long items )
+		{
+			this.items = items;
+		}
+
+
+		@Override
+		public void close()
+		{
+			long elapsed = System.nanoTime() - startNanos;
+			stage.record( elapsed, allocatedBytes() - startBytes, items );
+		}
+	}
+
+
+	private Metrics()
+	{
+		// This class only holds static methods.
+	}
+
+
+	/**
+	 * This is called once per walk, by WalkReader, after the walk has been parsed.
+	 *
+	 * @param lines    the number of lines in the walk.
+	 * @param bytes    the number of bytes in the walk.
+	 * @param filtered the number of lines that held no value this program uses.
+	 * @param errors   the number of lines that could not be parsed.
+	 */
+	static void walkParsed( long lines, long bytes, long filtered, long errors )
+	{
+		walkLines.add( lines );
+		walkBytes.add( bytes );
+		filteredLines.add( filtered );
+		parseErrors.add( errors );
+	}
+
+
+	static void counterWrapped()
+	{
+		counterWraps.increment();
+	}
+
+
+	/**
+	 * @param count the number of interfaces whose delta was not VALID.
+	 */
+	static void incompleteInterfaces( long count )
+	{
+		incompleteInterfaces.add( count );
+	}
+
+
+	/**
+	 * This registers the MXBeans with the platform MBean server, so that they can be seen with jconsole or any JMX client.<br>
+	 * It may be called more than once, and a failure is only logged, since the metrics are still recorded.
+	 */
+	static synchronized void registerMBeans()
+	{
+		if( registered )
+		{
+			return;
+		}
+		registered = true;
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try
+		{
+			for( Stage stage : Stage.values() )
+			{
+				server.registerMBean( stage, new ObjectName( DOMAIN + ":type=Stage,name=" + stage.label() ) );
+			}
+			server.registerMBean( new MetricsBean(), new ObjectName( DOMAIN + ":type=Metrics" ) );
+		}
+		catch( JMException e )
+		{
+			errorLogger.log( Level.WARNING, "Unable to register the metrics with JMX: {0}", e.getLocalizedMessage() );
+		}
+	}
+
+
+	/**
+	 * This writes every stage and counter in the Prometheus text exposition format (version 0.0.4).
+	 *
+	 * @param out the writer to write to.
+	 * @throws IOException if the writer fails.
+	 */
+	static void writePrometheus( Writer out ) throws IOException
+	{
+		writeHeader( out, "stage_runs_total", "counter", "The number of times each stage has run." );
+		for( Stage stage : Stage.values() )
+		{
+			writeSample( out, "stage_runs_total", stage, stage.getCount() );
+		}
+		writeHeader( out, "stage_items_total", "counter", "The number of walks, pairs, or interfaces each stage has handled." );
+		for( Stage stage : Stage.values() )
+		{
+			writeSample( out, "stage_items_total", stage, stage.getItems() );
+		}
+		writeHeader( out, "stage_seconds_total", "counter", "The total time spent in each stage." );
+		for( Stage stage : Stage.values() )
+		{
+			writeSample( out, "stage_seconds_total", stage, stage.nanos.sum() / NANOS_PER_SECOND );
+		}
+		writeHeader( out, "stage_max_seconds", "gauge", "The longest single run of each stage." );
+		for( Stage stage : Stage.values() )
+		{
+			writeSample( out, "stage_max_seconds", stage, stage.maxNanos.get() / NANOS_PER_SECOND );
+		}
+		if( ALLOCATION_BEAN != null )
+		{
+			writeHeader( out, "stage_allocated_bytes_total", "counter", "The bytes allocated by the thread running each stage." );
+			for( Stage stage : Stage.values() )
+			{
+				writeSample( out, "stage_allocated_bytes_total", stage, stage.getAllocatedBytes() );
+			}
+		}
+		writeCounter( out, "walk_lines_total", "The number of walk lines parsed.", walkLines.sum() );
+		writeCounter( out, "walk_bytes_total", "The number of walk bytes parsed.", walkBytes.sum() );
+		writeCounter( out, "walk_filtered_lines_total", "The number of walk lines that held no value this program uses.", filteredLines.sum() );
+		writeCounter( out, "walk_parse_errors_total", "The number of walk lines that could not be parsed.", parseErrors.sum() );
+		writeCounter( out, "counter_wraps_total", "The number of counters that wrapped between two walks.", counterWraps.sum() );
+		writeCounter( out, "incomplete_interfaces_total", "The number of interfaces whose delta could not be fully calculated.", incompleteInterfaces.sum() );
+		WalkCache cache = WalkCache.shared();
+		writeCounter( out, "walk_cache_hits_total", "The number of walks found in the WalkCache.", cache.getWalkHits() );
+		writeCounter( out, "walk_cache_misses_total", "The number of walks read because they were not in the WalkCache.", cache.getWalkMisses() );
+		writeCounter( out, "interface_cache_hits_total", "The number of interfaces found in the WalkCache.", cache.getResultHits() );
+		writeCounter( out, "interface_cache_misses_total", "The number of interfaces calculated because they were not in the WalkCache.", cache.getResultMisses() );
+		writeHeader( out, "walk_cache_bytes", "gauge", "The estimated heap used by the walks in the WalkCache." );
+		out.write( PREFIX + "walk_cache_bytes " + cache.getWalkBytes() + "\n" );
+	} // End of writePrometheus() method.
+
+
+	private static void writeHeader( Writer out, String name, String type, String help ) throws IOException
+	{
+		out.write( "# HELP " + PREFIX + name + " " + help + "\n" );
+		out.write( "# TYPE " + PREFIX + name + " " + type + "\n" );
+	}
+
+
+	private static void writeSample( Writer out, String name, Stage stage, double value ) throws IOException
+	{
+		out.write( PREFIX + name + "{stage=\"" + stage.label() + "\"} " + value + "\n" );
+	}
+
+
+	private static void writeSample( Writer out, String name, Stage stage, long value ) throws IOException
+	{
+		out.write( PREFIX + name + "{stage=\"" + stage.label() + "\"} " + value + "\n" );
+	}
+
+
+	private static void writeCounter( Writer out, String name, String help, long value ) throws IOException
+	{
+		writeHeader( out, name, "counter", help );
+		out.write( PREFIX + name + " " + value + "\n" );
+	}
+
+
+	/**
+	 * @return the bytes allocated so far by the current thread, or 0 if the JVM cannot measure them.
+	 */
+	private static long allocatedBytes()
+	{
+		return ALLOCATION_BEAN == null ? 0 : ALLOCATION_BEAN.getThreadAllocatedBytes( Thread.currentThread().getId() );
+	}
+
+
+	/**
+	 * HotSpot (and OpenJ9) can report the bytes each thread has allocated.  Other JVMs report nothing, and the allocation metrics are left out.
+	 */
+	private static com.sun.management.ThreadMXBean allocationBean()
+	{
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if( bean instanceof com.sun.management.ThreadMXBean )
+		{
+			com.sun.management.ThreadMXBean allocationBean = ( com.sun.management.ThreadMXBean )bean;
+			if( allocationBean.isThreadAllocatedMemorySupported() && allocationBean.isThreadAllocatedMemoryEnabled() )
+			{
+				return allocationBean;
+			}
+		}
+		return null;
+	}
+
+
+	private static final class MetricsBean implements MetricsMXBean
+	{
+		@Override
+		public long getWalkLines()
+		{
+			return walkLines.sum();
+		}
+
+
+		@Override
+		public long getWalkBytes()
+		{
+			return walkBytes.sum();
+		}
+
+
+		@Override
+		public long getFilteredLines()
+		{
+			return filteredLines.sum();
+		}
+
+
+		@Override
+		public long getParseErrors()
+		{
+			return parseErrors.sum();
+		}
+
+
+		@Override
+		public long getCounterWraps()
+		{
+			return counterWraps.sum();
+		}
+
+
+		@Override
+		public long getIncompleteInterfaces()
+		{
+			return incompleteInterfaces.sum();
+		}
+
+
+		@Override
+		public long getWalkCacheHits()
+		{
+			return WalkCache.shared().getWalkHits();
+		}
+
+
+		@Override
+		public long getWalkCacheMisses()
+		{
+			return WalkCache.shared().getWalkMisses();
+		}
+
+
+		@Override
+		public long getInterfaceCacheHits()
+		{
+			return WalkCache.shared().getResultHits();
+		}
+
+
+		@Override
+		public long getInterfaceCacheMisses()
+		{
+			return WalkCache.shared().getResultMisses();
+		}
+	}
+}
@@ -0,0 +1,37 @@
+package com.adamjhowell.snmpinterface;
+
+
+/**
+ * The JMX view of the counters in Metrics, and of the shared WalkCache, registered as com.adamjhowell.snmpinterface:type=Metrics.
+ */
+public interface MetricsMXBean
+{
+	long getWalkLines();
+
+
+	long getWalkBytes();
+
+
+	long getFilteredLines();
+
+
+	long getParseErrors();
+
+
+	long getCounterWraps();
+
+
+	long getIncompleteInterfaces();
+
+
+	long getWalkCacheHits();
+
+
+	long getWalkCacheMisses();
+
+
+	long getInterfaceCacheHits();
+
+
+	long getInterfaceCacheMisses();
+}
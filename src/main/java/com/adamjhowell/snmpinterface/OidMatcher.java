@@ -0,0 +1,164 @@
+package com.adamjhowell.snmpinterface;
+
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+
+/**
+ * This classifies the numeric OID at the start of a walk line, in a single left-to-right pass over its bytes, without allocating.<br>
+ * The OIDs of interest are compiled into a byte-level trie, whose only symbols are the ten digits and the dot,
+ * so the cost of a match depends on the length of the OID, and not on how many OIDs have been added.
+ * <p>
+ * An OID that ends with a dot is a prefix (e.g. a table column), and matches any OID that starts with it.<br>
+ * Any other OID is exact (e.g. a scalar instance), and only matches when it is followed by something other than a digit or a dot.<br>
+ * When several added OIDs match, the longest wins.
+ */
+final class OidMatcher
+{
+	private static final int SYMBOLS = 11;
+	private static final int DOT = 10;
+	private static final int INITIAL_NODES = 64;
+	private static final int NONE = -1;
+
+	/**
+	 * The child of each node for each symbol, at node * SYMBOLS + symbol.  Zero means no child, since the root (node zero) is never a child.
+	 */
+	private int[] children = new int[INITIAL_NODES * SYMBOLS];
+	private int[] prefixIds = filled( INITIAL_NODES );
+	private int[] exactIds = filled( INITIAL_NODES );
+	private int nodeCount = 1;
+
+
+	/**
+	 * @param oid a numeric OID.  It is a prefix if it ends with a dot, and exact otherwise.
+	 * @param id  the non-negative number that match() returns for this OID.
+	 * @throws IllegalArgumentException if the OID holds anything but digits and dots, or has already been added.
+	 */
+	void add( String oid, int id )
+	{
+		if( id < 0 || oid.isEmpty() )
+		{
+			throw new IllegalArgumentException( "Invalid OID " + oid + " or id " + id );
+		}
+		int node = 0;
+		for( int i = 0; i < oid.length(); i++ )
+		{
+			int symbol = symbol( oid.charAt( i ) );
+			if( symbol < 0 )
+			{
+				throw new IllegalArgumentException( "An OID may only hold digits and dots: " + oid );
+			}
+			int child = children[node * SYMBOLS + symbol];
+			if( child == 0 )
+			{
+				child = addNode();
+				children[node * SYMBOLS + symbol] = child;
+			}
+			node = child;
+		}
+		int[] ids = oid.charAt( oid.length() - 1 ) == '.' ? prefixIds : exactIds;
+		if( ids[node] != NONE )
+		{
+			throw new IllegalArgumentException( "The OID " + oid + " has already been added." );
+		}
+		ids[node] = id;
+	}
+
+
+	/**
+	 * @param buffer the buffer holding the line.
+	 * @param start  the position of the first byte of the OID.
+	 * @param end    the end of the line.
+	 * @return the id and end of the longest matching OID, packed into a long (see id() and end()), or -1 if no OID matches.
+	 */
+	long match( ByteBuffer buffer, int start, int end )
+	{
+		long best = NONE;
+		int node = 0;
+		int i = start;
+		while( i < end )
+		{
+			int symbol = symbol( buffer.get( i ) );
+			if( symbol < 0 )
+			{
+				break;
+			}
+			node = children[node * SYMBOLS + symbol];
+			if( node == 0 )
+			{
+				return best;
+			}
+			i++;
+			if( prefixIds[node] != NONE )
+			{
+				best = pack( prefixIds[node], i );
+			}
+		}
+		// The whole OID was consumed, so an exact OID ending here matches.
+		if( exactIds[node] != NONE )
+		{
+			best = pack( exactIds[node], i );
+		}
+		return best;
+	} // End of match() method.
+
+
+	/**
+	 * @param match a match from match().
+	 * @return the id of the matching OID.
+	 */
+	static int id( long match )
+	{
+		return ( int )( match >>> 32 );
+	}
+
+
+	/**
+	 * @param match a match from match().
+	 * @return the position following the matching OID, where the instance (for a prefix) or the rest of the line (for an exact OID) starts.
+	 */
+	static int end( long match )
+	{
+		return ( int )match;
+	}
+
+
+	private static long pack( int id, int end )
+	{
+		return ( long )id << 32 | end & 0xFFFFFFFFL;
+	}
+
+
+	private static int symbol( int b )
+	{
+		if( b >= '0' && b <= '9' )
+		{
+			return b - '0';
+		}
+		return b == '.' ? DOT : NONE;
+	}
+
+
+	private int addNode()
+	{
+		if( nodeCount == prefixIds.length )
+		{
+			int capacity = nodeCount * 2;
+			children = Arrays.copyOf( children, capacity * SYMBOLS );
+			prefixIds = Arrays.copyOf( prefixIds, capacity );
+			exactIds = Arrays.copyOf( exactIds, capacity );
+			Arrays.fill( prefixIds, nodeCount, capacity, NONE );
+			Arrays.fill( exactIds, nodeCount, capacity, NONE );
+		}
+		return nodeCount++;
+	}
+
+
+	private static int[] filled( int length )
+	{
+		int[] array = new int[length];
+		Arrays.fill( array, NONE );
+		return array;
+	}
+}
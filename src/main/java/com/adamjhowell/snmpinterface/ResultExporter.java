@@ -0,0 +1,277 @@
+package com.adamjhowell.snmpinterface;
+
+
+import com.adamjhowell.snmpinterface.model.DeviceResult;
+import com.adamjhowell.snmpinterface.model.InterfaceDelta;
+import com.adamjhowell.snmpinterface.model.InterfaceResult;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+
+/**
+ * This writes the statistics of every interface as numbers, one interface at a time, so that an export takes constant memory however many interfaces there are.<br>
+ * Unlike InterfaceStats, nothing is formatted for display: counters are integers, utilization is a percentage with full precision,
+ * and the status says which fields are meaningful (see InterfaceDelta).
+ * <p>
+ * The JSON format is an array of devices, each holding an array of interfaces, written with a Gson JsonWriter.<br>
+ * The CSV format is one row per interface, with the device on every row.
+ */
+abstract class ResultExporter implements Closeable
+{
+	private static final String[] FIELDS = { "ifIndex", "ifDescr", "status", "tickDelta", "ifSpeed", "highCapacity",
+	                                         "inOctetDelta", "outOctetDelta", "inUtilization", "outUtilization", "totalUtilization",
+	                                         "inDiscardDelta", "outDiscardDelta", "inErrorDelta", "outErrorDelta" };
+
+
+	/**
+	 * @param out the writer to export to, which should be buffered, and is closed with this exporter.
+	 * @return an exporter that writes JSON.
+	 */
+	static ResultExporter json( Writer out ) throws IOException
+	{
+		return new JsonExporter( out );
+	}
+
+
+	/**
+	 * @param out the writer to export to, which should be buffered, and is closed with this exporter.
+	 * @return an exporter that writes CSV, starting with a header row.
+	 */
+	static ResultExporter csv( Writer out ) throws IOException
+	{
+		return new CsvExporter( out );
+	}
+
+
+	/**
+	 * This calculates and writes every interface found in both walks, reusing one InterfaceDelta, so no per-interface result is kept.
+	 *
+	 * @param walk1      the index of one walk.
+	 * @param walk2      the index of the other walk of the same device.
+	 * @param firstWalk  the name of the first walk, for the device.
+	 * @param secondWalk the name of the second walk, for the device.
+	 * @return false if the walks are not from the same machine, in which case only the device is written.
+	 */
+	boolean exportPair( WalkIndex walk1, WalkIndex walk2, String firstWalk, String secondWalk ) throws IOException
+	{
+		boolean compatible;
+		Metrics.Timer discover = Metrics.Stage.DISCOVER.time();
+		try
+		{
+			compatible = walk1.hasSameInterfaces( walk2 );
+		}
+		finally
+		{
+			discover.close();
+		}
+		startDevice( walk1.getSysName(), walk1.getSysDescr(), firstWalk, secondWalk, compatible ? null : "Walk files are not compatible!" );
+		if( compatible )
+		{
+			// Each interface is calculated as it is written, so the calculation is part of the export stage.
+			try( Metrics.Timer timer = Metrics.Stage.EXPORT.time() )
+			{
+				InterfaceDelta delta = new InterfaceDelta();
+				int count = 0;
+				for( int slot = 0; slot < walk1.size(); slot++ )
+				{
+					String ifDescr = walk1.getIfDescr( slot );
+					if( ifDescr != null )
+					{
+						long ifIndex = walk1.getIfIndex( slot );
+						writeInterface( ifIndex, ifDescr, UtilizationCalculator.calculateInOrder( walk1, walk2, ifIndex, delta ) );
+						count++;
+					}
+				}
+				timer.setItems( count );
+			}
+		}
+		endDevice();
+		return compatible;
+	} // End of exportPair() method.
+
+
+	/**
+	 * @param devices the results of a fleet, or of a live poll.
+	 */
+	void exportDevices( List<DeviceResult> devices ) throws IOException
+	{
+		try( Metrics.Timer timer = Metrics.Stage.EXPORT.time() )
+		{
+			int count = 0;
+			for( DeviceResult device : devices )
+			{
+				startDevice( device.getSysName(), device.getSysDescr(), device.getFirstWalk(), device.getSecondWalk(), device.getError() );
+				if( device.getInterfaces() != null )
+				{
+					for( InterfaceResult result : device.getInterfaces() )
+					{
+						writeInterface( result.getIfIndex(), result.getIfDescr(), result.getDelta() );
+						count++;
+					}
+				}
+				endDevice();
+			}
+			timer.setItems( count );
+		}
+	}
+
+
+	abstract void startDevice( String sysName, String sysDescr, String firstWalk, String secondWalk, String error ) throws IOException;
+
+
+	abstract void writeInterface( long ifIndex, String ifDescr, InterfaceDelta delta ) throws IOException;
+
+
+	abstract void endDevice() throws IOException;
+
+
+	private static final class JsonExporter extends ResultExporter
+	{
+		private final JsonWriter out;
+
+
+		private JsonExporter( Writer writer ) throws IOException
+		{
+			out = new JsonWriter( writer );
+			out.beginArray();
+		}
+
+
+		@Override
+		void startDevice( String sysName, String sysDescr, String firstWalk, String secondWalk, String error ) throws IOException
+		{
+			out.beginObject();
+			out.name( "sysName" ).value( sysName );
+			out.name( "sysDescr" ).value( sysDescr );
+			out.name( "firstWalk" ).value( firstWalk );
+			out.name( "secondWalk" ).value( secondWalk );
+			if( error != null )
+			{
+				out.name( "error" ).value( error );
+			}
+			out.name( "interfaces" ).beginArray();
+		}
+
+
+		@Override
+		void writeInterface( long ifIndex, String ifDescr, InterfaceDelta delta ) throws IOException
+		{
+			out.beginObject();
+			out.name( FIELDS[0] ).value( ifIndex );
+			out.name( FIELDS[1] ).value( ifDescr );
+			out.name( FIELDS[2] ).value( delta.getStatus().name() );
+			out.name( FIELDS[3] ).value( delta.getTickDelta() );
+			out.name( FIELDS[4] ).value( delta.getIfSpeed() );
+			out.name( FIELDS[5] ).value( delta.isHighCapacity() );
+			out.name( FIELDS[6] ).value( delta.getInOctetDelta() );
+			out.name( FIELDS[7] ).value( delta.getOutOctetDelta() );
+			out.name( FIELDS[8] ).value( delta.getInUtilization() );
+			out.name( FIELDS[9] ).value( delta.getOutUtilization() );
+			out.name( FIELDS[10] ).value( delta.getTotalUtilization() );
+			out.name( FIELDS[11] ).value( delta.getInDiscardDelta() );
+			out.name( FIELDS[12] ).value( delta.getOutDiscardDelta() );
+			out.name( FIELDS[13] ).value( delta.getInErrorDelta() );
+			out.name( FIELDS[14] ).value( delta.getOutErrorDelta() );
+			out.endObject();
+		}
+
+
+		@Override
+		void endDevice() throws IOException
+		{
+			out.endArray();
+			out.endObject();
+		}
+
+
+		@Override
+		public void close() throws IOException
+		{
+			out.endArray();
+			out.close();
+		}
+	}
+
+
+	private static final class CsvExporter extends ResultExporter
+	{
+		private final Writer out;
+		private String devicePrefix;
+
+
+		private CsvExporter( Writer out ) throws IOException
+		{
+			this.out = out;
+			out.write( "sysName" );
+			for( String field : FIELDS )
+			{
+				out.write( ',' );
+				out.write( field );
+			}
+			out.write( System.lineSeparator() );
+		}
+
+
+		@Override
+		void startDevice( String sysName, String sysDescr, String firstWalk, String secondWalk, String error )
+		{
+			devicePrefix = BatchMain.csvField( sysName == null ? "" : sysName ) + ",";
+		}
+
+
+		/**
+		 * Utilization is written with Double.toString(), which reads back as the same double and never uses locale grouping, unlike the formatted statistics.
+		 */
+		@Override
+		void writeInterface( long ifIndex, String ifDescr, InterfaceDelta delta ) throws IOException
+		{
+			out.write( devicePrefix );
+			out.write( Long.toString( ifIndex ) );
+			out.write( ',' );
+			out.write( BatchMain.csvField( ifDescr ) );
+			out.write( ',' );
+			out.write( delta.getStatus().name() );
+			writeNumber( delta.getTickDelta() );
+			writeNumber( delta.getIfSpeed() );
+			out.write( delta.isHighCapacity() ? ",true" : ",false" );
+			writeNumber( delta.getInOctetDelta() );
+			writeNumber( delta.getOutOctetDelta() );
+			out.write( ',' );
+			out.write( Double.toString( delta.getInUtilization() ) );
+			out.write( ',' );
+			out.write( Double.toString( delta.getOutUtilization() ) );
+			out.write( ',' );
+			out.write( Double.toString( delta.getTotalUtilization() ) );
+			writeNumber( delta.getInDiscardDelta() );
+			writeNumber( delta.getOutDiscardDelta() );
+			writeNumber( delta.getInErrorDelta() );
+			writeNumber( delta.getOutErrorDelta() );
+			out.write( System.lineSeparator() );
+		}
+
+
+		private void writeNumber( long value ) throws IOException
+		{
+			out.write( ',' );
+			out.write( Long.toString( value ) );
+		}
+
+
+		@Override
+		void endDevice()
+		{
+			// Every row carries its device, so there is nothing to close.
+		}
+
+
+		@Override
+		public void close() throws IOException
+		{
+			out.close();
+		}
+	}
+}
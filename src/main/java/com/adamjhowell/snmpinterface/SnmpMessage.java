@@ -0,0 +1,535 @@
+package com.adamjhowell.snmpinterface;
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * This is one SNMPv2c message, with just enough BER (Basic Encoding Rules) encoding and decoding for GetBulkRequest and Response PDUs.<br>
+ * OIDs are held as dotted Strings with a leading dot, the same as SnmpOids, so a varbind can be classified with startsWith().
+ * <p>
+ * A GetBulkRequest uses the errorStatus and errorIndex fields for non-repeaters and max-repetitions, as RFC 3416 does.
+ */
+final class SnmpMessage
+{
+	static final int VERSION_2C = 1;
+	static final int GET_REQUEST = 0xA0;
+	static final int GET_NEXT_REQUEST = 0xA1;
+	static final int RESPONSE = 0xA2;
+	static final int GET_BULK_REQUEST = 0xA5;
+	static final int INTEGER = 0x02;
+	static final int OCTET_STRING = 0x04;
+	static final int NULL = 0x05;
+	static final int OBJECT_IDENTIFIER = 0x06;
+	static final int SEQUENCE = 0x30;
+	static final int IP_ADDRESS = 0x40;
+	static final int COUNTER32 = 0x41;
+	static final int GAUGE32 = 0x42;
+	static final int TIME_TICKS = 0x43;
+	static final int OPAQUE = 0x44;
+	static final int COUNTER64 = 0x46;
+	static final int NO_SUCH_OBJECT = 0x80;
+	static final int NO_SUCH_INSTANCE = 0x81;
+	static final int END_OF_MIB_VIEW = 0x82;
+	static final int ERROR_GEN_ERR = 5;
+
+	private final int pduType;
+	private final String community;
+	private final int requestId;
+	private final int errorStatus;
+	private final int errorIndex;
+	private final List<VarBind> varBinds;
+
+
+	/**
+	 * @param pduType     the PDU tag, e.g. GET_BULK_REQUEST or RESPONSE.
+	 * @param community   the community string.
+	 * @param requestId   the request ID, which a response echoes.
+	 * @param errorStatus the error status, or the non-repeaters of a GetBulkRequest.
+	 * @param errorIndex  the error index, or the max-repetitions of a GetBulkRequest.
+	 * @param varBinds    the variable bindings.
+	 */
+	SnmpMessage( int pduType, String community, int requestId, int errorStatus, int errorIndex, List<VarBind> varBinds )
+	{
+		this.pduType = pduType;
+		this.community = community;
+		this.requestId = requestId;
+		this.errorStatus = errorStatus;
+		this.errorIndex = errorIndex;
+		this.varBinds = varBinds;
+	}
+
+
+	/**
+	 * @param community      the community string.
+	 * @param requestId      the request ID.
+	 * @param nonRepeaters   the number of leading OIDs that get a single GETNEXT.
+	 * @param maxRepetitions the number of GETNEXT rows returned for each of the other OIDs.
+	 * @param oids           the OIDs to start from.
+	 * @return a GetBulkRequest message.
+	 */
+	static SnmpMessage getBulk( String community, int requestId, int nonRepeaters, int maxRepetitions, List<String> oids )
+	{
+		List<VarBind> varBinds = new ArrayList<>( oids.size() );
+		for( String oid : oids )
+		{
+			varBinds.add( new VarBind( oid, NULL, 0, null ) );
+		}
+		return new SnmpMessage( GET_BULK_REQUEST, community, requestId, nonRepeaters, maxRepetitions, varBinds );
+	}
+
+
+	/**
+	 * @return this message, BER encoded and ready to be sent in one UDP datagram.
+	 */
+	byte[] encode()
+	{
+		ByteArrayOutputStream bindings = new ByteArrayOutputStream();
+		for( VarBind varBind : varBinds )
+		{
+			ByteArrayOutputStream binding = new ByteArrayOutputStream();
+			writeTlv( binding, OBJECT_IDENTIFIER, encodeOid( varBind.oid ) );
+			writeTlv( binding, varBind.type, encodeValue( varBind ) );
+			writeTlv( bindings, SEQUENCE, binding.toByteArray() );
+		}
+		ByteArrayOutputStream pdu = new ByteArrayOutputStream();
+		writeTlv( pdu, INTEGER, encodeInteger( requestId ) );
+		writeTlv( pdu, INTEGER, encodeInteger( errorStatus ) );
+		writeTlv( pdu, INTEGER, encodeInteger( errorIndex ) );
+		writeTlv( pdu, SEQUENCE, bindings.toByteArray() );
+		ByteArrayOutputStream message = new ByteArrayOutputStream();
+		writeTlv( message, INTEGER, encodeInteger( VERSION_2C ) );
+		writeTlv( message, OCTET_STRING, community.getBytes( StandardCharsets.ISO_8859_1 ) );
+		writeTlv( message, pduType, pdu.toByteArray() );
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writeTlv( out, SEQUENCE, message.toByteArray() );
+		return out.toByteArray();
+	}
+
+
+	/**
+	 * @param data   the received datagram.
+	 * @param length the number of bytes in the datagram.
+	 * @return the decoded message.
+	 * @throws IOException if the datagram is not a well formed SNMPv2c message.
+	 */
+	static SnmpMessage decode( byte[] data, int length ) throws IOException
+	{
+		Decoder decoder = new Decoder( data, length );
+		int messageEnd = decoder.enter( SEQUENCE );
+		long version = decoder.readInteger();
+		if( version != VERSION_2C )
+		{
+			throw new IOException( "Unsupported SNMP version " + version + "." );
+		}
+		String community = new String( decoder.readContent( OCTET_STRING ), StandardCharsets.ISO_8859_1 );
+		int pduType = decoder.peekTag();
+		decoder.enter( pduType );
+		int requestId = ( int )decoder.readInteger();
+		int errorStatus = ( int )decoder.readInteger();
+		int errorIndex = ( int )decoder.readInteger();
+		int bindingsEnd = decoder.enter( SEQUENCE );
+		List<VarBind> varBinds = new ArrayList<>();
+		while( decoder.position < bindingsEnd )
+		{
+			decoder.enter( SEQUENCE );
+			String oid = decodeOid( decoder.readContent( OBJECT_IDENTIFIER ) );
+			int type = decoder.peekTag();
+			byte[] content = decoder.readContent( type );
+			varBinds.add( decodeValue( oid, type, content ) );
+		}
+		if( decoder.position != messageEnd )
+		{
+			throw new IOException( "Malformed SNMP message: trailing bytes." );
+		}
+		return new SnmpMessage( pduType, community, requestId, errorStatus, errorIndex, varBinds );
+	}
+
+
+	private static void writeTlv( ByteArrayOutputStream out, int tag, byte[] content )
+	{
+		out.write( tag );
+		int length = content.length;
+		if( length < 0x80 )
+		{
+			out.write( length );
+		}
+		else
+		{
+			int lengthBytes = length < 0x100 ? 1 : length < 0x10000 ? 2 : length < 0x1000000 ? 3 : 4;
+			out.write( 0x80 | lengthBytes );
+			for( int i = lengthBytes - 1; i >= 0; i-- )
+			{
+				out.write( length >>> ( 8 * i ) );
+			}
+		}
+		out.write( content, 0, content.length );
+	}
+
+
+	/**
+	 * @return the shortest two's complement encoding of the value.
+	 */
+	private static byte[] encodeInteger( long value )
+	{
+		int length = 8;
+		while( length > 1 && ( value >> ( 8 * length - 9 ) == 0 || value >> ( 8 * length - 9 ) == -1 ) )
+		{
+			length--;
+		}
+		byte[] bytes = new byte[length];
+		for( int i = 0; i < length; i++ )
+		{
+			bytes[i] = ( byte )( value >> ( 8 * ( length - 1 - i ) ) );
+		}
+		return bytes;
+	}
+
+
+	/**
+	 * Counter32, Gauge32, TimeTicks and Counter64 are unsigned, so they get a leading zero byte when their top bit is set.
+	 */
+	private static byte[] encodeUnsigned( long value )
+	{
+		int length = 1;
+		while( length < 8 && value >>> ( 8 * length ) != 0 )
+		{
+			length++;
+		}
+		boolean pad = ( value >>> ( 8 * length - 1 ) & 1 ) == 1;
+		byte[] bytes = new byte[pad ? length + 1 : length];
+		for( int i = 0; i < length; i++ )
+		{
+			bytes[bytes.length - 1 - i] = ( byte )( value >>> ( 8 * i ) );
+		}
+		return bytes;
+	}
+
+
+	private static byte[] encodeValue( VarBind varBind )
+	{
+		switch( varBind.type )
+		{
+			case INTEGER:
+				return encodeInteger( varBind.value );
+			case COUNTER32:
+			case GAUGE32:
+			case TIME_TICKS:
+			case COUNTER64:
+				return encodeUnsigned( varBind.value );
+			case OCTET_STRING:
+			case OPAQUE:
+			case IP_ADDRESS:
+				return varBind.text.getBytes( StandardCharsets.UTF_8 );
+			case OBJECT_IDENTIFIER:
+				return encodeOid( varBind.text );
+			default:
+				// NULL, noSuchObject, noSuchInstance and endOfMibView have no content.
+				return new byte[0];
+		}
+	}
+
+
+	private static VarBind decodeValue( String oid, int type, byte[] content ) throws IOException
+	{
+		switch( type )
+		{
+			case INTEGER:
+				if( content.length == 0 || content.length > 8 )
+				{
+					throw new IOException( "Malformed SNMP message: bad INTEGER length." );
+				}
+				long value = content[0];
+				for( int i = 1; i < content.length; i++ )
+				{
+					value = value << 8 | content[i] & 0xFF;
+				}
+				return new VarBind( oid, type, value, null );
+			case COUNTER32:
+			case GAUGE32:
+			case TIME_TICKS:
+			case COUNTER64:
+				if( content.length > 9 )
+				{
+					throw new IOException( "Malformed SNMP message: bad unsigned length." );
+				}
+				long unsigned = 0;
+				for( byte b : content )
+				{
+					unsigned = unsigned << 8 | b & 0xFF;
+				}
+				return new VarBind( oid, type, unsigned, null );
+			case OBJECT_IDENTIFIER:
+				return new VarBind( oid, type, 0, decodeOid( content ) );
+			case OCTET_STRING:
+			case OPAQUE:
+			case IP_ADDRESS:
+				return new VarBind( oid, type, 0, new String( content, StandardCharsets.UTF_8 ) );
+			default:
+				return new VarBind( oid, type, 0, null );
+		}
+	}
+
+
+	/**
+	 * @param oid a dotted OID, with or without a leading dot.
+	 * @return the BER encoding of the OID, which packs the first two arcs into one, and uses seven bits per byte.
+	 */
+	static byte[] encodeOid( String oid )
+	{
+		String[] arcs = ( oid.startsWith( "." ) ? oid.substring( 1 ) : oid ).split( "\\." );
+		if( arcs.length < 2 )
+		{
+			throw new IllegalArgumentException( "An OID needs at least two arcs: " + oid );
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writeArc( out, Long.parseLong( arcs[0] ) * 40 + Long.parseLong( arcs[1] ) );
+		for( int i = 2; i < arcs.length; i++ )
+		{
+			writeArc( out, Long.parseLong( arcs[i] ) );
+		}
+		return out.toByteArray();
+	}
+
+
+	private static void writeArc( ByteArrayOutputStream out, long arc )
+	{
+		int groups = 1;
+		while( groups < 10 && arc >>> ( 7 * groups ) != 0 )
+		{
+			groups++;
+		}
+		for( int i = groups - 1; i > 0; i-- )
+		{
+			out.write( ( int )( arc >>> ( 7 * i ) & 0x7F ) | 0x80 );
+		}
+		out.write( ( int )( arc & 0x7F ) );
+	}
+
+
+	private static String decodeOid( byte[] content ) throws IOException
+	{
+		if( content.length == 0 )
+		{
+			throw new IOException( "Malformed SNMP message: empty OID." );
+		}
+		StringBuilder oid = new StringBuilder();
+		long arc = 0;
+		boolean first = true;
+		for( byte b : content )
+		{
+			arc = arc << 7 | b & 0x7F;
+			if( ( b & 0x80 ) == 0 )
+			{
+				if( first )
+				{
+					long top = Math.min( arc / 40, 2 );
+					oid.append( '.' ).append( top ).append( '.' ).append( arc - top * 40 );
+					first = false;
+				}
+				else
+				{
+					oid.append( '.' ).append( arc );
+				}
+				arc = 0;
+			}
+		}
+		return oid.toString();
+	}
+
+
+	int getPduType()
+	{
+		return pduType;
+	}
+
+
+	String getCommunity()
+	{
+		return community;
+	}
+
+
+	int getRequestId()
+	{
+		return requestId;
+	}
+
+
+	/**
+	 * @return the error status of a Response, or the non-repeaters of a GetBulkRequest.
+	 */
+	int getErrorStatus()
+	{
+		return errorStatus;
+	}
+
+
+	/**
+	 * @return the error index of a Response, or the max-repetitions of a GetBulkRequest.
+	 */
+	int getErrorIndex()
+	{
+		return errorIndex;
+	}
+
+
+	List<VarBind> getVarBinds()
+	{
+		return Collections.unmodifiableList( varBinds );
+	}
+
+
+	/**
+	 * One variable binding: an OID, and a typed value.<br>
+	 * Numeric types use the value, and text types (including an OID value) use the text.
+	 */
+	static final class VarBind
+	{
+		private final String oid;
+		private final int type;
+		private final long value;
+		private final String text;
+
+
+		VarBind( String oid, int type, long value, String text )
+		{
+			this.oid = oid;
+			this.type = type;
+			this.value = value;
+			this.text = text;
+		}
+
+
+		String getOid()
+		{
+			return oid;
+		}
+
+
+		int getType()
+		{
+			return type;
+		}
+
+
+		long getValue()
+		{
+			return value;
+		}
+
+
+		String getText()
+		{
+			return text;
+		}
+
+
+		/**
+		 * @return true if this is one of the exceptions (noSuchObject, noSuchInstance, or endOfMibView) rather than a value.
+		 */
+		boolean isException()
+		{
+			return type == NO_SUCH_OBJECT || type == NO_SUCH_INSTANCE || type == END_OF_MIB_VIEW;
+		}
+	}
+
+
+	/**
+	 * This walks through the TLVs (tag, length, value) of a BER encoded message.
+	 */
+	private static final class Decoder
+	{
+		private final byte[] data;
+		private final int limit;
+		private int position;
+
+
+		private Decoder( byte[] data, int limit )
+		{
+			this.data = data;
+			this.limit = limit;
+		}
+
+
+		private int peekTag() throws IOException
+		{
+			if( position >= limit )
+			{
+				throw new IOException( "Malformed SNMP message: truncated." );
+			}
+			return data[position] & 0xFF;
+		}
+
+
+		/**
+		 * @return the length of the TLV at the position, which is left at the start of its content.
+		 */
+		private int readHeader( int expectedTag ) throws IOException
+		{
+			int tag = peekTag();
+			if( tag != expectedTag )
+			{
+				throw new IOException( "Malformed SNMP message: expected tag " + Integer.toHexString( expectedTag ) + " but found " + Integer.toHexString( tag ) + "." );
+			}
+			position++;
+			int first = peekTag();
+			position++;
+			int length;
+			if( first < 0x80 )
+			{
+				length = first;
+			}
+			else
+			{
+				int lengthBytes = first & 0x7F;
+				if( lengthBytes == 0 || lengthBytes > 4 )
+				{
+					throw new IOException( "Malformed SNMP message: unsupported length." );
+				}
+				length = 0;
+				for( int i = 0; i < lengthBytes; i++ )
+				{
+					length = length << 8 | peekTag();
+					position++;
+				}
+			}
+			if( length < 0 || length > limit - position )
+			{
+				throw new IOException( "Malformed SNMP message: length past the end." );
+			}
+			return length;
+		}
+
+
+		/**
+		 * @return the position after the constructed TLV just entered.
+		 */
+		private int enter( int tag ) throws IOException
+		{
+			int length = readHeader( tag );
+			return position + length;
+		}
+
+
+		private byte[] readContent( int tag ) throws IOException
+		{
+			int length = readHeader( tag );
+			byte[] content = new byte[length];
+			System.arraycopy( data, position, content, 0, length );
+			position += length;
+			return content;
+		}
+
+
+		private long readInteger() throws IOException
+		{
+			return decodeValue( "", INTEGER, readContent( INTEGER ) ).value;
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package com.adamjhowell.snmpinterface;
+
+
+/**
+ * This class holds the numerical (dot format) OIDs that this program reads from a SNMP walk.<br>
+ * These can be modified to suit SNMP walks that use names instead of numbers.
+ * <p>
+ * The table OIDs end with a dot, and the interface index (ifIndex) is appended to them in a walk.
+ */
+final class SnmpOids
+{
+	/**
+	 * A textual description of the entity.
+	 * This value should include the full name and version identification of the system's hardware type, software operating-system, and networking software.
+	 * It is mandatory that this only contain printable ASCII characters.
+	 */
+	static final String SYS_DESCR = ".1.3.6.1.2.1.1.1.0";
+	/**
+	 * The time (in hundredths of a second) since the network management portion of the system was last re-initialized.
+	 * For many manufacturers, this will be reset when the network stack is restarted.
+	 */
+	static final String SYS_UPTIME_OID = ".1.3.6.1.2.1.1.3.0";
+	/**
+	 * An administratively-assigned name for this managed node.  By convention, this is the node's fully-qualified domain name.
+	 */
+	static final String SYS_NAME = ".1.3.6.1.2.1.1.5.0";
+	/**
+	 * The ifEntry, which every ifTable column below is a child of.
+	 * A column OID is this prefix, followed by the column number, a dot, and the ifIndex.
+	 */
+	static final String IF_ENTRY_OID = ".1.3.6.1.2.1.2.2.1.";
+	/**
+	 * A unique value for each interface.
+	 * The value for each interface must remain constant at least from one re-initialization of the entity's network management system to the next re-initialization.
+	 */
+	static final String IF_INDEX_OID = ".1.3.6.1.2.1.2.2.1.1.";
+	/**
+	 * A textual string containing information about the interface.
+	 * This string should include the name of the manufacturer, the product name and the version of the hardware interface.
+	 */
+	static final String IF_DESCRIPTION_OID = ".1.3.6.1.2.1.2.2.1.2.";
+	/**
+	 * The nominal bandwidth of the interface.
+	 * If this is set to zero or less, the utilization cannot be calculated.
+	 */
+	static final String IF_SPEED_OID = ".1.3.6.1.2.1.2.2.1.5.";
+	/**
+	 * The total number of octets received on the interface, including framing characters.
+	 * This will wrap at either a 32-bit or 64-bit value.
+	 */
+	static final String IF_IN_OCTETS_OID = ".1.3.6.1.2.1.2.2.1.10.";
+	/**
+	 * The number of inbound packets which were chosen to be discarded even though no errors had been detected to prevent their being deliverable to a higher-layer protocol.
+	 * One possible reason for discarding such a packet could be to free up buffer space.
+	 * This will wrap at either a 32-bit or 64-bit value.
+	 */
+	static final String IF_IN_DISCARDS_OID = ".1.3.6.1.2.1.2.2.1.13.";
+	/**
+	 * The number of inbound packets that contained errors preventing them from being deliverable to a higher-layer protocol.
+	 * This will wrap at either a 32-bit or 64-bit value.
+	 */
+	static final String IF_IN_ERRORS_OID = ".1.3.6.1.2.1.2.2.1.14.";
+	/**
+	 * The total number of octets transmitted out of the interface, including framing characters.
+	 * This will wrap at either a 32-bit or 64-bit value.
+	 */
+	static final String IF_OUT_OCTETS_OID = ".1.3.6.1.2.1.2.2.1.16.";
+	/**
+	 * The number of outbound packets which were chosen to be discarded even though no errors had been detected to prevent their being transmitted.
+	 * One possible reason for discarding such a packet could be to free up buffer space.
+	 * This will wrap at either a 32-bit or 64-bit value.
+	 */
+	static final String IF_OUT_DISCARDS_OID = ".1.3.6.1.2.1.2.2.1.19.";
+	/**
+	 * The number of outbound packets that could not be transmitted because of errors.
+	 * This will wrap at either a 32-bit or 64-bit value.
+	 */
+	static final String IF_OUT_ERRORS_OID = ".1.3.6.1.2.1.2.2.1.20.";
+
+	/**
+	 * The ifXEntry, which every ifXTable column below is a child of.
+	 * The ifXTable extends the ifTable with 64-bit (high capacity) counters, and uses the same ifIndex values.
+	 */
+	static final String IF_X_ENTRY_OID = ".1.3.6.1.2.1.31.1.1.1.";
+	/**
+	 * The total number of octets received on the interface, including framing characters.
+	 * This is a 64-bit version of ifInOctets, and will wrap at a 64-bit value.
+	 */
+	static final String IF_HC_IN_OCTETS_OID = ".1.3.6.1.2.1.31.1.1.1.6.";
+	/**
+	 * The total number of octets transmitted out of the interface, including framing characters.
+	 * This is a 64-bit version of ifOutOctets, and will wrap at a 64-bit value.
+	 */
+	static final String IF_HC_OUT_OCTETS_OID = ".1.3.6.1.2.1.31.1.1.1.10.";
+	/**
+	 * An estimate of the interface's current bandwidth in units of 1,000,000 bits per second.
+	 * This is used when the bandwidth is too large for ifSpeed, which will then hold its maximum value.
+	 */
+	static final String IF_HIGH_SPEED_OID = ".1.3.6.1.2.1.31.1.1.1.15.";
+
+
+	private SnmpOids()
+	{
+		// This class only holds constants.
+	}
+}
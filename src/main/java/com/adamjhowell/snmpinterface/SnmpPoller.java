@@ -0,0 +1,458 @@
+package com.adamjhowell.snmpinterface;
+
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * This polls the ifTable and ifXTable of live SNMP v2c agents into WalkIndexes, so they can be used exactly like walks read from files.<br>
+ * Every column this program uses is walked at once with GETBULK, so each request returns a batch of rows covering many interfaces.
+ * <p>
+ * All agents are polled at once from one thread: the requests to every agent are sent from one non-blocking channel,
+ * and each response is matched to its agent by request ID, which immediately sends that agent's next request.<br>
+ * A request that is not answered within the timeout is sent again, up to the retry count, before that agent is given up on.
+ */
+class SnmpPoller implements Closeable
+{
+	private static final Logger errorLogger = Logger.getLogger( SnmpPoller.class.getName() );
+	static final int DEFAULT_PORT = 161;
+	static final int DEFAULT_MAX_REPETITIONS = 20;
+	static final int DEFAULT_TIMEOUT_MILLIS = 1000;
+	static final int DEFAULT_RETRIES = 2;
+	private static final int ERROR_TOO_BIG = 1;
+	private static final int MAX_DATAGRAM = 65535;
+	/**
+	 * The scalars fetched as non-repeaters by the first request of each poll.  A GETNEXT of the object returns its instance (.0).
+	 */
+	private static final List<String> SCALARS = Arrays.asList( instanceParent( SnmpOids.SYS_DESCR ),
+	                                                          instanceParent( SnmpOids.SYS_UPTIME_OID ),
+	                                                          instanceParent( SnmpOids.SYS_NAME ) );
+	/**
+	 * The column OIDs walked by every poll, each ending with a dot.  The first is ifDescr, and the rest line up with IfColumn.values().
+	 */
+	private static final String[] COLUMN_PREFIXES = columnPrefixes();
+
+	private final String community;
+	private final int maxRepetitions;
+	private final int timeoutMillis;
+	private final int retries;
+	private final DatagramChannel channel;
+	private final Selector selector;
+	private final ByteBuffer receiveBuffer = ByteBuffer.allocate( MAX_DATAGRAM );
+	private final Map<Integer, AgentPoll> pending = new HashMap<>();
+	private int nextRequestId = 1;
+
+
+	/**
+	 * @param community the SNMP v2c community string.
+	 * @throws IOException if the UDP channel cannot be opened.
+	 */
+	SnmpPoller( String community ) throws IOException
+	{
+		this( community, DEFAULT_MAX_REPETITIONS, DEFAULT_TIMEOUT_MILLIS, DEFAULT_RETRIES );
+	}
+
+
+	/**
+	 * @param community      the SNMP v2c community string.
+	 * @param maxRepetitions the number of rows asked for by each GETBULK request.
+	 * @param timeoutMillis  how long to wait for each response.
+	 * @param retries        how many times an unanswered request is sent again.
+	 * @throws IOException if the UDP channel cannot be opened.
+	 */
+	SnmpPoller( String community, int maxRepetitions, int timeoutMillis, int retries ) throws IOException
+	{
+		this.community = community;
+		this.maxRepetitions = maxRepetitions;
+		this.timeoutMillis = timeoutMillis;
+		this.retries = retries;
+		channel = DatagramChannel.open();
+		channel.configureBlocking( false );
+		channel.bind( null );
+		selector = Selector.open();
+		channel.register( selector, SelectionKey.OP_READ );
+	}
+
+
+	/**
+	 * @param agent the agent to poll.
+	 * @return the agent's interfaces and sysUpTime, or null if the agent did not answer.
+	 * @throws IOException if the UDP channel fails.
+	 */
+	WalkIndex poll( InetSocketAddress agent ) throws IOException
+	{
+		return poll( Collections.singletonList( agent ) ).get( 0 );
+	}
+
+
+	/**
+	 * This polls every agent concurrently, and returns once every agent has answered or timed out.
+	 *
+	 * @param agents the agents to poll.
+	 * @return one WalkIndex per agent, in the same order, with null for each agent that did not answer.
+	 * @throws IOException if the UDP channel fails.
+	 */
+	List<WalkIndex> poll( List<InetSocketAddress> agents ) throws IOException
+	{
+		List<AgentPoll> polls = new ArrayList<>( agents.size() );
+		for( InetSocketAddress agent : agents )
+		{
+			AgentPoll poll = new AgentPoll( agent );
+			polls.add( poll );
+			if( agent.isUnresolved() )
+			{
+				poll.fail( "the host name could not be resolved" );
+			}
+			else
+			{
+				send( poll, SCALARS.size(), poll.startOids() );
+			}
+		}
+
+		while( !pending.isEmpty() )
+		{
+			long now = System.nanoTime();
+			for( AgentPoll poll : new ArrayList<>( pending.values() ) )
+			{
+				if( now - poll.deadline >= 0 )
+				{
+					timedOut( poll );
+				}
+			}
+			if( pending.isEmpty() )
+			{
+				break;
+			}
+			// Wait until the next response, or the earliest deadline, which may belong to a request that was just sent again.
+			long wait = Long.MAX_VALUE;
+			for( AgentPoll poll : pending.values() )
+			{
+				wait = Math.min( wait, poll.deadline - now );
+			}
+			selector.select( Math.max( 1, TimeUnit.NANOSECONDS.toMillis( wait ) ) );
+			selector.selectedKeys().clear();
+			receiveAll();
+		}
+
+		List<WalkIndex> walks = new ArrayList<>( polls.size() );
+		for( AgentPoll poll : polls )
+		{
+			walks.add( poll.error == null ? poll.index : null );
+		}
+		return walks;
+	} // End of poll() method.
+
+
+	/**
+	 * This reads every datagram waiting on the channel, and hands each one to the poll that sent its request.
+	 */
+	private void receiveAll() throws IOException
+	{
+		SocketAddress source;
+		while( ( source = channel.receive( receiveBuffer ) ) != null )
+		{
+			receiveBuffer.flip();
+			int length = receiveBuffer.remaining();
+			SnmpMessage response;
+			try
+			{
+				response = SnmpMessage.decode( receiveBuffer.array(), length );
+			}
+			catch( IOException e )
+			{
+				errorLogger.log( Level.WARNING, "Ignoring a malformed datagram from {0}: {1}", new Object[]{ source, e.getLocalizedMessage() } );
+				continue;
+			}
+			finally
+			{
+				receiveBuffer.clear();
+			}
+			AgentPoll poll = pending.get( response.getRequestId() );
+			// Late answers to a request that was already retried, and datagrams from strangers, are ignored.
+			if( poll != null && poll.agent.equals( source ) && response.getPduType() == SnmpMessage.RESPONSE )
+			{
+				pending.remove( response.getRequestId() );
+				poll.bytesReceived += length;
+				handleResponse( poll, response );
+			}
+		}
+	}
+
+
+	/**
+	 * This stores the varbinds of one response, and sends the next request if any column is still within its subtree.
+	 */
+	private void handleResponse( AgentPoll poll, SnmpMessage response ) throws IOException
+	{
+		if( response.getErrorStatus() == ERROR_TOO_BIG && poll.maxRepetitions > 1 )
+		{
+			// The agent could not fit that many rows into one datagram, so ask for fewer.
+			poll.maxRepetitions = Math.max( 1, poll.maxRepetitions / 2 );
+			poll.attempts = 0;
+			send( poll, poll.nonRepeaters, poll.requestOids );
+			return;
+		}
+		if( response.getErrorStatus() != 0 )
+		{
+			poll.fail( "error status " + response.getErrorStatus() );
+			return;
+		}
+
+		List<SnmpMessage.VarBind> varBinds = response.getVarBinds();
+		int nonRepeaters = Math.min( poll.nonRepeaters, varBinds.size() );
+		for( int i = 0; i < nonRepeaters; i++ )
+		{
+			poll.storeScalar( varBinds.get( i ) );
+		}
+		int[] requested = poll.requestColumns;
+		boolean[] finished = new boolean[requested.length];
+		for( int i = nonRepeaters; i < varBinds.size(); i++ )
+		{
+			int position = ( i - nonRepeaters ) % requested.length;
+			if( !finished[position] )
+			{
+				finished[position] = !poll.storeColumn( requested[position], varBinds.get( i ) );
+			}
+		}
+		poll.varBindCount += varBinds.size();
+
+		List<String> nextOids = new ArrayList<>();
+		List<Integer> nextColumns = new ArrayList<>();
+		for( int column = 0; column < COLUMN_PREFIXES.length; column++ )
+		{
+			if( poll.cursors[column] != null )
+			{
+				nextOids.add( poll.cursors[column] );
+				nextColumns.add( column );
+			}
+		}
+		if( nextOids.isEmpty() || varBinds.size() == nonRepeaters )
+		{
+			poll.finish();
+			return;
+		}
+		poll.requestColumns = nextColumns.stream().mapToInt( Integer::intValue ).toArray();
+		poll.attempts = 0;
+		send( poll, 0, nextOids );
+	} // End of handleResponse() method.
+
+
+	private void timedOut( AgentPoll poll ) throws IOException
+	{
+		pending.remove( poll.requestId );
+		if( poll.attempts > retries )
+		{
+			poll.fail( "no response after " + poll.attempts + " attempts" );
+			return;
+		}
+		send( poll, poll.nonRepeaters, poll.requestOids );
+	}
+
+
+	/**
+	 * This sends one GETBULK request, with a new request ID so that a late answer to an earlier attempt cannot be mistaken for it.
+	 */
+	private void send( AgentPoll poll, int nonRepeaters, List<String> oids ) throws IOException
+	{
+		int requestId = nextRequestId;
+		nextRequestId = nextRequestId == Integer.MAX_VALUE ? 1 : nextRequestId + 1;
+		poll.requestId = requestId;
+		poll.nonRepeaters = nonRepeaters;
+		poll.requestOids = oids;
+		poll.attempts++;
+		poll.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( timeoutMillis );
+		byte[] request = SnmpMessage.getBulk( community, requestId, nonRepeaters, poll.maxRepetitions, oids ).encode();
+		pending.put( requestId, poll );
+		channel.send( ByteBuffer.wrap( request ), poll.agent );
+	}
+
+
+	/**
+	 * @param agent an agent as "host" or "host:port", where an IPv6 host with a port is written "[host]:port".
+	 * @return the resolved address, which is unresolved if the host name could not be resolved.
+	 * @throws IllegalArgumentException if the port is not a valid port number.
+	 */
+	static InetSocketAddress parseAgent( String agent )
+	{
+		String host = agent;
+		int port = DEFAULT_PORT;
+		int colon = agent.lastIndexOf( ':' );
+		boolean bracketed = agent.startsWith( "[" );
+		// A bare IPv6 address has several colons, and no port.
+		if( colon > 0 && ( bracketed ? agent.charAt( colon - 1 ) == ']' : agent.indexOf( ':' ) == colon ) )
+		{
+			host = agent.substring( 0, colon );
+			port = Integer.parseInt( agent.substring( colon + 1 ) );
+		}
+		if( bracketed && host.endsWith( "]" ) )
+		{
+			host = host.substring( 1, host.length() - 1 );
+		}
+		return new InetSocketAddress( host, port );
+	}
+
+
+	@Override
+	public void close() throws IOException
+	{
+		selector.close();
+		channel.close();
+	}
+
+
+	/**
+	 * @param instanceOid a scalar instance OID, ending in ".0".
+	 * @return the OID of the object itself.
+	 */
+	private static String instanceParent( String instanceOid )
+	{
+		return instanceOid.substring( 0, instanceOid.lastIndexOf( '.' ) );
+	}
+
+
+	private static String[] columnPrefixes()
+	{
+		IfColumn[] columns = IfColumn.values();
+		String[] prefixes = new String[columns.length + 1];
+		prefixes[0] = SnmpOids.IF_DESCRIPTION_OID;
+		for( IfColumn column : columns )
+		{
+			prefixes[column.ordinal() + 1] = column.getOid();
+		}
+		return prefixes;
+	}
+
+
+	/**
+	 * The progress of one poll of one agent.
+	 */
+	private final class AgentPoll
+	{
+		private final InetSocketAddress agent;
+		private final WalkIndex index = new WalkIndex();
+		/**
+		 * The last OID returned for each column, or null once that column has left its subtree.
+		 */
+		private final String[] cursors = new String[COLUMN_PREFIXES.length];
+		private int maxRepetitions = SnmpPoller.this.maxRepetitions;
+		private int requestId;
+		private int nonRepeaters;
+		private List<String> requestOids;
+		private int[] requestColumns;
+		private int attempts;
+		private long deadline;
+		private long varBindCount;
+		private long bytesReceived;
+		private String error;
+
+
+		private AgentPoll( InetSocketAddress agent )
+		{
+			this.agent = agent;
+		}
+
+
+		/**
+		 * @return the OIDs of the first request: the scalars, followed by every column.
+		 */
+		private List<String> startOids()
+		{
+			List<String> oids = new ArrayList<>( SCALARS );
+			requestColumns = new int[COLUMN_PREFIXES.length];
+			for( int column = 0; column < COLUMN_PREFIXES.length; column++ )
+			{
+				oids.add( COLUMN_PREFIXES[column].substring( 0, COLUMN_PREFIXES[column].length() - 1 ) );
+				requestColumns[column] = column;
+			}
+			return oids;
+		}
+
+
+		private void storeScalar( SnmpMessage.VarBind varBind )
+		{
+			if( SnmpOids.SYS_UPTIME_OID.equals( varBind.getOid() ) && varBind.getType() == SnmpMessage.TIME_TICKS )
+			{
+				index.setSysUpTime( varBind.getValue() );
+			}
+			else if( SnmpOids.SYS_NAME.equals( varBind.getOid() ) && varBind.getText() != null )
+			{
+				index.setSysName( varBind.getText() );
+			}
+			else if( SnmpOids.SYS_DESCR.equals( varBind.getOid() ) && varBind.getText() != null )
+			{
+				index.setSysDescr( varBind.getText() );
+			}
+		}
+
+
+		/**
+		 * @return true if the varbind is still within the column's subtree, and so was stored.
+		 */
+		private boolean storeColumn( int column, SnmpMessage.VarBind varBind )
+		{
+			String prefix = COLUMN_PREFIXES[column];
+			String oid = varBind.getOid();
+			// An agent that returns the same OID again would otherwise be walked forever.
+			if( varBind.isException() || !oid.startsWith( prefix ) || oid.equals( cursors[column] ) )
+			{
+				cursors[column] = null;
+				return false;
+			}
+			cursors[column] = oid;
+			long ifIndex;
+			try
+			{
+				ifIndex = Long.parseLong( oid.substring( prefix.length() ) );
+			}
+			catch( NumberFormatException e )
+			{
+				// The ifIndex is a single arc, so any other instance is not one of ours.
+				return true;
+			}
+			if( column == 0 )
+			{
+				if( varBind.getText() != null )
+				{
+					index.setIfDescr( ifIndex, varBind.getText() );
+				}
+			}
+			else if( varBind.getType() != SnmpMessage.OCTET_STRING && varBind.getType() != SnmpMessage.OBJECT_IDENTIFIER )
+			{
+				index.setValue( IfColumn.values()[column - 1], ifIndex, varBind.getValue() );
+			}
+			return true;
+		}
+
+
+		/**
+		 * The line and byte counts of a polled walk are its varbinds, and the bytes of every response.
+		 */
+		private void finish()
+		{
+			index.setReadCounts( varBindCount, bytesReceived );
+		}
+
+
+		private void fail( String reason )
+		{
+			error = reason;
+			errorLogger.log( Level.WARNING, "Unable to poll {0}: {1}", new Object[]{ agent, reason } );
+		}
+	}
+}
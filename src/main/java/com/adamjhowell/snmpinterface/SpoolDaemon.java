@@ -0,0 +1,522 @@
+package com.adamjhowell.snmpinterface;
+
+
+import com.adamjhowell.snmpinterface.model.DeviceResult;
+import com.adamjhowell.snmpinterface.model.InterfaceResult;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * This watches a spool directory that pollers drop walk files into, and compares each new walk with the previous walk of the same device, as it arrives.
+ * <p>
+ * Devices are told apart by their sysName and sysDescr, as in FleetAnalyzer.<br>
+ * Only the WalkIndex of each device's latest walk is kept, which holds just the values this program uses, so the text of a walk is gone once it has been read,
+ * and memory grows with the number of devices rather than the number of walks.<br>
+ * The walks of each device are compared in the order of their modification times, even though they are read in parallel:
+ * a walk that has been read waits in its device's queue until no walk as old as it is still being read.
+ * Only a walk that arrives after a newer walk of its device has been compared is skipped.<br>
+ * A walk with a shorter sysUpTime than the previous walk (the device restarted) starts the device over, without a result.
+ * <p>
+ * Walks already in the directory are read first, oldest first, and then every file created in it is read.<br>
+ * Pollers should write each walk under a name starting with "." or ending in ".tmp" or ".part" (which are ignored), and rename it when it is complete,
+ * so that a half-written walk is never read.
+ * <p>
+ * Each walk is read on its own virtual thread when the JVM has them (Java 21 and later), so thousands of devices can be in flight without an OS thread each,
+ * and on a bounded pool of threads otherwise.  Either way, no more than the given number of walks are read at once.<br>
+ * The walks of one device are compared one at a time, and the Listener may be called from several threads at once (for different devices).
+ */
+final class SpoolDaemon implements Closeable
+{
+	private static final Logger errorLogger = Logger.getLogger( SpoolDaemon.class.getName() );
+	private static final String[] IGNORED_SUFFIXES = { ".tmp", ".part" };
+
+	private final Path directory;
+	private final Listener listener;
+	private final WatchService watcher;
+	private final ExecutorService executor;
+	private final boolean virtualThreads;
+	/**
+	 * This bounds the walks being read at once, since virtual threads are not bounded.
+	 */
+	private final Semaphore reads;
+	private final ConcurrentMap<String, Device> devices = new ConcurrentHashMap<>();
+	/**
+	 * The walks submitted but not yet read, oldest first.  A walk that has been read is not compared until it is strictly older than all of these,
+	 * so walks modified in the same millisecond are compared together, in the order of their sysUpTimes.
+	 */
+	private final ConcurrentSkipListSet<Arrival> pending = new ConcurrentSkipListSet<>();
+	/**
+	 * The walks read but perhaps not yet compared, oldest first, whose devices are visited once they are older than every pending walk.
+	 */
+	private final ConcurrentSkipListSet<Arrival> waiting = new ConcurrentSkipListSet<>();
+	private final AtomicLong sequence = new AtomicLong();
+	private final AtomicLong walkCount = new AtomicLong();
+	private final AtomicLong resultCount = new AtomicLong();
+
+
+	/**
+	 * This is given the statistics of a device each time a new walk of it is compared with the previous one.
+	 */
+	interface Listener
+	{
+		/**
+		 * @param device    the statistics between the previous walk and the new walk, or the reason they could not be calculated.
+		 * @param timestamp the capture time of the new walk (its modification time, even if a snapshot of it was spooled), in milliseconds since the epoch.
+		 * @throws IOException if the statistics cannot be written.
+		 */
+		void deviceAnalyzed( DeviceResult device, long timestamp ) throws IOException;
+	}
+
+
+	/**
+	 * The previous walk of one device, and its walks that have been read but not yet compared, oldest (and then shortest sysUpTime) first.<br>
+	 * They are guarded by a lock rather than a monitor, so a virtual thread waiting for it does not pin its carrier thread.
+	 */
+	private static final class Device
+	{
+		private final ReentrantLock lock = new ReentrantLock();
+		private final PriorityQueue<Arrival> arrived = new PriorityQueue<>( Comparator.<Arrival>comparingLong( arrival -> arrival.modified )
+		                                                                              .thenComparingLong( arrival -> arrival.walk.getSysUpTime() )
+		                                                                              .thenComparingLong( arrival -> arrival.sequence ) );
+		private Path path;
+		private WalkIndex walk;
+		private long modified;
+	}
+
+
+	/**
+	 * One walk file, ordered by its modification time, and then by the order it was submitted in.
+	 */
+	private static final class Arrival implements Comparable<Arrival>
+	{
+		private final Path file;
+		private final long modified;
+		private final long sequence;
+		private WalkIndex walk;
+		private Device device;
+
+
+		private Arrival( Path file, long modified, long sequence )
+		{
+			this.file = file;
+			this.modified = modified;
+			this.sequence = sequence;
+		}
+
+
+		@Override
+		public int compareTo( Arrival other )
+		{
+			int order = Long.compare( modified, other.modified );
+			return order != 0 ? order : Long.compare( sequence, other.sequence );
+		}
+	}
+
+
+	/**
+	 * The directory is watched from here on, so no walk created before run() is called is missed.
+	 *
+	 * @param directory   the spool directory.
+	 * @param parallelism the most walks to read at once.
+	 * @param listener    the listener to give every result to.
+	 * @throws IOException if the directory cannot be watched.
+	 */
+	SpoolDaemon( Path directory, int parallelism, Listener listener ) throws IOException
+	{
+		this.directory = directory;
+		this.listener = listener;
+		watcher = directory.getFileSystem().newWatchService();
+		directory.register( watcher, StandardWatchEventKinds.ENTRY_CREATE );
+		reads = new Semaphore( Math.max( 1, parallelism ) );
+		ExecutorService virtualExecutor = virtualThreadExecutor();
+		virtualThreads = virtualExecutor != null;
+		executor = virtualThreads ? virtualExecutor : Executors.newFixedThreadPool( Math.max( 1, parallelism ), runnable ->
+		{
+			Thread thread = new Thread( runnable, "spool-reader" );
+			thread.setDaemon( true );
+			return thread;
+		} );
+	} // End of SpoolDaemon() constructor.
+
+
+	/**
+	 * @return an executor that starts a new virtual thread for each task, or null if this JVM does not have virtual threads.
+	 */
+	private static ExecutorService virtualThreadExecutor()
+	{
+		try
+		{
+			// This is looked up at run time, since this program is built for Java 8.
+			return ( ExecutorService )Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" ).invoke( null );
+		}
+		catch( ReflectiveOperationException e )
+		{
+			// Before Java 21, the method is missing, or (as a preview feature) throws.
+			return null;
+		}
+	}
+
+
+	/**
+	 * This reads the walks already in the directory, then reads every walk created in it, until this daemon is closed.<br>
+	 * Walks that are being read when it is closed are finished before this returns.
+	 *
+	 * @throws InterruptedIOException if the calling thread is interrupted.
+	 * @throws IOException            if the directory cannot be listed.
+	 */
+	void run() throws IOException
+	{
+		errorLogger.log( Level.INFO, "Watching {0}, reading up to {1} walks at once on {2}.", new Object[]{ directory, reads.availablePermits(), virtualThreads ? "virtual threads" : "a thread pool" } );
+		try
+		{
+			submitExisting();
+			while( true )
+			{
+				WatchKey key;
+				try
+				{
+					key = watcher.take();
+				}
+				catch( ClosedWatchServiceException e )
+				{
+					break;
+				}
+				for( WatchEvent<?> event : key.pollEvents() )
+				{
+					if( event.kind() == StandardWatchEventKinds.OVERFLOW )
+					{
+						// Walks already compared are skipped again, since they are not newer than their device's previous walk.
+						errorLogger.log( Level.WARNING, "Too many walks arrived at once in {0}, so the whole directory will be read again.", directory );
+						submitExisting();
+					}
+					else
+					{
+						submit( directory.resolve( ( Path )event.context() ) );
+					}
+				}
+				if( !key.reset() )
+				{
+					errorLogger.log( Level.SEVERE, "{0} can no longer be watched.", directory );
+					break;
+				}
+			}
+		}
+		catch( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException( "The spool daemon was interrupted." );
+		}
+		finally
+		{
+			executor.shutdown();
+			awaitTermination();
+		}
+	} // End of run() method.
+
+
+	private void awaitTermination()
+	{
+		try
+		{
+			while( !executor.awaitTermination( 1, TimeUnit.MINUTES ) )
+			{
+				errorLogger.log( Level.INFO, "Waiting for the walks being read to finish." );
+			}
+		}
+		catch( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+
+	/**
+	 * This submits every walk in the directory, oldest first.
+	 */
+	private void submitExisting() throws IOException
+	{
+		Map<Path, Long> times = new HashMap<>();
+		try( DirectoryStream<Path> stream = Files.newDirectoryStream( directory, Files::isRegularFile ) )
+		{
+			for( Path file : stream )
+			{
+				times.put( file, Files.getLastModifiedTime( file ).toMillis() );
+			}
+		}
+		List<Path> files = new ArrayList<>( times.keySet() );
+		files.sort( Comparator.comparing( times::get ) );
+		for( Path file : files )
+		{
+			if( !isIgnored( file ) )
+			{
+				submit( file, times.get( file ) );
+			}
+		}
+	}
+
+
+	/**
+	 * @return true if the file is still being written by a poller, by its name.
+	 */
+	private static boolean isIgnored( Path file )
+	{
+		String name = file.getFileName().toString();
+		if( name.startsWith( "." ) )
+		{
+			return true;
+		}
+		for( String suffix : IGNORED_SUFFIXES )
+		{
+			if( name.endsWith( suffix ) )
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+
+	private void submit( Path file )
+	{
+		if( isIgnored( file ) )
+		{
+			return;
+		}
+		long modified;
+		try
+		{
+			modified = Files.getLastModifiedTime( file ).toMillis();
+		}
+		catch( IOException e )
+		{
+			errorLogger.log( Level.SEVERE, "Unable to read {0}: {1}", new Object[]{ file, e.getLocalizedMessage() } );
+			return;
+		}
+		submit( file, modified );
+	}
+
+
+	private void submit( Path file, long modified )
+	{
+		Arrival arrival = new Arrival( file, modified, sequence.getAndIncrement() );
+		pending.add( arrival );
+		executor.execute( () ->
+		                  {
+			                  try
+			                  {
+				                  try
+				                  {
+					                  read( arrival );
+				                  }
+				                  finally
+				                  {
+					                  // Whether or not it was read, this walk no longer holds back the newer walks.
+					                  pending.remove( arrival );
+					                  compareReleased();
+				                  }
+			                  }
+			                  catch( InterruptedException e )
+			                  {
+				                  Thread.currentThread().interrupt();
+			                  }
+			                  catch( RuntimeException e )
+			                  {
+				                  // An executor would otherwise drop this without a trace.
+				                  errorLogger.log( Level.SEVERE, "Unable to ingest " + file, e );
+			                  }
+		                  } );
+	}
+
+
+	/**
+	 * This reads one walk, and queues it on its device, to be compared once no walk as old as it is still being read.
+	 */
+	private void read( Arrival arrival ) throws InterruptedException
+	{
+		WalkIndex walk;
+		reads.acquire();
+		try
+		{
+			walk = WalkReader.read( arrival.file );
+		}
+		catch( IOException e )
+		{
+			errorLogger.log( Level.SEVERE, "Unable to read {0}: {1}", new Object[]{ arrival.file, e.getLocalizedMessage() } );
+			return;
+		}
+		finally
+		{
+			reads.release();
+		}
+		walkCount.incrementAndGet();
+		if( walk.getSysName().isEmpty() )
+		{
+			errorLogger.log( Level.WARNING, "{0} holds no sysName, so it cannot be matched to a device.", arrival.file );
+			return;
+		}
+
+		Device device = devices.computeIfAbsent( walk.getSysName() + '\n' + walk.getSysDescr(), key -> new Device() );
+		arrival.walk = walk;
+		arrival.device = device;
+		device.lock.lock();
+		try
+		{
+			device.arrived.add( arrival );
+		}
+		finally
+		{
+			device.lock.unlock();
+		}
+		waiting.add( arrival );
+	} // End of read() method.
+
+
+	/**
+	 * @return true if no walk as old as this one, or older, is still waiting to be read.
+	 */
+	private boolean isReleased( Arrival arrival )
+	{
+		Iterator<Arrival> oldest = pending.iterator();
+		return !oldest.hasNext() || arrival.modified < oldest.next().modified;
+	}
+
+
+	/**
+	 * This compares the walks that are older than every walk still being read, device by device.<br>
+	 * It is called each time a walk leaves the pending set, so a walk is compared by whichever thread releases it.
+	 */
+	private void compareReleased()
+	{
+		while( true )
+		{
+			Arrival oldest = waiting.pollFirst();
+			if( oldest == null )
+			{
+				return;
+			}
+			if( !isReleased( oldest ) )
+			{
+				waiting.add( oldest );
+				// The walk holding it back may have been read in the meantime, by a thread that did not see this one.
+				if( !isReleased( oldest ) )
+				{
+					return;
+				}
+				continue;
+			}
+			compareArrived( oldest.device );
+		}
+	}
+
+
+	/**
+	 * This compares a device's released walks with its previous walk, oldest first.
+	 */
+	private void compareArrived( Device device )
+	{
+		device.lock.lock();
+		try
+		{
+			while( !device.arrived.isEmpty() && isReleased( device.arrived.peek() ) )
+			{
+				compare( device, device.arrived.poll() );
+			}
+		}
+		finally
+		{
+			device.lock.unlock();
+		}
+	}
+
+
+	/**
+	 * This compares one walk with the previous walk of its device, which the caller has locked.
+	 */
+	private void compare( Device device, Arrival arrival )
+	{
+		WalkIndex walk = arrival.walk;
+		// The waiting set may still hold this arrival, but not its walk.
+		arrival.walk = null;
+		if( device.walk != null && ( arrival.modified < device.modified || arrival.modified == device.modified && arrival.file.equals( device.path ) ) )
+		{
+			// The same walk is submitted again when the whole directory is read again.
+			if( !arrival.file.equals( device.path ) )
+			{
+				errorLogger.log( Level.INFO, "Skipping {0}, which is older than {1}, which has already been compared.", new Object[]{ arrival.file, device.path } );
+			}
+			return;
+		}
+		if( device.walk != null && walk.getSysUpTime() <= device.walk.getSysUpTime() )
+		{
+			errorLogger.log( Level.INFO, "{0} restarted, so {1} will be compared with the next walk.", new Object[]{ walk.getSysName(), arrival.file } );
+		}
+		else if( device.walk != null )
+		{
+			List<InterfaceResult> interfaces = UtilizationCalculator.calculateAll( device.walk, walk );
+			DeviceResult result = new DeviceResult( walk.getSysName(), walk.getSysDescr(), device.path.toString(), arrival.file.toString(), interfaces,
+			                                        interfaces == null ? "Walk files are not compatible!" : null, WalkReader.getCounterDefinitions().calculate( device.walk, walk ),
+			                                        walk.getCaptureTime() );
+			resultCount.incrementAndGet();
+			try
+			{
+				listener.deviceAnalyzed( result, walk.getCaptureTime() );
+			}
+			catch( IOException e )
+			{
+				errorLogger.log( Level.SEVERE, "Unable to write the statistics of {0}: {1}", new Object[]{ arrival.file, e.getLocalizedMessage() } );
+			}
+		}
+		// The previous walk is released here, and only its replacement is kept.
+		device.path = arrival.file;
+		device.walk = walk;
+		device.modified = arrival.modified;
+	} // End of compare() method.
+
+
+	/**
+	 * @return a one line summary of the work done so far.
+	 */
+	String summary()
+	{
+		return String.format( "Ingested %,d walks from %,d devices, and compared %,d pairs.", walkCount.get(), devices.size(), resultCount.get() );
+	}
+
+
+	/**
+	 * This stops watching the directory.  It may be called from any thread (such as a shutdown hook), and run() returns once the walks being read are finished.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		watcher.close();
+	}
+}
@@ -0,0 +1,37 @@
+package com.adamjhowell.snmpinterface;
+
+
+/**
+ * The JMX view of one processing stage (see Metrics.Stage), registered as com.adamjhowell.snmpinterface:type=Stage,name=&lt;stage&gt;.
+ */
+public interface StageMXBean
+{
+	/**
+	 * @return the number of times the stage has run.
+	 */
+	long getCount();
+
+
+	/**
+	 * @return the number of walks, interfaces, or rows the stage has handled.
+	 */
+	long getItems();
+
+
+	/**
+	 * @return the total time spent in the stage, in milliseconds.
+	 */
+	double getTotalMillis();
+
+
+	/**
+	 * @return the longest single run of the stage, in milliseconds.
+	 */
+	double getMaxMillis();
+
+
+	/**
+	 * @return the bytes allocated on the thread running the stage, or -1 if the JVM cannot measure them.
+	 */
+	long getAllocatedBytes();
+}
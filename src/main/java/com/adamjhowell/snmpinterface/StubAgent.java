@@ -0,0 +1,393 @@
+package com.adamjhowell.snmpinterface;
+
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * This is a minimal SNMP v2c agent that answers GET, GETNEXT and GETBULK requests from the contents of walk files.<br>
+ * It lets the live polling mode be tried, and checked against the file based calculations, without a real agent.
+ * <p>
+ * Every GETBULK with non-repeaters starts a new poll, and is answered from the next walk in turn (wrapping around),
+ * so serving two walks of the same device gives a poller the same counters it would read from those two files.<br>
+ * The rest of that poll is answered from the same walk.
+ * <p>
+ * Usage: StubAgent [--port &lt;port&gt;] [--community &lt;community&gt;] &lt;walk&gt; [&lt;walk&gt;...]
+ */
+public class StubAgent implements Closeable
+{
+	private static final Logger errorLogger = Logger.getLogger( StubAgent.class.getName() );
+	private static final String USAGE = "Usage: StubAgent [--port <port>] [--community <community>] <walk> [<walk>...]";
+	private static final int EXIT_USAGE = 1;
+	private static final int EXIT_INVALID_INPUT = 2;
+	/**
+	 * The largest UDP payload that can be sent over IPv4.
+	 */
+	private static final int MAX_DATAGRAM = 65507;
+	private static final Pattern WALK_LINE = Pattern.compile( "^\\s*(\\.?[0-9]+(?:\\.[0-9]+)+)\\s*=\\s*([A-Za-z0-9-]+):\\s*(.*?)\\s*$" );
+	private static final Pattern NUMBER = Pattern.compile( "-?[0-9]+" );
+
+	private final String community;
+	private final List<TreeMap<long[], SnmpMessage.VarBind>> walks = new ArrayList<>();
+	private final DatagramSocket socket;
+	private int currentWalk = -1;
+
+
+	/**
+	 * This binds to an ephemeral port on the loopback address, which getAddress() will return.
+	 *
+	 * @param community the community string that requests must use.
+	 * @param walkFiles the walks to serve, in turn.
+	 * @throws IOException if a walk cannot be read, or the socket cannot be bound.
+	 */
+	StubAgent( String community, List<Path> walkFiles ) throws IOException
+	{
+		this( community, new InetSocketAddress( InetAddress.getLoopbackAddress(), 0 ), walkFiles );
+	}
+
+
+	/**
+	 * @param community the community string that requests must use.
+	 * @param address   the address to listen on.
+	 * @param walkFiles the walks to serve, in turn.
+	 * @throws IOException if a walk cannot be read, or the socket cannot be bound.
+	 */
+	StubAgent( String community, InetSocketAddress address, List<Path> walkFiles ) throws IOException
+	{
+		this.community = community;
+		for( Path walkFile : walkFiles )
+		{
+			walks.add( load( walkFile ) );
+		}
+		socket = new DatagramSocket( address );
+	}
+
+
+	public static void main( String[] args )
+	{
+		System.exit( run( args ) );
+	} // End of main() method.
+
+
+	/**
+	 * This will parse the command line arguments, and answer requests until the process is killed.
+	 *
+	 * @param args the command line arguments.
+	 * @return the exit code for the process.
+	 */
+	static int run( String[] args )
+	{
+		int port = SnmpPoller.DEFAULT_PORT;
+		String community = "public";
+		List<Path> walkFiles = new ArrayList<>();
+		for( int i = 0; i < args.length; i++ )
+		{
+			if( "--port".equals( args[i] ) && i + 1 < args.length && args[i + 1].matches( "\\d+" ) )
+			{
+				port = Integer.parseInt( args[++i] );
+			}
+			else if( "--community".equals( args[i] ) && i + 1 < args.length )
+			{
+				community = args[++i];
+			}
+			else if( args[i].startsWith( "--" ) )
+			{
+				System.err.println( USAGE );
+				return EXIT_USAGE;
+			}
+			else
+			{
+				walkFiles.add( Paths.get( args[i] ) );
+			}
+		}
+		if( walkFiles.isEmpty() )
+		{
+			System.err.println( USAGE );
+			return EXIT_USAGE;
+		}
+
+		try( StubAgent agent = new StubAgent( community, new InetSocketAddress( port ), walkFiles ) )
+		{
+			System.err.println( "Serving " + walkFiles.size() + " walks on " + agent.getAddress() );
+			agent.serve();
+		}
+		catch( IOException e )
+		{
+			errorLogger.log( Level.SEVERE, "Unable to start the agent: {0}", e.getLocalizedMessage() );
+			return EXIT_INVALID_INPUT;
+		}
+		return 0;
+	} // End of run() method.
+
+
+	/**
+	 * This answers requests on a daemon thread, until this agent is closed.
+	 */
+	void start()
+	{
+		Thread thread = new Thread( () ->
+		                            {
+			                            try
+			                            {
+				                            serve();
+			                            }
+			                            catch( IOException e )
+			                            {
+				                            errorLogger.log( Level.SEVERE, "The stub agent stopped: {0}", e.getLocalizedMessage() );
+			                            }
+		                            }, "stub-agent" );
+		thread.setDaemon( true );
+		thread.start();
+	}
+
+
+	/**
+	 * @return the address this agent is listening on.
+	 */
+	InetSocketAddress getAddress()
+	{
+		return ( InetSocketAddress )socket.getLocalSocketAddress();
+	}
+
+
+	private void serve() throws IOException
+	{
+		byte[] buffer = new byte[MAX_DATAGRAM];
+		while( !socket.isClosed() )
+		{
+			DatagramPacket packet = new DatagramPacket( buffer, buffer.length );
+			try
+			{
+				socket.receive( packet );
+			}
+			catch( SocketException e )
+			{
+				// The socket was closed.
+				return;
+			}
+			SnmpMessage request;
+			try
+			{
+				request = SnmpMessage.decode( packet.getData(), packet.getLength() );
+			}
+			catch( IOException e )
+			{
+				errorLogger.log( Level.WARNING, "Ignoring a malformed request: {0}", e.getLocalizedMessage() );
+				continue;
+			}
+			// Like a real agent, requests with the wrong community are silently dropped.
+			if( !community.equals( request.getCommunity() ) )
+			{
+				continue;
+			}
+			byte[] response = respond( request ).encode();
+			if( response.length > MAX_DATAGRAM )
+			{
+				response = new SnmpMessage( SnmpMessage.RESPONSE, community, request.getRequestId(), 1, 0, request.getVarBinds() ).encode();
+			}
+			socket.send( new DatagramPacket( response, response.length, packet.getSocketAddress() ) );
+		}
+	}
+
+
+	/**
+	 * @param request a GET, GETNEXT, or GETBULK request.
+	 * @return the response to the request.
+	 */
+	synchronized SnmpMessage respond( SnmpMessage request )
+	{
+		if( request.getPduType() == SnmpMessage.GET_BULK_REQUEST && request.getErrorStatus() > 0 || currentWalk < 0 )
+		{
+			currentWalk = ( currentWalk + 1 ) % walks.size();
+		}
+		TreeMap<long[], SnmpMessage.VarBind> walk = walks.get( currentWalk );
+		List<SnmpMessage.VarBind> requested = request.getVarBinds();
+		List<SnmpMessage.VarBind> answers = new ArrayList<>();
+		switch( request.getPduType() )
+		{
+			case SnmpMessage.GET_REQUEST:
+				for( SnmpMessage.VarBind varBind : requested )
+				{
+					SnmpMessage.VarBind value = walk.get( arcs( varBind.getOid() ) );
+					answers.add( value != null ? value : new SnmpMessage.VarBind( varBind.getOid(), SnmpMessage.NO_SUCH_INSTANCE, 0, null ) );
+				}
+				break;
+			case SnmpMessage.GET_NEXT_REQUEST:
+				for( SnmpMessage.VarBind varBind : requested )
+				{
+					answers.add( next( walk, varBind.getOid() ) );
+				}
+				break;
+			case SnmpMessage.GET_BULK_REQUEST:
+				int nonRepeaters = Math.max( 0, Math.min( request.getErrorStatus(), requested.size() ) );
+				for( int i = 0; i < nonRepeaters; i++ )
+				{
+					answers.add( next( walk, requested.get( i ).getOid() ) );
+				}
+				List<String> cursors = new ArrayList<>();
+				for( int i = nonRepeaters; i < requested.size(); i++ )
+				{
+					cursors.add( requested.get( i ).getOid() );
+				}
+				boolean more = !cursors.isEmpty();
+				for( int row = 0; row < request.getErrorIndex() && more; row++ )
+				{
+					// The rows stop once every column has reached the end of the MIB view.
+					more = false;
+					for( int i = 0; i < cursors.size(); i++ )
+					{
+						SnmpMessage.VarBind answer = next( walk, cursors.get( i ) );
+						answers.add( answer );
+						cursors.set( i, answer.getOid() );
+						more |= answer.getType() != SnmpMessage.END_OF_MIB_VIEW;
+					}
+				}
+				break;
+			default:
+				return new SnmpMessage( SnmpMessage.RESPONSE, community, request.getRequestId(), SnmpMessage.ERROR_GEN_ERR, 0, requested );
+		}
+		return new SnmpMessage( SnmpMessage.RESPONSE, community, request.getRequestId(), 0, 0, answers );
+	} // End of respond() method.
+
+
+	private static SnmpMessage.VarBind next( TreeMap<long[], SnmpMessage.VarBind> walk, String oid )
+	{
+		Map.Entry<long[], SnmpMessage.VarBind> entry = walk.higherEntry( arcs( oid ) );
+		return entry != null ? entry.getValue() : new SnmpMessage.VarBind( oid, SnmpMessage.END_OF_MIB_VIEW, 0, null );
+	}
+
+
+	/**
+	 * This reads every "OID = TYPE: value" line of a walk.  Numeric types keep their number, OIDs stay OIDs, and everything else is served as an OCTET STRING.
+	 */
+	private static TreeMap<long[], SnmpMessage.VarBind> load( Path walkFile ) throws IOException
+	{
+		TreeMap<long[], SnmpMessage.VarBind> walk = new TreeMap<>( StubAgent::compareArcs );
+		try( BufferedReader reader = Files.newBufferedReader( walkFile, StandardCharsets.UTF_8 ) )
+		{
+			String line;
+			while( ( line = reader.readLine() ) != null )
+			{
+				Matcher matcher = WALK_LINE.matcher( line );
+				if( !matcher.matches() )
+				{
+					continue;
+				}
+				String oid = matcher.group( 1 ).startsWith( "." ) ? matcher.group( 1 ) : "." + matcher.group( 1 );
+				SnmpMessage.VarBind varBind = varBind( oid, matcher.group( 2 ).toUpperCase( Locale.ROOT ), matcher.group( 3 ) );
+				if( varBind != null )
+				{
+					walk.put( arcs( oid ), varBind );
+				}
+			}
+		}
+		return walk;
+	} // End of load() method.
+
+
+	/**
+	 * @return the typed varbind, or null if a numeric value holds no number.
+	 */
+	private static SnmpMessage.VarBind varBind( String oid, String type, String value )
+	{
+		int numericType;
+		switch( type )
+		{
+			case "INTEGER":
+				numericType = SnmpMessage.INTEGER;
+				break;
+			case "COUNTER32":
+				numericType = SnmpMessage.COUNTER32;
+				break;
+			case "GAUGE32":
+				numericType = SnmpMessage.GAUGE32;
+				break;
+			case "TIMETICKS":
+				numericType = SnmpMessage.TIME_TICKS;
+				break;
+			case "COUNTER64":
+				numericType = SnmpMessage.COUNTER64;
+				break;
+			case "OID":
+				if( value.matches( "\\.?[0-9]+(\\.[0-9]+)+" ) )
+				{
+					return new SnmpMessage.VarBind( oid, SnmpMessage.OBJECT_IDENTIFIER, 0, value );
+				}
+				return new SnmpMessage.VarBind( oid, SnmpMessage.OCTET_STRING, 0, value );
+			default:
+				String text = value.length() >= 2 && value.startsWith( "\"" ) && value.endsWith( "\"" ) ? value.substring( 1, value.length() - 1 ) : value;
+				return new SnmpMessage.VarBind( oid, SnmpMessage.OCTET_STRING, 0, text );
+		}
+		// Some agents wrap values in parentheses or add units, so this takes the first number in the value.
+		Matcher number = NUMBER.matcher( value );
+		if( !number.find() )
+		{
+			return null;
+		}
+		try
+		{
+			// Counter64 values above Long.MAX_VALUE are kept as their unsigned bit pattern.
+			String digits = number.group();
+			return new SnmpMessage.VarBind( oid, numericType, digits.startsWith( "-" ) ? Long.parseLong( digits ) : Long.parseUnsignedLong( digits ), null );
+		}
+		catch( NumberFormatException e )
+		{
+			return null;
+		}
+	} // End of varBind() method.
+
+
+	private static long[] arcs( String oid )
+	{
+		String[] parts = ( oid.startsWith( "." ) ? oid.substring( 1 ) : oid ).split( "\\." );
+		long[] arcs = new long[parts.length];
+		for( int i = 0; i < parts.length; i++ )
+		{
+			arcs[i] = Long.parseLong( parts[i] );
+		}
+		return arcs;
+	}
+
+
+	/**
+	 * OIDs are ordered arc by arc, with a prefix ordered before the OIDs below it.
+	 */
+	private static int compareArcs( long[] a, long[] b )
+	{
+		for( int i = 0; i < Math.min( a.length, b.length ); i++ )
+		{
+			if( a[i] != b[i] )
+			{
+				return Long.compare( a[i], b[i] );
+			}
+		}
+		return Integer.compare( a.length, b.length );
+	}
+
+
+	@Override
+	public void close()
+	{
+		socket.close();
+	}
+}
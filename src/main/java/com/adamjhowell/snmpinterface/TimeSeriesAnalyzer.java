@@ -0,0 +1,169 @@
+package com.adamjhowell.snmpinterface;
+
+
+import com.adamjhowell.snmpinterface.model.InterfaceDelta;
+import com.adamjhowell.snmpinterface.model.InterfaceSeries;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * This calculates the utilization of every interface over an ordered series of walks from one device.<br>
+ * Walks are added one at a time, and only the previous walk is kept, so the series may be any length.<br>
+ * Each pair of consecutive walks adds one interval to the series of every interface found in both.
+ * <p>
+ * A sysUpTime that goes backwards means the agent was re-initialized, and its counters were reset.<br>
+ * The interval across that reset is skipped, and the walk after it becomes the new baseline.
+ */
+class TimeSeriesAnalyzer
+{
+	private static final Logger errorLogger = Logger.getLogger( TimeSeriesAnalyzer.class.getName() );
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final Map<Long, Accumulator> accumulators = new LinkedHashMap<>();
+	/**
+	 * This is filled in again for every interface of every interval, so the series can be any length without allocating a delta for each.
+	 */
+	private final InterfaceDelta delta = new InterfaceDelta();
+	private WalkIndex previous;
+	private int walkCount;
+	private int intervalCount;
+	private int resetCount;
+
+
+	/**
+	 * This will add the intervals between the previous walk and this one.
+	 *
+	 * @param walk the next walk in the series.
+	 * @return false if the walk is from a different device than the rest of the series, and was ignored.
+	 */
+	boolean add( WalkIndex walk )
+	{
+		if( previous != null && ( !previous.getSysName().equals( walk.getSysName() ) || !previous.getSysDescr().equals( walk.getSysDescr() ) ) )
+		{
+			errorLogger.log( Level.SEVERE, "A walk from {0} was found in the series for {1}, and will be ignored.", new Object[]{ walk.getSysName(), previous.getSysName() } );
+			return false;
+		}
+		walkCount++;
+		if( previous != null )
+		{
+			long tickDelta = walk.getSysUpTime() - previous.getSysUpTime();
+			if( tickDelta <= 0 )
+			{
+				resetCount++;
+				errorLogger.log( Level.INFO, "The sysUpTime went from {0} to {1}, so the agent was re-initialized.  That interval will be skipped.",
+				                 new Object[]{ previous.getSysUpTime(), walk.getSysUpTime() } );
+			}
+			else
+			{
+				intervalCount++;
+				addInterval( previous, walk );
+			}
+		}
+		previous = walk;
+		return true;
+	}
+
+
+	private void addInterval( WalkIndex before, WalkIndex after )
+	{
+		for( int slot = 0; slot < after.size(); slot++ )
+		{
+			String ifDescr = after.getIfDescr( slot );
+			int beforeSlot = before.slotOf( after.getIfIndex( slot ) );
+			if( ifDescr == null || beforeSlot < 0 )
+			{
+				continue;
+			}
+			// The speed MUST match, and not be zero, for the utilization to be meaningful.
+			long ifSpeed = UtilizationCalculator.interfaceSpeed( after, slot );
+			if( ifSpeed == 0 || ifSpeed != UtilizationCalculator.interfaceSpeed( before, beforeSlot ) )
+			{
+				continue;
+			}
+			UtilizationCalculator.calculateDelta( before, beforeSlot, after, slot, delta );
+			accumulators.computeIfAbsent( after.getIfIndex( slot ), key -> new Accumulator( ifDescr ) ).add( delta.getInUtilization(), delta.getOutUtilization() );
+		}
+	}
+
+
+	/**
+	 * @return the series for every interface that has at least one interval, in walk order.
+	 */
+	List<InterfaceSeries> getSeries()
+	{
+		List<InterfaceSeries> series = new ArrayList<>();
+		for( Map.Entry<Long, Accumulator> entry : accumulators.entrySet() )
+		{
+			Accumulator accumulator = entry.getValue();
+			series.add( new InterfaceSeries( entry.getKey(), accumulator.ifDescr,
+			                                 Arrays.copyOf( accumulator.inbound, accumulator.count ),
+			                                 Arrays.copyOf( accumulator.outbound, accumulator.count ) ) );
+		}
+		return series;
+	}
+
+
+	/**
+	 * @return the sysName of the device, or an empty String if no walk has been added.
+	 */
+	String getSysName()
+	{
+		return previous == null ? "" : previous.getSysName();
+	}
+
+
+	int getWalkCount()
+	{
+		return walkCount;
+	}
+
+
+	int getIntervalCount()
+	{
+		return intervalCount;
+	}
+
+
+	int getResetCount()
+	{
+		return resetCount;
+	}
+
+
+	/**
+	 * The utilization values collected so far for one interface.
+	 */
+	private static final class Accumulator
+	{
+		private final String ifDescr;
+		private double[] inbound = new double[INITIAL_CAPACITY];
+		private double[] outbound = new double[INITIAL_CAPACITY];
+		private int count;
+
+
+		private Accumulator( String ifDescr )
+		{
+			this.ifDescr = ifDescr;
+		}
+
+
+		private void add( double inUtilization, double outUtilization )
+		{
+			if( count == inbound.length )
+			{
+				inbound = Arrays.copyOf( inbound, count * 2 );
+				outbound = Arrays.copyOf( outbound, count * 2 );
+			}
+			inbound[count] = inUtilization;
+			outbound[count] = outUtilization;
+			count++;
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package com.adamjhowell.snmpinterface;
+
+
+import com.adamjhowell.snmpinterface.model.InterfaceDelta;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+
+
+/**
+ * This keeps the items with the largest values out of any number offered, in a min-heap bounded to the number wanted.<br>
+ * Each offer is O(log n) for a top n, and nothing but the top n is kept, so the busiest interfaces of a whole fleet are found without sorting every interface.
+ * <p>
+ * Only positive values are kept, since an interface with no traffic, discards, or errors is not worth listing.<br>
+ * Items with equal values are ranked in the order they were offered.
+ *
+ * @param <T> the type of item ranked.
+ */
+final class TopTalkers<T>
+{
+	private final int limit;
+	/**
+	 * The smallest kept value is at the head, so it is the one replaced by a larger value.
+	 */
+	private final PriorityQueue<Entry<T>> heap;
+	private long offered;
+
+
+	/**
+	 * What interfaces can be ranked by.  Each is taken from an InterfaceDelta, and is NaN when the delta does not hold it (see InterfaceDelta.Status).
+	 */
+	enum Measure
+	{
+		/**
+		 * The total utilization (the average of the inbound and outbound utilization), as a percentage.
+		 */
+		UTILIZATION,
+		/**
+		 * The inbound plus outbound discards.
+		 */
+		DISCARDS,
+		/**
+		 * The inbound plus outbound errors.
+		 */
+		ERRORS;
+
+
+		/**
+		 * @param delta the delta of one interface.
+		 * @return the value of this measure for that interface, or NaN if it was not calculated.
+		 */
+		double of( InterfaceDelta delta )
+		{
+			InterfaceDelta.Status status = delta.getStatus();
+			if( this == UTILIZATION )
+			{
+				return status == InterfaceDelta.Status.VALID ? delta.getTotalUtilization() : Double.NaN;
+			}
+			if( status != InterfaceDelta.Status.VALID && status != InterfaceDelta.Status.ZERO_SPEED )
+			{
+				return Double.NaN;
+			}
+			return this == DISCARDS ? delta.getTotalDiscardDelta() : delta.getTotalErrorDelta();
+		}
+
+
+		/**
+		 * @param name the name of a measure, in any case.
+		 * @return that measure.
+		 * @throws IllegalArgumentException if there is no measure with that name.
+		 */
+		static Measure parse( String name )
+		{
+			return valueOf( name.toUpperCase( Locale.ROOT ) );
+		}
+	}
+
+
+	/**
+	 * @param limit the number of items to keep.
+	 */
+	TopTalkers( int limit )
+	{
+		if( limit < 1 )
+		{
+			throw new IllegalArgumentException( "The number of top talkers must be positive: " + limit );
+		}
+		this.limit = limit;
+		heap = new PriorityQueue<>( limit, Comparator.<Entry<T>>comparingDouble( entry -> entry.value ).thenComparingLong( entry -> -entry.order ) );
+	}
+
+
+	/**
+	 * @param value the value to rank the item by.
+	 * @param item  the item.
+	 * @return true if the item is now one of the top items.
+	 */
+	boolean offer( double value, T item )
+	{
+		// This is also false for NaN.
+		if( !( value > 0 ) )
+		{
+			return false;
+		}
+		offered++;
+		if( heap.size() < limit )
+		{
+			heap.add( new Entry<>( value, offered, item ) );
+			return true;
+		}
+		if( value <= heap.peek().value )
+		{
+			return false;
+		}
+		heap.poll();
+		heap.add( new Entry<>( value, offered, item ) );
+		return true;
+	}
+
+
+	/**
+	 * @return the top items, largest first.  The heap is left unchanged, so more may be offered afterwards.
+	 */
+	List<T> sorted()
+	{
+		List<Entry<T>> entries = new ArrayList<>( heap );
+		entries.sort( heap.comparator().reversed() );
+		List<T> items = new ArrayList<>( entries.size() );
+		for( Entry<T> entry : entries )
+		{
+			items.add( entry.item );
+		}
+		return items;
+	}
+
+
+	private static final class Entry<T>
+	{
+		private final double value;
+		private final long order;
+		private final T item;
+
+
+		private Entry( double value, long order, T item )
+		{
+			this.value = value;
+			this.order = order;
+			this.item = item;
+		}
+	}
+}
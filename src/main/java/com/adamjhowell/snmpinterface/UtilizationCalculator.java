@@ -0,0 +1,344 @@
+package com.adamjhowell.snmpinterface;
+
+
+import com.adamjhowell.snmpinterface.model.InterfaceDelta;
+import com.adamjhowell.snmpinterface.model.InterfaceResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * This holds the utilization calculations, apart from any JavaFX code, so that they can be used by both the GUI and the command line.
+ */
+final class UtilizationCalculator
+{
+	/**
+	 * This sets the value to wrap the counters at.
+	 */
+	private static final long COUNTER32MAX = 4294967295L;
+	/**
+	 * A Counter32 goes from COUNTER32MAX back to zero, so this is added to a negative delta to correct a 'counter wrap'.
+	 */
+	private static final long COUNTER32_MODULUS = COUNTER32MAX + 1;
+	/**
+	 * ifHighSpeed is in units of 1,000,000 bits per second.
+	 */
+	private static final long HIGH_SPEED_UNITS = 1000000L;
+	/**
+	 * The logging system used.
+	 */
+	private static final Logger errorLogger = Logger.getLogger( UtilizationCalculator.class.getName() );
+
+
+	private UtilizationCalculator()
+	{
+		// This class only holds static methods.
+	}
+
+
+	/**
+	 * @param before the counter value from the earlier walk.
+	 * @param after  the counter value from the later walk.
+	 * @return the difference between the 32-bit counters, corrected for a 'counter wrap' between the walks.
+	 */
+	static long counterDelta( long before, long after )
+	{
+		long delta = after - before;
+		if( delta < 0 )
+		{
+			delta += COUNTER32_MODULUS;
+		}
+		return delta;
+	}
+
+
+	/**
+	 * This reads one 32-bit column for an interface from each walk, and counts when the counter has wrapped.
+	 *
+	 * @param column the ifTable column to read.
+	 * @param label  the name of the counter, for the log.
+	 * @return the difference between the counters, corrected for a 'counter wrap' between the walks.
+	 */
+	private static long columnDelta( IfColumn column, String label, WalkIndex walk1, int slot1, WalkIndex walk2, int slot2 )
+	{
+		long before = walk1.getValue( column, slot1 );
+		long after = walk2.getValue( column, slot2 );
+		if( after < before )
+		{
+			Metrics.counterWrapped();
+			if( errorLogger.isLoggable( Level.FINE ) )
+			{
+				errorLogger.log( Level.FINE, "{0} rolled.", label );
+			}
+		}
+		return counterDelta( before, after );
+	}
+
+
+	/**
+	 * @param walk1 the earlier walk.
+	 * @param slot1 the slot of the interface in the earlier walk.
+	 * @param walk2 the later walk.
+	 * @param slot2 the slot of the same interface in the later walk.
+	 * @return true if both walks have the 64-bit (ifXTable) octet counters for the interface.
+	 */
+	static boolean usesHighCapacityCounters( WalkIndex walk1, int slot1, WalkIndex walk2, int slot2 )
+	{
+		return walk1.hasValue( IfColumn.IF_HC_IN_OCTETS, slot1 ) && walk1.hasValue( IfColumn.IF_HC_OUT_OCTETS, slot1 ) &&
+		       walk2.hasValue( IfColumn.IF_HC_IN_OCTETS, slot2 ) && walk2.hasValue( IfColumn.IF_HC_OUT_OCTETS, slot2 );
+	}
+
+
+	/**
+	 * @return the inbound octet delta, from the 64-bit counters if both walks have them.
+	 */
+	static long inOctetDelta( WalkIndex walk1, int slot1, WalkIndex walk2, int slot2 )
+	{
+		if( usesHighCapacityCounters( walk1, slot1, walk2, slot2 ) )
+		{
+			return highCapacityDelta( walk1.getValue( IfColumn.IF_HC_IN_OCTETS, slot1 ), walk2.getValue( IfColumn.IF_HC_IN_OCTETS, slot2 ), "Inbound" );
+		}
+		return columnDelta( IfColumn.IF_IN_OCTETS, "Inbound octet count", walk1, slot1, walk2, slot2 );
+	}
+
+
+	/**
+	 * @return the outbound octet delta, from the 64-bit counters if both walks have them.
+	 */
+	static long outOctetDelta( WalkIndex walk1, int slot1, WalkIndex walk2, int slot2 )
+	{
+		if( usesHighCapacityCounters( walk1, slot1, walk2, slot2 ) )
+		{
+			return highCapacityDelta( walk1.getValue( IfColumn.IF_HC_OUT_OCTETS, slot1 ), walk2.getValue( IfColumn.IF_HC_OUT_OCTETS, slot2 ), "Outbound" );
+		}
+		return columnDelta( IfColumn.IF_OUT_OCTETS, "Outbound octet count", walk1, slot1, walk2, slot2 );
+	}
+
+
+	/**
+	 * Counter64 values are unsigned, and are held in a long with the same bit pattern.<br>
+	 * Two's complement subtraction then gives the correct delta, even across a wrap, so no correction is needed.
+	 */
+	private static long highCapacityDelta( long before, long after, String direction )
+	{
+		if( Long.compareUnsigned( after, before ) < 0 )
+		{
+			Metrics.counterWrapped();
+			if( errorLogger.isLoggable( Level.FINE ) )
+			{
+				errorLogger.log( Level.FINE, "{0} 64-bit octet count rolled.", direction );
+			}
+		}
+		return after - before;
+	}
+
+
+	/**
+	 * ifSpeed is a Gauge32, and holds its maximum value when the interface is faster than that.<br>
+	 * In that case (or when ifSpeed is zero), ifHighSpeed is used instead, if the walk has it.
+	 *
+	 * @param walk the walk to read the speed from.
+	 * @param slot the slot of the interface in that walk.
+	 * @return the speed of the interface, in bits per second.
+	 */
+	static long interfaceSpeed( WalkIndex walk, int slot )
+	{
+		long ifSpeed = walk.getValue( IfColumn.IF_SPEED, slot );
+		long ifHighSpeed = walk.getValue( IfColumn.IF_HIGH_SPEED, slot );
+		if( walk.hasValue( IfColumn.IF_HIGH_SPEED, slot ) && ifHighSpeed > 0 && ( ifSpeed >= COUNTER32MAX || ifSpeed == 0 ) )
+		{
+			return ifHighSpeed * HIGH_SPEED_UNITS;
+		}
+		return ifSpeed;
+	}
+
+
+	/**
+	 * The generic formula for utilization is: ( delta-octets * 8 * 100 ) / ( delta-seconds * ifSpeed )
+	 *
+	 * @param octetDelta the number of octets sent or received during the interval.
+	 * @param tickDelta  the length of the interval, in hundredths of a second.
+	 * @param ifSpeed    the interface speed, in bits per second.
+	 * @return the utilization, as a percentage of the interface speed.
+	 */
+	static double utilization( long octetDelta, long tickDelta, long ifSpeed )
+	{
+		return ( ( double )octetDelta * 8 * 100 ) / ( ( ( double )tickDelta / 100 ) * ifSpeed );
+	}
+
+
+	/**
+	 * This will calculate the delta for every interface found in both walks.<br>
+	 * Problems with single interfaces are only logged at FINE, and are summarized in one warning, so a large walk does not log a line per interface.
+	 *
+	 * @param walk1 The index of one WALK.
+	 * @param walk2 The index of the other WALK.
+	 * @return A List with the delta for every interface, or null if the walks are not from the same machine.
+	 */
+	static List<InterfaceResult> calculateAll( WalkIndex walk1, WalkIndex walk2 )
+	{
+		boolean sameInterfaces;
+		Metrics.Timer discover = Metrics.Stage.DISCOVER.time();
+		try
+		{
+			sameInterfaces = walk1.hasSameInterfaces( walk2 );
+		}
+		finally
+		{
+			discover.close();
+		}
+		if( !sameInterfaces )
+		{
+			errorLogger.log( Level.SEVERE, "The SNMP walks appear to be from different machines.  This will prevent any calculations." );
+			return null;
+		}
+		List<InterfaceResult> results = new ArrayList<>();
+		int incomplete = 0;
+		try( Metrics.Timer timer = Metrics.Stage.CALCULATE.time() )
+		{
+			for( int slot = 0; slot < walk1.size(); slot++ )
+			{
+				String ifDescr = walk1.getIfDescr( slot );
+				if( ifDescr == null )
+				{
+					continue;
+				}
+				long ifIndex = walk1.getIfIndex( slot );
+				InterfaceDelta delta = calculateInOrder( walk1, walk2, ifIndex, new InterfaceDelta() );
+				if( delta.getStatus() != InterfaceDelta.Status.VALID )
+				{
+					incomplete++;
+				}
+				results.add( new InterfaceResult( ifIndex, ifDescr, delta ) );
+			}
+			timer.setItems( results.size() );
+		}
+		if( incomplete > 0 )
+		{
+			errorLogger.log( Level.WARNING, "{0} of {1} interfaces could not be fully calculated.  Their status says why.", new Object[]{ incomplete, results.size() } );
+		}
+		return results;
+	} // End of calculateAll() method.
+
+
+	/**
+	 * This will calculate the delta for one interface from two walks that may be in either order.<br>
+	 * The walk with the shorter sysUpTime is used as the first walk.
+	 *
+	 * @param walk1   The index of one WALK.
+	 * @param walk2   The index of the other WALK.
+	 * @param ifIndex The SNMP Interface Index to calculate.
+	 * @param delta   The delta to fill in, which may be reused from an earlier call.
+	 * @return the delta that was passed in, for convenience.
+	 */
+	static InterfaceDelta calculateInOrder( WalkIndex walk1, WalkIndex walk2, long ifIndex, InterfaceDelta delta )
+	{
+		int slot1 = walk1.slotOf( ifIndex );
+		int slot2 = walk2.slotOf( ifIndex );
+		if( slot1 < 0 || slot2 < 0 )
+		{
+			logInterface( "Interface {0} is not in both WALK files!", ifIndex );
+			delta.reset( InterfaceDelta.Status.MISSING_INTERFACE );
+		}
+		else if( walk1.getSysUpTime() < walk2.getSysUpTime() )
+		{
+			calculateDelta( walk1, slot1, walk2, slot2, delta );
+		}
+		else if( walk1.getSysUpTime() > walk2.getSysUpTime() )
+		{
+			calculateDelta( walk2, slot2, walk1, slot1, delta );
+		}
+		else
+		{
+			logInterface( "Invalid data, time stamps on the two WALK files are identical for interface {0}!", ifIndex );
+			delta.reset( InterfaceDelta.Status.IDENTICAL_TIME );
+		}
+		if( delta.getStatus() != InterfaceDelta.Status.VALID )
+		{
+			Metrics.incompleteInterfaces( 1 );
+		}
+		return delta;
+	} // End of calculateInOrder() method.
+
+
+	/**
+	 * This will analyze one interface in two walks, and fill in the differences between those walks.<br>
+	 * The counters are read directly from the primitive columns of each WalkIndex, and written to the primitive fields of the delta, so nothing is allocated.<br>
+	 * Created by Adam Howell on 2016-05-10.
+	 *
+	 * @param walk1 The index of the first WALK.
+	 * @param slot1 The slot of the interface in the first WALK.
+	 * @param walk2 The index of the second WALK.
+	 * @param slot2 The slot of the interface in the second WALK.
+	 * @param delta The delta to fill in.  Its status says which fields are meaningful.
+	 */
+	static void calculateDelta( WalkIndex walk1, int slot1, WalkIndex walk2, int slot2, InterfaceDelta delta )
+	{
+		// Get the number of ticks between the two walks.  There are 100 ticks per second.
+		long tickDelta = walk2.getSysUpTime() - walk1.getSysUpTime();
+		// The timestamps MUST be different for utilization to be meaningful.
+		if( tickDelta <= 0 )
+		{
+			logInterface( "Invalid data, SysUpTime values match, but should not for interface {0}!", walk1.getIfIndex( slot1 ) );
+			delta.reset( InterfaceDelta.Status.IDENTICAL_TIME );
+			return;
+		}
+
+		// Get the ifSpeed for each WALK.  These MUST match for any comparison to be meaningful.
+		long ifSpeed = interfaceSpeed( walk1, slot1 );
+		if( ifSpeed != interfaceSpeed( walk2, slot2 ) )
+		{
+			logInterface( "Invalid data, interface speeds do not match for interface {0}!", walk1.getIfIndex( slot1 ) );
+			delta.reset( InterfaceDelta.Status.SPEED_MISMATCH );
+			delta.setTickDelta( tickDelta );
+			delta.setIfSpeed( ifSpeed );
+			return;
+		}
+		if( ifSpeed == 0 )
+		{
+			// The deltas can still be calculated, but not the utilization.
+			logInterface( "Invalid data, interface speed is zero for interface {0}!", walk1.getIfIndex( slot1 ) );
+			delta.reset( InterfaceDelta.Status.ZERO_SPEED );
+		}
+		else
+		{
+			delta.reset( InterfaceDelta.Status.VALID );
+		}
+		delta.setTickDelta( tickDelta );
+		delta.setIfSpeed( ifSpeed );
+
+		// Prefer the 64-bit counters, which will not wrap between walks, when both walks have them.
+		delta.setHighCapacity( usesHighCapacityCounters( walk1, slot1, walk2, slot2 ) );
+		long inOctetDelta = inOctetDelta( walk1, slot1, walk2, slot2 );
+		long outOctetDelta = outOctetDelta( walk1, slot1, walk2, slot2 );
+		delta.setInOctetDelta( inOctetDelta );
+		delta.setOutOctetDelta( outOctetDelta );
+		if( ifSpeed != 0 )
+		{
+			delta.setInUtilization( utilization( inOctetDelta, tickDelta, ifSpeed ) );
+			delta.setOutUtilization( utilization( outOctetDelta, tickDelta, ifSpeed ) );
+		}
+
+		// The discard and error counters only exist in the ifTable, so they are always corrected for a 32-bit 'counter wrap'.
+		delta.setInDiscardDelta( columnDelta( IfColumn.IF_IN_DISCARDS, "Inbound discards", walk1, slot1, walk2, slot2 ) );
+		delta.setOutDiscardDelta( columnDelta( IfColumn.IF_OUT_DISCARDS, "Outbound discards", walk1, slot1, walk2, slot2 ) );
+		delta.setInErrorDelta( columnDelta( IfColumn.IF_IN_ERRORS, "Inbound errors", walk1, slot1, walk2, slot2 ) );
+		delta.setOutErrorDelta( columnDelta( IfColumn.IF_OUT_ERRORS, "Outbound errors", walk1, slot1, walk2, slot2 ) );
+	} // End of calculateDelta() method.
+
+
+	/**
+	 * A problem with one interface is logged at FINE, and only formatted when FINE is enabled, since it may happen for every interface in a walk.<br>
+	 * The status of the delta records the problem regardless.
+	 */
+	private static void logInterface( String message, long ifIndex )
+	{
+		if( errorLogger.isLoggable( Level.FINE ) )
+		{
+			errorLogger.log( Level.FINE, message, ifIndex );
+		}
+	}
+}
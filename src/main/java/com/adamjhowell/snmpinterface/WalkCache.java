@@ -0,0 +1,349 @@
+package com.adamjhowell.snmpinterface;
+
+
+import com.adamjhowell.snmpinterface.model.InterfaceDelta;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * This keeps recently read walks, and recently calculated interfaces, so that opening the same walks again, or clicking the same interface again, is a lookup.
+ * <p>
+ * A walk is keyed by its real path, size, and last modified time, so a file that changes is read again.<br>
+ * Walks are weighed by WalkIndex.estimatedBytes(), and the least recently used walks are dropped once their total passes the budget.<br>
+ * An interface is keyed by the keys of its two walks and its ifIndex, and the least recently used interfaces are dropped once there are too many.
+ * Walks that did not come from this cache (such as live polls) are calculated without being cached.
+ * <p>
+ * One cache is shared by the GUI, every batch mode, and the WalkServer.  The hit and miss counts of both caches can be read at any time.<br>
+ * The cached WalkIndex objects are shared, so they must not be changed once they are read.
+ */
+final class WalkCache
+{
+	/**
+	 * By default, walks may use up to a quarter of the maximum heap.
+	 */
+	private static final long DEFAULT_MAX_WALK_BYTES = Runtime.getRuntime().maxMemory() / 4;
+	private static final int DEFAULT_MAX_RESULTS = 100000;
+	private static final WalkCache SHARED = new WalkCache( DEFAULT_MAX_WALK_BYTES, DEFAULT_MAX_RESULTS );
+
+	private final long maxWalkBytes;
+	private final int maxResults;
+	/**
+	 * The walks, in access order.  This, weightedBytes, and keysByWalk are guarded by this map.
+	 */
+	private final LinkedHashMap<FileKey, CachedWalk> walks = new LinkedHashMap<>( 16, 0.75f, true );
+	private final Map<WalkIndex, FileKey> keysByWalk = new IdentityHashMap<>();
+	private long weightedBytes;
+	/**
+	 * The calculated interfaces, in access order.  This is guarded by itself.
+	 */
+	private final LinkedHashMap<ResultKey, InterfaceDelta> results;
+	private final AtomicLong walkHits = new AtomicLong();
+	private final AtomicLong walkMisses = new AtomicLong();
+	private final AtomicLong resultHits = new AtomicLong();
+	private final AtomicLong resultMisses = new AtomicLong();
+
+
+	/**
+	 * @param maxWalkBytes the estimated heap that cached walks may use.
+	 * @param maxResults   the number of calculated interfaces to keep.
+	 */
+	WalkCache( long maxWalkBytes, int maxResults )
+	{
+		this.maxWalkBytes = maxWalkBytes;
+		this.maxResults = maxResults;
+		results = new LinkedHashMap<ResultKey, InterfaceDelta>( 16, 0.75f, true )
+		{
+			@Override
+			protected boolean removeEldestEntry( Map.Entry<ResultKey, InterfaceDelta> eldest )
+			{
+				return size() > WalkCache.this.maxResults;
+			}
+		};
+	}
+
+
+	/**
+	 * @return the cache shared by every part of this program.
+	 */
+	static WalkCache shared()
+	{
+		return SHARED;
+	}
+
+
+	/**
+	 * @param path the walk file to read.
+	 * @return the walk, from the cache if that file has not changed since it was read.
+	 * @throws IOException if the file cannot be read.
+	 */
+	WalkIndex read( Path path ) throws IOException
+	{
+		return read( path, null );
+	}
+
+
+	/**
+	 * This returns the cached walk if the file has not changed, and otherwise reads it with WalkReader and caches it.<br>
+	 * Two threads that miss on the same file at once will both read it, and the second to finish replaces the first.
+	 *
+	 * @param path     the walk file to read.
+	 * @param progress the listener to pass to WalkReader, which is told the whole file was read on a hit.  It may be null.
+	 * @return the walk.
+	 * @throws IOException if the file cannot be read.
+	 */
+	WalkIndex read( Path path, WalkReader.Progress progress ) throws IOException
+	{
+		FileKey key = FileKey.of( path );
+		CachedWalk cached;
+		synchronized( walks )
+		{
+			cached = walks.get( key );
+		}
+		if( cached != null )
+		{
+			walkHits.incrementAndGet();
+			if( progress != null )
+			{
+				progress.update( key.size, key.size );
+			}
+			return cached.index;
+		}
+		walkMisses.incrementAndGet();
+		WalkIndex index = WalkReader.read( path, progress );
+		CachedWalk walk = new CachedWalk( index, index.estimatedBytes() );
+		synchronized( walks )
+		{
+			// Drop any earlier version of this file, which can never be hit again.
+			Iterator<Map.Entry<FileKey, CachedWalk>> entries = walks.entrySet().iterator();
+			while( entries.hasNext() )
+			{
+				Map.Entry<FileKey, CachedWalk> entry = entries.next();
+				if( entry.getKey().path.equals( key.path ) )
+				{
+					entries.remove();
+					weightedBytes -= entry.getValue().bytes;
+					keysByWalk.remove( entry.getValue().index );
+				}
+			}
+			walks.put( key, walk );
+			keysByWalk.put( index, key );
+			weightedBytes += walk.bytes;
+			// Drop the least recently used walks, but always keep the one just read.
+			Iterator<Map.Entry<FileKey, CachedWalk>> eldest = walks.entrySet().iterator();
+			while( weightedBytes > maxWalkBytes && walks.size() > 1 )
+			{
+				CachedWalk dropped = eldest.next().getValue();
+				eldest.remove();
+				weightedBytes -= dropped.bytes;
+				keysByWalk.remove( dropped.index );
+			}
+		}
+		return index;
+	} // End of read() method.
+
+
+	/**
+	 * This is UtilizationCalculator.calculateInOrder(), with the result cached when both walks came from this cache.
+	 *
+	 * @param walk1   the index of one WALK.
+	 * @param walk2   the index of the other WALK.
+	 * @param ifIndex the SNMP Interface Index to calculate.
+	 * @return a delta that belongs to the caller.
+	 */
+	InterfaceDelta calculate( WalkIndex walk1, WalkIndex walk2, long ifIndex )
+	{
+		FileKey key1;
+		FileKey key2;
+		synchronized( walks )
+		{
+			key1 = keysByWalk.get( walk1 );
+			key2 = keysByWalk.get( walk2 );
+		}
+		if( key1 == null || key2 == null )
+		{
+			return UtilizationCalculator.calculateInOrder( walk1, walk2, ifIndex, new InterfaceDelta() );
+		}
+		ResultKey key = new ResultKey( key1, key2, ifIndex );
+		InterfaceDelta cached;
+		synchronized( results )
+		{
+			cached = results.get( key );
+		}
+		if( cached != null )
+		{
+			resultHits.incrementAndGet();
+			return cached.copy();
+		}
+		resultMisses.incrementAndGet();
+		InterfaceDelta delta = UtilizationCalculator.calculateInOrder( walk1, walk2, ifIndex, new InterfaceDelta() );
+		synchronized( results )
+		{
+			results.put( key, delta.copy() );
+		}
+		return delta;
+	} // End of calculate() method.
+
+
+	long getWalkHits()
+	{
+		return walkHits.get();
+	}
+
+
+	long getWalkMisses()
+	{
+		return walkMisses.get();
+	}
+
+
+	long getResultHits()
+	{
+		return resultHits.get();
+	}
+
+
+	long getResultMisses()
+	{
+		return resultMisses.get();
+	}
+
+
+	/**
+	 * @return the estimated heap used by the cached walks.
+	 */
+	long getWalkBytes()
+	{
+		synchronized( walks )
+		{
+			return weightedBytes;
+		}
+	}
+
+
+	/**
+	 * @return a one line summary of the hits and misses of both caches.
+	 */
+	String summary()
+	{
+		int walkCount;
+		int resultCount;
+		synchronized( walks )
+		{
+			walkCount = walks.size();
+		}
+		synchronized( results )
+		{
+			resultCount = results.size();
+		}
+		return String.format( "Walk cache: %,d walks (%,d bytes), %,d hits, %,d misses.  Interface cache: %,d interfaces, %,d hits, %,d misses.",
+		                      walkCount, getWalkBytes(), getWalkHits(), getWalkMisses(), resultCount, getResultHits(), getResultMisses() );
+	}
+
+
+	/**
+	 * This identifies one version of a file.  The real path is used, so two names for the same file share an entry.
+	 */
+	private static final class FileKey
+	{
+		private final Path path;
+		private final long size;
+		private final long lastModified;
+
+
+		private FileKey( Path path, long size, long lastModified )
+		{
+			this.path = path;
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+
+
+		private static FileKey of( Path path ) throws IOException
+		{
+			Path realPath = path.toRealPath();
+			BasicFileAttributes attributes = Files.readAttributes( realPath, BasicFileAttributes.class );
+			return new FileKey( realPath, attributes.size(), attributes.lastModifiedTime().toMillis() );
+		}
+
+
+		@Override
+		public boolean equals( Object other )
+		{
+			if( !( other instanceof FileKey ) )
+			{
+				return false;
+			}
+			FileKey that = ( FileKey )other;
+			return size == that.size && lastModified == that.lastModified && path.equals( that.path );
+		}
+
+
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash( path, size, lastModified );
+		}
+	}
+
+
+	/**
+	 * One interface, calculated from one pair of walks.
+	 */
+	private static final class ResultKey
+	{
+		private final FileKey first;
+		private final FileKey second;
+		private final long ifIndex;
+
+
+		private ResultKey( FileKey first, FileKey second, long ifIndex )
+		{
+			this.first = first;
+			this.second = second;
+			this.ifIndex = ifIndex;
+		}
+
+
+		@Override
+		public boolean equals( Object other )
+		{
+			if( !( other instanceof ResultKey ) )
+			{
+				return false;
+			}
+			ResultKey that = ( ResultKey )other;
+			return ifIndex == that.ifIndex && first.equals( that.first ) && second.equals( that.second );
+		}
+
+
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash( first, second, ifIndex );
+		}
+	}
+
+
+	private static final class CachedWalk
+	{
+		private final WalkIndex index;
+		private final long bytes;
+
+
+		private CachedWalk( WalkIndex index, long bytes )
+		{
+			this.index = index;
+			this.bytes = bytes;
+		}
+	}
+}
@@ -0,0 +1,456 @@
+package com.adamjhowell.snmpinterface;
+
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * This writes synthetic net-snmp style walk pairs (OID = TYPE: value), for benchmarking and soak testing at a larger scale than the sample walks.<br>
+ * The second walk of a pair is taken a configurable number of ticks after the first, from the same imaginary device.
+ * <p>
+ * Every value is derived from the seed, the ifIndex, and the column, so the same settings always produce the same files.<br>
+ * Nothing is kept per interface, and lines are written as they are produced, so a multi-GB walk is written in constant memory.
+ * <p>
+ * Each walk holds the system group, the ifTable, an ipNetToMediaTable and an enterprise subtree as noise, and (optionally) the ifXTable, in OID order.<br>
+ * The 32-bit counters are the low 32 bits of the 64-bit counters, as they are on a real agent,
+ * and a configurable share of the interfaces have 32-bit octet counters that wrap between the two walks.
+ * <p>
+ * Usage: WalkGenerator [--interfaces &lt;count&gt;] [--noise &lt;lines&gt;] [--seed &lt;number&gt;] [--ticks &lt;hundredths&gt;] [--wrap-percent &lt;percent&gt;] [--no-ifx] &lt;first walk&gt; &lt;second walk&gt;
+ */
+public class WalkGenerator
+{
+	private static final String USAGE = "Usage: WalkGenerator [--interfaces <count>] [--noise <lines>] [--seed <number>] [--ticks <hundredths>] [--wrap-percent <percent>] [--no-ifx] <first walk> <second walk>";
+	private static final int EXIT_USAGE = 1;
+	private static final int EXIT_IO_ERROR = 2;
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final long COUNTER32_MODULUS = 4294967296L;
+	private static final long COUNTER32MAX = COUNTER32_MODULUS - 1;
+	private static final long[] SPEEDS = { 10000000L, 100000000L, 1000000000L, 1000000000L, 10000000000L, 25000000000L, 100000000000L };
+	private static final String IP_NET_TO_MEDIA_OID = ".1.3.6.1.2.1.4.22.1.2.";
+	private static final String ENTERPRISE_OID = ".1.3.6.1.4.1.2021.";
+	/**
+	 * The number of system group lines (six), plus the ifNumber line.
+	 */
+	private static final int SYSTEM_LINES = 7;
+	private static final int IF_ENTRY_COLUMNS = 22;
+	private static final int IF_X_ENTRY_COLUMNS = 19;
+	/**
+	 * These keep the random values for different purposes independent of each other.
+	 */
+	private static final int SPEED_STREAM = 1;
+	private static final int WRAP_STREAM = 2;
+	private static final int IN_UTILIZATION_STREAM = 3;
+	private static final int OUT_UTILIZATION_STREAM = 4;
+	private static final int IN_BASE_STREAM = 5;
+	private static final int OUT_BASE_STREAM = 6;
+	private static final int SYS_UPTIME_STREAM = 7;
+	private static final int COUNTER_STREAM = 8;
+
+	private final long seed;
+	private int interfaceCount = 4;
+	private long noiseLines = 1000;
+	private long tickDelta = 30000;
+	private int wrapPercent = 5;
+	private boolean ifXTable = true;
+
+
+	/**
+	 * @param seed the seed that every value in the walks is derived from.
+	 */
+	WalkGenerator( long seed )
+	{
+		this.seed = seed;
+	}
+
+
+	public static void main( String[] args )
+	{
+		System.exit( run( args ) );
+	} // End of main() method.
+
+
+	/**
+	 * This will parse the command line arguments, and write the requested walk pair.
+	 *
+	 * @param args the command line arguments.
+	 * @return the exit code for the process.
+	 */
+	static int run( String[] args )
+	{
+		long seed = 1;
+		int interfaces = 4;
+		long noise = 1000;
+		long ticks = 30000;
+		int wrap = 5;
+		boolean ifx = true;
+		List<String> walkFiles = new ArrayList<>();
+		try
+		{
+			for( int i = 0; i < args.length; i++ )
+			{
+				if( "--interfaces".equals( args[i] ) && i + 1 < args.length )
+				{
+					interfaces = Integer.parseInt( args[++i] );
+				}
+				else if( "--noise".equals( args[i] ) && i + 1 < args.length )
+				{
+					noise = Long.parseLong( args[++i] );
+				}
+				else if( "--seed".equals( args[i] ) && i + 1 < args.length )
+				{
+					seed = Long.parseLong( args[++i] );
+				}
+				else if( "--ticks".equals( args[i] ) && i + 1 < args.length )
+				{
+					ticks = Long.parseLong( args[++i] );
+				}
+				else if( "--wrap-percent".equals( args[i] ) && i + 1 < args.length )
+				{
+					wrap = Integer.parseInt( args[++i] );
+				}
+				else if( "--no-ifx".equals( args[i] ) )
+				{
+					ifx = false;
+				}
+				else if( args[i].startsWith( "--" ) )
+				{
+					System.err.println( USAGE );
+					return EXIT_USAGE;
+				}
+				else
+				{
+					walkFiles.add( args[i] );
+				}
+			}
+		}
+		catch( NumberFormatException e )
+		{
+			System.err.println( USAGE );
+			return EXIT_USAGE;
+		}
+		if( walkFiles.size() != 2 || interfaces < 1 || noise < 0 || ticks < 1 || wrap < 0 || wrap > 100 )
+		{
+			System.err.println( USAGE );
+			return EXIT_USAGE;
+		}
+
+		WalkGenerator generator = new WalkGenerator( seed );
+		generator.setInterfaceCount( interfaces );
+		generator.setNoiseLines( noise );
+		generator.setTickDelta( ticks );
+		generator.setWrapPercent( wrap );
+		generator.setIfXTable( ifx );
+		try
+		{
+			generator.writePair( Paths.get( walkFiles.get( 0 ) ), Paths.get( walkFiles.get( 1 ) ) );
+		}
+		catch( IOException e )
+		{
+			System.err.println( "Unable to write the walks: " + e.getLocalizedMessage() );
+			return EXIT_IO_ERROR;
+		}
+		System.err.println( "Wrote " + generator.getLineCount() + " lines to each walk." );
+		return 0;
+	} // End of run() method.
+
+
+	/**
+	 * @param first  the file to write the first walk to.
+	 * @param second the file to write the second walk to, which is taken tickDelta hundredths of a second later.
+	 * @throws IOException if either file cannot be written.
+	 */
+	void writePair( Path first, Path second ) throws IOException
+	{
+		for( int walkNumber = 1; walkNumber <= 2; walkNumber++ )
+		{
+			try( Writer out = new BufferedWriter( Files.newBufferedWriter( walkNumber == 1 ? first : second, StandardCharsets.UTF_8 ), BUFFER_SIZE ) )
+			{
+				write( out, walkNumber );
+			}
+		}
+	}
+
+
+	/**
+	 * This writes one walk of the pair.  Each line is written as soon as it is produced.
+	 *
+	 * @param out        where to write the walk.
+	 * @param walkNumber 1 for the first walk of the pair, or 2 for the second.
+	 * @throws IOException if the walk cannot be written.
+	 */
+	void write( Writer out, int walkNumber ) throws IOException
+	{
+		long sysUpTime = 100000L + ( random( 0, SYS_UPTIME_STREAM ) >>> 35 ) + ( walkNumber - 1 ) * tickDelta;
+		out.write( SnmpOids.SYS_DESCR + " = STRING: \"Linux synthetic-" + Long.toHexString( seed ) + " 4.19.0-generated #1 SMP x86_64\"\n" );
+		out.write( ".1.3.6.1.2.1.1.2.0 = OID: .1.3.6.1.4.1.8072.3.2.10\n" );
+		out.write( SnmpOids.SYS_UPTIME_OID + " = Timeticks: (" + sysUpTime + ") " + formatTicks( sysUpTime ) + "\n" );
+		out.write( ".1.3.6.1.2.1.1.4.0 = STRING: \"Lab\"\n" );
+		out.write( SnmpOids.SYS_NAME + " = STRING: \"synthetic-" + Long.toHexString( seed ) + "\"\n" );
+		out.write( ".1.3.6.1.2.1.1.6.0 = STRING: \"Lab\"\n" );
+		out.write( ".1.3.6.1.2.1.2.1.0 = INTEGER: " + interfaceCount + "\n" );
+
+		// Agents walk a table one column at a time.
+		for( int column = 1; column <= IF_ENTRY_COLUMNS; column++ )
+		{
+			for( int ifIndex = 1; ifIndex <= interfaceCount; ifIndex++ )
+			{
+				out.write( SnmpOids.IF_ENTRY_OID + column + "." + ifIndex + " = " + ifEntryValue( column, ifIndex, walkNumber ) + "\n" );
+			}
+		}
+
+		// Half of the noise comes before the ifXTable, and half after it.
+		long noiseBefore = noiseLines / 2;
+		for( long line = 0; line < noiseBefore; line++ )
+		{
+			long host = line + 1;
+			out.write( IP_NET_TO_MEDIA_OID + ( line % interfaceCount + 1 ) + ".10." + ( host >>> 16 & 255 ) + "." + ( host >>> 8 & 255 ) + "." + ( host & 255 )
+			           + " = Hex-STRING: 00 1A 2B " + hexByte( host >>> 16 ) + " " + hexByte( host >>> 8 ) + " " + hexByte( host ) + "\n" );
+		}
+
+		if( ifXTable )
+		{
+			for( int column = 1; column <= IF_X_ENTRY_COLUMNS; column++ )
+			{
+				for( int ifIndex = 1; ifIndex <= interfaceCount; ifIndex++ )
+				{
+					out.write( SnmpOids.IF_X_ENTRY_OID + column + "." + ifIndex + " = " + ifXEntryValue( column, ifIndex, walkNumber ) + "\n" );
+				}
+			}
+		}
+
+		for( long line = noiseBefore; line < noiseLines; line++ )
+		{
+			out.write( ENTERPRISE_OID + ( line % 16 + 1 ) + ".1." + ( line / 16 + 1 ) + " = Counter32: " + ( ( random( line, COUNTER_STREAM ) >>> 32 ) + walkNumber ) + "\n" );
+		}
+	} // End of write() method.
+
+
+	/**
+	 * @return the number of lines in each walk, with the current settings.
+	 */
+	long getLineCount()
+	{
+		return SYSTEM_LINES + ( long )interfaceCount * ( IF_ENTRY_COLUMNS + ( ifXTable ? IF_X_ENTRY_COLUMNS : 0 ) ) + noiseLines;
+	}
+
+
+	/**
+	 * @return the number of lines each interface adds to a walk, with the current settings.
+	 */
+	int getLinesPerInterface()
+	{
+		return IF_ENTRY_COLUMNS + ( ifXTable ? IF_X_ENTRY_COLUMNS : 0 );
+	}
+
+
+	private String ifEntryValue( int column, int ifIndex, int walkNumber )
+	{
+		switch( column )
+		{
+			case 1:
+				return "INTEGER: " + ifIndex;
+			case 2:
+				return "STRING: \"" + ifDescr( ifIndex ) + "\"";
+			case 3:
+				return ifIndex == 1 ? "INTEGER: 24" : "INTEGER: 6";
+			case 4:
+				return ifIndex == 1 ? "INTEGER: 16436" : "INTEGER: 1500";
+			case 5:
+				return "Gauge32: " + Math.min( speed( ifIndex ), COUNTER32MAX );
+			case 6:
+				return ifIndex == 1 ? "STRING: " : "STRING: 0:1a:2b:" + Integer.toHexString( ifIndex >>> 16 & 255 ) + ":" + Integer.toHexString( ifIndex >>> 8 & 255 ) + ":" + Integer.toHexString( ifIndex & 255 );
+			case 7:
+			case 8:
+				return "INTEGER: 1";
+			case 9:
+				return "Timeticks: (0) 0:00:00.00";
+			case 10:
+				return "Counter32: " + ( octets( ifIndex, true, walkNumber ) & COUNTER32MAX );
+			case 11:
+				return "Counter32: " + ( octets( ifIndex, true, walkNumber ) / 700 & COUNTER32MAX );
+			case 16:
+				return "Counter32: " + ( octets( ifIndex, false, walkNumber ) & COUNTER32MAX );
+			case 17:
+				return "Counter32: " + ( octets( ifIndex, false, walkNumber ) / 700 & COUNTER32MAX );
+			case 21:
+				return "Gauge32: 0";
+			case 22:
+				return "OID: .0.0";
+			default:
+				// The packet, discard, error, and unknown protocol counters (12 to 15, and 18 to 20).
+				return "Counter32: " + smallCounter( ifIndex, column, walkNumber );
+		}
+	}
+
+
+	private String ifXEntryValue( int column, int ifIndex, int walkNumber )
+	{
+		switch( column )
+		{
+			case 1:
+				return "STRING: " + ifDescr( ifIndex );
+			case 6:
+				return "Counter64: " + Long.toUnsignedString( octets( ifIndex, true, walkNumber ) );
+			case 7:
+				return "Counter64: " + octets( ifIndex, true, walkNumber ) / 700;
+			case 10:
+				return "Counter64: " + Long.toUnsignedString( octets( ifIndex, false, walkNumber ) );
+			case 11:
+				return "Counter64: " + octets( ifIndex, false, walkNumber ) / 700;
+			case 14:
+			case 17:
+				return "INTEGER: 1";
+			case 15:
+				return "Gauge32: " + speed( ifIndex ) / 1000000L;
+			case 16:
+				return "INTEGER: 2";
+			case 18:
+				return "STRING: \"synthetic link " + ifIndex + "\"";
+			case 19:
+				return "Timeticks: (0) 0:00:00.00";
+			default:
+				// The multicast and broadcast packet counters, which are 32-bit (2 to 5) or 64-bit (8, 9, 12, 13).
+				return ( column <= 5 ? "Counter32: " : "Counter64: " ) + smallCounter( ifIndex, column, walkNumber );
+		}
+	}
+
+
+	private static String ifDescr( int ifIndex )
+	{
+		return ifIndex == 1 ? "lo" : "eth" + ( ifIndex - 2 );
+	}
+
+
+	/**
+	 * @return the speed of the interface in bits per second.  The loopback is always 10 Mb/s, as in the sample walks.
+	 */
+	private long speed( int ifIndex )
+	{
+		return ifIndex == 1 ? SPEEDS[0] : SPEEDS[( int )( ( random( ifIndex, SPEED_STREAM ) >>> 1 ) % SPEEDS.length )];
+	}
+
+
+	/**
+	 * This is the 64-bit octet counter of an interface.  The 32-bit counter is its low 32 bits.
+	 *
+	 * @param inbound    true for the inbound counter, false for the outbound counter.
+	 * @param walkNumber 1 for the first walk of the pair, or 2 for the second.
+	 * @return the counter value.
+	 */
+	private long octets( int ifIndex, boolean inbound, int walkNumber )
+	{
+		// Up to 80% utilization, in either direction.
+		double utilization = unit( ifIndex, inbound ? IN_UTILIZATION_STREAM : OUT_UTILIZATION_STREAM ) * 0.8;
+		long delta = ( long )( speed( ifIndex ) / 8.0 * ( tickDelta / 100.0 ) * utilization );
+		long base = random( ifIndex, inbound ? IN_BASE_STREAM : OUT_BASE_STREAM ) >>> 20;
+		if( unit( ifIndex, WRAP_STREAM ) * 100 < wrapPercent )
+		{
+			// Place the low 32 bits so that the 32-bit counter wraps halfway between the walks.
+			base = ( base & ~COUNTER32MAX ) + COUNTER32_MODULUS - 1 - ( delta % COUNTER32_MODULUS ) / 2;
+		}
+		return walkNumber == 1 ? base : base + delta;
+	}
+
+
+	/**
+	 * @return a counter that grows slowly between the walks, for packets, discards, and errors.
+	 */
+	private long smallCounter( int ifIndex, int column, int walkNumber )
+	{
+		long random = random( ifIndex, COUNTER_STREAM + column );
+		long base = ( random >>> 44 ) * 16;
+		// Most interfaces see no discards or errors between the walks.
+		long delta = ( random & 7 ) == 0 ? random >>> 58 : 0;
+		return walkNumber == 1 ? base : base + delta;
+	}
+
+
+	/**
+	 * This is the SplitMix64 finalizer, which turns the seed, key, and stream into a well mixed 64-bit value.
+	 */
+	private long random( long key, int stream )
+	{
+		long z = seed + key * 0x9E3779B97F4A7C15L + stream * 0xD1B54A32D192ED03L;
+		z = ( z ^ ( z >>> 30 ) ) * 0xBF58476D1CE4E5B9L;
+		z = ( z ^ ( z >>> 27 ) ) * 0x94D049BB133111EBL;
+		return z ^ ( z >>> 31 );
+	}
+
+
+	/**
+	 * @return a value from 0 (inclusive) to 1 (exclusive).
+	 */
+	private double unit( long key, int stream )
+	{
+		return ( random( key, stream ) >>> 11 ) * 0x1.0p-53;
+	}
+
+
+	private static String hexByte( long value )
+	{
+		String hex = Long.toHexString( value & 255 ).toUpperCase();
+		return hex.length() == 1 ? "0" + hex : hex;
+	}
+
+
+	/**
+	 * @return the ticks in the format net-snmp uses after the raw value, e.g. "10 days, 4:05:06.84".
+	 */
+	private static String formatTicks( long ticks )
+	{
+		long days = ticks / 8640000;
+		long hours = ticks / 360000 % 24;
+		long minutes = ticks / 6000 % 60;
+		long seconds = ticks / 100 % 60;
+		long hundredths = ticks % 100;
+		return ( days > 0 ? days + ( days == 1 ? " day, " : " days, " ) : "" ) + hours + ":" + ( minutes < 10 ? "0" : "" ) + minutes + ":" + ( seconds < 10 ? "0" : "" ) + seconds
+		       + "." + ( hundredths < 10 ? "0" : "" ) + hundredths;
+	}
+
+
+	void setInterfaceCount( int interfaceCount )
+	{
+		this.interfaceCount = interfaceCount;
+	}
+
+
+	void setNoiseLines( long noiseLines )
+	{
+		this.noiseLines = noiseLines;
+	}
+
+
+	/**
+	 * @param tickDelta the time between the walks, in hundredths of a second.
+	 */
+	void setTickDelta( long tickDelta )
+	{
+		this.tickDelta = tickDelta;
+	}
+
+
+	/**
+	 * @param wrapPercent the share of interfaces whose 32-bit octet counters wrap between the walks, from 0 to 100.
+	 */
+	void setWrapPercent( int wrapPercent )
+	{
+		this.wrapPercent = wrapPercent;
+	}
+
+
+	/**
+	 * @param ifXTable false to leave out the ifXTable, as an agent that only supports SNMPv1 would.
+	 */
+	void setIfXTable( boolean ifXTable )
+	{
+		this.ifXTable = ifXTable;
+	}
+}
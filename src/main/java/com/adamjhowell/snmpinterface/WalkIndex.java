@@ -0,0 +1,493 @@
+package com.adamjhowell.snmpinterface;
+
+
+import com.adamjhowell.snmpinterface.model.SnmpInterface;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * This holds everything this program needs from one SNMP walk, filled in by a single pass of the WalkReader.<br>
+ * Each interface is given a slot the first time its ifIndex is seen, and every IfColumn is a primitive array indexed by that slot.<br>
+ * This means that finding the counters for any ifIndex is a map lookup, rather than another pass over the walk.<br>
+ * The values of configured counters (see CounterDefinitions) are kept in a CounterTable per counter, by its number, with a slot for each instance in walk order.
+ * <p>
+ * When an OID appears more than once in a walk, the last value wins, including when parts of a walk are read separately and merged.
+ */
+class WalkIndex
+{
+	private static final int INITIAL_CAPACITY = 16;
+
+	private long sysUpTime;
+	private String sysName = "";
+	private String sysDescr = "";
+	/**
+	 * These record which system values were in the walk, so that merge() only replaces the values a later part of a walk actually held.
+	 */
+	private boolean hasSysUpTime;
+	private boolean hasSysName;
+	private boolean hasSysDescr;
+	private final Map<Long, Integer> slotByIfIndex = new HashMap<>();
+	private long[] ifIndexes = new long[INITIAL_CAPACITY];
+	private String[] ifDescrs = new String[INITIAL_CAPACITY];
+	private final long[][] columns = new long[IfColumn.values().length][INITIAL_CAPACITY];
+	/**
+	 * This records which slots have a value for each column, since zero is a valid counter value.
+	 */
+	private final BitSet[] present = new BitSet[IfColumn.values().length];
+	private int size;
+	/**
+	 * The table of each configured counter, by counter number, or null where the walk held none of that counter.
+	 */
+	private CounterTable[] counterTables = new CounterTable[0];
+	private long lineCount;
+	private long byteCount;
+	/**
+	 * The modification time of the walk file, which is when the walk was captured, or zero if it was not read from a file.
+	 */
+	private long captureTime;
+
+
+	WalkIndex()
+	{
+		for( int i = 0; i < present.length; i++ )
+		{
+			present[i] = new BitSet();
+		}
+	}
+
+
+	/**
+	 * @param column  the ifTable or ifXTable column the value belongs to.
+	 * @param ifIndex the interface index the value belongs to.
+	 * @param value   the value of that column for that interface.
+	 */
+	void setValue( IfColumn column, long ifIndex, long value )
+	{
+		int slot = slotFor( ifIndex );
+		columns[column.ordinal()][slot] = value;
+		present[column.ordinal()].set( slot );
+	}
+
+
+	/**
+	 * @param counter  the number of the configured counter.
+	 * @param instance the index that follows the counter's OID, or an empty String for a scalar.
+	 * @param value    the value of that instance.
+	 */
+	void setCounter( int counter, String instance, long value )
+	{
+		if( counter >= counterTables.length )
+		{
+			counterTables = Arrays.copyOf( counterTables, counter + 1 );
+		}
+		if( counterTables[counter] == null )
+		{
+			counterTables[counter] = new CounterTable();
+		}
+		counterTables[counter].set( instance, value );
+	}
+
+
+	/**
+	 * @param ifIndex the interface index the description belongs to.
+	 * @param ifDescr the description of that interface.
+	 */
+	void setIfDescr( long ifIndex, String ifDescr )
+	{
+		// The slot must be found first, because finding it may grow the array.
+		int slot = slotFor( ifIndex );
+		ifDescrs[slot] = ifDescr;
+	}
+
+
+	/**
+	 * WalkSnapshot calls this directly, so that a reloaded walk has its slots in the same order as the original.
+	 *
+	 * @param ifIndex the interface index to find a slot for.
+	 * @return the slot for that ifIndex, which is added if this is the first time it has been seen.
+	 */
+	int slotFor( long ifIndex )
+	{
+		Integer slot = slotByIfIndex.get( ifIndex );
+		if( slot != null )
+		{
+			return slot;
+		}
+		if( size == ifIndexes.length )
+		{
+			int capacity = size * 2;
+			ifIndexes = Arrays.copyOf( ifIndexes, capacity );
+			ifDescrs = Arrays.copyOf( ifDescrs, capacity );
+			for( int i = 0; i < columns.length; i++ )
+			{
+				columns[i] = Arrays.copyOf( columns[i], capacity );
+			}
+		}
+		ifIndexes[size] = ifIndex;
+		slotByIfIndex.put( ifIndex, size );
+		return size++;
+	}
+
+
+	/**
+	 * The calculations use the slot to read the counters for an interface straight from the primitive columns.
+	 *
+	 * @param ifIndex The SNMP Interface Index to look for.
+	 * @return the slot for that ifIndex, or -1 if it was not in the walk.
+	 */
+	int slotOf( long ifIndex )
+	{
+		Integer slot = slotByIfIndex.get( ifIndex );
+		return slot == null ? -1 : slot;
+	}
+
+
+	/**
+	 * @return the index and description of every interface that has an ifDescr, in walk order.
+	 */
+	List<SnmpInterface> getInterfaces()
+	{
+		List<SnmpInterface> interfaces = new ArrayList<>();
+		for( int slot = 0; slot < size; slot++ )
+		{
+			if( ifDescrs[slot] != null )
+			{
+				interfaces.add( new SnmpInterface( ifIndexes[slot], ifDescrs[slot] ) );
+			}
+		}
+		return interfaces;
+	}
+
+
+	/**
+	 * This adds the values from a later part of the same walk, which was read separately, to this index.<br>
+	 * Every value the later part holds replaces the value here, so the last value in the walk still wins,
+	 * and interfaces first seen in the later part are added after the interfaces here, so walk order is kept.
+	 *
+	 * @param later the index of the part of the walk that follows the part in this index.
+	 */
+	void merge( WalkIndex later )
+	{
+		if( later.hasSysUpTime )
+		{
+			setSysUpTime( later.sysUpTime );
+		}
+		if( later.hasSysName )
+		{
+			setSysName( later.sysName );
+		}
+		if( later.hasSysDescr )
+		{
+			setSysDescr( later.sysDescr );
+		}
+		for( int laterSlot = 0; laterSlot < later.size; laterSlot++ )
+		{
+			int slot = slotFor( later.ifIndexes[laterSlot] );
+			if( later.ifDescrs[laterSlot] != null )
+			{
+				ifDescrs[slot] = later.ifDescrs[laterSlot];
+			}
+			for( int column = 0; column < columns.length; column++ )
+			{
+				if( later.present[column].get( laterSlot ) )
+				{
+					columns[column][slot] = later.columns[column][laterSlot];
+					present[column].set( slot );
+				}
+			}
+		}
+		for( int counter = 0; counter < later.counterTables.length; counter++ )
+		{
+			CounterTable table = later.counterTables[counter];
+			for( int slot = 0; table != null && slot < table.size; slot++ )
+			{
+				setCounter( counter, table.instances[slot], table.values[slot] );
+			}
+		}
+		lineCount += later.lineCount;
+		byteCount += later.byteCount;
+	} // End of merge() method.
+
+
+	/**
+	 * Two walks are from the same machine when they hold the same interface indexes and descriptions, in the same order.
+	 *
+	 * @param other the WalkIndex to compare against.
+	 * @return true if both walks describe the same interfaces.
+	 */
+	boolean hasSameInterfaces( WalkIndex other )
+	{
+		int otherSlot = 0;
+		for( int slot = 0; slot < size; slot++ )
+		{
+			if( ifDescrs[slot] == null )
+			{
+				continue;
+			}
+			while( otherSlot < other.size && other.ifDescrs[otherSlot] == null )
+			{
+				otherSlot++;
+			}
+			if( otherSlot == other.size || ifIndexes[slot] != other.ifIndexes[otherSlot] || !ifDescrs[slot].equals( other.ifDescrs[otherSlot] ) )
+			{
+				return false;
+			}
+			otherSlot++;
+		}
+		while( otherSlot < other.size && other.ifDescrs[otherSlot] == null )
+		{
+			otherSlot++;
+		}
+		return otherSlot == other.size;
+	}
+
+
+	/**
+	 * @param slot the slot of the interface, from slotOf().
+	 * @return the ifIndex of the interface in that slot.
+	 */
+	long getIfIndex( int slot )
+	{
+		return ifIndexes[slot];
+	}
+
+
+	/**
+	 * @param slot the slot of the interface, from slotOf().
+	 * @return the ifDescr of the interface in that slot, or null if the walk did not have one.
+	 */
+	String getIfDescr( int slot )
+	{
+		return ifDescrs[slot];
+	}
+
+
+	/**
+	 * @param column the ifTable or ifXTable column to read.
+	 * @param slot   the slot of the interface, from slotOf().
+	 * @return the value of that column for that interface, or zero if the walk did not have one.
+	 */
+	long getValue( IfColumn column, int slot )
+	{
+		return columns[column.ordinal()][slot];
+	}
+
+
+	/**
+	 * @param column the ifTable or ifXTable column to check.
+	 * @param slot   the slot of the interface, from slotOf().
+	 * @return true if the walk had a value of that column for that interface.
+	 */
+	boolean hasValue( IfColumn column, int slot )
+	{
+		return present[column.ordinal()].get( slot );
+	}
+
+
+	/**
+	 * @param counter the number of the configured counter.
+	 * @return the number of instances of that counter in this walk.
+	 */
+	int getCounterSize( int counter )
+	{
+		return counter < counterTables.length && counterTables[counter] != null ? counterTables[counter].size : 0;
+	}
+
+
+	/**
+	 * @param counter the number of the configured counter.
+	 * @param slot    the slot of the instance, below getCounterSize().
+	 * @return the instance in that slot.
+	 */
+	String getCounterInstance( int counter, int slot )
+	{
+		return counterTables[counter].instances[slot];
+	}
+
+
+	/**
+	 * @param counter the number of the configured counter.
+	 * @param slot    the slot of the instance, below getCounterSize().
+	 * @return the value of the instance in that slot.
+	 */
+	long getCounterValue( int counter, int slot )
+	{
+		return counterTables[counter].values[slot];
+	}
+
+
+	/**
+	 * @param counter  the number of the configured counter.
+	 * @param instance the instance to look for.
+	 * @return the slot of that instance, or -1 if it was not in the walk.
+	 */
+	int counterSlotOf( int counter, String instance )
+	{
+		if( counter >= counterTables.length || counterTables[counter] == null )
+		{
+			return -1;
+		}
+		Integer slot = counterTables[counter].slotByInstance.get( instance );
+		return slot == null ? -1 : slot;
+	}
+
+
+	long getSysUpTime()
+	{
+		return sysUpTime;
+	}
+
+
+	void setSysUpTime( long sysUpTime )
+	{
+		this.sysUpTime = sysUpTime;
+		hasSysUpTime = true;
+	}
+
+
+	String getSysName()
+	{
+		return sysName;
+	}
+
+
+	void setSysName( String sysName )
+	{
+		this.sysName = sysName;
+		hasSysName = true;
+	}
+
+
+	String getSysDescr()
+	{
+		return sysDescr;
+	}
+
+
+	void setSysDescr( String sysDescr )
+	{
+		this.sysDescr = sysDescr;
+		hasSysDescr = true;
+	}
+
+
+	/**
+	 * @return the number of lines that were read to build this index.
+	 */
+	long getLineCount()
+	{
+		return lineCount;
+	}
+
+
+	/**
+	 * @return the number of bytes that were read to build this index.
+	 */
+	long getByteCount()
+	{
+		return byteCount;
+	}
+
+
+	void setReadCounts( long lineCount, long byteCount )
+	{
+		this.lineCount = lineCount;
+		this.byteCount = byteCount;
+	}
+
+
+	/**
+	 * A snapshot keeps the capture time of the walk it was saved from, so this is not the time the snapshot was written.
+	 *
+	 * @return the modification time of the walk file, in milliseconds since the epoch, or zero if it was not read from a file.
+	 */
+	long getCaptureTime()
+	{
+		return captureTime;
+	}
+
+
+	void setCaptureTime( long captureTime )
+	{
+		this.captureTime = captureTime;
+	}
+
+
+	/**
+	 * @return the number of interfaces (slots) in this walk.
+	 */
+	int size()
+	{
+		return size;
+	}
+
+
+	/**
+	 * This is an estimate, for weighing walks in a WalkCache, rather than an exact count.
+	 *
+	 * @return roughly the number of bytes of heap this index holds.
+	 */
+	long estimatedBytes()
+	{
+		// Each slot has its ifIndex, a reference to its ifDescr, one long per column, and a boxed map entry (about 64 bytes).
+		long bytes = ( long )ifIndexes.length * ( Long.BYTES + 8 + columns.length * Long.BYTES ) + 64L * size;
+		for( int slot = 0; slot < size; slot++ )
+		{
+			if( ifDescrs[slot] != null )
+			{
+				bytes += 40 + 2L * ifDescrs[slot].length();
+			}
+		}
+		for( BitSet bits : present )
+		{
+			bytes += bits.size() / 8;
+		}
+		for( CounterTable table : counterTables )
+		{
+			if( table != null )
+			{
+				// Each instance has its value, a String of a few characters, and a boxed map entry.
+				bytes += ( long )table.values.length * ( Long.BYTES + 8 ) + 112L * table.size;
+			}
+		}
+		return bytes + 2L * ( sysName.length() + sysDescr.length() );
+	}
+
+
+	/**
+	 * The instances and values of one configured counter.  The last value of an instance wins, as with the interface columns.
+	 */
+	private static final class CounterTable
+	{
+		private final Map<String, Integer> slotByInstance = new HashMap<>();
+		private String[] instances = new String[1];
+		private long[] values = new long[1];
+		private int size;
+
+
+		private void set( String instance, long value )
+		{
+			Integer slot = slotByInstance.get( instance );
+			if( slot != null )
+			{
+				values[slot] = value;
+				return;
+			}
+			if( size == values.length )
+			{
+				instances = Arrays.copyOf( instances, size * 2 );
+				values = Arrays.copyOf( values, size * 2 );
+			}
+			instances[size] = instance;
+			values[size] = value;
+			slotByInstance.put( instance, size );
+			size++;
+		}
+	}
+}
@@ -0,0 +1,228 @@
+package com.adamjhowell.snmpinterface;
+
+
+import com.adamjhowell.snmpinterface.model.InterfaceDelta;
+import com.adamjhowell.snmpinterface.model.SnmpInterface;
+import javafx.concurrent.Task;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * This reads both walk files off the JavaFX Application Thread, finds the interfaces they have in common, and calculates the delta of every one of them.<br>
+ * The second walk is read on another thread of the executor while this task reads the first, so the two are read concurrently.<br>
+ * While the deltas are calculated, the busiest interfaces by each TopTalkers.Measure are kept in bounded heaps, so the top-N views need no sort.
+ * <p>
+ * The progress of this task is the number of bytes read from both files, out of their combined size.<br>
+ * Cancelling this task stops both reads at their next progress update.
+ */
+class WalkLoadTask extends Task<List<SnmpInterface>>
+{
+	private final Path firstPath;
+	private final Path secondPath;
+	private final Executor executor;
+	private final AtomicLong firstBytesRead = new AtomicLong();
+	private final AtomicLong secondBytesRead = new AtomicLong();
+	private long totalBytes;
+	/**
+	 * This is set when one read fails, so that the other read stops as well.
+	 */
+	private volatile boolean abandoned;
+	private volatile Path failedPath;
+	private volatile WalkIndex firstWalk;
+	private volatile WalkIndex secondWalk;
+	private final int topCount;
+	private final Map<TopTalkers.Measure, List<SnmpInterface>> topTalkers = new EnumMap<>( TopTalkers.Measure.class );
+
+
+	/**
+	 * @param firstPath  the first walk file.
+	 * @param secondPath the second walk file.
+	 * @param executor   the executor to read the second walk on.  It must not run tasks on the calling thread.
+	 * @param topCount   the number of interfaces to keep for each top-N view.
+	 */
+	WalkLoadTask( Path firstPath, Path secondPath, Executor executor, int topCount )
+	{
+		this.firstPath = firstPath;
+		this.secondPath = secondPath;
+		this.executor = executor;
+		this.topCount = topCount;
+	}
+
+
+	/**
+	 * @return the interfaces found in both walks, each holding its delta, or null if the walks are not from the same machine, or the task was cancelled.
+	 * @throws IOException if either walk cannot be read.  getFailedPath() will name that walk.
+	 */
+	@Override
+	protected List<SnmpInterface> call() throws IOException, InterruptedException
+	{
+		totalBytes = size( firstPath ) + size( secondPath );
+		updateProgress( 0, totalBytes );
+
+		FutureTask<WalkIndex> secondRead = new FutureTask<>( () -> read( secondPath, secondBytesRead ) );
+		executor.execute( secondRead );
+		IOException failure = null;
+		try
+		{
+			firstWalk = read( firstPath, firstBytesRead );
+		}
+		catch( IOException e )
+		{
+			failure = e;
+		}
+		// Wait for the second read, even if the first failed, so that no read outlives this task.
+		try
+		{
+			secondWalk = secondRead.get();
+		}
+		catch( ExecutionException e )
+		{
+			if( failure == null )
+			{
+				failure = e.getCause() instanceof IOException ? ( IOException )e.getCause() : new IOException( e.getCause() );
+			}
+		}
+		if( isCancelled() )
+		{
+			return null;
+		}
+		if( failure != null )
+		{
+			throw failure;
+		}
+
+		// If the two walks have the same interface descriptions, we can proceed.
+		Metrics.Timer discover = Metrics.Stage.DISCOVER.time();
+		try
+		{
+			if( !firstWalk.hasSameInterfaces( secondWalk ) )
+			{
+				return null;
+			}
+		}
+		finally
+		{
+			discover.close();
+		}
+		Map<TopTalkers.Measure, TopTalkers<SnmpInterface>> heaps = new EnumMap<>( TopTalkers.Measure.class );
+		for( TopTalkers.Measure measure : TopTalkers.Measure.values() )
+		{
+			heaps.put( measure, new TopTalkers<>( topCount ) );
+		}
+		List<SnmpInterface> interfaces = new ArrayList<>();
+		try( Metrics.Timer timer = Metrics.Stage.CALCULATE.time() )
+		{
+			for( int slot = 0; slot < firstWalk.size(); slot++ )
+			{
+				String ifDescr = firstWalk.getIfDescr( slot );
+				if( ifDescr != null )
+				{
+					if( isCancelled() )
+					{
+						return null;
+					}
+					long ifIndex = firstWalk.getIfIndex( slot );
+					// Each delta is kept by its row, so the cache is only used to share the calculation with other parts of this program.
+					InterfaceDelta delta = WalkCache.shared().calculate( firstWalk, secondWalk, ifIndex );
+					SnmpInterface snmpInterface = new SnmpInterface( ifIndex, ifDescr, delta );
+					interfaces.add( snmpInterface );
+					for( Map.Entry<TopTalkers.Measure, TopTalkers<SnmpInterface>> heap : heaps.entrySet() )
+					{
+						heap.getValue().offer( heap.getKey().of( delta ), snmpInterface );
+					}
+				}
+			}
+			timer.setItems( interfaces.size() );
+		}
+		for( Map.Entry<TopTalkers.Measure, TopTalkers<SnmpInterface>> heap : heaps.entrySet() )
+		{
+			topTalkers.put( heap.getKey(), heap.getValue().sorted() );
+		}
+		return interfaces;
+	} // End of call() method.
+
+
+	private long size( Path path ) throws IOException
+	{
+		try
+		{
+			return Files.size( path );
+		}
+		catch( IOException e )
+		{
+			failedPath = path;
+			throw e;
+		}
+	}
+
+
+	private WalkIndex read( Path path, AtomicLong bytesRead ) throws IOException
+	{
+		try
+		{
+			return WalkCache.shared().read( path, ( read, size ) ->
+			{
+				bytesRead.set( read );
+				updateProgress( firstBytesRead.get() + secondBytesRead.get(), totalBytes );
+				return !isCancelled() && !abandoned;
+			} );
+		}
+		catch( IOException e )
+		{
+			if( !abandoned && !isCancelled() )
+			{
+				failedPath = path;
+			}
+			abandoned = true;
+			throw e;
+		}
+	}
+
+
+	/**
+	 * @return the walk file that could not be read, if this task failed.
+	 */
+	Path getFailedPath()
+	{
+		return failedPath;
+	}
+
+
+	/**
+	 * @return the index of the first walk, once this task has succeeded.
+	 */
+	WalkIndex getFirstWalk()
+	{
+		return firstWalk;
+	}
+
+
+	/**
+	 * @return the index of the second walk, once this task has succeeded.
+	 */
+	WalkIndex getSecondWalk()
+	{
+		return secondWalk;
+	}
+
+
+	/**
+	 * @param measure what to rank the interfaces by.
+	 * @return the busiest interfaces by that measure, largest first, once this task has succeeded.
+	 */
+	List<SnmpInterface> getTopTalkers( TopTalkers.Measure measure )
+	{
+		return topTalkers.get( measure );
+	}
+}
@@ -0,0 +1,772 @@
+package com.adamjhowell.snmpinterface;
+
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * This reads a SNMP walk file into a WalkIndex, working directly on the bytes of a memory-mapped file.<br>
+ * Lines are classified by an OidMatcher, a trie of the OIDs this program uses, in one pass over the bytes of their OID,
+ * so the many lines that belong to other subtrees (e.g. enterprise MIBs) are skipped without ever becoming a String.<br>
+ * Only interface descriptions and system names (and the instances of configured table counters) are decoded into Strings.<br>
+ * The OIDs of any CounterDefinitions given to setCounterDefinitions() are compiled into the same OidMatcher, so their values are kept in the same pass.
+ * <p>
+ * The file is mapped one window at a time, so heap usage does not depend on the size of the walk.<br>
+ * A large walk is split into ranges of whole lines, which are parsed in parallel and merged.<br>
+ * Gzip and xz compressed walks are streamed through a DecompressionPipeline instead, without being decompressed to disk.<br>
+ * Everything after a "//" comment indicator is ignored, as are empty lines and lines that contain only whitespace.
+ */
+class WalkReader
+{
+	private static final Logger errorLogger = Logger.getLogger( WalkReader.class.getName() );
+	/**
+	 * The largest part of a file that is mapped at once.  No single line may be longer than this.
+	 */
+	private static final int WINDOW_SIZE = 1 << 28;
+	/**
+	 * The number of bytes between calls to a Progress listener.
+	 */
+	private static final int PROGRESS_INTERVAL = 1 << 20;
+	/**
+	 * The smallest part of a file that is given to its own thread, so a walk of 16 MB or more is split into at least two ranges.
+	 * Smaller walks are read on the calling thread.
+	 */
+	private static final long MIN_RANGE_SIZE = 1L << 23;
+	/**
+	 * The number of ranges per thread, so that a thread that finishes early can take (steal) another range.
+	 */
+	private static final int RANGES_PER_THREAD = 2;
+	/**
+	 * The number of bytes read at a time while looking for the line break that ends a range.
+	 */
+	private static final int BOUNDARY_SEARCH_SIZE = 1 << 16;
+	/**
+	 * The OIDs this program uses.  Each IfColumn is matched with its ordinal as the id, and the text values follow them.
+	 */
+	private static final IfColumn[] COLUMNS = IfColumn.values();
+	private static final int IF_DESCR_ID = COLUMNS.length;
+	private static final int SYS_UPTIME_ID = IF_DESCR_ID + 1;
+	private static final int SYS_NAME_ID = IF_DESCR_ID + 2;
+	private static final int SYS_DESCR_ID = IF_DESCR_ID + 3;
+	/**
+	 * Each configured counter is matched with this plus its number as the id.
+	 */
+	private static final int FIRST_COUNTER_ID = SYS_DESCR_ID + 1;
+	private static volatile Extractors configured = new Extractors( CounterDefinitions.NONE );
+
+	/**
+	 * The matcher and counters are taken once per reader, so a walk is read with one set of counters, even if they are changed during the read.
+	 */
+	private final Extractors extractors = configured;
+
+	private final WalkIndex index = new WalkIndex();
+	private final Progress progress;
+	private long totalBytes;
+	/**
+	 * The byte count at which the Progress listener is next called.  This spans calls to scan(), since a compressed walk is scanned one small chunk at a time.
+	 */
+	private long nextProgress = PROGRESS_INTERVAL;
+	private boolean cancelled;
+	private long lineCount;
+	private long byteCount;
+	private long parseErrorCount;
+	/**
+	 * The number of lines that held no value this program uses.
+	 */
+	private long filteredCount;
+	/**
+	 * The position following the last number read by parseDigits().
+	 */
+	private int cursor;
+	/**
+	 * True if the last call to parseDigits() found at least one digit.
+	 */
+	private boolean parsed;
+
+
+	/**
+	 * This is told how much of a walk has been read, and can stop the read.
+	 */
+	interface Progress
+	{
+		/**
+		 * @param bytesRead  the number of bytes read so far.
+		 * @param totalBytes the size of the walk file.
+		 * @return true to keep reading, or false to stop.
+		 */
+		boolean update( long bytesRead, long totalBytes );
+	}
+
+
+	/**
+	 * The OidMatcher for every OID this program reads from a walk, and the counter definitions whose OIDs it includes.
+	 */
+	private static final class Extractors
+	{
+		private final OidMatcher matcher;
+		private final CounterDefinitions counters;
+
+
+		private Extractors( CounterDefinitions counters )
+		{
+			this.matcher = oidMatcher( counters );
+			this.counters = counters;
+		}
+	}
+
+
+	WalkReader()
+	{
+		this( null );
+	}
+
+
+	/**
+	 * @param progress the listener to call about once per megabyte, or null.
+	 */
+	WalkReader( Progress progress )
+	{
+		this.progress = progress;
+	}
+
+
+	/**
+	 * This compiles the OIDs of the counters into the matcher used by every walk read from now on.<br>
+	 * It is meant to be called once, at startup, since walks already read (e.g. in a WalkCache) do not gain the values of new counters.
+	 *
+	 * @param counters the counters to read, or CounterDefinitions.NONE.
+	 * @throws IllegalArgumentException if a counter has the OID of another counter, or of a value this program already reads.
+	 */
+	static void setCounterDefinitions( CounterDefinitions counters )
+	{
+		configured = new Extractors( counters );
+	}
+
+
+	/**
+	 * @return the counters that walks are read with.
+	 */
+	static CounterDefinitions getCounterDefinitions()
+	{
+		return configured.counters;
+	}
+
+
+	/**
+	 * This method will take a path to a walk file, and read every uncommented line that holds a value this program uses.
+	 *
+	 * @param path the walk file to read.
+	 * @return a WalkIndex holding the values from that walk.
+	 * @throws IOException if the file cannot be opened or read.
+	 */
+	static WalkIndex read( Path path ) throws IOException
+	{
+		return read( path, null );
+	}
+
+
+	/**
+	 * This method will take a path to a walk file, and read every uncommented line that holds a value this program uses.<br>
+	 * A binary snapshot (see WalkSnapshot) is recognized by its magic number, and loaded instead of being parsed.<br>
+	 * A compressed walk (see Compression) is also recognized by its magic number, and decompressed on another thread while it is parsed.<br>
+	 * The WalkIndex is given the modification time of the file as its capture time, unless it is a snapshot that saved the capture time of its walk.<br>
+	 * The progress listener is called as the file is read, and may stop the read by returning false.
+	 *
+	 * @param path     the walk file to read.
+	 * @param progress the listener to call about once per megabyte, or null.
+	 * @return a WalkIndex holding the values from that walk.
+	 * @throws InterruptedIOException if the progress listener stopped the read.
+	 * @throws IOException            if the file cannot be opened or read.
+	 */
+	static WalkIndex read( Path path, Progress progress ) throws IOException
+	{
+		Metrics.Timer timer = Metrics.Stage.READ.time();
+		try
+		{
+			WalkIndex index = readFile( path, progress );
+			if( index.getCaptureTime() == 0 )
+			{
+				index.setCaptureTime( Files.getLastModifiedTime( path ).toMillis() );
+			}
+			return index;
+		}
+		finally
+		{
+			timer.close();
+		}
+	}
+
+
+	private static WalkIndex readFile( Path path, Progress progress ) throws IOException
+	{
+		WalkReader reader = new WalkReader( progress );
+		try( FileChannel channel = FileChannel.open( path, StandardOpenOption.READ ) )
+		{
+			long size = channel.size();
+			if( WalkSnapshot.isSnapshot( channel ) )
+			{
+				WalkIndex snapshot = WalkSnapshot.read( channel );
+				if( progress != null )
+				{
+					progress.update( size, size );
+				}
+				return snapshot;
+			}
+			Compression compression = Compression.detect( channel );
+			if( compression != null )
+			{
+				return readCompressed( path, channel, compression, progress );
+			}
+			int rangeCount = ( int )Math.min( parallelism() * RANGES_PER_THREAD, size / MIN_RANGE_SIZE );
+			if( rangeCount > 1 )
+			{
+				return readParallel( path, channel, rangeCount, progress );
+			}
+			reader.totalBytes = size;
+			reader.readRange( path, channel, 0, size );
+		}
+		if( progress != null )
+		{
+			progress.update( reader.byteCount, reader.totalBytes );
+		}
+		return reader.finish();
+	}
+
+
+	/**
+	 * This scans part of a file, one mapped window at a time.
+	 *
+	 * @param path    the walk file, for error messages.
+	 * @param channel the open walk file.
+	 * @param from    the start of the range, which is the start of a line.
+	 * @param to      the end of the range, which is the end of a line, or of the file.
+	 * @throws InterruptedIOException if the progress listener stopped the read.
+	 * @throws IOException            if the file cannot be read, or holds a line longer than a window.
+	 */
+	private void readRange( Path path, FileChannel channel, long from, long to ) throws IOException
+	{
+		long position = from;
+		while( position < to )
+		{
+			int length = ( int )Math.min( WINDOW_SIZE, to - position );
+			MappedByteBuffer window = channel.map( FileChannel.MapMode.READ_ONLY, position, length );
+			boolean endOfInput = position + length == to;
+			int consumed = scan( window, length, endOfInput );
+			if( cancelled )
+			{
+				throw new InterruptedIOException( "Reading " + path + " was cancelled." );
+			}
+			if( consumed == 0 )
+			{
+				throw new IOException( "A line in " + path + " is longer than " + WINDOW_SIZE + " bytes." );
+			}
+			position += consumed;
+		}
+	}
+
+
+	/**
+	 * This splits a large walk into ranges of whole lines, parses each range into its own WalkIndex on a fork-join pool, and merges them in file order.<br>
+	 * Merging in file order means a value in a later range replaces one in an earlier range, so the last value in the walk still wins.
+	 * Comments and blank lines never span a line break, so they are handled within each range exactly as they are in a single pass.
+	 * <p>
+	 * When called from a fork-join pool (such as a FleetAnalyzer's), the ranges are parsed on that pool, otherwise on the common pool.
+	 */
+	private static WalkIndex readParallel( Path path, FileChannel channel, int rangeCount, Progress progress ) throws IOException
+	{
+		long size = channel.size();
+		long[] bounds = lineBoundaries( channel, size, rangeCount );
+		AtomicLong bytesRead = new AtomicLong();
+		List<ForkJoinTask<WalkReader>> tasks = new ArrayList<>( rangeCount );
+		for( int i = 0; i < rangeCount; i++ )
+		{
+			long from = bounds[i];
+			long to = bounds[i + 1];
+			if( from == to )
+			{
+				continue;
+			}
+			tasks.add( ForkJoinTask.adapt( () ->
+			                               {
+				                               WalkReader reader = new WalkReader( progress == null ? null : rangeProgress( progress, bytesRead, size ) );
+				                               reader.totalBytes = size;
+				                               reader.readRange( path, channel, from, to );
+				                               return reader;
+			                               } ) );
+		}
+		try
+		{
+			ForkJoinTask.invokeAll( tasks );
+		}
+		catch( RuntimeException e )
+		{
+			// adapt() wraps the IOException thrown by a range, and the pool may wrap that again when rethrowing it on this thread.
+			for( Throwable cause = e.getCause(); cause != null; cause = cause.getCause() )
+			{
+				if( cause instanceof IOException )
+				{
+					throw ( IOException )cause;
+				}
+			}
+			throw e;
+		}
+
+		WalkReader first = tasks.get( 0 ).join();
+		for( int i = 1; i < tasks.size(); i++ )
+		{
+			WalkReader later = tasks.get( i ).join();
+			first.index.merge( later.index );
+			first.parseErrorCount += later.parseErrorCount;
+			first.filteredCount += later.filteredCount;
+			first.lineCount += later.lineCount;
+			first.byteCount += later.byteCount;
+		}
+		if( progress != null )
+		{
+			progress.update( size, size );
+		}
+		return first.finish();
+	} // End of readParallel() method.
+
+
+	/**
+	 * Each range reports how far through itself it is, so this adds the growth of each range to a total for the whole file.
+	 */
+	private static Progress rangeProgress( Progress progress, AtomicLong bytesRead, long size )
+	{
+		long[] rangeBytesRead = new long[1];
+		return ( read, total ) ->
+		{
+			long fileBytesRead = bytesRead.addAndGet( read - rangeBytesRead[0] );
+			rangeBytesRead[0] = read;
+			return progress.update( fileBytesRead, size );
+		};
+	}
+
+
+	/**
+	 * @return the start of each range, followed by the size of the file.  Each range starts just after a line feed, so no line is split.
+	 */
+	private static long[] lineBoundaries( FileChannel channel, long size, int rangeCount ) throws IOException
+	{
+		long[] bounds = new long[rangeCount + 1];
+		bounds[rangeCount] = size;
+		ByteBuffer search = ByteBuffer.allocate( BOUNDARY_SEARCH_SIZE );
+		for( int i = 1; i < rangeCount; i++ )
+		{
+			long position = Math.max( bounds[i - 1], size / rangeCount * i );
+			bounds[i] = size;
+			while( position < size && bounds[i] == size )
+			{
+				search.clear();
+				int read = channel.read( search, position );
+				if( read <= 0 )
+				{
+					break;
+				}
+				for( int j = 0; j < read; j++ )
+				{
+					if( search.get( j ) == '\n' )
+					{
+						bounds[i] = position + j + 1;
+						break;
+					}
+				}
+				position += read;
+			}
+		}
+		return bounds;
+	} // End of lineBoundaries() method.
+
+
+	/**
+	 * @return the number of threads in the fork-join pool that ranges would be parsed on.
+	 */
+	private static int parallelism()
+	{
+		ForkJoinPool pool = ForkJoinTask.getPool();
+		return pool != null ? pool.getParallelism() : ForkJoinPool.getCommonPoolParallelism();
+	}
+
+
+	/**
+	 * This parses a compressed walk as a DecompressionPipeline decompresses it, so the two run on separate cores.<br>
+	 * Progress is reported in compressed bytes, against the size of the compressed file.
+	 */
+	private static WalkIndex readCompressed( Path path, FileChannel channel, Compression compression, Progress progress ) throws IOException
+	{
+		long compressedSize = channel.size();
+		AtomicLong compressedRead = new AtomicLong();
+		WalkReader reader = new WalkReader( progress == null ? null : ( read, total ) -> progress.update( compressedRead.get(), compressedSize ) );
+		InputStream compressed = new DecompressionPipeline.CountingInputStream( Channels.newInputStream( channel ), compressedRead );
+		try( DecompressionPipeline pipeline = new DecompressionPipeline( compression.open( compressed ), path.getFileName().toString() ) )
+		{
+			pipeline.start();
+			DecompressionPipeline.Chunk chunk;
+			do
+			{
+				chunk = pipeline.take();
+				reader.scan( chunk.getBuffer(), chunk.getLength(), chunk.isLast() );
+				pipeline.recycle( chunk );
+				if( reader.cancelled )
+				{
+					throw new InterruptedIOException( "Reading " + path + " was cancelled." );
+				}
+			}
+			while( !chunk.isLast() );
+		}
+		if( progress != null )
+		{
+			progress.update( compressedSize, compressedSize );
+		}
+		return reader.finish();
+	} // End of readCompressed() method.
+
+
+	/**
+	 * This will process every complete line in a buffer.
+	 *
+	 * @param buffer     the bytes to scan, starting at position zero.
+	 * @param limit      the number of bytes in the buffer.
+	 * @param endOfInput true if there are no bytes after this buffer, so the final line does not need a line feed.
+	 * @return the number of bytes consumed.  Any bytes after that belong to a line that continues in the next buffer.
+	 */
+	int scan( ByteBuffer buffer, int limit, boolean endOfInput )
+	{
+		int lineStart = 0;
+		int commentStart = -1;
+		for( int i = 0; i < limit; i++ )
+		{
+			byte b = buffer.get( i );
+			if( b == '\n' )
+			{
+				processLine( buffer, lineStart, commentStart < 0 ? i : commentStart );
+				lineStart = i + 1;
+				commentStart = -1;
+				if( progress != null && byteCount + lineStart >= nextProgress )
+				{
+					nextProgress = byteCount + lineStart + PROGRESS_INTERVAL;
+					if( !progress.update( byteCount + lineStart, totalBytes ) )
+					{
+						cancelled = true;
+						break;
+					}
+				}
+			}
+			else if( b == '/' && commentStart < 0 && i > lineStart && buffer.get( i - 1 ) == '/' )
+			{
+				commentStart = i - 1;
+			}
+		}
+		if( endOfInput && lineStart < limit && !cancelled )
+		{
+			processLine( buffer, lineStart, commentStart < 0 ? limit : commentStart );
+			lineStart = limit;
+		}
+		byteCount += lineStart;
+		return lineStart;
+	}
+
+
+	/**
+	 * @return the WalkIndex built from every line scanned.
+	 */
+	WalkIndex finish()
+	{
+		if( parseErrorCount > 0 )
+		{
+			errorLogger.log( Level.WARNING, "{0} walk lines could not be parsed.", parseErrorCount );
+		}
+		index.setReadCounts( lineCount, byteCount );
+		Metrics.walkParsed( lineCount, byteCount, filteredCount, parseErrorCount );
+		return index;
+	}
+
+
+	/**
+	 * This will classify one walk line and store its value, if it is one that this program uses.
+	 *
+	 * @param buffer the buffer holding the line.
+	 * @param start  the position of the first byte of the line.
+	 * @param end    the position after the last byte of the line, excluding any comment.
+	 */
+	private void processLine( ByteBuffer buffer, int start, int end )
+	{
+		lineCount++;
+		// Ignore leading and trailing whitespace, including the carriage return from Windows line endings.
+		// Bytes are compared unsigned, so the bytes of a multi-byte UTF-8 character are not mistaken for whitespace.
+		while( start < end && ( buffer.get( start ) & 0xFF ) <= ' ' )
+		{
+			start++;
+		}
+		while( end > start && ( buffer.get( end - 1 ) & 0xFF ) <= ' ' )
+		{
+			end--;
+		}
+		if( start == end )
+		{
+			return;
+		}
+
+		long match = extractors.matcher.match( buffer, start, end );
+		if( match < 0 )
+		{
+			filteredCount++;
+			return;
+		}
+		int id = OidMatcher.id( match );
+		int oidEnd = OidMatcher.end( match );
+		if( id < COLUMNS.length )
+		{
+			processColumn( buffer, oidEnd, end, COLUMNS[id] );
+		}
+		else if( id == IF_DESCR_ID )
+		{
+			processColumn( buffer, oidEnd, end, null );
+		}
+		else if( id >= FIRST_COUNTER_ID )
+		{
+			processCounter( buffer, oidEnd, end, id - FIRST_COUNTER_ID );
+		}
+		else if( id == SYS_UPTIME_ID )
+		{
+			int valueStart = valueStart( buffer, oidEnd, end );
+			if( valueStart >= 0 )
+			{
+				long value = parseValue( buffer, valueStart, end );
+				if( parsed )
+				{
+					index.setSysUpTime( value );
+				}
+			}
+		}
+		else
+		{
+			int valueStart = valueStart( buffer, oidEnd, end );
+			if( valueStart >= 0 )
+			{
+				String text = parseText( buffer, valueStart, end );
+				if( id == SYS_NAME_ID )
+				{
+					index.setSysName( text );
+				}
+				else
+				{
+					index.setSysDescr( text );
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * This stores the value of an ifTable or ifXTable line.  The ifIndex follows the column OID.
+	 *
+	 * @param buffer     the buffer holding the line.
+	 * @param indexStart the position of the ifIndex, just after the column OID.
+	 * @param end        the end of the line.
+	 * @param column     the column of the line, or null for the ifDescr column.
+	 */
+	private void processColumn( ByteBuffer buffer, int indexStart, int end, IfColumn column )
+	{
+		long ifIndex = parseDigits( buffer, indexStart, end );
+		int valueStart = valueStart( buffer, cursor, end );
+		if( !parsed || valueStart < 0 )
+		{
+			parseErrorCount++;
+		}
+		else if( column != null )
+		{
+			long value = parseValue( buffer, valueStart, end );
+			if( parsed )
+			{
+				index.setValue( column, ifIndex, value );
+			}
+		}
+		else
+		{
+			index.setIfDescr( ifIndex, parseText( buffer, valueStart, end ) );
+		}
+	}
+
+
+	/**
+	 * This stores the value of a configured counter.  For a table, the instance follows the column OID, and must have the configured number of arcs.
+	 *
+	 * @param buffer  the buffer holding the line.
+	 * @param oidEnd  the position just after the counter's OID (and the ".0" of a scalar).
+	 * @param end     the end of the line.
+	 * @param counter the number of the counter.
+	 */
+	private void processCounter( ByteBuffer buffer, int oidEnd, int end, int counter )
+	{
+		int arcs = extractors.counters.getIndexArcs( counter );
+		String instance = "";
+		int instanceEnd = oidEnd;
+		if( arcs > 0 )
+		{
+			int dots = 0;
+			while( instanceEnd < end && ( buffer.get( instanceEnd ) == '.' || buffer.get( instanceEnd ) >= '0' && buffer.get( instanceEnd ) <= '9' ) )
+			{
+				if( buffer.get( instanceEnd ) == '.' )
+				{
+					dots++;
+				}
+				instanceEnd++;
+			}
+			if( instanceEnd == oidEnd || dots + 1 != arcs || buffer.get( instanceEnd - 1 ) == '.' )
+			{
+				parseErrorCount++;
+				return;
+			}
+			instance = parseText( buffer, oidEnd, instanceEnd );
+		}
+		int valueStart = valueStart( buffer, instanceEnd, end );
+		if( valueStart < 0 )
+		{
+			parseErrorCount++;
+			return;
+		}
+		long value = parseValue( buffer, valueStart, end );
+		if( parsed )
+		{
+			// A gauge (e.g. an INTEGER) may be negative, while a counter is unsigned.
+			index.setCounter( counter, instance, extractors.counters.isSigned( counter ) && buffer.get( valueStart ) == '-' ? -value : value );
+		}
+	} // End of processCounter() method.
+
+
+	/**
+	 * The value of a line starts after the equal sign and the type (e.g. 'COUNTER32: '), and goes to the end of the line.
+	 *
+	 * @param buffer the buffer holding the line.
+	 * @param from   a position within the OID of the line.
+	 * @param end    the end of the line.
+	 * @return the position of the value, or -1 if the line does not have one.
+	 */
+	private static int valueStart( ByteBuffer buffer, int from, int end )
+	{
+		int i = from;
+		while( i < end && buffer.get( i ) != '=' )
+		{
+			i++;
+		}
+		while( i < end && buffer.get( i ) != ':' )
+		{
+			i++;
+		}
+		if( i == end )
+		{
+			return -1;
+		}
+		i++;
+		while( i < end && buffer.get( i ) == ' ' )
+		{
+			i++;
+		}
+		return i;
+	}
+
+
+	/**
+	 * Some agents wrap TIMETICKS in parentheses, so this reads the first run of digits in the value.
+	 *
+	 * @return the numeric value.  The parsed flag will be false if the value does not hold a number.
+	 */
+	private long parseValue( ByteBuffer buffer, int valueStart, int end )
+	{
+		int i = valueStart;
+		while( i < end && ( buffer.get( i ) < '0' || buffer.get( i ) > '9' ) )
+		{
+			i++;
+		}
+		long value = parseDigits( buffer, i, end );
+		if( !parsed )
+		{
+			parseErrorCount++;
+		}
+		return value;
+	}
+
+
+	/**
+	 * This reads an unsigned decimal number, and leaves the cursor on the byte following it.<br>
+	 * Values are read as unsigned 64-bit numbers, so a Counter64 above Long.MAX_VALUE keeps its bit pattern.
+	 *
+	 * @return the number.  The parsed flag will be false if there were no digits at that position.
+	 */
+	private long parseDigits( ByteBuffer buffer, int from, int end )
+	{
+		long value = 0;
+		int i = from;
+		while( i < end )
+		{
+			int digit = buffer.get( i ) - '0';
+			if( digit < 0 || digit > 9 )
+			{
+				break;
+			}
+			value = value * 10 + digit;
+			i++;
+		}
+		cursor = i;
+		parsed = i != from;
+		return value;
+	}
+
+
+	/**
+	 * The value of a text line goes to the end of the line, and the enclosing quotes are removed.
+	 */
+	private static String parseText( ByteBuffer buffer, int valueStart, int end )
+	{
+		if( end - valueStart >= 2 && buffer.get( valueStart ) == '"' && buffer.get( end - 1 ) == '"' )
+		{
+			valueStart++;
+			end--;
+		}
+		byte[] text = new byte[end - valueStart];
+		for( int i = 0; i < text.length; i++ )
+		{
+			text[i] = buffer.get( valueStart + i );
+		}
+		return new String( text, StandardCharsets.UTF_8 );
+	}
+
+
+	/**
+	 * @param counters the configured counters, whose OIDs are added after the ones this program always reads.
+	 * @return a matcher for every OID this program reads from a walk.
+	 */
+	private static OidMatcher oidMatcher( CounterDefinitions counters )
+	{
+		OidMatcher matcher = new OidMatcher();
+		for( IfColumn column : COLUMNS )
+		{
+			matcher.add( column.getOid(), column.ordinal() );
+		}
+		matcher.add( SnmpOids.IF_DESCRIPTION_OID, IF_DESCR_ID );
+		matcher.add( SnmpOids.SYS_UPTIME_OID, SYS_UPTIME_ID );
+		matcher.add( SnmpOids.SYS_NAME, SYS_NAME_ID );
+		matcher.add( SnmpOids.SYS_DESCR, SYS_DESCR_ID );
+		counters.addTo( matcher, FIRST_COUNTER_ID );
+		return matcher;
+	}
+}
@@ -0,0 +1,534 @@
+package com.adamjhowell.snmpinterface;
+
+
+import com.adamjhowell.snmpinterface.model.DeviceResult;
+import com.adamjhowell.snmpinterface.model.InterfaceResult;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * This is an embedded HTTP server that lets dashboards submit walks for analysis, and fetch the results as JSON.<br>
+ * The walks are read from the file system of the machine running the server, so it listens on the loopback address unless --bind is given.
+ * <p>
+ * POST /analyses with {"firstWalk": "a.txt", "secondWalk": "b.txt"}, or {"fleet": "directory or manifest"}, analyzes those walks,
+ * keeps each device's result, and answers with a summary of every device analyzed.<br>
+ * GET /devices answers with a summary of every device kept.<br>
+ * GET /devices/{sysName} answers with every interface of one device, and GET /devices/{sysName}/interfaces/{ifIndex} with one interface.<br>
+ * GET /cache answers with the hit and miss counts of the shared WalkCache, which keeps walks that are analyzed again from being read again.<br>
+ * GET /metrics answers with every Metrics stage and counter, in the Prometheus text format, for scraping.<br>
+ * Interfaces are written with their raw numeric delta, the same as the json format of BatchMain.
+ * <p>
+ * Requests are handled by a fixed number of worker threads, and queue for a free worker.
+ * When the queue is full, a request is answered with 503 (Service Unavailable) at once, so the thread accepting connections is never held up.<br>
+ * Fleets are analyzed on one ForkJoinPool, of the same number of threads, shared by every request.<br>
+ * Every response is written straight to the connection as it is serialized, with chunked encoding, so a large fleet is never held in memory as text.
+ * <p>
+ * Usage: WalkServer [--bind &lt;address&gt;] [--port &lt;port&gt;] [--threads &lt;count&gt;]
+ */
+public class WalkServer implements Closeable
+{
+	private static final Logger errorLogger = Logger.getLogger( WalkServer.class.getName() );
+	private static final String USAGE = "Usage: WalkServer [--bind <address>] [--port <port>] [--threads <count>]";
+	private static final int EXIT_USAGE = 1;
+	private static final int EXIT_INVALID_INPUT = 2;
+	private static final int DEFAULT_PORT = 8080;
+	private static final int DEFAULT_THREADS = 16;
+	/**
+	 * The number of requests that may wait for a worker, before more are answered with 503.
+	 */
+	private static final int QUEUE_SIZE = 1024;
+	/**
+	 * The number of devices whose results are kept.  The device that was used least recently is dropped first.
+	 */
+	private static final int MAX_DEVICES = 10000;
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final int STOP_DELAY_SECONDS = 1;
+	private static final int RETRY_AFTER_SECONDS = 1;
+	private static final Pattern INTERFACE_PATH = Pattern.compile( "^(.+)/interfaces/(\\d+)$" );
+	private static final String DEVICES_PATH = "/devices";
+	private static final String ANALYSES_PATH = "/analyses";
+	private static final String CACHE_PATH = "/cache";
+	private static final String METRICS_PATH = "/metrics";
+
+	private final Gson gson = new GsonBuilder().create();
+	private final HttpServer server;
+	private final ThreadPoolExecutor workers;
+	private final ForkJoinPool analysisPool;
+	private final FleetAnalyzer fleetAnalyzer;
+	/**
+	 * This is set while a request that no worker could take is handled on the thread accepting connections, which only answers it with 503.
+	 */
+	private final ThreadLocal<Boolean> rejected = new ThreadLocal<>();
+	private final CountDownLatch stopped = new CountDownLatch( 1 );
+	/**
+	 * The latest result for each device, by sysName, in access order.
+	 */
+	private final Map<String, DeviceResult> devices = new LinkedHashMap<String, DeviceResult>( 16, 0.75f, true )
+	{
+		@Override
+		protected boolean removeEldestEntry( Map.Entry<String, DeviceResult> eldest )
+		{
+			return size() > MAX_DEVICES;
+		}
+	};
+
+
+	/**
+	 * @param address the address to listen on.
+	 * @param threads the number of worker threads.
+	 * @throws IOException if the address cannot be bound.
+	 */
+	WalkServer( InetSocketAddress address, int threads ) throws IOException
+	{
+		AtomicInteger threadNumber = new AtomicInteger();
+		workers = new ThreadPoolExecutor( threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>( QUEUE_SIZE ),
+		                                  runnable ->
+		                                  {
+			                                  Thread thread = new Thread( runnable, "walk-server-" + threadNumber.incrementAndGet() );
+			                                  thread.setDaemon( true );
+			                                  return thread;
+		                                  },
+		                                  ( runnable, executor ) ->
+		                                  {
+			                                  // The HttpServer closes a connection whose request was rejected without answering it, so it is answered here instead.
+			                                  rejected.set( Boolean.TRUE );
+			                                  try
+			                                  {
+				                                  runnable.run();
+			                                  }
+			                                  finally
+			                                  {
+				                                  rejected.remove();
+			                                  }
+		                                  } );
+		analysisPool = new ForkJoinPool( threads );
+		fleetAnalyzer = new FleetAnalyzer( analysisPool );
+		server = HttpServer.create( address, QUEUE_SIZE );
+		server.setExecutor( workers );
+		server.createContext( ANALYSES_PATH, unlessRejected( this::handleAnalyses ) );
+		server.createContext( DEVICES_PATH, unlessRejected( this::handleDevices ) );
+		server.createContext( CACHE_PATH, unlessRejected( this::handleCache ) );
+		server.createContext( METRICS_PATH, unlessRejected( this::handleMetrics ) );
+	}
+
+
+	/**
+	 * @return a handler that answers a request with 503 if no worker could take it, and otherwise passes it to the given handler.
+	 */
+	private HttpHandler unlessRejected( HttpHandler handler )
+	{
+		return exchange ->
+		{
+			if( rejected.get() == null )
+			{
+				handler.handle( exchange );
+				return;
+			}
+			try
+			{
+				exchange.getResponseHeaders().set( "Retry-After", Integer.toString( RETRY_AFTER_SECONDS ) );
+				sendError( exchange, 503, "The server is busy.  Try again later." );
+			}
+			finally
+			{
+				exchange.close();
+			}
+		};
+	}
+
+
+	public static void main( String[] args )
+	{
+		System.exit( run( args ) );
+	} // End of main() method.
+
+
+	/**
+	 * This will parse the command line arguments, and answer requests until the process is killed.
+	 *
+	 * @param args the command line arguments.
+	 * @return the exit code for the process.
+	 */
+	static int run( String[] args )
+	{
+		String bind = null;
+		int port = DEFAULT_PORT;
+		int threads = DEFAULT_THREADS;
+		for( int i = 0; i < args.length; i++ )
+		{
+			if( "--bind".equals( args[i] ) && i + 1 < args.length )
+			{
+				bind = args[++i];
+			}
+			else if( "--port".equals( args[i] ) && i + 1 < args.length && args[i + 1].matches( "\\d+" ) )
+			{
+				port = Integer.parseInt( args[++i] );
+			}
+			else if( "--threads".equals( args[i] ) && i + 1 < args.length && args[i + 1].matches( "[1-9]\\d*" ) )
+			{
+				threads = Integer.parseInt( args[++i] );
+			}
+			else
+			{
+				System.err.println( USAGE );
+				return EXIT_USAGE;
+			}
+		}
+
+		Metrics.registerMBeans();
+		try
+		{
+			InetAddress address = bind == null ? InetAddress.getLoopbackAddress() : InetAddress.getByName( bind );
+			WalkServer walkServer = new WalkServer( new InetSocketAddress( address, port ), threads );
+			Runtime.getRuntime().addShutdownHook( new Thread( walkServer::close ) );
+			walkServer.start();
+			System.err.println( "Serving on http://" + walkServer.getAddress().getHostString() + ":" + walkServer.getAddress().getPort() + "/" );
+			walkServer.awaitClose();
+		}
+		catch( UnknownHostException e )
+		{
+			System.err.println( "Invalid address " + bind + ": " + e.getLocalizedMessage() );
+			return EXIT_USAGE;
+		}
+		catch( IOException e )
+		{
+			errorLogger.log( Level.SEVERE, "Unable to start the server: {0}", e.getLocalizedMessage() );
+			return EXIT_INVALID_INPUT;
+		}
+		catch( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+		}
+		return 0;
+	} // End of run() method.
+
+
+	void start()
+	{
+		server.start();
+	}
+
+
+	/**
+	 * @return the address the server is listening on, which holds the actual port when it was started on port 0.
+	 */
+	InetSocketAddress getAddress()
+	{
+		return server.getAddress();
+	}
+
+
+	/**
+	 * This waits until the server has been closed.
+	 */
+	void awaitClose() throws InterruptedException
+	{
+		stopped.await();
+	}
+
+
+	/**
+	 * This stops accepting connections, gives the requests being handled a moment to finish, and stops the workers.
+	 */
+	@Override
+	public void close()
+	{
+		server.stop( STOP_DELAY_SECONDS );
+		workers.shutdown();
+		analysisPool.shutdown();
+		stopped.countDown();
+	}
+
+
+	/**
+	 * POST /analyses reads and compares the walks named in the request body, keeps each device's result, and answers with their summaries.
+	 */
+	private void handleAnalyses( HttpExchange exchange ) throws IOException
+	{
+		try
+		{
+			if( !ANALYSES_PATH.equals( exchange.getRequestURI().getPath() ) )
+			{
+				sendError( exchange, 404, "Not found." );
+				return;
+			}
+			if( !"POST".equals( exchange.getRequestMethod() ) )
+			{
+				exchange.getResponseHeaders().set( "Allow", "POST" );
+				sendError( exchange, 405, "Use POST." );
+				return;
+			}
+			JsonObject request;
+			try( Reader body = new InputStreamReader( exchange.getRequestBody(), StandardCharsets.UTF_8 ) )
+			{
+				request = gson.fromJson( body, JsonObject.class );
+			}
+			catch( JsonParseException e )
+			{
+				sendError( exchange, 400, "The request body is not valid JSON: " + e.getLocalizedMessage() );
+				return;
+			}
+
+			List<DeviceResult> results;
+			try
+			{
+				if( request != null && request.has( "fleet" ) )
+				{
+					results = fleetAnalyzer.analyze( Paths.get( request.get( "fleet" ).getAsString() ) ).getDevices();
+				}
+				else if( request != null && request.has( "firstWalk" ) && request.has( "secondWalk" ) )
+				{
+					results = Collections.singletonList( FleetAnalyzer.analyzePair( Paths.get( request.get( "firstWalk" ).getAsString() ),
+					                                                                 Paths.get( request.get( "secondWalk" ).getAsString() ) ) );
+				}
+				else
+				{
+					sendError( exchange, 400, "Expected {\"firstWalk\": <path>, \"secondWalk\": <path>} or {\"fleet\": <directory or manifest>}." );
+					return;
+				}
+			}
+			catch( IOException | InvalidPathException | IllegalStateException | UnsupportedOperationException e )
+			{
+				sendError( exchange, 400, "Unable to analyze the walks: " + e.getLocalizedMessage() );
+				return;
+			}
+			synchronized( devices )
+			{
+				for( DeviceResult device : results )
+				{
+					if( device.getSysName() != null && !device.getSysName().isEmpty() )
+					{
+						devices.put( device.getSysName(), device );
+					}
+				}
+			}
+			writeSummaries( exchange, results );
+		}
+		finally
+		{
+			exchange.close();
+		}
+	} // End of handleAnalyses() method.
+
+
+	/**
+	 * GET /devices, /devices/{sysName}, and /devices/{sysName}/interfaces/{ifIndex}.
+	 */
+	private void handleDevices( HttpExchange exchange ) throws IOException
+	{
+		try
+		{
+			if( !"GET".equals( exchange.getRequestMethod() ) )
+			{
+				exchange.getResponseHeaders().set( "Allow", "GET" );
+				sendError( exchange, 405, "Use GET." );
+				return;
+			}
+			String path = exchange.getRequestURI().getPath();
+			if( DEVICES_PATH.equals( path ) || ( DEVICES_PATH + "/" ).equals( path ) )
+			{
+				List<DeviceResult> snapshot;
+				synchronized( devices )
+				{
+					snapshot = new ArrayList<>( devices.values() );
+				}
+				writeSummaries( exchange, snapshot );
+				return;
+			}
+			String name = path.substring( DEVICES_PATH.length() + 1 );
+			Matcher interfaceMatcher = INTERFACE_PATH.matcher( name );
+			DeviceResult device = findDevice( interfaceMatcher.matches() ? interfaceMatcher.group( 1 ) : name );
+			if( device == null )
+			{
+				sendError( exchange, 404, "No results are kept for that device." );
+				return;
+			}
+			if( !interfaceMatcher.matches() )
+			{
+				try( JsonWriter out = openJson( exchange ) )
+				{
+					gson.toJson( device, DeviceResult.class, out );
+				}
+				return;
+			}
+			long ifIndex = Long.parseLong( interfaceMatcher.group( 2 ) );
+			if( device.getInterfaces() != null )
+			{
+				for( InterfaceResult result : device.getInterfaces() )
+				{
+					if( result.getIfIndex() == ifIndex )
+					{
+						try( JsonWriter out = openJson( exchange ) )
+						{
+							gson.toJson( result, InterfaceResult.class, out );
+						}
+						return;
+					}
+				}
+			}
+			sendError( exchange, 404, "That device has no interface " + ifIndex + "." );
+		}
+		catch( NumberFormatException e )
+		{
+			sendError( exchange, 404, "Not found." );
+		}
+		finally
+		{
+			exchange.close();
+		}
+	} // End of handleDevices() method.
+
+
+	/**
+	 * GET /cache.
+	 */
+	private void handleCache( HttpExchange exchange ) throws IOException
+	{
+		try
+		{
+			if( !CACHE_PATH.equals( exchange.getRequestURI().getPath() ) )
+			{
+				sendError( exchange, 404, "Not found." );
+				return;
+			}
+			WalkCache cache = WalkCache.shared();
+			try( JsonWriter out = openJson( exchange ) )
+			{
+				out.beginObject();
+				out.name( "walkHits" ).value( cache.getWalkHits() );
+				out.name( "walkMisses" ).value( cache.getWalkMisses() );
+				out.name( "walkBytes" ).value( cache.getWalkBytes() );
+				out.name( "interfaceHits" ).value( cache.getResultHits() );
+				out.name( "interfaceMisses" ).value( cache.getResultMisses() );
+				out.endObject();
+			}
+		}
+		finally
+		{
+			exchange.close();
+		}
+	}
+
+
+	/**
+	 * GET /metrics.
+	 */
+	private void handleMetrics( HttpExchange exchange ) throws IOException
+	{
+		try
+		{
+			if( !METRICS_PATH.equals( exchange.getRequestURI().getPath() ) )
+			{
+				sendError( exchange, 404, "Not found." );
+				return;
+			}
+			exchange.getResponseHeaders().set( "Content-Type", "text/plain; version=0.0.4; charset=utf-8" );
+			exchange.sendResponseHeaders( 200, 0 );
+			try( Writer out = new BufferedWriter( new OutputStreamWriter( exchange.getResponseBody(), StandardCharsets.UTF_8 ), BUFFER_SIZE ) )
+			{
+				Metrics.writePrometheus( out );
+			}
+		}
+		finally
+		{
+			exchange.close();
+		}
+	}
+
+
+	private DeviceResult findDevice( String sysName )
+	{
+		synchronized( devices )
+		{
+			return devices.get( sysName );
+		}
+	}
+
+
+	/**
+	 * This writes one small object per device, without its interfaces, so that a dashboard can list a whole fleet cheaply.
+	 */
+	private void writeSummaries( HttpExchange exchange, List<DeviceResult> results ) throws IOException
+	{
+		try( JsonWriter out = openJson( exchange ) )
+		{
+			out.beginArray();
+			for( DeviceResult device : results )
+			{
+				out.beginObject();
+				out.name( "sysName" ).value( device.getSysName() );
+				out.name( "sysDescr" ).value( device.getSysDescr() );
+				out.name( "firstWalk" ).value( device.getFirstWalk() );
+				out.name( "secondWalk" ).value( device.getSecondWalk() );
+				if( device.getInterfaces() != null )
+				{
+					out.name( "interfaceCount" ).value( device.getInterfaces().size() );
+				}
+				if( device.getError() != null )
+				{
+					out.name( "error" ).value( device.getError() );
+				}
+				out.endObject();
+			}
+			out.endArray();
+		}
+	} // End of writeSummaries() method.
+
+
+	/**
+	 * This sends a 200 response with chunked encoding, and returns a writer that serializes straight into it.
+	 */
+	private static JsonWriter openJson( HttpExchange exchange ) throws IOException
+	{
+		exchange.getResponseHeaders().set( "Content-Type", "application/json; charset=utf-8" );
+		exchange.sendResponseHeaders( 200, 0 );
+		return new JsonWriter( new BufferedWriter( new OutputStreamWriter( exchange.getResponseBody(), StandardCharsets.UTF_8 ), BUFFER_SIZE ) );
+	}
+
+
+	private static void sendError( HttpExchange exchange, int status, String message ) throws IOException
+	{
+		JsonObject error = new JsonObject();
+		error.addProperty( "error", message );
+		byte[] body = error.toString().getBytes( StandardCharsets.UTF_8 );
+		exchange.getResponseHeaders().set( "Content-Type", "application/json; charset=utf-8" );
+		exchange.sendResponseHeaders( status, body.length );
+		exchange.getResponseBody().write( body );
+	}
+}
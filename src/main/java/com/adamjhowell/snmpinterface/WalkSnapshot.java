@@ -0,0 +1,347 @@
+package com.adamjhowell.snmpinterface;
+
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * This saves a parsed walk (a WalkIndex) as a compact binary snapshot, so that a capture only has to be parsed as text once.<br>
+ * A snapshot is memory-mapped and decoded straight into a WalkIndex, without looking at any of the lines that the walk skipped.<br>
+ * WalkReader recognizes a snapshot by its magic number, so every mode that reads walks also reads snapshots.
+ * <p>
+ * The layout is a fixed-width header (magic, version, interface count, column count, sysUpTime, the read counts, and the walk's capture time),
+ * followed by the sysName and sysDescr, the ifIndex and ifDescr of every slot, and then one block per column.<br>
+ * Each column block starts with the column OID, so snapshots stay readable when columns are added, followed by a bitmap of the slots that have a value,
+ * and those values as unsigned varints (seven bits per byte), which keeps small counters small.
+ * <p>
+ * Usage: WalkSnapshot &lt;walk&gt; [&lt;walk&gt;...]<br>
+ * Each walk is saved beside itself, with SNAPSHOT_EXTENSION appended to its name.
+ */
+public final class WalkSnapshot
+{
+	private static final Logger errorLogger = Logger.getLogger( WalkSnapshot.class.getName() );
+	private static final String USAGE = "Usage: WalkSnapshot <walk> [<walk>...]";
+	private static final int EXIT_USAGE = 1;
+	private static final int EXIT_IO_ERROR = 2;
+	static final String SNAPSHOT_EXTENSION = ".walksnap";
+	private static final byte[] MAGIC = "SNMPSNAP".getBytes( StandardCharsets.US_ASCII );
+	private static final int VERSION = 2;
+	/**
+	 * Version 1 snapshots have no capture time, so they are given the modification time of the snapshot itself.
+	 */
+	private static final int VERSION_WITHOUT_CAPTURE_TIME = 1;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+
+	private WalkSnapshot()
+	{
+		// This class only holds static methods.
+	}
+
+
+	public static void main( String[] args )
+	{
+		System.exit( run( args ) );
+	} // End of main() method.
+
+
+	/**
+	 * This will parse each walk named on the command line, and save it as a snapshot.
+	 *
+	 * @param args the command line arguments.
+	 * @return the exit code for the process.
+	 */
+	static int run( String[] args )
+	{
+		if( args.length == 0 )
+		{
+			System.err.println( USAGE );
+			return EXIT_USAGE;
+		}
+		for( String arg : args )
+		{
+			if( arg.startsWith( "--" ) )
+			{
+				System.err.println( USAGE );
+				return EXIT_USAGE;
+			}
+		}
+		for( String walkFile : args )
+		{
+			try
+			{
+				Path walk = Paths.get( walkFile );
+				Path snapshot = snapshotPath( walk );
+				WalkIndex index = WalkReader.read( walk );
+				write( index, snapshot );
+				System.err.println( String.format( "%s: %,d interfaces, %,d bytes of walk saved in %,d bytes", snapshot, index.size(), Files.size( walk ), Files.size( snapshot ) ) );
+			}
+			catch( IOException | InvalidPathException e )
+			{
+				errorLogger.log( Level.SEVERE, "Unable to save a snapshot of {0}: {1}", new Object[]{ walkFile, e.getLocalizedMessage() } );
+				return EXIT_IO_ERROR;
+			}
+		}
+		return 0;
+	} // End of run() method.
+
+
+	/**
+	 * @param walk a walk file.
+	 * @return the path that walk's snapshot is saved to.
+	 */
+	static Path snapshotPath( Path walk )
+	{
+		return walk.resolveSibling( walk.getFileName() + SNAPSHOT_EXTENSION );
+	}
+
+
+	/**
+	 * This writes the snapshot to a temporary file beside the target, and then moves it into place, so a reader never sees half a snapshot.
+	 *
+	 * @param index    the parsed walk.
+	 * @param snapshot the file to save it in.
+	 * @throws IOException if the file cannot be written.
+	 */
+	static void write( WalkIndex index, Path snapshot ) throws IOException
+	{
+		Path temporary = snapshot.resolveSibling( snapshot.getFileName() + ".tmp" );
+		try( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( Files.newOutputStream( temporary ), BUFFER_SIZE ) ) )
+		{
+			IfColumn[] columns = IfColumn.values();
+			int size = index.size();
+			out.write( MAGIC );
+			out.writeInt( VERSION );
+			out.writeInt( size );
+			out.writeInt( columns.length );
+			out.writeLong( index.getSysUpTime() );
+			out.writeLong( index.getLineCount() );
+			out.writeLong( index.getByteCount() );
+			out.writeLong( index.getCaptureTime() );
+			writeText( out, index.getSysName() );
+			writeText( out, index.getSysDescr() );
+			for( int slot = 0; slot < size; slot++ )
+			{
+				writeVarLong( out, index.getIfIndex( slot ) );
+				writeText( out, index.getIfDescr( slot ) );
+			}
+			ByteArrayOutputStream block = new ByteArrayOutputStream();
+			for( IfColumn column : columns )
+			{
+				block.reset();
+				byte[] bitmap = new byte[( size + 7 ) / 8];
+				for( int slot = 0; slot < size; slot++ )
+				{
+					if( index.hasValue( column, slot ) )
+					{
+						bitmap[slot / 8] |= 1 << ( slot % 8 );
+						writeVarLong( block, index.getValue( column, slot ) );
+					}
+				}
+				writeText( out, column.getOid() );
+				writeVarLong( out, bitmap.length + block.size() );
+				out.write( bitmap );
+				block.writeTo( out );
+			}
+		}
+		Files.move( temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+	} // End of write() method.
+
+
+	/**
+	 * @param channel an open file, which is read from its start.
+	 * @return true if the file starts with the snapshot magic number.
+	 * @throws IOException if the file cannot be read.
+	 */
+	static boolean isSnapshot( FileChannel channel ) throws IOException
+	{
+		if( channel.size() < MAGIC.length )
+		{
+			return false;
+		}
+		ByteBuffer magic = ByteBuffer.allocate( MAGIC.length );
+		while( magic.hasRemaining() && channel.read( magic, magic.position() ) >= 0 )
+		{
+			// Keep reading until the magic number is complete.
+		}
+		return Arrays.equals( magic.array(), MAGIC );
+	}
+
+
+	/**
+	 * @param channel an open snapshot file.
+	 * @return the WalkIndex that was saved in the snapshot.  Its capture time is zero if the snapshot is from version 1, which did not save it.
+	 * @throws IOException if the file cannot be read, or is not a valid snapshot.
+	 */
+	static WalkIndex read( FileChannel channel ) throws IOException
+	{
+		if( channel.size() > Integer.MAX_VALUE )
+		{
+			throw new IOException( "The snapshot is too large." );
+		}
+		ByteBuffer buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+		try
+		{
+			byte[] magic = new byte[MAGIC.length];
+			buffer.get( magic );
+			int version = buffer.getInt();
+			if( !Arrays.equals( magic, MAGIC ) || version != VERSION && version != VERSION_WITHOUT_CAPTURE_TIME )
+			{
+				throw new IOException( "Not a version " + VERSION + " walk snapshot." );
+			}
+			int size = buffer.getInt();
+			int columnCount = buffer.getInt();
+			if( size < 0 || columnCount < 0 )
+			{
+				throw new IOException( "The snapshot is corrupt." );
+			}
+			WalkIndex index = new WalkIndex();
+			index.setSysUpTime( buffer.getLong() );
+			long lineCount = buffer.getLong();
+			long byteCount = buffer.getLong();
+			index.setReadCounts( lineCount, byteCount );
+			if( version != VERSION_WITHOUT_CAPTURE_TIME )
+			{
+				index.setCaptureTime( buffer.getLong() );
+			}
+			index.setSysName( readText( buffer ) );
+			index.setSysDescr( readText( buffer ) );
+			long[] ifIndexes = new long[size];
+			for( int slot = 0; slot < size; slot++ )
+			{
+				ifIndexes[slot] = readVarLong( buffer );
+				// Slots are added in the saved order, so the interfaces keep their walk order.
+				index.slotFor( ifIndexes[slot] );
+				String ifDescr = readText( buffer );
+				if( ifDescr != null )
+				{
+					index.setIfDescr( ifIndexes[slot], ifDescr );
+				}
+			}
+			for( int i = 0; i < columnCount; i++ )
+			{
+				String oid = readText( buffer );
+				int blockLength = ( int )readVarLong( buffer );
+				int blockEnd = buffer.position() + blockLength;
+				IfColumn column = oid == null ? null : columnByOid( oid );
+				if( column == null )
+				{
+					// A column this version does not use is skipped.
+					buffer.position( blockEnd );
+					continue;
+				}
+				int valuesStart = buffer.position() + ( size + 7 ) / 8;
+				int bitmapPosition = buffer.position();
+				buffer.position( valuesStart );
+				for( int slot = 0; slot < size; slot++ )
+				{
+					if( ( buffer.get( bitmapPosition + slot / 8 ) & 1 << ( slot % 8 ) ) != 0 )
+					{
+						index.setValue( column, ifIndexes[slot], readVarLong( buffer ) );
+					}
+				}
+				if( buffer.position() != blockEnd )
+				{
+					throw new IOException( "The snapshot is corrupt." );
+				}
+			}
+			return index;
+		}
+		catch( BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e )
+		{
+			throw new IOException( "The snapshot is truncated or corrupt.", e );
+		}
+	} // End of read() method.
+
+
+	private static IfColumn columnByOid( String oid )
+	{
+		for( IfColumn column : IfColumn.values() )
+		{
+			if( column.getOid().equals( oid ) )
+			{
+				return column;
+			}
+		}
+		return null;
+	}
+
+
+	/**
+	 * Text is written as its UTF-8 length plus one, followed by its bytes, so that zero can stand for null.
+	 */
+	private static void writeText( OutputStream out, String text ) throws IOException
+	{
+		if( text == null )
+		{
+			writeVarLong( out, 0 );
+			return;
+		}
+		byte[] bytes = text.getBytes( StandardCharsets.UTF_8 );
+		writeVarLong( out, bytes.length + 1L );
+		out.write( bytes );
+	}
+
+
+	private static String readText( ByteBuffer buffer ) throws IOException
+	{
+		long length = readVarLong( buffer );
+		if( length == 0 )
+		{
+			return null;
+		}
+		if( length - 1 > buffer.remaining() )
+		{
+			throw new IOException( "The snapshot is truncated." );
+		}
+		byte[] bytes = new byte[( int )( length - 1 )];
+		buffer.get( bytes );
+		return new String( bytes, StandardCharsets.UTF_8 );
+	}
+
+
+	/**
+	 * This writes the value as unsigned, seven bits per byte, least significant first, with the top bit set on every byte but the last.
+	 */
+	private static void writeVarLong( OutputStream out, long value ) throws IOException
+	{
+		while( ( value & ~0x7FL ) != 0 )
+		{
+			out.write( ( int )( value & 0x7F ) | 0x80 );
+			value >>>= 7;
+		}
+		out.write( ( int )value );
+	}
+
+
+	private static long readVarLong( ByteBuffer buffer ) throws IOException
+	{
+		long value = 0;
+		for( int shift = 0; shift < 64; shift += 7 )
+		{
+			byte b = buffer.get();
+			value |= ( long )( b & 0x7F ) << shift;
+			if( b >= 0 )
+			{
+				return value;
+			}
+		}
+		throw new IOException( "The snapshot holds a varint longer than ten bytes." );
+	}
+}
@@ -0,0 +1,74 @@
+package com.adamjhowell.snmpinterface.model;
+
+
+/**
+ * This class holds the value calculated for one instance of a configured counter (see CounterDefinitions), such as tcpInSegs, or one row of hrStorageUsed.<br>
+ * A counter's value is its rate per second between the walks, and a gauge's or a formula's value is its value in the later walk.
+ */
+public class CounterResult
+{
+	private final String name;
+	private final String instance;
+	private final double value;
+	private final boolean rate;
+
+
+	/**
+	 * Parameterized constructor.
+	 *
+	 * @param name     The name the counter was given in its definition.
+	 * @param instance The index that follows the counter's OID in the walk (e.g. "4" for a table row), or an empty String for a scalar.
+	 * @param value    The value calculated for that instance.
+	 * @param rate     True if the value is a rate per second.
+	 */
+	public CounterResult( String name, String instance, double value, boolean rate )
+	{
+		this.name = name;
+		this.instance = instance;
+		this.value = value;
+		this.rate = rate;
+	}
+
+
+	public String getName()
+	{
+		return name;
+	}
+
+
+	public String getInstance()
+	{
+		return instance;
+	}
+
+
+	public double getValue()
+	{
+		return value;
+	}
+
+
+	public boolean isRate()
+	{
+		return rate;
+	}
+
+
+	/**
+	 * @return the name, followed by the instance in brackets for a table row.
+	 */
+	public String getLabel()
+	{
+		return instance.isEmpty() ? name : name + "[" + instance + "]";
+	}
+
+
+	/**
+	 * @return A string representing the object.
+	 */
+	@Override
+	public String toString()
+	{
+		return "CounterResult: " + getLabel() + " = " + value + ( rate ? "/s" : "" );
+	}
+}
@@ -0,0 +1,145 @@
+package com.adamjhowell.snmpinterface.model;
+
+
+import java.util.List;
+
+
+/**
+ * This class holds the statistics calculated for every interface of one device (machine), along with the walks they came from.<br>
+ * A device is identified by its sysName and sysDescr.<br>
+ * If the walks could not be compared, interfaces will be null and error will describe the problem.<br>
+ * When counter definitions are configured, the values of those counters are also held, and are null otherwise.<br>
+ * The capture time of the second walk is kept for the history and alerts, but is transient, so it is not part of the JSON output.
+ */
+public class DeviceResult
+{
+	private final String sysName;
+	private final String sysDescr;
+	private final String firstWalk;
+	private final String secondWalk;
+	private final List<InterfaceResult> interfaces;
+	private final String error;
+	private final List<CounterResult> counters;
+	private final transient long captureTime;
+
+
+	/**
+	 * Parameterized constructor.
+	 *
+	 * @param sysName    The system name from the SNMP walks.
+	 * @param sysDescr   The system description from the SNMP walks.
+	 * @param firstWalk  The walk file with the shorter sysUpTime.
+	 * @param secondWalk The walk file with the longer sysUpTime.
+	 * @param interfaces The statistics calculated for each interface, or null if there was an error.
+	 * @param error      A description of why the statistics could not be calculated, or null.
+	 */
+	public DeviceResult( String sysName, String sysDescr, String firstWalk, String secondWalk, List<InterfaceResult> interfaces, String error )
+	{
+		this( sysName, sysDescr, firstWalk, secondWalk, interfaces, error, null );
+	}
+
+
+	/**
+	 * Parameterized constructor.
+	 *
+	 * @param sysName    The system name from the SNMP walks.
+	 * @param sysDescr   The system description from the SNMP walks.
+	 * @param firstWalk  The walk file with the shorter sysUpTime.
+	 * @param secondWalk The walk file with the longer sysUpTime.
+	 * @param interfaces The statistics calculated for each interface, or null if there was an error.
+	 * @param error      A description of why the statistics could not be calculated, or null.
+	 * @param counters   The values calculated for the configured counters, or null if none are configured.
+	 */
+	public DeviceResult( String sysName, String sysDescr, String firstWalk, String secondWalk, List<InterfaceResult> interfaces, String error,
+	                     List<CounterResult> counters )
+	{
+		this( sysName, sysDescr, firstWalk, secondWalk, interfaces, error, counters, 0 );
+	}
+
+
+	/**
+	 * Parameterized constructor.
+	 *
+	 * @param sysName     The system name from the SNMP walks.
+	 * @param sysDescr    The system description from the SNMP walks.
+	 * @param firstWalk   The walk file with the shorter sysUpTime.
+	 * @param secondWalk  The walk file with the longer sysUpTime.
+	 * @param interfaces  The statistics calculated for each interface, or null if there was an error.
+	 * @param error       A description of why the statistics could not be calculated, or null.
+	 * @param counters    The values calculated for the configured counters, or null if none are configured.
+	 * @param captureTime When the second walk was captured, in milliseconds since the epoch, or zero if that is not known.
+	 */
+	public DeviceResult( String sysName, String sysDescr, String firstWalk, String secondWalk, List<InterfaceResult> interfaces, String error,
+	                     List<CounterResult> counters, long captureTime )
+	{
+		this.sysName = sysName;
+		this.sysDescr = sysDescr;
+		this.firstWalk = firstWalk;
+		this.secondWalk = secondWalk;
+		this.interfaces = interfaces;
+		this.error = error;
+		this.counters = counters;
+		this.captureTime = captureTime;
+	}
+
+
+	public String getSysName()
+	{
+		return sysName;
+	}
+
+
+	public String getSysDescr()
+	{
+		return sysDescr;
+	}
+
+
+	public String getFirstWalk()
+	{
+		return firstWalk;
+	}
+
+
+	public String getSecondWalk()
+	{
+		return secondWalk;
+	}
+
+
+	public List<InterfaceResult> getInterfaces()
+	{
+		return interfaces;
+	}
+
+
+	public String getError()
+	{
+		return error;
+	}
+
+
+	public List<CounterResult> getCounters()
+	{
+		return counters;
+	}
+
+
+	/**
+	 * @return When the second walk was captured (the modification time of the walk, even if a snapshot of it was read), or zero if that is not known.
+	 */
+	public long getCaptureTime()
+	{
+		return captureTime;
+	}
+
+
+	/**
+	 * @return A string representing the object.
+	 */
+	@Override
+	public String toString()
+	{
+		return "DeviceResult: sysName = " + sysName + " interfaces = " + ( interfaces == null ? error : interfaces.size() );
+	}
+}
@@ -0,0 +1,338 @@
+package com.adamjhowell.snmpinterface.model;
+
+
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+
+/**
+ * This class holds the numeric difference between one interface in two walks, as primitive fields.<br>
+ * It is mutable so that one instance can be filled again for every interface in a bulk calculation, without allocating.
+ * <p>
+ * Nothing is formatted until toStatistics() is called, which is only done when the result is displayed or written out.<br>
+ * Utilization values are percentages of the interface speed, and are only meaningful when the status is VALID.
+ */
+public class InterfaceDelta
+{
+	/**
+	 * The outcome of a calculation, which says which of the fields below were filled in.
+	 */
+	public enum Status
+	{
+		/**
+		 * Every field was filled in.
+		 */
+		VALID,
+		/**
+		 * The interface is not in both walks, so no field was filled in.
+		 */
+		MISSING_INTERFACE,
+		/**
+		 * The walks have the same sysUpTime, so no field was filled in.
+		 */
+		IDENTICAL_TIME,
+		/**
+		 * The interface speeds do not match, so only the tick delta and first speed were filled in.
+		 */
+		SPEED_MISMATCH,
+		/**
+		 * The interface speed is zero, so every field except the utilization was filled in.
+		 */
+		ZERO_SPEED
+	}
+
+
+	private Status status = Status.MISSING_INTERFACE;
+	private long tickDelta;
+	private long ifSpeed;
+	private boolean highCapacity;
+	private long inOctetDelta;
+	private long outOctetDelta;
+	private double inUtilization;
+	private double outUtilization;
+	private long inDiscardDelta;
+	private long outDiscardDelta;
+	private long inErrorDelta;
+	private long outErrorDelta;
+
+
+	/**
+	 * This sets every field back to its default, ready to be filled in again.
+	 *
+	 * @param status the outcome of the calculation that is about to fill this in.
+	 */
+	public void reset( Status status )
+	{
+		this.status = status;
+		tickDelta = 0;
+		ifSpeed = 0;
+		highCapacity = false;
+		inOctetDelta = 0;
+		outOctetDelta = 0;
+		inUtilization = 0;
+		outUtilization = 0;
+		inDiscardDelta = 0;
+		outDiscardDelta = 0;
+		inErrorDelta = 0;
+		outErrorDelta = 0;
+	}
+
+
+	/**
+	 * @return a copy of this delta, which is useful when this instance is about to be reused.
+	 */
+	public InterfaceDelta copy()
+	{
+		InterfaceDelta copy = new InterfaceDelta();
+		copy.status = status;
+		copy.tickDelta = tickDelta;
+		copy.ifSpeed = ifSpeed;
+		copy.highCapacity = highCapacity;
+		copy.inOctetDelta = inOctetDelta;
+		copy.outOctetDelta = outOctetDelta;
+		copy.inUtilization = inUtilization;
+		copy.outUtilization = outUtilization;
+		copy.inDiscardDelta = inDiscardDelta;
+		copy.outDiscardDelta = outDiscardDelta;
+		copy.inErrorDelta = inErrorDelta;
+		copy.outErrorDelta = outErrorDelta;
+		return copy;
+	}
+
+
+	/**
+	 * This formats the delta into the rows shown in the statistics TableView.
+	 *
+	 * @return A List containing all of the statistics for the interface, in display order.
+	 */
+	public List<InterfaceStats> toStatistics()
+	{
+		List<InterfaceStats> statsAL = new ArrayList<>();
+		if( status == Status.MISSING_INTERFACE )
+		{
+			statsAL.add( new InterfaceStats( "Unable to calculate utilization", "The interface is not in both files" ) );
+			return statsAL;
+		}
+		if( status == Status.IDENTICAL_TIME )
+		{
+			statsAL.add( new InterfaceStats( "Unable to calculate utilization", "The time stamps on the two files are identical" ) );
+			return statsAL;
+		}
+		NumberFormat nfUs = NumberFormat.getInstance( Locale.US );
+		statsAL.add( new InterfaceStats( "Time Delta", nfUs.format( ( double )tickDelta / 100 ) + " seconds" ) );
+		if( status == Status.SPEED_MISMATCH )
+		{
+			statsAL.add( new InterfaceStats( "Interface Speeds", "Do Not Match" ) );
+			return statsAL;
+		}
+		statsAL.add( new InterfaceStats( "Interface Speed", nfUs.format( ifSpeed ) ) );
+		statsAL.add( new InterfaceStats( "Octet Counters", highCapacity ? "64-bit (ifXTable)" : "32-bit (ifTable)" ) );
+		statsAL.add( new InterfaceStats( "Inbound Octet Delta", nfUs.format( inOctetDelta ) ) );
+		statsAL.add( new InterfaceStats( "Outbound Octet Delta", nfUs.format( outOctetDelta ) ) );
+		statsAL.add( new InterfaceStats( "Total Delta", nfUs.format( getTotalOctetDelta() ) ) );
+		if( status == Status.VALID )
+		{
+			// Add the utilization formatted to 3 decimal places.
+			statsAL.add( new InterfaceStats( "Inbound Utilization", String.format( "%.3g", inUtilization ) ) );
+			statsAL.add( new InterfaceStats( "Outbound Utilization", String.format( "%.3g", outUtilization ) ) );
+			statsAL.add( new InterfaceStats( "Total Utilization", String.format( "%.3g", getTotalUtilization() ) ) );
+		}
+		else
+		{
+			statsAL.add( new InterfaceStats( "Unable to calculate utilization", "interface speed is zero" ) );
+		}
+		statsAL.add( new InterfaceStats( "Inbound Discards", nfUs.format( inDiscardDelta ) ) );
+		statsAL.add( new InterfaceStats( "Outbound Discards", nfUs.format( outDiscardDelta ) ) );
+		statsAL.add( new InterfaceStats( "Total Discards", nfUs.format( getTotalDiscardDelta() ) ) );
+		statsAL.add( new InterfaceStats( "Inbound Errors", nfUs.format( inErrorDelta ) ) );
+		statsAL.add( new InterfaceStats( "Outbound Errors", nfUs.format( outErrorDelta ) ) );
+		statsAL.add( new InterfaceStats( "Total Errors", nfUs.format( getTotalErrorDelta() ) ) );
+		return statsAL;
+	} // End of toStatistics() method.
+
+
+	public Status getStatus()
+	{
+		return status;
+	}
+
+
+	/**
+	 * @return the time between the walks, in hundredths of a second.
+	 */
+	public long getTickDelta()
+	{
+		return tickDelta;
+	}
+
+
+	public void setTickDelta( long tickDelta )
+	{
+		this.tickDelta = tickDelta;
+	}
+
+
+	/**
+	 * @return the interface speed, in bits per second.
+	 */
+	public long getIfSpeed()
+	{
+		return ifSpeed;
+	}
+
+
+	public void setIfSpeed( long ifSpeed )
+	{
+		this.ifSpeed = ifSpeed;
+	}
+
+
+	/**
+	 * @return true if the octet deltas came from the 64-bit (ifXTable) counters.
+	 */
+	public boolean isHighCapacity()
+	{
+		return highCapacity;
+	}
+
+
+	public void setHighCapacity( boolean highCapacity )
+	{
+		this.highCapacity = highCapacity;
+	}
+
+
+	public long getInOctetDelta()
+	{
+		return inOctetDelta;
+	}
+
+
+	public void setInOctetDelta( long inOctetDelta )
+	{
+		this.inOctetDelta = inOctetDelta;
+	}
+
+
+	public long getOutOctetDelta()
+	{
+		return outOctetDelta;
+	}
+
+
+	public void setOutOctetDelta( long outOctetDelta )
+	{
+		this.outOctetDelta = outOctetDelta;
+	}
+
+
+	public long getTotalOctetDelta()
+	{
+		return inOctetDelta + outOctetDelta;
+	}
+
+
+	public double getInUtilization()
+	{
+		return inUtilization;
+	}
+
+
+	public void setInUtilization( double inUtilization )
+	{
+		this.inUtilization = inUtilization;
+	}
+
+
+	public double getOutUtilization()
+	{
+		return outUtilization;
+	}
+
+
+	public void setOutUtilization( double outUtilization )
+	{
+		this.outUtilization = outUtilization;
+	}
+
+
+	/**
+	 * @return the utilization of both directions together, which is the average of the inbound and outbound utilization.
+	 */
+	public double getTotalUtilization()
+	{
+		return ( inUtilization + outUtilization ) / 2;
+	}
+
+
+	public long getInDiscardDelta()
+	{
+		return inDiscardDelta;
+	}
+
+
+	public void setInDiscardDelta( long inDiscardDelta )
+	{
+		this.inDiscardDelta = inDiscardDelta;
+	}
+
+
+	public long getOutDiscardDelta()
+	{
+		return outDiscardDelta;
+	}
+
+
+	public void setOutDiscardDelta( long outDiscardDelta )
+	{
+		this.outDiscardDelta = outDiscardDelta;
+	}
+
+
+	public long getTotalDiscardDelta()
+	{
+		return inDiscardDelta + outDiscardDelta;
+	}
+
+
+	public long getInErrorDelta()
+	{
+		return inErrorDelta;
+	}
+
+
+	public void setInErrorDelta( long inErrorDelta )
+	{
+		this.inErrorDelta = inErrorDelta;
+	}
+
+
+	public long getOutErrorDelta()
+	{
+		return outErrorDelta;
+	}
+
+
+	public void setOutErrorDelta( long outErrorDelta )
+	{
+		this.outErrorDelta = outErrorDelta;
+	}
+
+
+	public long getTotalErrorDelta()
+	{
+		return inErrorDelta + outErrorDelta;
+	}
+
+
+	/**
+	 * @return A string representing the object.
+	 */
+	@Override
+	public String toString()
+	{
+		return "InterfaceDelta: status = " + status + " inOctetDelta = " + inOctetDelta + " outOctetDelta = " + outOctetDelta;
+	}
+}
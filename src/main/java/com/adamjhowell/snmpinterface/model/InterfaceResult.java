@@ -0,0 +1,70 @@
+package com.adamjhowell.snmpinterface.model;
+
+
+import java.util.List;
+
+
+/**
+ * This class holds the delta calculated for one interface, along with the index and description that identify it.<br>
+ * It is used to write the results of a batch run, where every interface is calculated at once.
+ * <p>
+ * The delta is kept as numbers, and is only formatted into statistics when getStatistics() is called.
+ */
+public class InterfaceResult
+{
+	private final long ifIndex;
+	private final String ifDescr;
+	private final InterfaceDelta delta;
+
+
+	/**
+	 * Parameterized constructor.
+	 *
+	 * @param ifIndex The interface index number from the SNMP walk.
+	 * @param ifDescr The interface description from the SNMP walk.
+	 * @param delta   The delta calculated for that interface, which this result will own.
+	 */
+	public InterfaceResult( long ifIndex, String ifDescr, InterfaceDelta delta )
+	{
+		this.ifIndex = ifIndex;
+		this.ifDescr = ifDescr;
+		this.delta = delta;
+	}
+
+
+	public long getIfIndex()
+	{
+		return ifIndex;
+	}
+
+
+	public String getIfDescr()
+	{
+		return ifDescr;
+	}
+
+
+	public InterfaceDelta getDelta()
+	{
+		return delta;
+	}
+
+
+	/**
+	 * @return the delta formatted into human-readable statistics.
+	 */
+	public List<InterfaceStats> getStatistics()
+	{
+		return delta.toStatistics();
+	}
+
+
+	/**
+	 * @return A string representing the object.
+	 */
+	@Override
+	public String toString()
+	{
+		return "InterfaceResult: ifIndex = " + ifIndex + " ifDescr = " + ifDescr;
+	}
+}
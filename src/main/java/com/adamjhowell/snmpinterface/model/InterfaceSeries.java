@@ -0,0 +1,187 @@
+package com.adamjhowell.snmpinterface.model;
+
+
+import java.util.Arrays;
+
+
+/**
+ * This class holds the utilization of one interface over a series of walks, one value per interval between consecutive walks.<br>
+ * The minimum, average, maximum, and 95th percentile of each direction are calculated when the series is created.
+ * <p>
+ * Utilization values are percentages of the interface speed.
+ */
+public class InterfaceSeries
+{
+	private final long ifIndex;
+	private final String ifDescr;
+	private final double[] inbound;
+	private final double[] outbound;
+	private final double inboundMin;
+	private final double inboundAvg;
+	private final double inboundMax;
+	private final double inboundP95;
+	private final double outboundMin;
+	private final double outboundAvg;
+	private final double outboundMax;
+	private final double outboundP95;
+
+
+	/**
+	 * Parameterized constructor.
+	 *
+	 * @param ifIndex  The interface index number from the SNMP walks.
+	 * @param ifDescr  The interface description from the SNMP walks.
+	 * @param inbound  The inbound utilization for each interval.
+	 * @param outbound The outbound utilization for each interval.
+	 */
+	public InterfaceSeries( long ifIndex, String ifDescr, double[] inbound, double[] outbound )
+	{
+		this.ifIndex = ifIndex;
+		this.ifDescr = ifDescr;
+		this.inbound = inbound;
+		this.outbound = outbound;
+		double[] sortedInbound = sorted( inbound );
+		double[] sortedOutbound = sorted( outbound );
+		inboundMin = min( sortedInbound );
+		inboundAvg = average( inbound );
+		inboundMax = max( sortedInbound );
+		inboundP95 = percentile( sortedInbound, 95 );
+		outboundMin = min( sortedOutbound );
+		outboundAvg = average( outbound );
+		outboundMax = max( sortedOutbound );
+		outboundP95 = percentile( sortedOutbound, 95 );
+	}
+
+
+	private static double[] sorted( double[] values )
+	{
+		double[] copy = values.clone();
+		Arrays.sort( copy );
+		return copy;
+	}
+
+
+	private static double min( double[] sortedValues )
+	{
+		return sortedValues.length == 0 ? 0 : sortedValues[0];
+	}
+
+
+	private static double max( double[] sortedValues )
+	{
+		return sortedValues.length == 0 ? 0 : sortedValues[sortedValues.length - 1];
+	}
+
+
+	private static double average( double[] values )
+	{
+		double sum = 0;
+		for( double value : values )
+		{
+			sum += value;
+		}
+		return values.length == 0 ? 0 : sum / values.length;
+	}
+
+
+	/**
+	 * This uses the nearest-rank method, so the result is always one of the values in the series.
+	 */
+	private static double percentile( double[] sortedValues, int percent )
+	{
+		if( sortedValues.length == 0 )
+		{
+			return 0;
+		}
+		int rank = ( int )Math.ceil( percent / 100.0 * sortedValues.length );
+		return sortedValues[Math.max( rank, 1 ) - 1];
+	}
+
+
+	public long getIfIndex()
+	{
+		return ifIndex;
+	}
+
+
+	public String getIfDescr()
+	{
+		return ifDescr;
+	}
+
+
+	public int getSampleCount()
+	{
+		return inbound.length;
+	}
+
+
+	public double[] getInbound()
+	{
+		return inbound.clone();
+	}
+
+
+	public double[] getOutbound()
+	{
+		return outbound.clone();
+	}
+
+
+	public double getInboundMin()
+	{
+		return inboundMin;
+	}
+
+
+	public double getInboundAvg()
+	{
+		return inboundAvg;
+	}
+
+
+	public double getInboundMax()
+	{
+		return inboundMax;
+	}
+
+
+	public double getInboundP95()
+	{
+		return inboundP95;
+	}
+
+
+	public double getOutboundMin()
+	{
+		return outboundMin;
+	}
+
+
+	public double getOutboundAvg()
+	{
+		return outboundAvg;
+	}
+
+
+	public double getOutboundMax()
+	{
+		return outboundMax;
+	}
+
+
+	public double getOutboundP95()
+	{
+		return outboundP95;
+	}
+
+
+	/**
+	 * @return A string representing the object.
+	 */
+	@Override
+	public String toString()
+	{
+		return "InterfaceSeries: ifIndex = " + ifIndex + " ifDescr = " + ifDescr + " samples = " + inbound.length;
+	}
+}
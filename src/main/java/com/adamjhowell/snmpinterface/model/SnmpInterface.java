@@ -0,0 +1,133 @@
+package com.adamjhowell.snmpinterface.model;
+
+
+/**
+ * This class is a thin view of one SNMP interface or link, used to format data for display in a JavaFX TableView object (interfaceTableView).<br>
+ * A SNMP interface is essentially a NIC (Network Interface Card) or network adapter.<br>
+ * It may be a wired ethernet port, an 802.11 radio, a bluetooth adapter, a USB network device, virtual device, etc.<br>
+ * The ifIndex class member will go into column 1, named "Index".<br>
+ * The ifDescr class member will go into column 2, named "Description".<br>
+ * The utilization, discards, and errors of the precomputed delta go into the remaining columns, so the table can be sorted by them.
+ * <p>
+ * The counters for each interface are not held here, but in the primitive columns of a WalkIndex, which the calculations read directly.<br>
+ * When the delta has not been calculated (as for live polls), or does not hold a value, that column is empty.
+ * <p>
+ * Created by Adam Howell on 2016-05-05.
+ */
+public class SnmpInterface
+{
+	private final long ifIndex;
+	private final String ifDescr;
+	private final InterfaceDelta delta;
+
+
+	/**
+	 * This constructor is used to populate the "interfaceTableView" JavaFX object.
+	 *
+	 * @param ifIndex The interface index number from the SNMP walk.
+	 * @param ifDescr The interface description from the SNMP walk.
+	 */
+	public SnmpInterface( long ifIndex, String ifDescr )
+	{
+		this( ifIndex, ifDescr, null );
+	}
+
+
+	/**
+	 * This constructor is used when the delta of every interface is calculated as soon as the walks are read.
+	 *
+	 * @param ifIndex The interface index number from the SNMP walk.
+	 * @param ifDescr The interface description from the SNMP walk.
+	 * @param delta   The delta calculated for that interface, which this interface will own, or null.
+	 */
+	public SnmpInterface( long ifIndex, String ifDescr, InterfaceDelta delta )
+	{
+		this.ifIndex = ifIndex;
+		this.ifDescr = ifDescr;
+		this.delta = delta;
+	}
+
+
+	public long getIfIndex()
+	{
+		return ifIndex;
+	}
+
+
+	/**
+	 * getIfDescr is required for the PropertyValueFactory to function.<br>
+	 * If you delete this, you are going to have a bad time.
+	 *
+	 * @return the interface description.
+	 */
+	@SuppressWarnings( "unused" )
+	public String getIfDescr()
+	{
+		return ifDescr;
+	}
+
+
+	/**
+	 * @return the precomputed delta, or null if it was not calculated.
+	 */
+	public InterfaceDelta getDelta()
+	{
+		return delta;
+	}
+
+
+	/**
+	 * @return the inbound utilization percentage, or null if it was not calculated.
+	 */
+	@SuppressWarnings( "unused" )
+	public Double getInUtilization()
+	{
+		return delta != null && delta.getStatus() == InterfaceDelta.Status.VALID ? delta.getInUtilization() : null;
+	}
+
+
+	/**
+	 * @return the outbound utilization percentage, or null if it was not calculated.
+	 */
+	@SuppressWarnings( "unused" )
+	public Double getOutUtilization()
+	{
+		return delta != null && delta.getStatus() == InterfaceDelta.Status.VALID ? delta.getOutUtilization() : null;
+	}
+
+
+	/**
+	 * @return the inbound plus outbound discards, or null if they were not calculated.
+	 */
+	@SuppressWarnings( "unused" )
+	public Long getDiscards()
+	{
+		return hasCounters() ? delta.getTotalDiscardDelta() : null;
+	}
+
+
+	/**
+	 * @return the inbound plus outbound errors, or null if they were not calculated.
+	 */
+	@SuppressWarnings( "unused" )
+	public Long getErrors()
+	{
+		return hasCounters() ? delta.getTotalErrorDelta() : null;
+	}
+
+
+	private boolean hasCounters()
+	{
+		return delta != null && ( delta.getStatus() == InterfaceDelta.Status.VALID || delta.getStatus() == InterfaceDelta.Status.ZERO_SPEED );
+	}
+
+
+	/**
+	 * @return A string representing the minimum required elements.
+	 */
+	@Override
+	public String toString()
+	{
+		return "SNMPInterface: ifIndex = " + ifIndex + " ifDescr = " + ifDescr;
+	}
+}
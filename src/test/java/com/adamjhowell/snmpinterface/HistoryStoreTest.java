@@ -0,0 +1,309 @@
+package com.adamjhowell.snmpinterface;
+
+
+import com.adamjhowell.snmpinterface.model.InterfaceDelta;
+import com.adamjhowell.snmpinterface.model.InterfaceResult;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/**
+ * These append polls to a HistoryStore and scan them back, across the chunk boundaries within a segment and the boundaries between segments.<br>
+ * Every field of a record is derived from its timestamp and ifIndex, so a scan can check each record it is handed.
+ */
+public class HistoryStoreTest
+{
+	/**
+	 * With a thousand interfaces a poll, and a poll a second, each 80 second segment holds 80,000 records,
+	 * which is more than one chunk (65,536 records), so both the chunk and the segment boundaries fall inside the appended range.
+	 */
+	private static final int INTERFACES = 1000;
+	private static final long POLL_MILLIS = 1000;
+	private static final long SEGMENT_MILLIS = 80000;
+	private static final int POLLS = 200;
+	private static final long START = 1700000000000L / SEGMENT_MILLIS * SEGMENT_MILLIS;
+	private static final String DEVICE = "core-1.example.com";
+	private static final InterfaceDelta.Status[] STATUSES = InterfaceDelta.Status.values();
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+
+	@Test
+	public void scansEveryRecordAcrossChunksAndSegments() throws IOException
+	{
+		Path directory = folder.getRoot().toPath();
+		try( HistoryStore history = new HistoryStore( directory, SEGMENT_MILLIS, 0 ) )
+		{
+			appendPolls( history, 0, POLLS );
+			assertScan( history, 0, POLLS, -1, START, START + POLLS * POLL_MILLIS );
+		}
+	}
+
+
+	@Test
+	public void scansPartOfTheRange() throws IOException
+	{
+		try( HistoryStore history = new HistoryStore( folder.getRoot().toPath(), SEGMENT_MILLIS, 0 ) )
+		{
+			appendPolls( history, 0, POLLS );
+			// Ranges that start and end inside a segment, exactly on a segment's start, just before one, and past the last poll.
+			assertScan( history, 0, POLLS, -1, START + 65500, START + 170250 );
+			assertScan( history, 0, POLLS, -1, START + SEGMENT_MILLIS, START + 2 * SEGMENT_MILLIS - 1 );
+			assertScan( history, 0, POLLS, -1, START + SEGMENT_MILLIS - 1, START + SEGMENT_MILLIS );
+			assertScan( history, 0, POLLS, -1, START + 150000, Long.MAX_VALUE );
+			assertScan( history, 0, POLLS, -1, Long.MIN_VALUE, START - 1 );
+			assertScan( history, 0, POLLS, 777, Long.MIN_VALUE, Long.MAX_VALUE );
+			assertScan( history, 0, POLLS, 1, START + 66000, START + 66000 );
+			assertScan( history, 0, POLLS, INTERFACES + 1, Long.MIN_VALUE, Long.MAX_VALUE );
+		}
+	}
+
+
+	@Test
+	public void reopenedStoreReadsAndAppends() throws IOException
+	{
+		Path directory = folder.getRoot().toPath();
+		try( HistoryStore history = new HistoryStore( directory, SEGMENT_MILLIS, 0 ) )
+		{
+			appendPolls( history, 0, 100 );
+		}
+		try( HistoryStore history = new HistoryStore( directory, SEGMENT_MILLIS, 0 ) )
+		{
+			assertEquals( Arrays.asList( DEVICE ), history.devices() );
+			assertScan( history, 0, 100, -1, START, START + 100 * POLL_MILLIS );
+			try( HistoryStore.Appender appender = history.appender( DEVICE ) )
+			{
+				try
+				{
+					appender.append( START + 99 * POLL_MILLIS, poll( START + 99 * POLL_MILLIS ) );
+					fail( "A poll was appended at the time of the last poll." );
+				}
+				catch( IllegalArgumentException expected )
+				{
+					// The store already holds that poll.
+				}
+			}
+			appendPolls( history, 100, POLLS );
+			assertScan( history, 0, POLLS, -1, START, START + POLLS * POLL_MILLIS );
+		}
+	}
+
+
+	@Test
+	public void aDeviceHasOneAppender() throws IOException
+	{
+		try( HistoryStore history = new HistoryStore( folder.getRoot().toPath(), SEGMENT_MILLIS, 0 ); HistoryStore.Appender appender = history.appender( DEVICE ) )
+		{
+			try
+			{
+				history.appender( DEVICE ).close();
+				fail( "A second appender was opened." );
+			}
+			catch( IllegalStateException expected )
+			{
+				// The first appender is still open.
+			}
+			appender.append( START, poll( START ) );
+		}
+	}
+
+
+	@Test
+	public void scansDuringAppendsSeeWholePolls() throws IOException, InterruptedException, ExecutionException
+	{
+		ExecutorService readers = Executors.newFixedThreadPool( 2 );
+		try( HistoryStore history = new HistoryStore( folder.getRoot().toPath(), SEGMENT_MILLIS, 0 ) )
+		{
+			AtomicBoolean appending = new AtomicBoolean( true );
+			List<Future<Integer>> scans = new ArrayList<>();
+			for( int i = 0; i < 2; i++ )
+			{
+				scans.add( readers.submit( () ->
+				                           {
+					                           int scanCount = 0;
+					                           while( appending.get() )
+					                           {
+						                           long[] counts = new long[POLLS];
+						                           long visited = history.scan( DEVICE, -1, Long.MIN_VALUE, Long.MAX_VALUE, ( timestamp, ifIndex, delta ) ->
+						                           {
+							                           assertDelta( timestamp, ifIndex, delta );
+							                           counts[( int )( ( timestamp - START ) / POLL_MILLIS )]++;
+						                           } );
+						                           assertEquals( 0, visited % INTERFACES );
+						                           for( long count : counts )
+						                           {
+							                           assertTrue( count == 0 || count == INTERFACES );
+						                           }
+						                           scanCount++;
+					                           }
+					                           return scanCount;
+				                           } ) );
+			}
+			try
+			{
+				appendPolls( history, 0, POLLS );
+			}
+			finally
+			{
+				appending.set( false );
+			}
+			for( Future<Integer> scan : scans )
+			{
+				// An assertion that failed on a reader is rethrown here.
+				assertTrue( scan.get() > 0 );
+			}
+		}
+		finally
+		{
+			readers.shutdown();
+		}
+	}
+
+
+	@Test
+	public void expiredSegmentsAreDeleted() throws IOException
+	{
+		try( HistoryStore history = new HistoryStore( folder.getRoot().toPath(), SEGMENT_MILLIS, SEGMENT_MILLIS ) )
+		{
+			appendPolls( history, 0, POLLS );
+			// The first segment was deleted when the third was started, since its window had ended a whole retention period before.
+			assertScan( history, 80, POLLS, -1, Long.MIN_VALUE, Long.MAX_VALUE );
+			assertEquals( 0, history.scan( DEVICE, -1, Long.MIN_VALUE, START + 80 * POLL_MILLIS - 1, ( timestamp, ifIndex, delta ) -> fail() ) );
+			assertEquals( 0, history.deleteExpired( START + 3 * SEGMENT_MILLIS - 1 ) );
+			assertEquals( 1, history.deleteExpired( START + 3 * SEGMENT_MILLIS ) );
+			assertScan( history, 160, POLLS, -1, Long.MIN_VALUE, Long.MAX_VALUE );
+		}
+	}
+
+
+	@Test
+	public void deviceNamesAreEncodedReversibly()
+	{
+		for( String device : new String[]{ DEVICE, ".hidden", "../etc", "a/b\\c", "r\u00e9seau caf\u00e9", "%41", "CON" } )
+		{
+			String encoded = HistoryStore.encode( device );
+			assertTrue( encoded, encoded.matches( "[A-Za-z0-9_%-][A-Za-z0-9._%-]*" ) );
+			assertEquals( device, HistoryStore.decode( encoded ) );
+		}
+	}
+
+
+	/**
+	 * This appends polls from first (inclusive) to last (exclusive), one poll a second from START.
+	 */
+	private static void appendPolls( HistoryStore history, int first, int last ) throws IOException
+	{
+		try( HistoryStore.Appender appender = history.appender( DEVICE ) )
+		{
+			for( int i = first; i < last; i++ )
+			{
+				long timestamp = START + i * POLL_MILLIS;
+				appender.append( timestamp, poll( timestamp ) );
+			}
+		}
+	}
+
+
+	private static List<InterfaceResult> poll( long timestamp )
+	{
+		List<InterfaceResult> results = new ArrayList<>( INTERFACES );
+		for( int ifIndex = 1; ifIndex <= INTERFACES; ifIndex++ )
+		{
+			results.add( new InterfaceResult( ifIndex, "port " + ifIndex, delta( timestamp, ifIndex ) ) );
+		}
+		return results;
+	}
+
+
+	private static InterfaceDelta delta( long timestamp, long ifIndex )
+	{
+		InterfaceDelta delta = new InterfaceDelta();
+		delta.reset( STATUSES[( int )( ifIndex % STATUSES.length )] );
+		delta.setTickDelta( POLL_MILLIS / 10 );
+		delta.setIfSpeed( ifIndex * 1000000L );
+		delta.setHighCapacity( ifIndex % 2 == 0 );
+		delta.setInOctetDelta( timestamp + ifIndex );
+		delta.setOutOctetDelta( timestamp - ifIndex );
+		delta.setInUtilization( ifIndex / 7.0 );
+		delta.setOutUtilization( timestamp / 3.0 );
+		delta.setInDiscardDelta( ifIndex * 3 );
+		delta.setOutDiscardDelta( ifIndex * 5 );
+		delta.setInErrorDelta( Long.MAX_VALUE - ifIndex );
+		delta.setOutErrorDelta( -ifIndex );
+		return delta;
+	}
+
+
+	private static void assertDelta( long timestamp, long ifIndex, InterfaceDelta actual )
+	{
+		InterfaceDelta expected = delta( timestamp, ifIndex );
+		assertEquals( expected.getStatus(), actual.getStatus() );
+		assertEquals( expected.getTickDelta(), actual.getTickDelta() );
+		assertEquals( expected.getIfSpeed(), actual.getIfSpeed() );
+		assertEquals( expected.isHighCapacity(), actual.isHighCapacity() );
+		assertEquals( expected.getInOctetDelta(), actual.getInOctetDelta() );
+		assertEquals( expected.getOutOctetDelta(), actual.getOutOctetDelta() );
+		assertEquals( expected.getInUtilization(), actual.getInUtilization(), 0 );
+		assertEquals( expected.getOutUtilization(), actual.getOutUtilization(), 0 );
+		assertEquals( expected.getInDiscardDelta(), actual.getInDiscardDelta() );
+		assertEquals( expected.getOutDiscardDelta(), actual.getOutDiscardDelta() );
+		assertEquals( expected.getInErrorDelta(), actual.getInErrorDelta() );
+		assertEquals( expected.getOutErrorDelta(), actual.getOutErrorDelta() );
+	}
+
+
+	/**
+	 * This scans a range, and checks that it visits exactly the records of the stored polls in that range, in time order (and ifIndex order within a poll), with every field intact.
+	 *
+	 * @param firstPoll the first poll still in the store.
+	 * @param lastPoll  the poll after the last one in the store.
+	 */
+	private static void assertScan( HistoryStore history, int firstPoll, int lastPoll, long ifIndex, long from, long to ) throws IOException
+	{
+		List<long[]> expected = new ArrayList<>();
+		for( int i = firstPoll; i < lastPoll; i++ )
+		{
+			long timestamp = START + i * POLL_MILLIS;
+			if( timestamp >= from && timestamp <= to )
+			{
+				for( int index = 1; index <= INTERFACES; index++ )
+				{
+					if( ifIndex < 0 || index == ifIndex )
+					{
+						expected.add( new long[]{ timestamp, index } );
+					}
+				}
+			}
+		}
+		List<long[]> actual = new ArrayList<>();
+		long visited = history.scan( DEVICE, ifIndex, from, to, ( timestamp, index, delta ) ->
+		{
+			assertDelta( timestamp, index, delta );
+			actual.add( new long[]{ timestamp, index } );
+		} );
+		assertEquals( expected.size(), visited );
+		assertEquals( expected.size(), actual.size() );
+		for( int i = 0; i < expected.size(); i++ )
+		{
+			assertTrue( "record " + i + " of " + from + " to " + to, Arrays.equals( expected.get( i ), actual.get( i ) ) );
+		}
+	}
+}
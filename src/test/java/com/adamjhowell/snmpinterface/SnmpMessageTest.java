@@ -0,0 +1,150 @@
+package com.adamjhowell.snmpinterface;
+
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/**
+ * These check that every message SnmpMessage encodes decodes back to the same message, and that a malformed datagram is an IOException.
+ */
+public class SnmpMessageTest
+{
+	@Test
+	public void oidIsEncodedAsBer()
+	{
+		// The first two arcs are packed into 1 * 40 + 3, and an arc of 128 or more takes two bytes.
+		assertArrayEquals( new byte[]{ 0x2B, 6, 1, 2, 1, 2, 2, 1, 10, ( byte )0x81, 0x00 }, SnmpMessage.encodeOid( ".1.3.6.1.2.1.2.2.1.10.128" ) );
+		assertArrayEquals( SnmpMessage.encodeOid( ".1.3.6.1.2.1.1.3.0" ), SnmpMessage.encodeOid( "1.3.6.1.2.1.1.3.0" ) );
+	}
+
+
+	@Test
+	public void getBulkRoundTrips() throws IOException
+	{
+		List<String> oids = Arrays.asList( SnmpOids.SYS_UPTIME_OID, ".1.3.6.1.2.1.2.2.1.10", ".1.3.6.1.2.1.31.1.1.1.6" );
+		SnmpMessage request = SnmpMessage.getBulk( "public", 0x7FFFFFFF, 1, 25, oids );
+		SnmpMessage decoded = decode( request.encode() );
+		assertEquals( SnmpMessage.GET_BULK_REQUEST, decoded.getPduType() );
+		assertEquals( "public", decoded.getCommunity() );
+		assertEquals( 0x7FFFFFFF, decoded.getRequestId() );
+		assertEquals( 1, decoded.getErrorStatus() );
+		assertEquals( 25, decoded.getErrorIndex() );
+		assertEquals( oids.size(), decoded.getVarBinds().size() );
+		for( int i = 0; i < oids.size(); i++ )
+		{
+			assertEquals( oids.get( i ), decoded.getVarBinds().get( i ).getOid() );
+			assertEquals( SnmpMessage.NULL, decoded.getVarBinds().get( i ).getType() );
+		}
+	}
+
+
+	@Test
+	public void everyValueTypeRoundTrips() throws IOException
+	{
+		List<SnmpMessage.VarBind> varBinds = new ArrayList<>();
+		long[] integers = { 0, 1, -1, 127, 128, -128, -129, 255, 256, Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE };
+		for( long value : integers )
+		{
+			varBinds.add( new SnmpMessage.VarBind( ".1.3.6.1.4.1.2021.1." + varBinds.size(), SnmpMessage.INTEGER, value, null ) );
+		}
+		// Unsigned values with the top bit of their last byte set need a leading zero byte, and a Counter64 may use all 64 bits.
+		long[] unsigned = { 0, 127, 128, 255, 256, 0xFFFFFFFFL, 0x80000000L, Long.MAX_VALUE, -1L, Long.MIN_VALUE };
+		for( int type : new int[]{ SnmpMessage.COUNTER32, SnmpMessage.GAUGE32, SnmpMessage.TIME_TICKS, SnmpMessage.COUNTER64 } )
+		{
+			for( long value : unsigned )
+			{
+				if( type == SnmpMessage.COUNTER64 || value >= 0 && value <= 0xFFFFFFFFL )
+				{
+					varBinds.add( new SnmpMessage.VarBind( ".1.3.6.1.4.1.2021.2." + varBinds.size(), type, value, null ) );
+				}
+			}
+		}
+		varBinds.add( new SnmpMessage.VarBind( ".1.3.6.1.2.1.1.5.0", SnmpMessage.OCTET_STRING, 0, "r\u00e9seau-caf\u00e9" ) );
+		varBinds.add( new SnmpMessage.VarBind( ".1.3.6.1.2.1.2.2.1.2.1", SnmpMessage.OCTET_STRING, 0, "" ) );
+		varBinds.add( new SnmpMessage.VarBind( ".1.3.6.1.2.1.1.2.0", SnmpMessage.OBJECT_IDENTIFIER, 0, ".1.3.6.1.4.1.8072.3.2.10" ) );
+		varBinds.add( new SnmpMessage.VarBind( ".2.999.4294967296.1", SnmpMessage.NO_SUCH_OBJECT, 0, null ) );
+		varBinds.add( new SnmpMessage.VarBind( ".1.3.6.1.2.1.2.2.1.10.999", SnmpMessage.NO_SUCH_INSTANCE, 0, null ) );
+		varBinds.add( new SnmpMessage.VarBind( ".1.3.6.1.6.3.1", SnmpMessage.END_OF_MIB_VIEW, 0, null ) );
+
+		SnmpMessage response = new SnmpMessage( SnmpMessage.RESPONSE, "private", -5, SnmpMessage.ERROR_GEN_ERR, 3, varBinds );
+		byte[] encoded = response.encode();
+		// This many bindings need a length of more than one byte.
+		assertTrue( encoded.length > 0x100 );
+		SnmpMessage decoded = decode( encoded );
+		assertEquals( SnmpMessage.RESPONSE, decoded.getPduType() );
+		assertEquals( "private", decoded.getCommunity() );
+		assertEquals( -5, decoded.getRequestId() );
+		assertEquals( SnmpMessage.ERROR_GEN_ERR, decoded.getErrorStatus() );
+		assertEquals( 3, decoded.getErrorIndex() );
+		assertEquals( varBinds.size(), decoded.getVarBinds().size() );
+		for( int i = 0; i < varBinds.size(); i++ )
+		{
+			SnmpMessage.VarBind expected = varBinds.get( i );
+			SnmpMessage.VarBind actual = decoded.getVarBinds().get( i );
+			String message = "varbind " + i + " (" + expected.getOid() + ")";
+			assertEquals( message, expected.getOid(), actual.getOid() );
+			assertEquals( message, expected.getType(), actual.getType() );
+			assertEquals( message, expected.getValue(), actual.getValue() );
+			assertEquals( message, expected.getText(), actual.getText() );
+			assertEquals( message, expected.isException(), actual.isException() );
+		}
+		assertFalse( decoded.getVarBinds().get( 0 ).isException() );
+	}
+
+
+	@Test
+	public void truncatedDatagramIsAnIOException()
+	{
+		byte[] encoded = SnmpMessage.getBulk( "public", 42, 0, 10, Arrays.asList( ".1.3.6.1.2.1.2.2", ".1.3.6.1.2.1.31.1.1" ) ).encode();
+		for( int length = 0; length < encoded.length; length++ )
+		{
+			try
+			{
+				SnmpMessage.decode( encoded, length );
+				fail( "A datagram cut to " + length + " of " + encoded.length + " bytes was decoded." );
+			}
+			catch( IOException expected )
+			{
+				// Every truncation must be reported as a malformed message.
+			}
+		}
+	}
+
+
+	@Test
+	public void otherVersionIsAnIOException()
+	{
+		byte[] encoded = SnmpMessage.getBulk( "public", 42, 0, 10, Arrays.asList( ".1.3.6.1.2.1.2.2" ) ).encode();
+		// The version is the first INTEGER inside the message SEQUENCE: tag, length, tag, length, value.
+		encoded[4] = 0;
+		try
+		{
+			decode( encoded );
+			fail( "An SNMPv1 message was decoded as SNMPv2c." );
+		}
+		catch( IOException expected )
+		{
+			assertTrue( expected.getMessage().contains( "version" ) );
+		}
+	}
+
+
+	private static SnmpMessage decode( byte[] datagram ) throws IOException
+	{
+		// A receive buffer is usually larger than the datagram, so the bytes after its length must be ignored.
+		byte[] buffer = Arrays.copyOf( datagram, datagram.length + 16 );
+		Arrays.fill( buffer, datagram.length, buffer.length, ( byte )0xFF );
+		return SnmpMessage.decode( buffer, datagram.length );
+	}
+}
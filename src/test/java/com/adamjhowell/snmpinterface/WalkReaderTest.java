@@ -0,0 +1,162 @@
+package com.adamjhowell.snmpinterface;
+
+
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.XZOutputStream;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/**
+ * These check that a walk's Progress listener is called as the walk is read, and can cancel the read, whether the walk is plain, gzip or xz compressed.<br>
+ * A compressed walk is handed to the reader one small chunk at a time, so these would catch progress that only counts within a chunk.
+ */
+public class WalkReaderTest
+{
+	/**
+	 * The generated walk is several megabytes, so its listener should be called several times, but it is small enough to be read on one thread.
+	 */
+	private static final int INTERFACE_COUNT = 500;
+	private static final long NOISE_LINES = 100000;
+	private static final long MEGABYTE = 1 << 20;
+
+	@ClassRule
+	public static final TemporaryFolder folder = new TemporaryFolder();
+
+	private static Path plain;
+	private static Path gzip;
+	private static Path xz;
+
+
+	@BeforeClass
+	public static void writeWalks() throws IOException
+	{
+		WalkGenerator generator = new WalkGenerator( 42 );
+		generator.setInterfaceCount( INTERFACE_COUNT );
+		generator.setNoiseLines( NOISE_LINES );
+		plain = folder.getRoot().toPath().resolve( "walk.txt" );
+		try( Writer out = Files.newBufferedWriter( plain, StandardCharsets.UTF_8 ) )
+		{
+			generator.write( out, 1 );
+		}
+		gzip = folder.getRoot().toPath().resolve( "walk.txt.gz" );
+		try( OutputStream out = new GZIPOutputStream( Files.newOutputStream( gzip ) ) )
+		{
+			Files.copy( plain, out );
+		}
+		xz = folder.getRoot().toPath().resolve( "walk.txt.xz" );
+		try( OutputStream out = new XZOutputStream( Files.newOutputStream( xz ), new LZMA2Options( 1 ) ) )
+		{
+			Files.copy( plain, out );
+		}
+	}
+
+
+	@Test
+	public void plainWalkReportsProgressEveryMegabyte() throws IOException
+	{
+		assertProgressEveryMegabyte( plain );
+	}
+
+
+	@Test
+	public void gzipWalkReportsProgressEveryMegabyte() throws IOException
+	{
+		assertProgressEveryMegabyte( gzip );
+	}
+
+
+	@Test
+	public void xzWalkReportsProgressEveryMegabyte() throws IOException
+	{
+		assertProgressEveryMegabyte( xz );
+	}
+
+
+	@Test
+	public void plainWalkCanBeCancelled() throws IOException
+	{
+		assertCancelledOnSecondUpdate( plain );
+	}
+
+
+	@Test
+	public void gzipWalkCanBeCancelled() throws IOException
+	{
+		assertCancelledOnSecondUpdate( gzip );
+	}
+
+
+	@Test
+	public void xzWalkCanBeCancelled() throws IOException
+	{
+		assertCancelledOnSecondUpdate( xz );
+	}
+
+
+	@Test
+	public void compressedWalksReadTheSameAsThePlainWalk() throws IOException
+	{
+		WalkIndex expected = WalkReader.read( plain );
+		assertEquals( INTERFACE_COUNT, expected.size() );
+		for( Path path : new Path[]{ gzip, xz } )
+		{
+			WalkIndex actual = WalkReader.read( path );
+			assertTrue( path.toString(), expected.hasSameInterfaces( actual ) );
+			assertEquals( path.toString(), expected.getSysUpTime(), actual.getSysUpTime() );
+			assertEquals( path.toString(), expected.getLineCount(), actual.getLineCount() );
+			assertEquals( path.toString(), expected.getByteCount(), actual.getByteCount() );
+		}
+	}
+
+
+	/**
+	 * The listener is called once for each megabyte of the walk's text, and once more when the read ends, with the whole file read.
+	 */
+	private static void assertProgressEveryMegabyte( Path path ) throws IOException
+	{
+		List<long[]> updates = new ArrayList<>();
+		WalkReader.read( path, ( read, total ) ->
+		{
+			updates.add( new long[]{ read, total } );
+			return true;
+		} );
+		long megabytes = Files.size( plain ) / MEGABYTE;
+		assertTrue( path + " made " + updates.size() + " progress updates for " + megabytes + " MB", updates.size() >= megabytes );
+		long[] last = updates.get( updates.size() - 1 );
+		assertEquals( Files.size( path ), last[0] );
+		assertEquals( Files.size( path ), last[1] );
+	}
+
+
+	private static void assertCancelledOnSecondUpdate( Path path ) throws IOException
+	{
+		int[] calls = new int[1];
+		try
+		{
+			WalkReader.read( path, ( read, total ) -> ++calls[0] < 2 );
+			fail( path + " was read to the end after its listener returned false." );
+		}
+		catch( InterruptedIOException e )
+		{
+			assertEquals( 2, calls[0] );
+		}
+	}
+}
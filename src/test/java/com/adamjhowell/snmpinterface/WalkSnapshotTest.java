@@ -0,0 +1,203 @@
+package com.adamjhowell.snmpinterface;
+
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/**
+ * These check that a WalkIndex saved by WalkSnapshot is read back with the same slots, values, system values, read counts and capture time.
+ */
+public class WalkSnapshotTest
+{
+	/**
+	 * The version follows the eight byte magic number, and the capture time follows the interface count, column count, sysUpTime and read counts.
+	 */
+	private static final int VERSION_OFFSET = 8;
+	private static final int CAPTURE_TIME_OFFSET = 44;
+	private static final long CAPTURE_TIME = 1756720800000L;
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+
+	@Test
+	public void generatedWalkRoundTrips() throws IOException
+	{
+		WalkGenerator generator = new WalkGenerator( 7 );
+		generator.setInterfaceCount( 300 );
+		generator.setNoiseLines( 100 );
+		generator.setWrapPercent( 20 );
+		Path walk = folder.getRoot().toPath().resolve( "walk.txt" );
+		try( Writer out = Files.newBufferedWriter( walk, StandardCharsets.UTF_8 ) )
+		{
+			generator.write( out, 2 );
+		}
+		Files.setLastModifiedTime( walk, FileTime.fromMillis( CAPTURE_TIME ) );
+		WalkIndex expected = WalkReader.read( walk );
+		assertEquals( CAPTURE_TIME, expected.getCaptureTime() );
+
+		Path snapshot = WalkSnapshot.snapshotPath( walk );
+		WalkSnapshot.write( expected, snapshot );
+		// The snapshot is written now, but keeps the capture time of its walk.
+		WalkIndex actual = WalkReader.read( snapshot );
+		assertSameIndex( expected, actual );
+		assertEquals( CAPTURE_TIME, actual.getCaptureTime() );
+	}
+
+
+	@Test
+	public void edgeValuesRoundTrip() throws IOException
+	{
+		WalkIndex expected = new WalkIndex();
+		expected.setSysUpTime( 0xFFFFFFFFL );
+		expected.setSysName( "r\u00e9seau-caf\u00e9" );
+		expected.setSysDescr( "" );
+		expected.setReadCounts( 123456789012L, Long.MAX_VALUE );
+		expected.setCaptureTime( CAPTURE_TIME );
+		// Every varint length, from one byte to the ten bytes of a value with the top bit set.
+		long value = 0;
+		for( int ifIndex = 1; ifIndex <= 64; ifIndex++ )
+		{
+			expected.setValue( IfColumn.IF_HC_IN_OCTETS, ifIndex, value );
+			expected.setValue( IfColumn.IF_HC_OUT_OCTETS, ifIndex, -value );
+			value = value << 1 | 1;
+		}
+		// A zero counter is kept apart from a missing one, and an interface may have no ifDescr.
+		expected.setIfDescr( 1000, "eth0" );
+		expected.setValue( IfColumn.IF_IN_OCTETS, 1000, 0 );
+		expected.setValue( IfColumn.IF_IN_OCTETS, Long.MAX_VALUE, 1 );
+		expected.setIfDescr( 2000, "" );
+
+		WalkIndex actual = roundTrip( expected );
+		assertSameIndex( expected, actual );
+		assertNull( actual.getIfDescr( actual.slotOf( 1 ) ) );
+		assertTrue( actual.hasValue( IfColumn.IF_IN_OCTETS, actual.slotOf( 1000 ) ) );
+		assertFalse( actual.hasValue( IfColumn.IF_OUT_OCTETS, actual.slotOf( 1000 ) ) );
+	}
+
+
+	@Test
+	public void emptyIndexRoundTrips() throws IOException
+	{
+		WalkIndex expected = new WalkIndex();
+		WalkIndex actual = roundTrip( expected );
+		assertSameIndex( expected, actual );
+		assertEquals( 0, actual.size() );
+	}
+
+
+	@Test
+	public void versionOneSnapshotTakesItsOwnModificationTime() throws IOException
+	{
+		WalkIndex expected = new WalkIndex();
+		expected.setSysName( "router" );
+		expected.setIfDescr( 1, "lo" );
+		expected.setValue( IfColumn.IF_IN_OCTETS, 1, 42 );
+		expected.setCaptureTime( CAPTURE_TIME );
+		Path snapshot = folder.getRoot().toPath().resolve( "v2" + WalkSnapshot.SNAPSHOT_EXTENSION );
+		WalkSnapshot.write( expected, snapshot );
+
+		// Version 1 had no capture time in its header, and was otherwise the same.
+		byte[] v2 = Files.readAllBytes( snapshot );
+		byte[] v1 = new byte[v2.length - Long.BYTES];
+		System.arraycopy( v2, 0, v1, 0, CAPTURE_TIME_OFFSET );
+		System.arraycopy( v2, CAPTURE_TIME_OFFSET + Long.BYTES, v1, CAPTURE_TIME_OFFSET, v1.length - CAPTURE_TIME_OFFSET );
+		ByteBuffer.wrap( v1 ).putInt( VERSION_OFFSET, 1 );
+		Path old = folder.getRoot().toPath().resolve( "v1" + WalkSnapshot.SNAPSHOT_EXTENSION );
+		Files.write( old, v1 );
+		long written = CAPTURE_TIME + 86400000L;
+		Files.setLastModifiedTime( old, FileTime.fromMillis( written ) );
+
+		WalkIndex actual = WalkReader.read( old );
+		expected.setCaptureTime( written );
+		assertSameIndex( expected, actual );
+	}
+
+
+	@Test
+	public void truncatedSnapshotIsAnIOException() throws IOException
+	{
+		WalkIndex index = new WalkIndex();
+		index.setSysName( "router" );
+		index.setSysUpTime( 100 );
+		for( int ifIndex = 1; ifIndex <= 20; ifIndex++ )
+		{
+			index.setIfDescr( ifIndex, "port " + ifIndex );
+			index.setValue( IfColumn.IF_IN_OCTETS, ifIndex, ifIndex * 1000000007L );
+		}
+		Path snapshot = folder.getRoot().toPath().resolve( "whole" + WalkSnapshot.SNAPSHOT_EXTENSION );
+		WalkSnapshot.write( index, snapshot );
+		byte[] whole = Files.readAllBytes( snapshot );
+		Path truncated = folder.getRoot().toPath().resolve( "truncated" + WalkSnapshot.SNAPSHOT_EXTENSION );
+		for( int length = VERSION_OFFSET; length < whole.length; length++ )
+		{
+			Files.write( truncated, Arrays.copyOf( whole, length ) );
+			try( FileChannel channel = FileChannel.open( truncated, StandardOpenOption.READ ) )
+			{
+				assertTrue( WalkSnapshot.isSnapshot( channel ) );
+				WalkSnapshot.read( channel );
+				fail( "A snapshot cut to " + length + " of " + whole.length + " bytes was read." );
+			}
+			catch( IOException expected )
+			{
+				// Every truncation must be reported as a truncated or corrupt snapshot.
+			}
+		}
+	}
+
+
+	private WalkIndex roundTrip( WalkIndex index ) throws IOException
+	{
+		Path snapshot = folder.newFile( "index" + WalkSnapshot.SNAPSHOT_EXTENSION ).toPath();
+		WalkSnapshot.write( index, snapshot );
+		try( FileChannel channel = FileChannel.open( snapshot, StandardOpenOption.READ ) )
+		{
+			assertTrue( WalkSnapshot.isSnapshot( channel ) );
+			return WalkSnapshot.read( channel );
+		}
+	}
+
+
+	private static void assertSameIndex( WalkIndex expected, WalkIndex actual )
+	{
+		assertEquals( expected.getSysUpTime(), actual.getSysUpTime() );
+		assertEquals( expected.getSysName(), actual.getSysName() );
+		assertEquals( expected.getSysDescr(), actual.getSysDescr() );
+		assertEquals( expected.getLineCount(), actual.getLineCount() );
+		assertEquals( expected.getByteCount(), actual.getByteCount() );
+		assertEquals( expected.getCaptureTime(), actual.getCaptureTime() );
+		assertEquals( expected.size(), actual.size() );
+		assertTrue( expected.hasSameInterfaces( actual ) );
+		for( int slot = 0; slot < expected.size(); slot++ )
+		{
+			// Slots keep their walk order.
+			assertEquals( expected.getIfIndex( slot ), actual.getIfIndex( slot ) );
+			assertEquals( expected.getIfDescr( slot ), actual.getIfDescr( slot ) );
+			for( IfColumn column : IfColumn.values() )
+			{
+				String message = column + " of ifIndex " + expected.getIfIndex( slot );
+				assertEquals( message, expected.hasValue( column, slot ), actual.hasValue( column, slot ) );
+				assertEquals( message, expected.getValue( column, slot ), actual.getValue( column, slot ) );
+			}
+		}
+	}
+}